@@ -0,0 +1,428 @@
+package org.brlcad.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.brlcad.spacePartition.ViewCache;
+
+/**
+ * Computes the presented and exposed areas of each region and ident of a PreppedDb from
+ * a batch of views, like the BRL-CAD rtarea tool. For each view an orthographic grid of
+ * rays, one through the center of each square cell, covers the bounding box of the model
+ * as seen from that direction. The grid is cut into tiles, and the tiles of all the views
+ * are shared among a pool of threads, so the threads stay busy from one view to the next.
+ * The results of each view are passed to an AreaListener as soon as its last tile is done.
+ */
+public class AreaAnalysis {
+
+    /** the number of grid cells across the larger dimension of a view when no cell size is set */
+    public static final int DEFAULT_CELLS = 512;
+
+    /** the number of rays along each side of a tile */
+    static final int TILE = 32;
+
+    private final PreppedDb prepped;
+    private double cellSize;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param prepped The prepped model to analyze
+     */
+    public AreaAnalysis(PreppedDb prepped) {
+        this.prepped = prepped;
+    }
+
+    /**
+     * @param cellSize The grid spacing in millimeters (0 to give each view 512 cells
+     * across its larger dimension)
+     */
+    public void setCellSize(double cellSize) {
+        if (cellSize < 0.0) {
+            throw new IllegalArgumentException("Cell size must not be negative: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @param threads The number of threads to shoot rays with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Compute the areas of one view
+     *
+     * @param view The view
+     * @return The areas
+     */
+    public AreaResult run(AreaView view) {
+        final List<AreaResult> results = new ArrayList<AreaResult>(1);
+        this.run(Collections.singletonList(view), new AreaListener() {
+            public void viewFinished(AreaResult result) {
+                results.add(result);
+            }
+        });
+        return results.get(0);
+    }
+
+    /**
+     * Compute the areas of a batch of views, which share the prepped model
+     *
+     * @param views The views
+     * @param listener Receives the areas of each view as soon as it is finished
+     */
+    public void run(List<AreaView> views, AreaListener listener) {
+        RegionTable regions = this.prepped.getRegionTable();
+        BoundingBox bb = this.prepped.getBoundingBox();
+        if (bb == null || bb.isEmpty()) {
+            throw new IllegalStateException("The model is empty");
+        }
+
+        // the idents, and the ident of each region
+        TreeSet<Integer> identSet = new TreeSet<Integer>();
+        for (int r = 0; r < regions.size(); r++) {
+            identSet.add(regions.getRegionID(r));
+        }
+        int[] idents = new int[identSet.size()];
+        int i = 0;
+        for (int ident : identSet) {
+            idents[i++] = ident;
+        }
+        int[] regionIdents = new int[regions.size()];
+        for (int r = 0; r < regions.size(); r++) {
+            regionIdents[r] = Arrays.binarySearch(idents, regions.getRegionID(r));
+        }
+
+        BlockingQueue<Object> finished = new LinkedBlockingQueue<Object>();
+        List<ViewTask> viewTasks = new ArrayList<ViewTask>(views.size());
+        for (int v = 0; v < views.size(); v++) {
+            viewTasks.add(new ViewTask(views.get(v), v, new Grid(bb, views.get(v).getDirection(), this.cellSize),
+                    regions, regionIdents, idents, finished));
+        }
+        Scratch scratch = new Scratch(regions.size(), idents.length);
+
+        if (this.threads <= 1) {
+            for (ViewTask viewTask : viewTasks) {
+                for (TileTask tile : viewTask.tiles()) {
+                    tile.shoot(scratch);
+                }
+                listener.viewFinished(viewTask.result());
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            final int regionCount = regions.size();
+            final int identCount = idents.length;
+            final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>() {
+                @Override
+                protected Scratch initialValue() {
+                    return new Scratch(regionCount, identCount);
+                }
+            };
+            for (ViewTask viewTask : viewTasks) {
+                for (final TileTask tile : viewTask.tiles()) {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            tile.run(scratches.get());
+                        }
+                    });
+                }
+            }
+            for (int v = 0; v < viewTasks.size(); v++) {
+                Object done = finished.take();
+                if (done instanceof RuntimeException) {
+                    throw (RuntimeException) done;
+                }
+                if (done instanceof Error) {
+                    throw (Error) done;
+                }
+                listener.viewFinished(((ViewTask) done).result());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while shooting views", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The orthographic grid of rays of one view, just covering the bounding box of the model
+     */
+    static final class Grid {
+
+        final Vector3 direction;
+        final Vector3 xDir;
+        final Vector3 yDir;
+        final Point origin;
+        final double cellSize;
+        final int columns;
+        final int rows;
+
+        Grid(BoundingBox bb, Vector3 direction, double cellSize) {
+            this.direction = new Vector3(direction);
+            this.direction.normalize();
+            Vector3 up = Math.abs(this.direction.getZ()) > 0.999 ? new Vector3(0, 1, 0) : new Vector3(0, 0, 1);
+            this.xDir = this.direction.crossProduct(up);
+            this.xDir.normalize();
+            this.yDir = this.xDir.crossProduct(this.direction);
+            this.yDir.normalize();
+
+            Point center = new Point(bb.getMin());
+            center.plus(bb.getMax());
+            center.scale(0.5);
+            double radius = bb.getDiameter().magnitude() / 2.0;
+            double uMin = Double.MAX_VALUE;
+            double uMax = -Double.MAX_VALUE;
+            double vMin = Double.MAX_VALUE;
+            double vMax = -Double.MAX_VALUE;
+            for (int corner = 0; corner < 8; corner++) {
+                Point p = new Point((corner & 1) == 0 ? bb.getMin().getX() : bb.getMax().getX(),
+                        (corner & 2) == 0 ? bb.getMin().getY() : bb.getMax().getY(),
+                        (corner & 4) == 0 ? bb.getMin().getZ() : bb.getMax().getZ());
+                Vector3 offset = Vector3.minus(p, center);
+                double u = offset.dotProduct(this.xDir);
+                double v = offset.dotProduct(this.yDir);
+                uMin = Math.min(uMin, u);
+                uMax = Math.max(uMax, u);
+                vMin = Math.min(vMin, v);
+                vMax = Math.max(vMax, v);
+            }
+            if (cellSize == 0.0) {
+                cellSize = Math.max(uMax - uMin, vMax - vMin) / DEFAULT_CELLS;
+                if (cellSize == 0.0) {
+                    cellSize = 1.0;
+                }
+            }
+            this.cellSize = cellSize;
+            this.columns = Math.max(1, (int) Math.ceil((uMax - uMin) / cellSize));
+            this.rows = Math.max(1, (int) Math.ceil((vMax - vMin) / cellSize));
+
+            // start the rays outside the model, at the center of cell 0, 0 of a grid centered
+            // on the model (so the grids of opposite views line up)
+            this.origin = new Point(center);
+            this.origin.join(-(radius + 1.0), this.direction);
+            this.origin.join(0.5 * (uMin + uMax) - 0.5 * (this.columns - 1) * cellSize, this.xDir);
+            this.origin.join(0.5 * (vMin + vMax) - 0.5 * (this.rows - 1) * cellSize, this.yDir);
+        }
+
+        /**
+         * @return The ray through the center of a cell
+         */
+        Ray ray(int column, int row) {
+            Point start = new Point(this.origin);
+            start.join(column * this.cellSize, this.xDir);
+            start.join(row * this.cellSize, this.yDir);
+            return new Ray(start, new Vector3(this.direction));
+        }
+    }
+
+    /**
+     * Counts kept by one thread while it shoots a tile, and the regions and idents touched
+     */
+    private static final class Scratch {
+        private final long[] presented;
+        private final long[] exposed;
+        private final long[] identPresented;
+        private final long[] identExposed;
+        private final long[] regionStamps;
+        private final long[] identStamps;
+        private final int[] touchedRegions;
+        private final int[] touchedIdents;
+        private int regionCount;
+        private int identCount;
+        private long stamp;
+
+        Scratch(int regions, int idents) {
+            this.presented = new long[regions];
+            this.exposed = new long[regions];
+            this.identPresented = new long[idents];
+            this.identExposed = new long[idents];
+            this.regionStamps = new long[regions];
+            this.identStamps = new long[idents];
+            this.touchedRegions = new int[regions];
+            this.touchedIdents = new int[idents];
+        }
+    }
+
+    /**
+     * The tiles and totals of one view
+     */
+    private class ViewTask {
+
+        private final AreaView view;
+        private final int index;
+        private final Grid grid;
+        private final RegionTable regions;
+        private final int[] regionIdents;
+        private final int[] idents;
+        private final BlockingQueue<Object> finished;
+        private final ViewCache cache;
+        private final AtomicLongArray counts;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final long startTime = System.currentTimeMillis();
+
+        ViewTask(AreaView view, int index, Grid grid, RegionTable regions, int[] regionIdents, int[] idents,
+                BlockingQueue<Object> finished) {
+            this.view = view;
+            this.index = index;
+            this.grid = grid;
+            this.regions = regions;
+            this.regionIdents = regionIdents;
+            this.idents = idents;
+            this.finished = finished;
+            this.cache = prepped.createViewCache(grid.direction);
+            // presented and exposed counts of each region, then of each ident, then the cells hit
+            this.counts = new AtomicLongArray(2 * regions.size() + 2 * idents.length + 1);
+        }
+
+        List<TileTask> tiles() {
+            List<TileTask> tiles = new ArrayList<TileTask>();
+            for (int row = 0; row < this.grid.rows; row += TILE) {
+                for (int column = 0; column < this.grid.columns; column += TILE) {
+                    tiles.add(new TileTask(this, column, row));
+                }
+            }
+            this.remaining.set(tiles.size());
+            return tiles;
+        }
+
+        AreaResult result() {
+            int r = this.regions.size();
+            int n = this.idents.length;
+            long[] values = new long[this.counts.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.counts.get(i);
+            }
+            return new AreaResult(this.view, this.index, this.grid.cellSize, (long) this.grid.columns * this.grid.rows,
+                    values[2 * r + 2 * n], this.regions, Arrays.copyOfRange(values, 0, r),
+                    Arrays.copyOfRange(values, r, 2 * r), this.idents,
+                    Arrays.copyOfRange(values, 2 * r, 2 * r + n),
+                    Arrays.copyOfRange(values, 2 * r + n, 2 * r + 2 * n),
+                    System.currentTimeMillis() - this.startTime);
+        }
+    }
+
+    /**
+     * Shoots the rays of one tile of a view
+     */
+    private class TileTask {
+
+        private final ViewTask view;
+        private final int column;
+        private final int row;
+
+        TileTask(ViewTask view, int column, int row) {
+            this.view = view;
+            this.column = column;
+            this.row = row;
+        }
+
+        /**
+         * Shoot the tile on a thread of the pool, and report the view when it is the last tile
+         */
+        void run(Scratch scratch) {
+            try {
+                this.shoot(scratch);
+                if (this.view.remaining.decrementAndGet() == 0) {
+                    this.view.finished.add(this.view);
+                }
+            } catch (RuntimeException e) {
+                this.view.finished.add(e);
+            } catch (Error e) {
+                this.view.finished.add(e);
+            }
+        }
+
+        void shoot(Scratch scratch) {
+            Grid grid = this.view.grid;
+            int[] regionIdents = this.view.regionIdents;
+            ShotlineBuffer buffer = new ShotlineBuffer();
+            long hits = 0;
+            for (int r = this.row; r < Math.min(this.row + TILE, grid.rows); r++) {
+                for (int c = this.column; c < Math.min(this.column + TILE, grid.columns); c++) {
+                    buffer.clear();
+                    int parts = prepped.shootRay(grid.ray(c, r), null, buffer, this.view.cache);
+                    if (parts == 0) {
+                        continue;
+                    }
+                    hits++;
+                    scratch.stamp++;
+                    int first = buffer.getRegion(0);
+                    scratch.exposed[first]++;
+                    scratch.identExposed[regionIdents[first]]++;
+                    for (int p = 0; p < parts; p++) {
+                        int region = buffer.getRegion(p);
+                        if (scratch.regionStamps[region] == scratch.stamp) {
+                            continue;
+                        }
+                        if (scratch.regionStamps[region] == 0) {
+                            scratch.touchedRegions[scratch.regionCount++] = region;
+                        }
+                        scratch.regionStamps[region] = scratch.stamp;
+                        scratch.presented[region]++;
+                        int ident = regionIdents[region];
+                        if (scratch.identStamps[ident] != scratch.stamp) {
+                            if (scratch.identStamps[ident] == 0) {
+                                scratch.touchedIdents[scratch.identCount++] = ident;
+                            }
+                            scratch.identStamps[ident] = scratch.stamp;
+                            scratch.identPresented[ident]++;
+                        }
+                    }
+                }
+            }
+
+            // add the counts of the regions and idents this tile touched to the view, and reset them
+            AtomicLongArray counts = this.view.counts;
+            int regionCount = this.view.regions.size();
+            int identOffset = 2 * regionCount;
+            int identCount = this.view.idents.length;
+            for (int t = 0; t < scratch.regionCount; t++) {
+                int region = scratch.touchedRegions[t];
+                counts.addAndGet(region, scratch.presented[region]);
+                counts.addAndGet(regionCount + region, scratch.exposed[region]);
+                scratch.presented[region] = 0;
+                scratch.exposed[region] = 0;
+                scratch.regionStamps[region] = 0;
+            }
+            for (int t = 0; t < scratch.identCount; t++) {
+                int ident = scratch.touchedIdents[t];
+                counts.addAndGet(identOffset + ident, scratch.identPresented[ident]);
+                counts.addAndGet(identOffset + identCount + ident, scratch.identExposed[ident]);
+                scratch.identPresented[ident] = 0;
+                scratch.identExposed[ident] = 0;
+                scratch.identStamps[ident] = 0;
+            }
+            scratch.regionCount = 0;
+            scratch.identCount = 0;
+            counts.addAndGet(identOffset + 2 * identCount, hits);
+        }
+    }
+}
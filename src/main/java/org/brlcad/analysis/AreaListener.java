@@ -0,0 +1,15 @@
+package org.brlcad.analysis;
+
+/**
+ * Receives the results of each view of an AreaAnalysis as soon as the view is finished
+ */
+public interface AreaListener {
+
+    /**
+     * Called on the thread that ran the analysis, once for each view, in the order
+     * that the views are finished (which may differ from the order they were given in)
+     *
+     * @param result The areas of one view
+     */
+    void viewFinished(AreaResult result);
+}
@@ -0,0 +1,182 @@
+package org.brlcad.analysis;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import org.brlcad.spacePartition.RegionTable;
+
+/**
+ * The areas of one view of an AreaAnalysis, in square millimeters. The presented area of
+ * a region is the area of the cells whose ray passes through the region anywhere, and its
+ * exposed area is the area of the cells whose ray hits the region first. The areas of an
+ * ident count each cell once, however many regions with that ident its ray passes through.
+ */
+public class AreaResult {
+
+    private final AreaView view;
+    private final int index;
+    private final double cellSize;
+    private final long rays;
+    private final long hitCells;
+    private final RegionTable regions;
+    private final long[] presented;
+    private final long[] exposed;
+    private final int[] idents;
+    private final long[] identPresented;
+    private final long[] identExposed;
+    private final long millis;
+
+    AreaResult(AreaView view, int index, double cellSize, long rays, long hitCells, RegionTable regions,
+            long[] presented, long[] exposed, int[] idents, long[] identPresented, long[] identExposed, long millis) {
+        this.view = view;
+        this.index = index;
+        this.cellSize = cellSize;
+        this.rays = rays;
+        this.hitCells = hitCells;
+        this.regions = regions;
+        this.presented = presented;
+        this.exposed = exposed;
+        this.idents = idents;
+        this.identPresented = identPresented;
+        this.identExposed = identExposed;
+        this.millis = millis;
+    }
+
+    public AreaView getView() {
+        return view;
+    }
+
+    /**
+     * @return The position of the view in the list of views given to the analysis
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The grid spacing in millimeters
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return The area of one grid cell
+     */
+    public double getCellArea() {
+        return cellSize * cellSize;
+    }
+
+    /**
+     * @return The number of rays shot (one per cell)
+     */
+    public long getRays() {
+        return rays;
+    }
+
+    /**
+     * @return The area of the cells whose ray hit any region (the presented area of the whole model)
+     */
+    public double getTotalArea() {
+        return this.hitCells * this.getCellArea();
+    }
+
+    /**
+     * @param region The index of a region (see PreppedDb.getRegionTable())
+     * @return The presented area of the region
+     */
+    public double getPresentedArea(int region) {
+        return this.presented[region] * this.getCellArea();
+    }
+
+    /**
+     * @param region The index of a region (see PreppedDb.getRegionTable())
+     * @return The exposed area of the region
+     */
+    public double getExposedArea(int region) {
+        return this.exposed[region] * this.getCellArea();
+    }
+
+    /**
+     * @param name The name of a region
+     * @return The presented area of the region
+     */
+    public double getPresentedArea(String name) {
+        return this.getPresentedArea(this.indexOf(name));
+    }
+
+    /**
+     * @param name The name of a region
+     * @return The exposed area of the region
+     */
+    public double getExposedArea(String name) {
+        return this.getExposedArea(this.indexOf(name));
+    }
+
+    private int indexOf(String name) {
+        int index = this.regions.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("No region named " + name);
+        }
+        return index;
+    }
+
+    /**
+     * @return The idents of the regions, in increasing order
+     */
+    public int[] getIdents() {
+        return idents.clone();
+    }
+
+    /**
+     * @param ident A region ident
+     * @return The presented area of the regions with that ident (0 if there are none)
+     */
+    public double getIdentPresentedArea(int ident) {
+        int i = Arrays.binarySearch(this.idents, ident);
+        return i < 0 ? 0.0 : this.identPresented[i] * this.getCellArea();
+    }
+
+    /**
+     * @param ident A region ident
+     * @return The exposed area of the regions with that ident (0 if there are none)
+     */
+    public double getIdentExposedArea(int ident) {
+        int i = Arrays.binarySearch(this.idents, ident);
+        return i < 0 ? 0.0 : this.identExposed[i] * this.getCellArea();
+    }
+
+    /**
+     * @return The time taken by this view, in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Print the areas of the regions and idents that were hit
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        out.println(String.format("View %s: %d rays, cell size %.6g mm, total area %.6g mm^2, %d ms", this.view,
+                this.rays, this.cellSize, this.getTotalArea(), this.millis));
+        out.println("Regions (presented, exposed):");
+        for (int r = 0; r < this.presented.length; r++) {
+            if (this.presented[r] > 0) {
+                out.println(String.format("\t%s: %.6g %.6g", this.regions.getName(r), this.getPresentedArea(r),
+                        this.getExposedArea(r)));
+            }
+        }
+        out.println("Idents (presented, exposed):");
+        for (int i = 0; i < this.idents.length; i++) {
+            if (this.identPresented[i] > 0) {
+                out.println(String.format("\t%d: %.6g %.6g", this.idents[i], this.identPresented[i] * this.getCellArea(),
+                        this.identExposed[i] * this.getCellArea()));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AreaResult: " + this.view + ", " + this.rays + " rays, total area " + this.getTotalArea();
+    }
+}
@@ -0,0 +1,58 @@
+package org.brlcad.analysis;
+
+import javax.measure.quantity.Angle;
+import javax.measure.unit.NonSI;
+import org.brlcad.numerics.Vector3;
+import org.jscience.physics.amount.Amount;
+
+/**
+ * The direction of one view of an AreaAnalysis, given by azimuth and elevation the same
+ * way as for Rt (see Vector3.fromAzimuthAndElevation())
+ */
+public class AreaView {
+
+    private final Amount<Angle> azimuth;
+    private final Amount<Angle> elevation;
+    private final Vector3 direction;
+
+    /**
+     * @param azimuth The azimuth of the view
+     * @param elevation The elevation of the view
+     */
+    public AreaView(Amount<Angle> azimuth, Amount<Angle> elevation) {
+        this.azimuth = azimuth;
+        this.elevation = elevation;
+        this.direction = Vector3.fromAzimuthAndElevation(azimuth, elevation);
+        this.direction.normalize();
+    }
+
+    /**
+     * @param azimuth The azimuth of the view in degrees
+     * @param elevation The elevation of the view in degrees
+     * @return The view
+     */
+    public static AreaView fromDegrees(double azimuth, double elevation) {
+        return new AreaView(Amount.valueOf(azimuth, NonSI.DEGREE_ANGLE), Amount.valueOf(elevation, NonSI.DEGREE_ANGLE));
+    }
+
+    public Amount<Angle> getAzimuth() {
+        return azimuth;
+    }
+
+    public Amount<Angle> getElevation() {
+        return elevation;
+    }
+
+    /**
+     * @return The direction of the rays of the view
+     */
+    public Vector3 getDirection() {
+        return new Vector3(direction);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("az %g el %g", this.azimuth.doubleValue(NonSI.DEGREE_ANGLE),
+                this.elevation.doubleValue(NonSI.DEGREE_ANGLE));
+    }
+}
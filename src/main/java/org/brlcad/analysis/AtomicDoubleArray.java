@@ -0,0 +1,46 @@
+package org.brlcad.analysis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An array of doubles that many threads can add to without locking. Each element is
+ * kept as the bits of a double in an AtomicLongArray and updated by compare and set.
+ */
+final class AtomicDoubleArray {
+
+    private final AtomicLongArray bits;
+
+    AtomicDoubleArray(int length) {
+        // all zero bits is 0.0
+        this.bits = new AtomicLongArray(length);
+    }
+
+    int length() {
+        return this.bits.length();
+    }
+
+    double get(int i) {
+        return Double.longBitsToDouble(this.bits.get(i));
+    }
+
+    void add(int i, double delta) {
+        while (true) {
+            long current = this.bits.get(i);
+            long next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta);
+            if (this.bits.compareAndSet(i, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add each non-zero element of an array to the element with the same index
+     */
+    void addAll(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0.0) {
+                this.add(i, values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.brlcad.analysis;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Material densities, indexed by the material id of a region. Densities are in grams
+ * per cubic centimeter, as in the BRL-CAD density file read by gqa, where each line
+ * holds a material id, a density and a material name.
+ */
+public class DensityTable {
+
+    private final Map<Integer, Double> densities = new HashMap<Integer, Double>();
+    private final Map<Integer, String> names = new HashMap<Integer, String>();
+
+    /**
+     * Read a density file
+     *
+     * @param fileName The name of the file
+     * @return The DensityTable
+     * @throws IOException if the file cannot be read or is badly formed
+     */
+    public static DensityTable read(String fileName) throws IOException {
+        FileReader reader = new FileReader(fileName);
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read densities in the format of a BRL-CAD density file. Blank lines and
+     * lines starting with '#' are ignored.
+     *
+     * @param reader The source of the densities
+     * @return The DensityTable
+     * @throws IOException if the densities cannot be read or are badly formed
+     */
+    public static DensityTable read(Reader reader) throws IOException {
+        DensityTable table = new DensityTable();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+", 3);
+            if (fields.length < 2) {
+                throw new IOException("Line " + lineNo + " of density table needs a material id and a density: " + line);
+            }
+            try {
+                table.setDensity(Integer.parseInt(fields[0]), Double.parseDouble(fields[1]),
+                        fields.length > 2 ? fields[2] : null);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNo + " of density table is badly formed: " + line, e);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Set the density of a material
+     *
+     * @param materialID The material id
+     * @param density The density in grams per cubic centimeter
+     * @param name The name of the material (may be null)
+     */
+    public void setDensity(int materialID, double density, String name) {
+        if (density < 0.0 || Double.isNaN(density)) {
+            throw new IllegalArgumentException("Bad density for material " + materialID + ": " + density);
+        }
+        this.densities.put(materialID, density);
+        if (name != null) {
+            this.names.put(materialID, name);
+        }
+    }
+
+    /**
+     * @param materialID The material id
+     * @return The density in grams per cubic centimeter, or NaN if the material is not in the table
+     */
+    public double getDensity(int materialID) {
+        Double density = this.densities.get(materialID);
+        return density == null ? Double.NaN : density;
+    }
+
+    /**
+     * @param materialID The material id
+     * @return The name of the material (null if unknown)
+     */
+    public String getName(int materialID) {
+        return this.names.get(materialID);
+    }
+
+    /**
+     * @return The number of materials in the table
+     */
+    public int size() {
+        return this.densities.size();
+    }
+}
@@ -0,0 +1,377 @@
+package org.brlcad.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.brlcad.spacePartition.ViewCache;
+import org.brlcad.utils.TaskRunner;
+
+/**
+ * Computes the volume, mass and centroid of each region of a PreppedDb, in the manner
+ * of the BRL-CAD gqa tool. Grids of parallel rays are shot along each of the three axes
+ * across the model bounding box, and the line of sight thickness of each region is
+ * summed. The grid spacing is halved (shooting only the new rays of the finer grid)
+ * until the volume of every region changes by no more than the tolerance from one
+ * pass to the next, or the maximum number of passes is reached.
+ * <p>
+ * The rows of each grid are shared among a pool of threads, and the sums of all the
+ * threads are kept in lock-free accumulators. Overlaps are resolved as SimpleOverlapHandler
+ * does, and recorded in the OverlapCollector of the PreppedDb, if one is set.
+ */
+public class MassAnalysis {
+
+    /** the number of grid cells across the largest dimension of the model on the first pass */
+    public static final int DEFAULT_INITIAL_CELLS = 32;
+
+    private final PreppedDb prepped;
+    private DensityTable densities;
+    private double initialSpacing;
+    private double tolerance = 0.01;
+    private int maxPasses = 6;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param prepped The prepped model to analyze
+     */
+    public MassAnalysis(PreppedDb prepped) {
+        this.prepped = prepped;
+    }
+
+    /**
+     * @param densities The densities of the materials of the regions (without them, masses are NaN)
+     */
+    public void setDensities(DensityTable densities) {
+        this.densities = densities;
+    }
+
+    public DensityTable getDensities() {
+        return densities;
+    }
+
+    /**
+     * @param initialSpacing The grid spacing of the first pass in millimeters (0 to use
+     * 1/32 of the largest dimension of the model)
+     */
+    public void setInitialSpacing(double initialSpacing) {
+        if (initialSpacing < 0.0) {
+            throw new IllegalArgumentException("Grid spacing must not be negative: " + initialSpacing);
+        }
+        this.initialSpacing = initialSpacing;
+    }
+
+    public double getInitialSpacing() {
+        return initialSpacing;
+    }
+
+    /**
+     * @param tolerance The largest change in the volume of a region between passes, relative
+     * to the volume, for the region to have converged (0.01 is one percent)
+     */
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param maxPasses The largest number of passes (each pass quarters the grid cell area)
+     */
+    public void setMaxPasses(int maxPasses) {
+        if (maxPasses < 2) {
+            throw new IllegalArgumentException("At least two passes are needed to check convergence: " + maxPasses);
+        }
+        this.maxPasses = maxPasses;
+    }
+
+    public int getMaxPasses() {
+        return maxPasses;
+    }
+
+    /**
+     * @param threads The number of threads to shoot rays with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Run the analysis
+     *
+     * @return The results
+     */
+    public MassReport run() {
+        RegionTable regions = this.prepped.getRegionTable();
+        int regionCount = regions.size();
+        BoundingBox bb = this.prepped.getBoundingBox();
+        List<MassReport.Pass> passes = new ArrayList<MassReport.Pass>();
+        if (bb == null || bb.isEmpty() || regionCount == 0) {
+            return this.report(regions, new AtomicDoubleArray[]{new AtomicDoubleArray(4 * regionCount),
+                new AtomicDoubleArray(4 * regionCount), new AtomicDoubleArray(4 * regionCount)}, 0.0,
+                new double[regionCount], new boolean[regionCount], passes);
+        }
+
+        double[] min = {bb.getMin().getX(), bb.getMin().getY(), bb.getMin().getZ()};
+        double[] extent = {bb.getMax().getX() - min[0], bb.getMax().getY() - min[1], bb.getMax().getZ() - min[2]};
+        double spacing = this.initialSpacing;
+        if (spacing == 0.0) {
+            spacing = Math.max(extent[0], Math.max(extent[1], extent[2])) / DEFAULT_INITIAL_CELLS;
+        }
+        int[] points = new int[3];
+        for (int c = 0; c < 3; c++) {
+            points[c] = (int) Math.ceil(extent[c] / spacing) + 1;
+        }
+
+        // for each axis, the sums of line of sight, then x, y and z moments, of each region
+        AtomicDoubleArray[] sums = new AtomicDoubleArray[3];
+        ViewCache[] views = new ViewCache[3];
+        for (int axis = 0; axis < 3; axis++) {
+            sums[axis] = new AtomicDoubleArray(4 * regionCount);
+            Vector3 dir = new Vector3(0, 0, 0);
+            dir.set(axis, 1.0);
+            views[axis] = this.prepped.createViewCache(dir);
+        }
+
+        double[] previous = null;
+        double[] change = new double[regionCount];
+        boolean[] converged = new boolean[regionCount];
+        ExecutorService executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+        try {
+            for (int pass = 0; pass < this.maxPasses; pass++) {
+                long startTime = System.currentTimeMillis();
+                AtomicLong rays = new AtomicLong();
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int axis = 0; axis < 3; axis++) {
+                    int u = (axis + 1) % 3;
+                    int v = (axis + 2) % 3;
+                    for (int row = 0; row < points[u]; row++) {
+                        tasks.add(new RowTask(axis, row, points[v], min, spacing, pass > 0, regionCount,
+                                views[axis], sums[axis], rays));
+                    }
+                }
+                TaskRunner.runAll(executor, tasks);
+
+                double[] volumes = volumes(sums, spacing, regionCount);
+                int unconverged = 0;
+                String worstRegion = null;
+                double worstChange = 0.0;
+                if (previous != null) {
+                    for (int r = 0; r < regionCount; r++) {
+                        double diff = Math.abs(volumes[r] - previous[r]);
+                        change[r] = diff == 0.0 ? 0.0 : diff / Math.max(volumes[r], previous[r]);
+                        converged[r] = change[r] <= this.tolerance;
+                        if (!converged[r]) {
+                            unconverged++;
+                        }
+                        if (worstRegion == null || change[r] > worstChange) {
+                            worstRegion = regions.getName(r);
+                            worstChange = change[r];
+                        }
+                    }
+                } else {
+                    unconverged = regionCount;
+                }
+                passes.add(new MassReport.Pass(spacing, rays.get(), System.currentTimeMillis() - startTime,
+                        unconverged, worstRegion, worstChange));
+                if (previous != null && unconverged == 0) {
+                    break;
+                }
+                if (pass + 1 < this.maxPasses) {
+                    // halve the spacing, keeping the rays already shot
+                    previous = volumes;
+                    spacing /= 2.0;
+                    for (int c = 0; c < 3; c++) {
+                        points[c] = 2 * points[c] - 1;
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        return this.report(regions, sums, spacing, change, converged, passes);
+    }
+
+    private static double[] volumes(AtomicDoubleArray[] sums, double spacing, int regionCount) {
+        double area = spacing * spacing;
+        double[] volumes = new double[regionCount];
+        for (int r = 0; r < regionCount; r++) {
+            volumes[r] = area * (sums[0].get(4 * r) + sums[1].get(4 * r) + sums[2].get(4 * r)) / 3.0;
+        }
+        return volumes;
+    }
+
+    private MassReport report(RegionTable regions, AtomicDoubleArray[] sums, double spacing, double[] change,
+            boolean[] converged, List<MassReport.Pass> passes) {
+        double area = spacing * spacing;
+        int regionCount = regions.size();
+        List<MassProperties> results = new ArrayList<MassProperties>(regionCount);
+        List<String> missing = new ArrayList<String>();
+        Map<Integer, List<MassProperties>> byIdent = new TreeMap<Integer, List<MassProperties>>();
+        double totalVolume = 0.0;
+        double totalMass = 0.0;
+        double[] massMoment = new double[3];
+        for (int r = 0; r < regionCount; r++) {
+            double[] axisVolumes = new double[3];
+            double[] moment = new double[3];
+            for (int axis = 0; axis < 3; axis++) {
+                axisVolumes[axis] = area * sums[axis].get(4 * r);
+                for (int c = 0; c < 3; c++) {
+                    moment[c] += area * sums[axis].get(4 * r + 1 + c) / 3.0;
+                }
+            }
+            double volume = (axisVolumes[0] + axisVolumes[1] + axisVolumes[2]) / 3.0;
+            Point centroid = volume > 0.0 ? new Point(moment[0] / volume, moment[1] / volume, moment[2] / volume) : null;
+            double mass = Double.NaN;
+            if (this.densities != null) {
+                double density = this.densities.getDensity(regions.getMaterialID(r));
+                if (Double.isNaN(density)) {
+                    missing.add(regions.getName(r));
+                } else {
+                    // cubic millimeters times grams per cubic centimeter, scaled by the line of sight percentage
+                    mass = volume * density * 1.0e-3 * regions.getLos(r) / 100.0;
+                    totalMass += mass;
+                    for (int c = 0; c < 3; c++) {
+                        massMoment[c] += moment[c] * density * 1.0e-3 * regions.getLos(r) / 100.0;
+                    }
+                }
+            }
+            totalVolume += volume;
+            MassProperties result = new MassProperties(regions.getName(r), regions.getRegionID(r), volume, mass,
+                    centroid, axisVolumes, change[r], converged[r]);
+            results.add(result);
+            List<MassProperties> group = byIdent.get(result.getIdent());
+            if (group == null) {
+                group = new ArrayList<MassProperties>();
+                byIdent.put(result.getIdent(), group);
+            }
+            group.add(result);
+        }
+
+        Map<Integer, MassProperties> idents = new TreeMap<Integer, MassProperties>();
+        for (Map.Entry<Integer, List<MassProperties>> entry : byIdent.entrySet()) {
+            idents.put(entry.getKey(), combine(entry.getKey(), entry.getValue()));
+        }
+        Point centerOfMass = totalMass > 0.0
+                ? new Point(massMoment[0] / totalMass, massMoment[1] / totalMass, massMoment[2] / totalMass) : null;
+        return new MassReport(this.tolerance, passes, results, idents, missing, totalVolume, totalMass, centerOfMass);
+    }
+
+    private static MassProperties combine(int ident, List<MassProperties> group) {
+        double volume = 0.0;
+        double mass = 0.0;
+        double change = 0.0;
+        boolean converged = true;
+        double[] axisVolumes = new double[3];
+        double[] moment = new double[3];
+        for (MassProperties region : group) {
+            volume += region.getVolume();
+            mass += region.getMass();
+            change = Math.max(change, region.getChange());
+            converged &= region.isConverged();
+            double[] regionAxes = region.getAxisVolumes();
+            for (int c = 0; c < 3; c++) {
+                axisVolumes[c] += regionAxes[c];
+                if (region.getCentroid() != null) {
+                    moment[c] += region.getVolume() * region.getCentroid().get(c);
+                }
+            }
+        }
+        Point centroid = volume > 0.0 ? new Point(moment[0] / volume, moment[1] / volume, moment[2] / volume) : null;
+        return new MassProperties("ident " + ident + " (" + group.size() + " regions)", ident, volume, mass, centroid,
+                axisVolumes, change, converged);
+    }
+
+    /**
+     * Shoots one row of a grid and adds its sums to the accumulators of the axis
+     */
+    private class RowTask implements Callable<Void> {
+
+        private final int axis;
+        private final int row;
+        private final int columns;
+        private final double[] min;
+        private final double spacing;
+        private final boolean refining;
+        private final int regionCount;
+        private final ViewCache view;
+        private final AtomicDoubleArray sums;
+        private final AtomicLong rays;
+
+        RowTask(int axis, int row, int columns, double[] min, double spacing, boolean refining, int regionCount,
+                ViewCache view, AtomicDoubleArray sums, AtomicLong rays) {
+            this.axis = axis;
+            this.row = row;
+            this.columns = columns;
+            this.min = min;
+            this.spacing = spacing;
+            this.refining = refining;
+            this.regionCount = regionCount;
+            this.view = view;
+            this.sums = sums;
+            this.rays = rays;
+        }
+
+        public Void call() {
+            int u = (axis + 1) % 3;
+            int v = (axis + 2) % 3;
+            double[] local = new double[4 * regionCount];
+            ShotlineBuffer buffer = new ShotlineBuffer();
+            double[] start = new double[3];
+            start[axis] = min[axis] - 1.0;
+            start[u] = min[u] + row * spacing;
+            long count = 0;
+            for (int column = 0; column < columns; column++) {
+                if (refining && row % 2 == 0 && column % 2 == 0) {
+                    // shot on an earlier pass
+                    continue;
+                }
+                start[v] = min[v] + column * spacing;
+                Vector3 dir = new Vector3(0, 0, 0);
+                dir.set(axis, 1.0);
+                Ray ray = new Ray(new Point(start[0], start[1], start[2]), dir);
+                buffer.clear();
+                int parts = prepped.shootRay(ray, null, buffer, view);
+                for (int i = 0; i < parts; i++) {
+                    double in = buffer.getInDist(i);
+                    double out = buffer.getOutDist(i);
+                    double los = out - in;
+                    if (los <= 0.0) {
+                        continue;
+                    }
+                    int r = 4 * buffer.getRegion(i);
+                    local[r] += los;
+                    local[r + 1 + axis] += los * (start[axis] + 0.5 * (in + out));
+                    local[r + 1 + u] += los * start[u];
+                    local[r + 1 + v] += los * start[v];
+                }
+                count++;
+            }
+            sums.addAll(local);
+            rays.addAndGet(count);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.brlcad.analysis;
+
+import org.brlcad.numerics.Point;
+
+/**
+ * The volume, mass and centroid of a region, or of all the regions with one ident,
+ * as computed by a MassAnalysis. Volumes are in cubic millimeters and masses in grams.
+ */
+public class MassProperties {
+
+    private final String name;
+    private final int ident;
+    private final double volume;
+    private final double mass;
+    private final Point centroid;
+    private final double[] axisVolumes;
+    private final double change;
+    private final boolean converged;
+
+    MassProperties(String name, int ident, double volume, double mass, Point centroid, double[] axisVolumes,
+            double change, boolean converged) {
+        this.name = name;
+        this.ident = ident;
+        this.volume = volume;
+        this.mass = mass;
+        this.centroid = centroid;
+        this.axisVolumes = axisVolumes;
+        this.change = change;
+        this.converged = converged;
+    }
+
+    /**
+     * @return The name of the region (or a description of the ident group)
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The region ident
+     */
+    public int getIdent() {
+        return ident;
+    }
+
+    /**
+     * @return The volume in cubic millimeters (the mean of the estimates from the three axes)
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return The mass in grams, or NaN if the density of a material is not known
+     */
+    public double getMass() {
+        return mass;
+    }
+
+    /**
+     * @return The centroid of the volume (null if the volume is zero)
+     */
+    public Point getCentroid() {
+        return centroid;
+    }
+
+    /**
+     * @return The volume estimated from the rays along each of the X, Y and Z axes
+     */
+    public double[] getAxisVolumes() {
+        return axisVolumes.clone();
+    }
+
+    /**
+     * @return The largest difference between the estimates from the three axes, relative to the volume
+     */
+    public double getAxisSpread() {
+        if (this.volume == 0.0) {
+            return 0.0;
+        }
+        double min = Math.min(axisVolumes[0], Math.min(axisVolumes[1], axisVolumes[2]));
+        double max = Math.max(axisVolumes[0], Math.max(axisVolumes[1], axisVolumes[2]));
+        return (max - min) / this.volume;
+    }
+
+    /**
+     * @return The change in volume in the last refinement, relative to the volume
+     */
+    public double getChange() {
+        return change;
+    }
+
+    /**
+     * @return true, if the volume changed by no more than the tolerance in the last refinement
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (ident %d): volume %.6g mm^3, mass %.6g g, centroid %s%s", this.name, this.ident,
+                this.volume, this.mass, this.centroid, this.converged ? "" : " (not converged)");
+    }
+}
@@ -0,0 +1,204 @@
+package org.brlcad.analysis;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.brlcad.numerics.Point;
+
+/**
+ * The results of a MassAnalysis: the properties of each region and of each ident,
+ * and how the volumes converged as the grid spacing was halved
+ */
+public class MassReport {
+
+    /**
+     * One pass of grids along the three axes
+     */
+    public static class Pass {
+
+        private final double spacing;
+        private final long rays;
+        private final long millis;
+        private final int unconverged;
+        private final String worstRegion;
+        private final double worstChange;
+
+        Pass(double spacing, long rays, long millis, int unconverged, String worstRegion, double worstChange) {
+            this.spacing = spacing;
+            this.rays = rays;
+            this.millis = millis;
+            this.unconverged = unconverged;
+            this.worstRegion = worstRegion;
+            this.worstChange = worstChange;
+        }
+
+        /**
+         * @return The grid spacing in millimeters
+         */
+        public double getSpacing() {
+            return spacing;
+        }
+
+        /**
+         * @return The number of rays shot in this pass
+         */
+        public long getRays() {
+            return rays;
+        }
+
+        /**
+         * @return The time taken by this pass, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return The number of regions whose volume changed by more than the tolerance
+         * (all regions on the first pass)
+         */
+        public int getUnconverged() {
+            return unconverged;
+        }
+
+        /**
+         * @return The region whose volume changed the most (null on the first pass)
+         */
+        public String getWorstRegion() {
+            return worstRegion;
+        }
+
+        /**
+         * @return The largest change in a region volume, relative to the volume
+         */
+        public double getWorstChange() {
+            return worstChange;
+        }
+
+        @Override
+        public String toString() {
+            if (this.worstRegion == null) {
+                return String.format("spacing %.6g mm: %d rays in %d ms", this.spacing, this.rays, this.millis);
+            }
+            return String.format("spacing %.6g mm: %d rays in %d ms, %d regions not converged, largest change %.3g%% (%s)",
+                    this.spacing, this.rays, this.millis, this.unconverged, 100.0 * this.worstChange, this.worstRegion);
+        }
+    }
+
+    private final double tolerance;
+    private final List<Pass> passes;
+    private final List<MassProperties> regions;
+    private final Map<Integer, MassProperties> idents;
+    private final List<String> missingDensities;
+    private final double totalVolume;
+    private final double totalMass;
+    private final Point centerOfMass;
+
+    MassReport(double tolerance, List<Pass> passes, List<MassProperties> regions, Map<Integer, MassProperties> idents,
+            List<String> missingDensities, double totalVolume, double totalMass, Point centerOfMass) {
+        this.tolerance = tolerance;
+        this.passes = Collections.unmodifiableList(passes);
+        this.regions = Collections.unmodifiableList(regions);
+        this.idents = Collections.unmodifiableMap(idents);
+        this.missingDensities = Collections.unmodifiableList(missingDensities);
+        this.totalVolume = totalVolume;
+        this.totalMass = totalMass;
+        this.centerOfMass = centerOfMass;
+    }
+
+    /**
+     * @return The passes made, from the coarsest grid to the finest
+     */
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return true, if the volume of every region converged within the tolerance
+     */
+    public boolean isConverged() {
+        for (MassProperties region : this.regions) {
+            if (!region.isConverged()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The properties of each region, in the order of the region table of the PreppedDb
+     */
+    public List<MassProperties> getRegions() {
+        return regions;
+    }
+
+    /**
+     * @return The properties of the regions with each ident, sorted by ident
+     */
+    public Map<Integer, MassProperties> getIdents() {
+        return idents;
+    }
+
+    /**
+     * @return The regions with no density for their material
+     */
+    public List<String> getMissingDensities() {
+        return missingDensities;
+    }
+
+    /**
+     * @return The total volume of all regions in cubic millimeters
+     */
+    public double getTotalVolume() {
+        return totalVolume;
+    }
+
+    /**
+     * @return The total mass in grams of the regions with a known density
+     */
+    public double getTotalMass() {
+        return totalMass;
+    }
+
+    /**
+     * @return The center of mass of the regions with a known density (null if there is no mass)
+     */
+    public Point getCenterOfMass() {
+        return centerOfMass;
+    }
+
+    /**
+     * Print the convergence of the passes and the results for each region and ident
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        out.println("Passes (tolerance " + 100.0 * this.tolerance + "%):");
+        for (Pass pass : this.passes) {
+            out.println("\t" + pass);
+        }
+        out.println("Regions:");
+        for (MassProperties region : this.regions) {
+            out.println("\t" + region);
+        }
+        out.println("Idents:");
+        for (MassProperties ident : this.idents.values()) {
+            out.println("\t" + ident);
+        }
+        if (!this.missingDensities.isEmpty()) {
+            out.println("No density for " + this.missingDensities.size() + " regions: " + this.missingDensities);
+        }
+        out.println(String.format("Total volume %.6g mm^3, total mass %.6g g, center of mass %s", this.totalVolume,
+                this.totalMass, this.centerOfMass));
+        if (!this.isConverged()) {
+            List<String> names = new ArrayList<String>();
+            for (MassProperties region : this.regions) {
+                if (!region.isConverged()) {
+                    names.add(region.getName());
+                }
+            }
+            out.println("Not converged: " + names);
+        }
+    }
+}
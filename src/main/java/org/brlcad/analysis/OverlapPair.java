@@ -0,0 +1,74 @@
+package org.brlcad.analysis;
+
+import org.brlcad.numerics.Point;
+
+/**
+ * The overlap between one pair of regions, as found by an OverlapSurvey. Volumes
+ * are in cubic millimeters and depths in millimeters.
+ */
+public class OverlapPair {
+
+    private final String region1;
+    private final String region2;
+    private final double volume;
+    private final double maxDepth;
+    private final long rays;
+    private final Point deepest;
+
+    OverlapPair(String region1, String region2, double volume, double maxDepth, long rays, Point deepest) {
+        this.region1 = region1;
+        this.region2 = region2;
+        this.volume = volume;
+        this.maxDepth = maxDepth;
+        this.rays = rays;
+        this.deepest = deepest;
+    }
+
+    /**
+     * @return The name of one region (the first of the two in alphabetical order)
+     */
+    public String getRegion1() {
+        return region1;
+    }
+
+    /**
+     * @return The name of the other region
+     */
+    public String getRegion2() {
+        return region2;
+    }
+
+    /**
+     * @return The estimated volume of the overlap (the mean of the estimates from the three axes)
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return The longest overlap along any ray
+     */
+    public double getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return The number of rays that passed through the overlap
+     */
+    public long getRays() {
+        return rays;
+    }
+
+    /**
+     * @return The middle of the longest overlap along any ray
+     */
+    public Point getDeepest() {
+        return deepest;
+    }
+
+    @Override
+    public String toString() {
+        return "OVERLAP " + region1 + " / " + region2 + ": volume " + volume + ", max depth " + maxDepth + ", "
+                + rays + " rays, deepest at " + deepest;
+    }
+}
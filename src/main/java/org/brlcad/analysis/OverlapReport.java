@@ -0,0 +1,149 @@
+package org.brlcad.analysis;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of an OverlapSurvey: the overlap between each pair of regions, largest
+ * volume first, and the work done at each level of refinement
+ */
+public class OverlapReport {
+
+    /**
+     * One level of refinement, with grids along the three axes
+     */
+    public static class Level {
+
+        private final int level;
+        private final double spacing;
+        private final long rays;
+        private final long millis;
+        private final long overlappingCells;
+        private final long refinedCells;
+
+        Level(int level, double spacing, long rays, long millis, long overlappingCells, long refinedCells) {
+            this.level = level;
+            this.spacing = spacing;
+            this.rays = rays;
+            this.millis = millis;
+            this.overlappingCells = overlappingCells;
+            this.refinedCells = refinedCells;
+        }
+
+        /**
+         * @return The level (0 for the initial grids)
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * @return The grid spacing in millimeters
+         */
+        public double getSpacing() {
+            return spacing;
+        }
+
+        /**
+         * @return The number of rays shot at this level
+         */
+        public long getRays() {
+            return rays;
+        }
+
+        /**
+         * @return The time taken by this level, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return The number of cells whose ray passed through an overlap
+         */
+        public long getOverlappingCells() {
+            return overlappingCells;
+        }
+
+        /**
+         * @return The number of cells split into four for the next level
+         */
+        public long getRefinedCells() {
+            return refinedCells;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("level %d, spacing %.6g mm: %d rays in %d ms, %d cells with overlaps, %d cells refined",
+                    this.level, this.spacing, this.rays, this.millis, this.overlappingCells, this.refinedCells);
+        }
+    }
+
+    private final List<Level> levels;
+    private final List<OverlapPair> pairs;
+
+    OverlapReport(List<Level> levels, List<OverlapPair> pairs) {
+        this.levels = Collections.unmodifiableList(levels);
+        this.pairs = Collections.unmodifiableList(pairs);
+    }
+
+    /**
+     * @return The levels of refinement, from the coarsest grids to the finest
+     */
+    public List<Level> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return The overlapping pairs of regions, largest volume first
+     */
+    public List<OverlapPair> getPairs() {
+        return pairs;
+    }
+
+    /**
+     * @return The total number of rays shot
+     */
+    public long getRays() {
+        long rays = 0;
+        for (Level level : this.levels) {
+            rays += level.getRays();
+        }
+        return rays;
+    }
+
+    /**
+     * Print the work done at each level and the overlapping pairs
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        for (Level level : this.levels) {
+            out.println(level);
+        }
+        out.println(this.pairs.size() + " overlapping region pairs");
+        for (OverlapPair pair : this.pairs) {
+            out.println(pair);
+        }
+    }
+
+    /**
+     * Write the overlapping pairs as comma separated values, one pair per line after a header line
+     * @param out	The stream to write on
+     */
+    public void writeCsv(PrintStream out) {
+        out.println("region1,region2,volume,max_depth,rays,x,y,z");
+        for (OverlapPair pair : this.pairs) {
+            out.println(csv(pair.getRegion1()) + ',' + csv(pair.getRegion2()) + ',' + pair.getVolume() + ','
+                    + pair.getMaxDepth() + ',' + pair.getRays() + ',' + pair.getDeepest().getX() + ','
+                    + pair.getDeepest().getY() + ',' + pair.getDeepest().getZ());
+        }
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,459 @@
+package org.brlcad.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.OverlapRecorder;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.brlcad.spacePartition.ViewCache;
+import org.brlcad.utils.TaskRunner;
+
+/**
+ * Finds the overlaps between the regions of a PreppedDb. Coarse grids of parallel rays
+ * are shot along each of the three axes, one ray through the center of each cell. A cell
+ * is split into four, and the four rays of the smaller cells shot on the next level, only
+ * when its ray and the rays of its eight neighbors did not all pass through the same
+ * pairs of overlapping regions. So rays are only added near the edges of overlaps, and
+ * the interiors of large overlaps and the space far from any overlap are left at the
+ * coarse spacing. Overlaps smaller than the initial spacing may still be missed, as they
+ * are when rendering.
+ * <p>
+ * The volume and the longest overlap along any ray are reported for each pair of regions.
+ * The cells of each level are shared among a pool of threads.
+ */
+public class OverlapSurvey {
+
+    /** the number of grid cells across the largest dimension of the model on the first level */
+    public static final int DEFAULT_INITIAL_CELLS = 64;
+
+    /** the number of cells shot by each task */
+    private static final int CHUNK = 256;
+
+    private final PreppedDb prepped;
+    private double initialSpacing;
+    private int refinements = 4;
+    private double minDepth = BrlcadDb.getTolerance().getDist();
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param prepped The prepped model to survey
+     */
+    public OverlapSurvey(PreppedDb prepped) {
+        this.prepped = prepped;
+    }
+
+    /**
+     * @param initialSpacing The grid spacing of the first level in millimeters (0 to use
+     * 1/64 of the largest dimension of the model)
+     */
+    public void setInitialSpacing(double initialSpacing) {
+        if (initialSpacing < 0.0) {
+            throw new IllegalArgumentException("Grid spacing must not be negative: " + initialSpacing);
+        }
+        this.initialSpacing = initialSpacing;
+    }
+
+    public double getInitialSpacing() {
+        return initialSpacing;
+    }
+
+    /**
+     * @param refinements The number of times a cell may be split (each halves the spacing)
+     */
+    public void setRefinements(int refinements) {
+        if (refinements < 0 || refinements > 20) {
+            throw new IllegalArgumentException("Refinements must be from 0 to 20: " + refinements);
+        }
+        this.refinements = refinements;
+    }
+
+    public int getRefinements() {
+        return refinements;
+    }
+
+    /**
+     * @param minDepth Overlaps shorter than this along a ray are ignored (the distance
+     * tolerance by default)
+     */
+    public void setMinDepth(double minDepth) {
+        this.minDepth = minDepth;
+    }
+
+    public double getMinDepth() {
+        return minDepth;
+    }
+
+    /**
+     * @param threads The number of threads to shoot rays with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Run the survey
+     *
+     * @return The results
+     */
+    public OverlapReport run() {
+        RegionTable regions = this.prepped.getRegionTable();
+        BoundingBox bb = this.prepped.getBoundingBox();
+        List<OverlapReport.Level> levels = new ArrayList<OverlapReport.Level>();
+        Map<Long, PairTotals> totals = new HashMap<Long, PairTotals>();
+        if (bb == null || bb.isEmpty() || regions.size() < 2) {
+            return new OverlapReport(levels, new ArrayList<OverlapPair>());
+        }
+
+        double[] min = {bb.getMin().getX(), bb.getMin().getY(), bb.getMin().getZ()};
+        double[] extent = {bb.getMax().getX() - min[0], bb.getMax().getY() - min[1], bb.getMax().getZ() - min[2]};
+        double spacing = this.initialSpacing;
+        if (spacing == 0.0) {
+            spacing = Math.max(extent[0], Math.max(extent[1], extent[2])) / DEFAULT_INITIAL_CELLS;
+        }
+
+        // the cells to shoot along each axis, as sorted keys
+        long[][] cells = new long[3][];
+        ViewCache[] views = new ViewCache[3];
+        for (int axis = 0; axis < 3; axis++) {
+            int nu = Math.max(1, (int) Math.ceil(extent[(axis + 1) % 3] / spacing));
+            int nv = Math.max(1, (int) Math.ceil(extent[(axis + 2) % 3] / spacing));
+            cells[axis] = new long[nu * nv];
+            int k = 0;
+            for (int i = 0; i < nu; i++) {
+                for (int j = 0; j < nv; j++) {
+                    cells[axis][k++] = key(i, j);
+                }
+            }
+            Vector3 dir = new Vector3(0, 0, 0);
+            dir.set(axis, 1.0);
+            views[axis] = this.prepped.createViewCache(dir);
+        }
+
+        ExecutorService executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+        try {
+            for (int level = 0; level <= this.refinements; level++) {
+                long startTime = System.currentTimeMillis();
+                AtomicLong rays = new AtomicLong();
+                CellResult[][] results = new CellResult[3][];
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int axis = 0; axis < 3; axis++) {
+                    results[axis] = new CellResult[cells[axis].length];
+                    for (int start = 0; start < cells[axis].length; start += CHUNK) {
+                        tasks.add(new CellTask(axis, cells[axis], start, Math.min(start + CHUNK, cells[axis].length),
+                                min, spacing, regions, views[axis], results[axis], rays));
+                    }
+                }
+                TaskRunner.runAll(executor, tasks);
+
+                long overlapping = 0;
+                long refined = 0;
+                double area = spacing * spacing;
+                for (int axis = 0; axis < 3; axis++) {
+                    long[] next = new long[64];
+                    int count = 0;
+                    for (int pos = 0; pos < cells[axis].length; pos++) {
+                        CellResult result = results[axis][pos];
+                        if (result != null) {
+                            overlapping++;
+                        }
+                        boolean split = level < this.refinements && !isUniform(cells[axis], results[axis], pos);
+                        if (result != null) {
+                            // the smaller cells of a split cell take over its share of the volume
+                            this.add(totals, result, axis, split ? 0.0 : area, regions);
+                        }
+                        if (split) {
+                            // split into four
+                            if (count + 4 > next.length) {
+                                next = Arrays.copyOf(next, 2 * next.length);
+                            }
+                            int i = (int) (cells[axis][pos] >>> 32);
+                            int j = (int) cells[axis][pos];
+                            next[count++] = key(2 * i, 2 * j);
+                            next[count++] = key(2 * i, 2 * j + 1);
+                            next[count++] = key(2 * i + 1, 2 * j);
+                            next[count++] = key(2 * i + 1, 2 * j + 1);
+                            refined++;
+                        }
+                    }
+                    cells[axis] = Arrays.copyOf(next, count);
+                    Arrays.sort(cells[axis]);
+                }
+                levels.add(new OverlapReport.Level(level, spacing, rays.get(), System.currentTimeMillis() - startTime,
+                        overlapping, refined));
+                if (refined == 0) {
+                    break;
+                }
+                spacing /= 2.0;
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        List<OverlapPair> pairs = new ArrayList<OverlapPair>(totals.size());
+        for (PairTotals pair : totals.values()) {
+            pairs.add(new OverlapPair(pair.region1, pair.region2, (pair.volumes[0] + pair.volumes[1] + pair.volumes[2]) / 3.0,
+                    pair.maxDepth, pair.rays, pair.deepest));
+        }
+        Collections.sort(pairs, new Comparator<OverlapPair>() {
+            public int compare(OverlapPair p1, OverlapPair p2) {
+                if (p1.getVolume() != p2.getVolume()) {
+                    return p1.getVolume() > p2.getVolume() ? -1 : 1;
+                }
+                int cmp = p1.getRegion1().compareTo(p2.getRegion1());
+                return cmp != 0 ? cmp : p1.getRegion2().compareTo(p2.getRegion2());
+            }
+        });
+        return new OverlapReport(levels, pairs);
+    }
+
+    private static long key(int i, int j) {
+        return ((long) i << 32) | (j & 0xffffffffL);
+    }
+
+    /**
+     * @return true, if a cell and all eight of its neighbors were shot on this level and
+     * passed through the same pairs of overlapping regions
+     */
+    private static boolean isUniform(long[] cells, CellResult[] results, int pos) {
+        int i = (int) (cells[pos] >>> 32);
+        int j = (int) cells[pos];
+        long[] pairs = results[pos] == null ? null : results[pos].pairs;
+        for (int di = -1; di <= 1; di++) {
+            for (int dj = -1; dj <= 1; dj++) {
+                if (di == 0 && dj == 0) {
+                    continue;
+                }
+                int neighbor = i + di < 0 || j + dj < 0 ? -1 : Arrays.binarySearch(cells, key(i + di, j + dj));
+                if (neighbor < 0) {
+                    // not shot, which only matters next to an overlap
+                    if (pairs != null) {
+                        return false;
+                    }
+                    continue;
+                }
+                long[] other = results[neighbor] == null ? null : results[neighbor].pairs;
+                if (!Arrays.equals(pairs, other)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the overlaps along the ray of one cell to the totals
+     *
+     * @param area The area of the cell, or 0 for a cell that was split, whose volume is
+     * reported by its smaller cells (its depths and its ray still count)
+     */
+    private void add(Map<Long, PairTotals> totals, CellResult result, int axis, double area, RegionTable regions) {
+        for (int p = 0; p < result.pairs.length; p++) {
+            PairTotals pair = totals.get(result.pairs[p]);
+            if (pair == null) {
+                pair = new PairTotals(regions.getName((int) (result.pairs[p] >>> 32)),
+                        regions.getName((int) result.pairs[p]));
+                totals.put(result.pairs[p], pair);
+            }
+            pair.volumes[axis] += area * result.depths[p];
+            pair.rays++;
+            if (result.maxDepths[p] > pair.maxDepth) {
+                pair.maxDepth = result.maxDepths[p];
+                pair.deepest = result.deepest[p];
+            }
+        }
+    }
+
+    /**
+     * The totals for one pair of regions
+     */
+    private static class PairTotals {
+        private final String region1;
+        private final String region2;
+        private final double[] volumes = new double[3];
+        private double maxDepth;
+        private long rays;
+        private Point deepest;
+
+        PairTotals(String name1, String name2) {
+            // report each pair in the same order, whichever region won the overlap
+            boolean swap = name1.compareTo(name2) > 0;
+            this.region1 = swap ? name2 : name1;
+            this.region2 = swap ? name1 : name2;
+        }
+    }
+
+    /**
+     * The overlaps along the ray of one cell
+     */
+    private static class CellResult {
+        /** the region indices of each pair, smaller index in the high half, in increasing order */
+        private final long[] pairs;
+        private final double[] depths;
+        private final double[] maxDepths;
+        private final Point[] deepest;
+
+        CellResult(long[] pairs, double[] depths, double[] maxDepths, Point[] deepest) {
+            this.pairs = pairs;
+            this.depths = depths;
+            this.maxDepths = maxDepths;
+            this.deepest = deepest;
+        }
+    }
+
+    /**
+     * Receives the overlaps of one ray at a time
+     */
+    private class CellCollector implements OverlapRecorder {
+
+        private final RegionTable regions;
+        private long[] pairs = new long[4];
+        private double[] depths = new double[4];
+        private double[] maxDepths = new double[4];
+        private Point[] deepest = new Point[4];
+        private int count;
+
+        CellCollector(RegionTable regions) {
+            this.regions = regions;
+        }
+
+        public void record(String region1, String region2, double inDist, double outDist, Ray ray) {
+            double depth = outDist - inDist;
+            if (depth < minDepth) {
+                return;
+            }
+            int index1 = this.regions.indexOf(region1);
+            int index2 = this.regions.indexOf(region2);
+            long pair = index1 < index2 ? key(index1, index2) : key(index2, index1);
+            int p = 0;
+            while (p < this.count && this.pairs[p] != pair) {
+                p++;
+            }
+            if (p == this.count) {
+                if (this.count == this.pairs.length) {
+                    this.pairs = Arrays.copyOf(this.pairs, 2 * this.count);
+                    this.depths = Arrays.copyOf(this.depths, 2 * this.count);
+                    this.maxDepths = Arrays.copyOf(this.maxDepths, 2 * this.count);
+                    this.deepest = Arrays.copyOf(this.deepest, 2 * this.count);
+                }
+                this.pairs[p] = pair;
+                this.depths[p] = 0.0;
+                this.maxDepths[p] = 0.0;
+                this.count++;
+            }
+            this.depths[p] += depth;
+            if (depth > this.maxDepths[p]) {
+                this.maxDepths[p] = depth;
+                Point middle = new Point(ray.getStart());
+                middle.join(0.5 * (inDist + outDist), ray.getDirection());
+                this.deepest[p] = middle;
+            }
+        }
+
+        /**
+         * @return The overlaps recorded since the last call, or null if there were none
+         */
+        CellResult finish() {
+            if (this.count == 0) {
+                return null;
+            }
+            // sort by pair, so cells can be compared
+            for (int a = 1; a < this.count; a++) {
+                for (int b = a; b > 0 && this.pairs[b - 1] > this.pairs[b]; b--) {
+                    swap(b - 1, b);
+                }
+            }
+            CellResult result = new CellResult(Arrays.copyOf(this.pairs, this.count), Arrays.copyOf(this.depths, this.count),
+                    Arrays.copyOf(this.maxDepths, this.count), Arrays.copyOf(this.deepest, this.count));
+            this.count = 0;
+            return result;
+        }
+
+        private void swap(int a, int b) {
+            long pair = this.pairs[a];
+            this.pairs[a] = this.pairs[b];
+            this.pairs[b] = pair;
+            double depth = this.depths[a];
+            this.depths[a] = this.depths[b];
+            this.depths[b] = depth;
+            double maxDepth = this.maxDepths[a];
+            this.maxDepths[a] = this.maxDepths[b];
+            this.maxDepths[b] = maxDepth;
+            Point point = this.deepest[a];
+            this.deepest[a] = this.deepest[b];
+            this.deepest[b] = point;
+        }
+    }
+
+    /**
+     * Shoots the rays of a run of cells along one axis
+     */
+    private class CellTask implements Callable<Void> {
+
+        private final int axis;
+        private final long[] cells;
+        private final int start;
+        private final int end;
+        private final double[] min;
+        private final double spacing;
+        private final RegionTable regions;
+        private final ViewCache view;
+        private final CellResult[] results;
+        private final AtomicLong rays;
+
+        CellTask(int axis, long[] cells, int start, int end, double[] min, double spacing, RegionTable regions,
+                ViewCache view, CellResult[] results, AtomicLong rays) {
+            this.axis = axis;
+            this.cells = cells;
+            this.start = start;
+            this.end = end;
+            this.min = min;
+            this.spacing = spacing;
+            this.regions = regions;
+            this.view = view;
+            this.results = results;
+            this.rays = rays;
+        }
+
+        public Void call() {
+            int u = (axis + 1) % 3;
+            int v = (axis + 2) % 3;
+            ShotlineBuffer buffer = new ShotlineBuffer();
+            CellCollector collector = new CellCollector(regions);
+            double[] origin = new double[3];
+            origin[axis] = min[axis] - 1.0;
+            for (int pos = start; pos < end; pos++) {
+                origin[u] = min[u] + ((int) (cells[pos] >>> 32) + 0.5) * spacing;
+                origin[v] = min[v] + ((int) cells[pos] + 0.5) * spacing;
+                Vector3 dir = new Vector3(0, 0, 0);
+                dir.set(axis, 1.0);
+                buffer.clear();
+                Ray ray = new Ray(new Point(origin[0], origin[1], origin[2]), dir);
+                prepped.shootRayRecording(ray, buffer, view, collector);
+                results[pos] = collector.finish();
+            }
+            rays.addAndGet(end - start);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.brlcad.analysis;
+
+import java.io.File;
+import java.io.PrintStream;
+import org.brlcad.numerics.Point;
+
+/**
+ * The voxel grid written by a Voxelizer. The file holds one value per voxel, little
+ * endian, with x varying fastest, then y, then z, and nothing else. Voxel (0, 0, 0) has
+ * its minimum corner at the origin.
+ */
+public class VoxelGrid {
+
+    private final File file;
+    private final Point origin;
+    private final double voxelSize;
+    private final int[] sizes;
+    private final Voxelizer.Mode mode;
+    private final Voxelizer.Type type;
+    private final long rays;
+    private final long filledVoxels;
+    private final long millis;
+
+    VoxelGrid(File file, Point origin, double voxelSize, int[] sizes, Voxelizer.Mode mode, Voxelizer.Type type,
+            long rays, long filledVoxels, long millis) {
+        this.file = file;
+        this.origin = origin;
+        this.voxelSize = voxelSize;
+        this.sizes = sizes.clone();
+        this.mode = mode;
+        this.type = type;
+        this.rays = rays;
+        this.filledVoxels = filledVoxels;
+        this.millis = millis;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The minimum corner of the grid
+     */
+    public Point getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return The length of the edge of a voxel in millimeters
+     */
+    public double getVoxelSize() {
+        return voxelSize;
+    }
+
+    /**
+     * @param axis 0, 1 or 2 for x, y or z
+     * @return The number of voxels along the axis
+     */
+    public int getSize(int axis) {
+        return sizes[axis];
+    }
+
+    /**
+     * @return The number of voxels in the grid
+     */
+    public long getVoxelCount() {
+        return (long) sizes[0] * sizes[1] * sizes[2];
+    }
+
+    public Voxelizer.Mode getMode() {
+        return mode;
+    }
+
+    public Voxelizer.Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The position of a voxel in the file, in bytes
+     */
+    public long getOffset(int x, int y, int z) {
+        return (((long) z * sizes[1] + y) * sizes[0] + x) * type.getBytes();
+    }
+
+    /**
+     * @return The center of a voxel
+     */
+    public Point getCenter(int x, int y, int z) {
+        return new Point(origin.getX() + (x + 0.5) * voxelSize, origin.getY() + (y + 0.5) * voxelSize,
+                origin.getZ() + (z + 0.5) * voxelSize);
+    }
+
+    /**
+     * @return The number of rays shot
+     */
+    public long getRays() {
+        return rays;
+    }
+
+    /**
+     * @return The number of voxels with any material in them
+     */
+    public long getFilledVoxels() {
+        return filledVoxels;
+    }
+
+    /**
+     * @return The time taken, in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Write a detached NRRD header describing the grid, so that tools such as ParaView
+     * and 3D Slicer can read the raw file
+     * @param out	The stream to write on
+     */
+    public void writeNrrdHeader(PrintStream out) {
+        out.println("NRRD0004");
+        out.println("type: " + (type == Voxelizer.Type.SHORT ? "short" : "int"));
+        out.println("dimension: 3");
+        out.println("sizes: " + sizes[0] + " " + sizes[1] + " " + sizes[2]);
+        out.println("space dimension: 3");
+        // NRRD places the origin at the center of the first voxel
+        Point center = this.getCenter(0, 0, 0);
+        out.println("space origin: (" + center.getX() + "," + center.getY() + "," + center.getZ() + ")");
+        out.println("space directions: (" + voxelSize + ",0,0) (0," + voxelSize + ",0) (0,0," + voxelSize + ")");
+        out.println("space units: \"mm\" \"mm\" \"mm\"");
+        out.println("encoding: raw");
+        out.println("endian: little");
+        out.println("data file: " + file.getName());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VoxelGrid: %d x %d x %d %s voxels of %.6g mm (%s) in %s, %d filled, %d rays, %d ms",
+                sizes[0], sizes[1], sizes[2], type, voxelSize, mode, file, filledVoxels, rays, millis);
+    }
+}
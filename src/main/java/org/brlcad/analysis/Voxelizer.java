@@ -0,0 +1,474 @@
+package org.brlcad.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.brlcad.spacePartition.ViewCache;
+import org.brlcad.utils.TaskRunner;
+
+/**
+ * Converts the regions of a PreppedDb into a grid of voxels, in the manner of the
+ * BRL-CAD voxelize analysis. Each row of voxels along the x axis is sampled by a square
+ * of parallel rays along +x, and the length of each partition is split among the voxels
+ * it passes through. A voxel then holds either the region with the most material in it
+ * (when the fraction of the voxel that is filled reaches the threshold) or the filled
+ * fraction itself.
+ * <p>
+ * The voxels are written as raw little endian values, x varying fastest, then y, then z,
+ * straight into a memory mapped file. The file is mapped a slab of z planes at a time,
+ * so the grid may be much larger than the heap. The rows of each slab are shared among
+ * a pool of threads.
+ */
+public class Voxelizer {
+
+    /** the number of voxels across the largest dimension of the bounds, if no voxel size is set */
+    public static final int DEFAULT_VOXELS = 128;
+
+    /** the value of a completely filled voxel in FILL mode */
+    public static final int FILL_SCALE = 10000;
+
+    /** the default largest part of the output file that is mapped at once */
+    public static final long DEFAULT_SLAB_BYTES = 64L << 20;
+
+    /**
+     * What the value of a voxel is
+     */
+    public enum Mode {
+        /** the index of the region (see PreppedDb.getRegionTable()) plus one, or 0 for an empty voxel */
+        REGION,
+        /** the ident of the region, or 0 for an empty voxel */
+        IDENT,
+        /** the filled fraction of the voxel, from 0 to FILL_SCALE */
+        FILL
+    }
+
+    /**
+     * The size of a voxel value in the output file
+     */
+    public enum Type {
+        SHORT(2, Short.MIN_VALUE, Short.MAX_VALUE),
+        INT(4, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        private final int bytes;
+        private final long min;
+        private final long max;
+
+        private Type(int bytes, long min, long max) {
+            this.bytes = bytes;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of bytes in a voxel value
+         */
+        public int getBytes() {
+            return bytes;
+        }
+
+        boolean holds(long value) {
+            return value >= this.min && value <= this.max;
+        }
+    }
+
+    private final PreppedDb prepped;
+    private BoundingBox bounds;
+    private double voxelSize;
+    private int samples = 2;
+    private double threshold = 0.5;
+    private Mode mode = Mode.REGION;
+    private Type type = Type.SHORT;
+    private long maxSlabBytes = DEFAULT_SLAB_BYTES;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param prepped The prepped model to voxelize
+     */
+    public Voxelizer(PreppedDb prepped) {
+        this.prepped = prepped;
+    }
+
+    /**
+     * @param bounds The box to fill with voxels (null for the bounding box of the model)
+     */
+    public void setBounds(BoundingBox bounds) {
+        if (bounds != null && bounds.isEmpty()) {
+            throw new IllegalArgumentException("Voxel bounds must not be empty");
+        }
+        this.bounds = bounds == null ? null : new BoundingBox(bounds);
+    }
+
+    public BoundingBox getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @param voxelSize The length of the edge of a voxel in millimeters (0 to use 1/128 of
+     * the largest dimension of the bounds)
+     */
+    public void setVoxelSize(double voxelSize) {
+        if (!(voxelSize >= 0.0)) {
+            throw new IllegalArgumentException("Voxel size must not be negative: " + voxelSize);
+        }
+        this.voxelSize = voxelSize;
+    }
+
+    public double getVoxelSize() {
+        return voxelSize;
+    }
+
+    /**
+     * @param samples The number of rays along each edge of the face of a voxel (each row
+     * of voxels is sampled by samples * samples rays)
+     */
+    public void setSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("At least one sample per voxel is needed: " + samples);
+        }
+        this.samples = samples;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @param threshold The fraction of a voxel that must be filled for it to be given a
+     * region in REGION and IDENT modes (0 gives a region to any voxel with material in it)
+     */
+    public void setThreshold(double threshold) {
+        if (!(threshold >= 0.0 && threshold <= 1.0)) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 1: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setMode(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode must not be null");
+        }
+        this.mode = mode;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setType(Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type must not be null");
+        }
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @param maxSlabBytes The largest part of the output file to map at once (at least one
+     * z plane of voxels is always mapped)
+     */
+    public void setMaxSlabBytes(long maxSlabBytes) {
+        if (maxSlabBytes < 1) {
+            throw new IllegalArgumentException("Slab size must be positive: " + maxSlabBytes);
+        }
+        this.maxSlabBytes = maxSlabBytes;
+    }
+
+    public long getMaxSlabBytes() {
+        return maxSlabBytes;
+    }
+
+    /**
+     * @param threads The number of threads to shoot rays with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Voxelize the model into a file, replacing anything already in it
+     *
+     * @param file The file to write the voxels to
+     * @return A description of the grid written
+     * @throws IOException If the file cannot be written
+     */
+    public VoxelGrid run(File file) throws IOException {
+        long startTime = System.currentTimeMillis();
+        BoundingBox modelBounds = this.prepped.getBoundingBox();
+        BoundingBox bb = this.bounds != null ? this.bounds : modelBounds;
+        if (bb == null || bb.isEmpty()) {
+            throw new IllegalStateException("Nothing to voxelize: the model is empty");
+        }
+        RegionTable regions = this.prepped.getRegionTable();
+        int[] values = this.regionValues(regions);
+
+        double[] min = {bb.getMin().getX(), bb.getMin().getY(), bb.getMin().getZ()};
+        double[] extent = {bb.getMax().getX() - min[0], bb.getMax().getY() - min[1], bb.getMax().getZ() - min[2]};
+        double size = this.voxelSize;
+        if (size == 0.0) {
+            size = Math.max(extent[0], Math.max(extent[1], extent[2])) / DEFAULT_VOXELS;
+        }
+        int[] sizes = new int[3];
+        for (int c = 0; c < 3; c++) {
+            long count = Math.max(1L, (long) Math.ceil(extent[c] / size));
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many voxels along axis " + c + ": " + count);
+            }
+            sizes[c] = (int) count;
+        }
+        long planeBytes = (long) sizes[0] * sizes[1] * this.type.getBytes();
+        if (planeBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A plane of " + sizes[0] + " x " + sizes[1] + " voxels is too large to map");
+        }
+        int planesPerSlab = (int) Math.max(1L, Math.min(Math.min(this.maxSlabBytes, Integer.MAX_VALUE) / planeBytes,
+                sizes[2]));
+
+        // start every ray outside the model, even when the bounds cut through it
+        double startX = min[0] - 1.0;
+        if (modelBounds != null && !modelBounds.isEmpty()) {
+            startX = Math.min(startX, modelBounds.getMin().getX() - 1.0);
+        }
+        ViewCache view = this.prepped.createViewCache(new Vector3(1, 0, 0));
+        AtomicLong rays = new AtomicLong();
+        AtomicLong filled = new AtomicLong();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        ExecutorService executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            raf.setLength(planeBytes * sizes[2]);
+            for (int z0 = 0; z0 < sizes[2]; z0 += planesPerSlab) {
+                int planes = Math.min(planesPerSlab, sizes[2] - z0);
+                MappedByteBuffer slab = channel.map(FileChannel.MapMode.READ_WRITE, z0 * planeBytes, planes * planeBytes);
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int z = z0; z < z0 + planes; z++) {
+                    for (int y = 0; y < sizes[1]; y++) {
+                        tasks.add(new RowTask(y, z, (z - z0) * planeBytes + (long) y * sizes[0] * this.type.getBytes(),
+                                slab, sizes[0], min, size, startX, values, view, rays, filled));
+                    }
+                }
+                TaskRunner.runAll(executor, tasks);
+                slab.force();
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            raf.close();
+        }
+
+        return new VoxelGrid(file, new Point(min[0], min[1], min[2]), size, sizes, this.mode, this.type, rays.get(),
+                filled.get(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * @return The value written for each region in REGION and IDENT modes
+     */
+    private int[] regionValues(RegionTable regions) {
+        int[] values = new int[regions.size()];
+        if (this.mode == Mode.FILL) {
+            if (!this.type.holds(FILL_SCALE)) {
+                throw new IllegalStateException("Fill fractions do not fit in " + this.type);
+            }
+            return values;
+        }
+        for (int r = 0; r < values.length; r++) {
+            values[r] = this.mode == Mode.REGION ? r + 1 : regions.getRegionID(r);
+            if (!this.type.holds(values[r])) {
+                throw new IllegalStateException("The value " + values[r] + " of region " + regions.getName(r)
+                        + " does not fit in " + this.type);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Samples one row of voxels along x and writes its values into the mapped slab
+     */
+    private class RowTask implements Callable<Void> {
+
+        private final int y;
+        private final int z;
+        private final long offset;
+        private final MappedByteBuffer slab;
+        private final int columns;
+        private final double[] min;
+        private final double size;
+        private final double startX;
+        private final int[] values;
+        private final ViewCache view;
+        private final AtomicLong rays;
+        private final AtomicLong filled;
+
+        RowTask(int y, int z, long offset, MappedByteBuffer slab, int columns, double[] min, double size,
+                double startX, int[] values, ViewCache view, AtomicLong rays, AtomicLong filled) {
+            this.y = y;
+            this.z = z;
+            this.offset = offset;
+            this.slab = slab;
+            this.columns = columns;
+            this.min = min;
+            this.size = size;
+            this.startX = startX;
+            this.values = values;
+            this.view = view;
+            this.rays = rays;
+            this.filled = filled;
+        }
+
+        public Void call() {
+            Row row = new Row(this.columns);
+            ShotlineBuffer buffer = new ShotlineBuffer();
+            Vector3 dir = new Vector3(1, 0, 0);
+            for (int a = 0; a < samples; a++) {
+                double rayY = this.min[1] + (this.y + (a + 0.5) / samples) * this.size;
+                for (int b = 0; b < samples; b++) {
+                    double rayZ = this.min[2] + (this.z + (b + 0.5) / samples) * this.size;
+                    buffer.clear();
+                    int parts = prepped.shootRay(new Ray(new Point(this.startX, rayY, rayZ), dir), null, buffer,
+                            this.view);
+                    for (int i = 0; i < parts; i++) {
+                        // the partition in voxel units along the row
+                        double in = (this.startX + buffer.getInDist(i) - this.min[0]) / this.size;
+                        double out = (this.startX + buffer.getOutDist(i) - this.min[0]) / this.size;
+                        row.add(buffer.getRegion(i), Math.max(in, 0.0), Math.min(out, this.columns));
+                    }
+                }
+            }
+
+            // each sample ray contributes at most one voxel length to a voxel
+            double full = samples * samples;
+            ByteBuffer out = this.slab.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int position = (int) this.offset;
+            long count = 0;
+            for (int x = 0; x < this.columns; x++) {
+                double fraction = Math.min(row.total(x) / full, 1.0);
+                int value = 0;
+                if (mode == Mode.FILL) {
+                    value = (int) Math.round(fraction * FILL_SCALE);
+                } else if (fraction > 0.0 && fraction >= threshold) {
+                    value = this.values[row.majority(x)];
+                }
+                if (fraction > 0.0) {
+                    count++;
+                }
+                if (type == Type.SHORT) {
+                    out.putShort(position, (short) value);
+                } else {
+                    out.putInt(position, value);
+                }
+                position += type.getBytes();
+            }
+            this.rays.addAndGet(samples * samples);
+            this.filled.addAndGet(count);
+            return null;
+        }
+    }
+
+    /**
+     * The length of each region in each voxel of a row, as a list of entries per voxel
+     */
+    private static class Row {
+
+        private final int[] head;
+        private final double[] totals;
+        private int[] region = new int[64];
+        private double[] length = new double[64];
+        private int[] next = new int[64];
+        private int entries;
+
+        Row(int columns) {
+            this.head = new int[columns];
+            this.totals = new double[columns];
+            Arrays.fill(this.head, -1);
+        }
+
+        /**
+         * Add a partition of a region between two distances along the row, in voxels
+         */
+        void add(int r, double in, double out) {
+            if (!(out > in)) {
+                return;
+            }
+            int last = Math.min((int) Math.ceil(out), this.head.length) - 1;
+            for (int x = (int) Math.floor(in); x <= last; x++) {
+                double len = Math.min(out, x + 1.0) - Math.max(in, x);
+                if (len <= 0.0) {
+                    continue;
+                }
+                this.totals[x] += len;
+                int e = this.head[x];
+                while (e >= 0 && this.region[e] != r) {
+                    e = this.next[e];
+                }
+                if (e >= 0) {
+                    this.length[e] += len;
+                } else {
+                    this.addEntry(x, r, len);
+                }
+            }
+        }
+
+        private void addEntry(int x, int r, double len) {
+            if (this.entries == this.region.length) {
+                int capacity = 2 * this.entries;
+                this.region = Arrays.copyOf(this.region, capacity);
+                this.length = Arrays.copyOf(this.length, capacity);
+                this.next = Arrays.copyOf(this.next, capacity);
+            }
+            this.region[this.entries] = r;
+            this.length[this.entries] = len;
+            this.next[this.entries] = this.head[x];
+            this.head[x] = this.entries++;
+        }
+
+        double total(int x) {
+            return this.totals[x];
+        }
+
+        /**
+         * @return The region with the most material in a voxel (the lowest index among equals)
+         */
+        int majority(int x) {
+            int best = -1;
+            double bestLength = 0.0;
+            for (int e = this.head[x]; e >= 0; e = this.next[e]) {
+                if (best < 0 || this.length[e] > bestLength
+                        || (this.length[e] == bestLength && this.region[e] < best)) {
+                    best = this.region[e];
+                    bestLength = this.length[e];
+                }
+            }
+            return best;
+        }
+    }
+}
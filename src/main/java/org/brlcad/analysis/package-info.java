@@ -0,0 +1,6 @@
+/**
+ * This package contains analyses of prepped geometry, such as volume, mass and centroid calculations
+ * and voxelization
+ */
+
+package org.brlcad.analysis;
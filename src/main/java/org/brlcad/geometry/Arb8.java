@@ -2,6 +2,7 @@ package org.brlcad.geometry;
 
 import java.util.Arrays;
 import org.brlcad.preppedGeometry.PreppedArb8;
+import org.brlcad.preppedGeometry.PreppedRpp;
 import org.brlcad.preppedGeometry.PreppedCombination;
 import org.brlcad.numerics.Point;
 import org.brlcad.spacePartition.PreppedDb;
@@ -75,12 +76,20 @@ public class Arb8 extends DbObject
 	 * @param reg	The PreppedCombination (region) containing this Arb8 (or null)
 	 * @param preppedDb	The PreppedDb that contains this Arb8
 	 * @param matrix	The transformation Matrix to be applied to this Arb8
-     * @return A PreppedArb8 object
+     * @return A PreppedArb8 object (a PreppedRpp if this Arb8 is axis aligned)
 	 */
     @Override
 	public PreppedArb8 prep( PreppedCombination reg, PreppedDb preppedDb, Matrix matrix) throws BadGeometryException
 	{
-		PreppedArb8 prepped = new PreppedArb8( this, matrix );
+		PreppedArb8 prepped;
+		if( PreppedRpp.isRpp( this, matrix ) )
+		{
+			prepped = new PreppedRpp( this, matrix );
+		}
+		else
+		{
+			prepped = new PreppedArb8( this, matrix );
+		}
 		preppedDb.addPreppedObjectToInitialBox( prepped );
 		if( reg != null )
 		{
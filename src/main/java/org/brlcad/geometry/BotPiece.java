@@ -20,6 +20,7 @@ import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Vector3;
 import org.brlcad.spacePartition.PreppedDb;
 import org.brlcad.spacePartition.RayData;
+import org.brlcad.spacePartition.ViewCache;
 
 public class BotPiece extends PreppedObjectPiece
 {
@@ -63,6 +64,29 @@ public class BotPiece extends PreppedObjectPiece
 	public Set<Hit> shoot( Ray ray, RayData rayData )
 	{
 		Set<Hit> hits = new TreeSet<Hit>();
+		ViewCache view = rayData == null ? null : rayData.getViewCache();
+		if( view != null )
+		{
+			// part of a batch of parallel rays, reuse the direction dependent values
+			double[] terms = (double[]) view.get( this.index );
+			if( terms == null )
+			{
+				terms = PreppedTriangle.computeViewTerms( this.triangles, ray.getDirection() );
+				view.put( this.index, terms );
+			}
+			Vector3 sxd = ray.getStart().toVector().crossProduct( ray.getDirection() );
+			int offset = 0;
+			for( PreppedTriangle ptri:this.triangles )
+			{
+				Hit hit = ptri.shootInView( ray, rayData, terms, offset, sxd );
+				if( hit != null )
+				{
+					hits.add( hit );
+				}
+				offset += PreppedTriangle.VIEW_TERMS;
+			}
+			return hits;
+		}
 		for( PreppedTriangle ptri:this.triangles )
 		{
 			Hit hit = ptri.shoot( ray, rayData );
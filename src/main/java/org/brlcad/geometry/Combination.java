@@ -231,6 +231,7 @@ public class Combination extends DbObject {
         if (this.tree != null) {
             if (isRegion && reg == null) {
                 boundingBox = this.tree.prep(pc, preppedDb, matrix);
+                pc.compile();
                 preppedDb.addPreppedRegion(pc);
                 pc.setBoundingBox(boundingBox);
             } else {
@@ -0,0 +1,331 @@
+package org.brlcad.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.brlcad.preppedGeometry.PreppedCombination;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.brlcad.spacePartition.RayData;
+
+/**
+ * A prepped Tree flattened into a program for fast evaluation. The program is a
+ * prefix ordered array of nodes. Chains of unions and intersections become a single
+ * n-ary node, a chain of subtractions becomes a single node whose first operand
+ * is the minuend, and the trees of referenced combinations are inlined. Evaluation
+ * works on sorted IntervalLists and stops as soon as the result of a subtraction
+ * or intersection is known to be empty.
+ */
+public class CompiledTree {
+
+    /** the node always evaluates to nothing (empty combination, XOR or NOT) */
+    static final int EMPTY = 0;
+    /** the node is a reference to a prepped primitive */
+    static final int LEAF = 1;
+    /** union of all operands */
+    static final int UNION = 2;
+    /** first operand minus each following operand, in order */
+    static final int SUBTRACT = 3;
+    /** intersection of all operands */
+    static final int INTERSECT = 4;
+
+    /** the operation of each node */
+    private final int[] ops;
+
+    /** the index just past the last node of the subtree rooted at each node */
+    private final int[] ends;
+
+    /** the prepped primitive for each LEAF node (null for other nodes) */
+    private final PreppedObject[] leaves;
+
+    /**
+     * Compile a Tree. The Tree must already be prepped.
+     * @param tree	The Tree to compile (may be null for an empty combination)
+     */
+    public CompiledTree(Tree tree) {
+        Builder builder = new Builder();
+        builder.emit(simplify(tree));
+        int n = builder.ops.size();
+        this.ops = new int[n];
+        this.ends = new int[n];
+        this.leaves = new PreppedObject[n];
+        for (int i = 0; i < n; i++) {
+            this.ops[i] = builder.ops.get(i);
+            this.ends[i] = builder.ends.get(i);
+            this.leaves[i] = builder.leaves.get(i);
+        }
+    }
+
+    /**
+     * Evaluate this program for a ray
+     * @param rayData	The ray data from the raytrace
+     * @return	The resulting intervals (null if there are none)
+     */
+    public IntervalList evaluate(RayData rayData) {
+        return this.evaluate(0, rayData, BrlcadDb.getTolerance().getDist());
+    }
+
+    /**
+     * Evaluate this program for a ray and convert the result to Partitions
+     * @param reg	The region that the Partitions belong to
+     * @param rayData	The ray data from the raytrace
+     * @return	The resulting Partitions (null if there are none)
+     */
+    public SortedSet<Partition> evaluate(PreppedCombination reg, RayData rayData) {
+        IntervalList list = this.evaluate(rayData);
+        if (IntervalList.isEmpty(list)) {
+            return null;
+        }
+        SortedSet<Partition> parts = new TreeSet<Partition>();
+        for (int i = 0; i < list.size(); i++) {
+            parts.add(new Partition(list.getInHit(i), list.isFlipIn(i), list.getOutHit(i), list.isFlipOut(i),
+                    reg.getName(), reg.getID(), rayData));
+        }
+        return parts;
+    }
+
+    private IntervalList evaluate(int node, RayData rayData, double tol) {
+        int end = this.ends[node];
+        int child = node + 1;
+        IntervalList result;
+        switch (this.ops[node]) {
+            case LEAF:
+                return IntervalList.fromSegments(rayData.getSegsOnDemand(this.leaves[node]));
+            case UNION:
+                result = null;
+                while (child < end) {
+                    result = IntervalList.union(result, this.evaluate(child, rayData, tol), tol);
+                    child = this.ends[child];
+                }
+                return result;
+            case SUBTRACT:
+                result = this.evaluate(child, rayData, tol);
+                child = this.ends[child];
+                while (child < end && !IntervalList.isEmpty(result)) {
+                    result = IntervalList.subtract(result, this.evaluate(child, rayData, tol), tol);
+                    child = this.ends[child];
+                }
+                return result;
+            case INTERSECT:
+                result = this.evaluate(child, rayData, tol);
+                child = this.ends[child];
+                while (child < end && !IntervalList.isEmpty(result)) {
+                    result = IntervalList.intersect(result, this.evaluate(child, rayData, tol), tol);
+                    child = this.ends[child];
+                }
+                return result;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the number of nodes in this program
+     */
+    public int size() {
+        return this.ops.length;
+    }
+
+    /**
+     * Get the prepped primitives referenced by this program, in evaluation order
+     * @return	The prepped primitives
+     */
+    public List<PreppedObject> getLeaves() {
+        List<PreppedObject> list = new ArrayList<PreppedObject>();
+        for (int i = 0; i < this.ops.length; i++) {
+            if (this.ops[i] == LEAF) {
+                list.add(this.leaves[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Get the prepped primitives that only appear in the operands of a subtraction
+     * or intersection after the first. These only need to be intersected when the
+     * first operand produced intervals.
+     * @return	The prepped primitives
+     */
+    public List<PreppedObject> getDeferrableLeaves() {
+        List<PreppedObject> list = new ArrayList<PreppedObject>();
+        if (this.ops.length > 0) {
+            this.collectLeaves(0, false, list);
+        }
+        return list;
+    }
+
+    private void collectLeaves(int node, boolean deferrable, List<PreppedObject> list) {
+        if (this.ops[node] == LEAF) {
+            if (deferrable) {
+                list.add(this.leaves[node]);
+            }
+            return;
+        }
+        boolean rightOperand = this.ops[node] == SUBTRACT || this.ops[node] == INTERSECT;
+        int child = node + 1;
+        while (child < this.ends[node]) {
+            this.collectLeaves(child, deferrable || (rightOperand && child > node + 1), list);
+            child = this.ends[child];
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        this.toString(0, sb);
+        return sb.toString();
+    }
+
+    private void toString(int node, StringBuilder sb) {
+        String sep;
+        switch (this.ops[node]) {
+            case LEAF:
+                sb.append(this.leaves[node].getName());
+                return;
+            case UNION:
+                sep = " u ";
+                break;
+            case SUBTRACT:
+                sep = " - ";
+                break;
+            case INTERSECT:
+                sep = " + ";
+                break;
+            default:
+                sb.append("<empty>");
+                return;
+        }
+        sb.append("( ");
+        int child = node + 1;
+        while (child < this.ends[node]) {
+            if (child > node + 1) {
+                sb.append(sep);
+            }
+            this.toString(child, sb);
+            child = this.ends[child];
+        }
+        sb.append(" )");
+    }
+
+    /**
+     * An intermediate n-ary node used while compiling
+     */
+    private static class Node {
+        int op;
+        PreppedObject leaf;
+        List<Node> operands = new ArrayList<Node>();
+
+        Node(int op) {
+            this.op = op;
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(EMPTY);
+
+    /**
+     * Convert a Tree to n-ary form, inlining referenced combinations and removing
+     * operands that can never produce intervals
+     */
+    private static Node simplify(Tree tree) {
+        if (tree == null) {
+            return EMPTY_NODE;
+        }
+        Node node;
+        switch (tree.getOp()) {
+            case LEAF:
+                PreppedObject leaf = tree.getLeaf();
+                if (leaf instanceof PreppedCombination) {
+                    return simplify(((PreppedCombination) leaf).getTree());
+                }
+                if (leaf == null) {
+                    return EMPTY_NODE;
+                }
+                node = new Node(LEAF);
+                node.leaf = leaf;
+                return node;
+            case UNION:
+                node = new Node(UNION);
+                addOperands(node, simplify(tree.getLeft()));
+                addOperands(node, simplify(tree.getRight()));
+                break;
+            case INTERSECTION:
+                node = new Node(INTERSECT);
+                addOperands(node, simplify(tree.getLeft()));
+                addOperands(node, simplify(tree.getRight()));
+                for (Node operand : node.operands) {
+                    if (operand.op == EMPTY) {
+                        return EMPTY_NODE;
+                    }
+                }
+                break;
+            case SUBTRACTION:
+                Node left = simplify(tree.getLeft());
+                if (left.op == EMPTY) {
+                    return EMPTY_NODE;
+                }
+                if (left.op == SUBTRACT) {
+                    node = left;
+                } else {
+                    node = new Node(SUBTRACT);
+                    node.operands.add(left);
+                }
+                Node right = simplify(tree.getRight());
+                if (right.op != EMPTY) {
+                    node.operands.add(right);
+                }
+                break;
+            default:
+                // XOR and NOT are not supported by Tree.evaluate either
+                return EMPTY_NODE;
+        }
+
+        if (node.op == UNION) {
+            List<Node> nonEmpty = new ArrayList<Node>();
+            for (Node operand : node.operands) {
+                if (operand.op != EMPTY) {
+                    nonEmpty.add(operand);
+                }
+            }
+            node.operands = nonEmpty;
+        }
+        if (node.operands.isEmpty()) {
+            return EMPTY_NODE;
+        }
+        if (node.operands.size() == 1) {
+            return node.operands.get(0);
+        }
+        return node;
+    }
+
+    /**
+     * Add an operand to an n-ary node, absorbing it if it has the same operation
+     */
+    private static void addOperands(Node node, Node operand) {
+        if (operand.op == node.op) {
+            node.operands.addAll(operand.operands);
+        } else {
+            node.operands.add(operand);
+        }
+    }
+
+    /**
+     * Writes the n-ary nodes out in prefix order
+     */
+    private static class Builder {
+        List<Integer> ops = new ArrayList<Integer>();
+        List<Integer> ends = new ArrayList<Integer>();
+        List<PreppedObject> leaves = new ArrayList<PreppedObject>();
+
+        void emit(Node node) {
+            int index = this.ops.size();
+            this.ops.add(node.op);
+            this.ends.add(0);
+            this.leaves.add(node.leaf);
+            for (Node operand : node.operands) {
+                this.emit(operand);
+            }
+            this.ends.set(index, this.ops.size());
+        }
+    }
+}
@@ -7,6 +7,8 @@ package org.brlcad.geometry;
 
 import org.brlcad.preppedGeometry.PreppedCombination;
 import org.brlcad.preppedGeometry.PreppedEllipsoid;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.brlcad.preppedGeometry.PreppedSphere;
 import org.brlcad.numerics.Matrix;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.Vector3;
@@ -160,9 +162,30 @@ public class Ellipsoid extends DbObject
 	}
 	
     @Override
-	public PreppedEllipsoid prep( PreppedCombination reg, PreppedDb preppedDb, Matrix matrix) throws BadGeometryException
+	public PreppedObject prep( PreppedCombination reg, PreppedDb preppedDb, Matrix matrix) throws BadGeometryException
 	{
-		PreppedEllipsoid prepped = new PreppedEllipsoid( this, matrix );
+		PreppedObject prepped;
+		
+		// spheres get their own (matrix free) intersector
+		Vector3 A = new Vector3( this.a );
+		Vector3 B = new Vector3( this.b );
+		Vector3 C = new Vector3( this.c );
+		matrix.mult( A );
+		matrix.mult( B );
+		matrix.mult( C );
+		double aSquared = A.dotProduct( A );
+		if( aSquared >= BrlcadDb.tolerance.getDist() &&
+		   Math.abs( aSquared - B.dotProduct( B ) ) <= 0.0001 &&
+		   Math.abs( aSquared - C.dotProduct( C ) ) <= 0.0001 )
+		{
+			Point V = new Point( this.center );
+			matrix.mult( V );
+			prepped = new PreppedSphere( this, V, aSquared );
+		}
+		else
+		{
+			prepped = new PreppedEllipsoid( this, matrix );
+		}
 		preppedDb.addPreppedObjectToInitialBox( prepped );
 		if( reg != null )
 		{
@@ -10,9 +10,15 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Vector3;
 import org.brlcad.spacePartition.RayData;
 
+/**
+ * A single ray/surface intersection. Primitives may create a Hit with just a distance,
+ * a surface number and a few private values, in which case the hit point and normal are
+ * not computed until they are asked for (as BRL-CAD does with hit_vpriv).
+ */
 public class Hit implements Comparable, Externalizable {
 
     private double hit_dist;
@@ -21,6 +27,15 @@ public class Hit implements Comparable, Externalizable {
     private int hit_surfno;
     private RayData rayData;
     private String primitiveName;
+
+    // for lazily computed hit points and normals
+    private Ray ray;
+    private HitSurface surface;
+    private double vprivX;
+    private double vprivY;
+    private double vprivZ;
+    private boolean flipped;
+    private double dirDotNormal = Double.NaN;
     
     /*
      * No-arg constructor for use by Externalization. DO NOT USE THIS CONSTRUCTOR
@@ -36,13 +51,38 @@ public class Hit implements Comparable, Externalizable {
         this.primitiveName = primName;
     }
 
+    /**
+     * Construct a Hit whose point and normal are computed only when needed
+     * @param dist	The distance along the ray
+     * @param ray	The Ray (used to compute the hit point)
+     * @param surface	The surface that computes the normal
+     * @param surfno	The surface number
+     * @param rayData	The ray data from the raytrace
+     * @param primName	The name of the primitive
+     */
+    public Hit(double dist, Ray ray, HitSurface surface, int surfno, RayData rayData, String primName) {
+        this.hit_dist = dist;
+        this.ray = ray;
+        this.surface = surface;
+        this.hit_surfno = surfno;
+        this.rayData = rayData;
+        this.primitiveName = primName;
+    }
+
     public Hit(Hit hit) {
-        this.hit_dist = hit.getHit_dist();
-        this.hit_normal = hit.getHit_normal();
-        this.hit_pt = hit.getHit_pt();
-        this.hit_surfno = hit.getHit_surfno();
-        this.rayData = hit.getRayData();
-        this.primitiveName = hit.getPrimitiveName();
+        this.hit_dist = hit.hit_dist;
+        this.hit_normal = hit.hit_normal;
+        this.hit_pt = hit.hit_pt;
+        this.hit_surfno = hit.hit_surfno;
+        this.rayData = hit.rayData;
+        this.primitiveName = hit.primitiveName;
+        this.ray = hit.ray;
+        this.surface = hit.surface;
+        this.vprivX = hit.vprivX;
+        this.vprivY = hit.vprivY;
+        this.vprivZ = hit.vprivZ;
+        this.flipped = hit.flipped;
+        this.dirDotNormal = hit.dirDotNormal;
     }
 
     /**
@@ -52,6 +92,10 @@ public class Hit implements Comparable, Externalizable {
      */
     public void setHit_dist(double hit_dist) {
         this.hit_dist = hit_dist;
+        if (this.ray != null) {
+            // the point follows the distance
+            this.hit_pt = null;
+        }
     }
 
     /**
@@ -78,6 +122,10 @@ public class Hit implements Comparable, Externalizable {
      * @return    a  Point
      */
     public Point getHit_pt() {
+        if (hit_pt == null && ray != null) {
+            hit_pt = new Point(ray.getStart());
+            hit_pt.join(hit_dist, ray.getDirection());
+        }
         return hit_pt;
     }
 
@@ -88,6 +136,8 @@ public class Hit implements Comparable, Externalizable {
      */
     public void setHit_normal(Vector3 hit_normal) {
         this.hit_normal = hit_normal;
+        this.flipped = false;
+        this.dirDotNormal = Double.NaN;
     }
 
     /**
@@ -96,9 +146,73 @@ public class Hit implements Comparable, Externalizable {
      * @return    a  Vector3
      */
     public Vector3 getHit_normal() {
+        if (hit_normal == null && surface != null) {
+            hit_normal = surface.computeNormal(this, ray);
+            if (flipped) {
+                hit_normal.negate();
+            }
+        }
         return hit_normal;
     }
 
+    /**
+     * Reverse the normal of this Hit. A normal that has already been computed is
+     * replaced rather than modified, so it may be shared with copies of this Hit.
+     */
+    public void reverseNormal() {
+        if (hit_normal != null) {
+            hit_normal = Vector3.negate(hit_normal);
+        } else {
+            flipped = !flipped;
+        }
+        dirDotNormal = -dirDotNormal;
+    }
+
+    /**
+     * Returns the dot product of the ray direction and the normal. Only the sign is
+     * reliable when the primitive supplied a hint (see setDirDotNormal()).
+     *
+     * @return    a  double (negative for an entrance, positive for an exit)
+     */
+    public double getDirDotNormal() {
+        if (!Double.isNaN(dirDotNormal)) {
+            return dirDotNormal;
+        }
+        Ray r = ray != null ? ray : rayData.getTheRay();
+        return this.getHit_normal().dotProduct(r.getDirection());
+    }
+
+    /**
+     * Sets a value with the same sign as the dot product of the ray direction and the
+     * normal, so that entrances and exits can be told apart without computing the normal
+     *
+     * @param    dirDotNormal         a  double
+     */
+    public void setDirDotNormal(double dirDotNormal) {
+        this.dirDotNormal = dirDotNormal;
+    }
+
+    /**
+     * Sets the values private to the primitive that created this Hit
+     */
+    public void setHit_vpriv(double x, double y, double z) {
+        this.vprivX = x;
+        this.vprivY = y;
+        this.vprivZ = z;
+    }
+
+    public double getHit_vprivX() {
+        return vprivX;
+    }
+
+    public double getHit_vprivY() {
+        return vprivY;
+    }
+
+    public double getHit_vprivZ() {
+        return vprivZ;
+    }
+
     /**
      * Sets Hit_surfno
      *
@@ -120,19 +234,19 @@ public class Hit implements Comparable, Externalizable {
     @Override
     public String toString() {
         return "Hit: dist_pt=" + hit_dist +
-                ", point=" + hit_pt +
-                ", norm=" + hit_normal +
+                ", point=" + getHit_pt() +
+                ", norm=" + getHit_normal() +
                 ", surf=" + hit_surfno +
                 ", on " + this.primitiveName;
     }
 
     public String toString(boolean flipNormal) {
-        Vector3 norm = new Vector3(hit_normal);
+        Vector3 norm = new Vector3(getHit_normal());
         if (flipNormal) {
             norm.negate();
         }
         return "Hit: dist_pt=" + hit_dist +
-                ", point=" + hit_pt +
+                ", point=" + getHit_pt() +
                 ", norm=" + norm +
                 ", surf=" + hit_surfno +
                 ", on " + this.primitiveName;
@@ -193,8 +307,8 @@ public class Hit implements Comparable, Externalizable {
             return 1;
         }
 
-        double thisDot = this.hit_normal.dotProduct(this.getRayData().getTheRay().getDirection());
-        double hDot = h.hit_normal.dotProduct(this.getRayData().getTheRay().getDirection());
+        double thisDot = this.getDirDotNormal();
+        double hDot = h.getDirDotNormal();
 
         if (thisDot < 0.0 && hDot > 0.0) {
             return -1;
@@ -233,13 +347,17 @@ public class Hit implements Comparable, Externalizable {
         if (this.hit_dist != other.hit_dist) {
             return false;
         }
-        if (this.hit_pt != other.hit_pt && (this.hit_pt == null || !this.hit_pt.equals(other.hit_pt))) {
+        if (this.hit_surfno != other.hit_surfno) {
             return false;
         }
-        if (this.hit_normal != other.hit_normal && (this.hit_normal == null || !this.hit_normal.equals(other.hit_normal))) {
+        Point pt = this.getHit_pt();
+        Point otherPt = other.getHit_pt();
+        if (pt != otherPt && (pt == null || !pt.equals(otherPt))) {
             return false;
         }
-        if (this.hit_surfno != other.hit_surfno) {
+        Vector3 norm = this.getHit_normal();
+        Vector3 otherNorm = other.getHit_normal();
+        if (norm != otherNorm && (norm == null || !norm.equals(otherNorm))) {
             return false;
         }
         return true;
@@ -247,10 +365,9 @@ public class Hit implements Comparable, Externalizable {
 
     @Override
     public int hashCode() {
+        // the point and normal are left out so that hashing does not compute them
         int hash = 7;
         hash = 53 * hash + (int) (Double.doubleToLongBits(this.hit_dist) ^ (Double.doubleToLongBits(this.hit_dist) >>> 32));
-        hash = 53 * hash + (this.hit_pt != null ? this.hit_pt.hashCode() : 0);
-        hash = 53 * hash + (this.hit_normal != null ? this.hit_normal.hashCode() : 0);
         hash = 53 * hash + this.hit_surfno;
         return hash;
     }
@@ -273,6 +390,8 @@ public class Hit implements Comparable, Externalizable {
         out.writeInt(hit_surfno);
         out.writeDouble(hit_dist);
         out.writeUTF(primitiveName);
+        Vector3 hit_normal = getHit_normal();
+        Point hit_pt = getHit_pt();
         if (hit_normal == null) {
             out.writeBoolean(false);
         } else {
@@ -0,0 +1,20 @@
+package org.brlcad.geometry;
+
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * A surface that can compute the normal at one of its Hits after the fact. Primitives
+ * implement this so that their Hits only need to carry a distance, a surface number
+ * and the private values set by the primitive (see Hit.getHit_vpriv()).
+ */
+public interface HitSurface {
+
+    /**
+     * Compute the unit outward normal at a Hit on this surface
+     * @param hit	The Hit (created by this surface)
+     * @param ray	The Ray that produced the Hit
+     * @return	A new normal Vector3
+     */
+    Vector3 computeNormal(Hit hit, Ray ray);
+}
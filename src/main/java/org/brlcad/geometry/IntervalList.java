@@ -0,0 +1,340 @@
+package org.brlcad.geometry;
+
+import java.util.List;
+
+/**
+ * A sorted list of intervals along a ray, stored as parallel arrays. Used by
+ * CompiledTree to evaluate boolean operations without building a
+ * SortedSet of Partitions at every node. Each interval carries its entrance and
+ * exit Hits and a flag indicating whether the normal of each Hit must be reversed.
+ */
+public class IntervalList {
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int size;
+    private double[] inDist;
+    private double[] outDist;
+    private Hit[] inHit;
+    private Hit[] outHit;
+    private boolean[] inFlip;
+    private boolean[] outFlip;
+
+    /**
+     * Construct an empty IntervalList
+     */
+    public IntervalList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct an empty IntervalList
+     * @param capacity	The initial number of intervals that can be held without growing
+     */
+    public IntervalList(int capacity) {
+        if (capacity < 1) {
+            capacity = 1;
+        }
+        this.inDist = new double[capacity];
+        this.outDist = new double[capacity];
+        this.inHit = new Hit[capacity];
+        this.outHit = new Hit[capacity];
+        this.inFlip = new boolean[capacity];
+        this.outFlip = new boolean[capacity];
+    }
+
+    /**
+     * Build an IntervalList from the Segments produced by a primitive
+     * @param segs	The Segments (may be null)
+     * @return	The intervals sorted by entrance distance, or null if there are none
+     */
+    public static IntervalList fromSegments(List<Segment> segs) {
+        if (segs == null || segs.isEmpty()) {
+            return null;
+        }
+        IntervalList list = new IntervalList(segs.size());
+        for (Segment seg : segs) {
+            list.add(seg.getInHit(), false, seg.getOutHit(), false);
+        }
+        list.sort();
+        return list;
+    }
+
+    /**
+     * Append an interval to the end of this list
+     * @param in	The entrance Hit
+     * @param flipIn	true if the entrance normal must be reversed
+     * @param out	The exit Hit
+     * @param flipOut	true if the exit normal must be reversed
+     */
+    public void add(Hit in, boolean flipIn, Hit out, boolean flipOut) {
+        if (this.size == this.inDist.length) {
+            this.grow();
+        }
+        this.inDist[this.size] = in.getHit_dist();
+        this.outDist[this.size] = out.getHit_dist();
+        this.inHit[this.size] = in;
+        this.outHit[this.size] = out;
+        this.inFlip[this.size] = flipIn;
+        this.outFlip[this.size] = flipOut;
+        this.size++;
+    }
+
+    /**
+     * Append the specified interval of another list to the end of this list
+     */
+    private void add(IntervalList list, int i) {
+        this.add(list.inHit[i], list.inFlip[i], list.outHit[i], list.outFlip[i]);
+    }
+
+    private void grow() {
+        int capacity = this.inDist.length * 2;
+        double[] newInDist = new double[capacity];
+        double[] newOutDist = new double[capacity];
+        Hit[] newInHit = new Hit[capacity];
+        Hit[] newOutHit = new Hit[capacity];
+        boolean[] newInFlip = new boolean[capacity];
+        boolean[] newOutFlip = new boolean[capacity];
+        System.arraycopy(this.inDist, 0, newInDist, 0, this.size);
+        System.arraycopy(this.outDist, 0, newOutDist, 0, this.size);
+        System.arraycopy(this.inHit, 0, newInHit, 0, this.size);
+        System.arraycopy(this.outHit, 0, newOutHit, 0, this.size);
+        System.arraycopy(this.inFlip, 0, newInFlip, 0, this.size);
+        System.arraycopy(this.outFlip, 0, newOutFlip, 0, this.size);
+        this.inDist = newInDist;
+        this.outDist = newOutDist;
+        this.inHit = newInHit;
+        this.outHit = newOutHit;
+        this.inFlip = newInFlip;
+        this.outFlip = newOutFlip;
+    }
+
+    /**
+     * Sort the intervals by entrance distance, then exit distance. Primitives
+     * normally produce their Segments in order, so an insertion sort is used.
+     */
+    private void sort() {
+        for (int i = 1; i < this.size; i++) {
+            double in = this.inDist[i];
+            double out = this.outDist[i];
+            if (this.inDist[i - 1] < in || (this.inDist[i - 1] == in && this.outDist[i - 1] <= out)) {
+                continue;
+            }
+            Hit hIn = this.inHit[i];
+            Hit hOut = this.outHit[i];
+            boolean fIn = this.inFlip[i];
+            boolean fOut = this.outFlip[i];
+            int j = i - 1;
+            while (j >= 0 && (this.inDist[j] > in || (this.inDist[j] == in && this.outDist[j] > out))) {
+                this.inDist[j + 1] = this.inDist[j];
+                this.outDist[j + 1] = this.outDist[j];
+                this.inHit[j + 1] = this.inHit[j];
+                this.outHit[j + 1] = this.outHit[j];
+                this.inFlip[j + 1] = this.inFlip[j];
+                this.outFlip[j + 1] = this.outFlip[j];
+                j--;
+            }
+            this.inDist[j + 1] = in;
+            this.outDist[j + 1] = out;
+            this.inHit[j + 1] = hIn;
+            this.outHit[j + 1] = hOut;
+            this.inFlip[j + 1] = fIn;
+            this.outFlip[j + 1] = fOut;
+        }
+    }
+
+    /**
+     * Test if a list has no intervals
+     * @param list	The list (may be null)
+     * @return	true if the list is null or empty
+     */
+    public static boolean isEmpty(IntervalList list) {
+        return list == null || list.size == 0;
+    }
+
+    /**
+     * Union two sorted lists, merging intervals that overlap or are separated
+     * by no more than the distance tolerance
+     * @param a	The first list (may be null)
+     * @param b	The second list (may be null)
+     * @param tol	The distance tolerance
+     * @return	The union, or null if both lists are empty
+     */
+    public static IntervalList union(IntervalList a, IntervalList b, double tol) {
+        if (isEmpty(a)) {
+            return isEmpty(b) ? null : b;
+        }
+        if (isEmpty(b)) {
+            return a;
+        }
+        IntervalList result = new IntervalList(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            IntervalList src;
+            int k;
+            if (j >= b.size || (i < a.size && (a.inDist[i] < b.inDist[j]
+                    || (a.inDist[i] == b.inDist[j] && a.outDist[i] <= b.outDist[j])))) {
+                src = a;
+                k = i++;
+            } else {
+                src = b;
+                k = j++;
+            }
+            int last = result.size - 1;
+            if (last >= 0 && src.inDist[k] <= result.outDist[last] + tol) {
+                if (src.outDist[k] > result.outDist[last]) {
+                    result.outDist[last] = src.outDist[k];
+                    result.outHit[last] = src.outHit[k];
+                    result.outFlip[last] = src.outFlip[k];
+                }
+            } else {
+                result.add(src, k);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Subtract the intervals of one sorted list from another. Hits taken from the
+     * subtracted list have their normals reversed.
+     * @param a	The list to subtract from (may be null)
+     * @param b	The list to subtract (may be null)
+     * @param tol	The distance tolerance
+     * @return	The difference, or null if nothing remains
+     */
+    public static IntervalList subtract(IntervalList a, IntervalList b, double tol) {
+        if (isEmpty(a)) {
+            return null;
+        }
+        if (isEmpty(b)) {
+            return a;
+        }
+        IntervalList result = new IntervalList(a.size + b.size);
+        for (int i = 0; i < a.size; i++) {
+            double in = a.inDist[i];
+            double out = a.outDist[i];
+            Hit hIn = a.inHit[i];
+            Hit hOut = a.outHit[i];
+            boolean fIn = a.inFlip[i];
+            boolean fOut = a.outFlip[i];
+            boolean removed = false;
+            for (int j = 0; j < b.size; j++) {
+                if (b.inDist[j] >= out - tol) {
+                    break;
+                }
+                if (b.outDist[j] <= in + tol) {
+                    continue;
+                }
+                boolean startsInside = b.inDist[j] > in + tol;
+                boolean endsInside = b.outDist[j] < out - tol;
+                if (!startsInside && !endsInside) {
+                    // this interval goes away completely
+                    removed = true;
+                    break;
+                }
+                if (startsInside && endsInside) {
+                    // subtracted interval is entirely inside, keep the front piece
+                    result.add(hIn, fIn, b.inHit[j], !b.inFlip[j]);
+                    in = b.outDist[j];
+                    hIn = b.outHit[j];
+                    fIn = !b.outFlip[j];
+                } else if (startsInside) {
+                    out = b.inDist[j];
+                    hOut = b.inHit[j];
+                    fOut = !b.inFlip[j];
+                } else {
+                    in = b.outDist[j];
+                    hIn = b.outHit[j];
+                    fIn = !b.outFlip[j];
+                }
+            }
+            if (!removed) {
+                result.add(hIn, fIn, hOut, fOut);
+            }
+        }
+        return result.size == 0 ? null : result;
+    }
+
+    /**
+     * Intersect two sorted lists. Intervals shorter than the distance tolerance
+     * are discarded.
+     * @param a	The first list (may be null)
+     * @param b	The second list (may be null)
+     * @param tol	The distance tolerance
+     * @return	The intersection, or null if it is empty
+     */
+    public static IntervalList intersect(IntervalList a, IntervalList b, double tol) {
+        if (isEmpty(a) || isEmpty(b)) {
+            return null;
+        }
+        IntervalList result = new IntervalList(Math.max(a.size, b.size));
+        for (int i = 0; i < a.size; i++) {
+            for (int j = 0; j < b.size; j++) {
+                if (b.inDist[j] > a.outDist[i]) {
+                    break;
+                }
+                if (b.outDist[j] < a.inDist[i]) {
+                    continue;
+                }
+                Hit hIn;
+                boolean fIn;
+                if (b.inDist[j] > a.inDist[i]) {
+                    hIn = b.inHit[j];
+                    fIn = b.inFlip[j];
+                } else {
+                    hIn = a.inHit[i];
+                    fIn = a.inFlip[i];
+                }
+                Hit hOut;
+                boolean fOut;
+                if (b.outDist[j] < a.outDist[i]) {
+                    hOut = b.outHit[j];
+                    fOut = b.outFlip[j];
+                } else {
+                    hOut = a.outHit[i];
+                    fOut = a.outFlip[i];
+                }
+                if (Math.abs(hIn.getHit_dist() - hOut.getHit_dist()) > tol) {
+                    result.add(hIn, fIn, hOut, fOut);
+                }
+            }
+        }
+        if (result.size == 0) {
+            return null;
+        }
+        result.sort();
+        return result;
+    }
+
+    /**
+     * @return the number of intervals in this list
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public double getInDist(int i) {
+        return this.inDist[i];
+    }
+
+    public double getOutDist(int i) {
+        return this.outDist[i];
+    }
+
+    public Hit getInHit(int i) {
+        return this.inHit[i];
+    }
+
+    public Hit getOutHit(int i) {
+        return this.outHit[i];
+    }
+
+    public boolean isFlipIn(int i) {
+        return this.inFlip[i];
+    }
+
+    public boolean isFlipOut(int i) {
+        return this.outFlip[i];
+    }
+}
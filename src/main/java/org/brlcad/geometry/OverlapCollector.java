@@ -0,0 +1,336 @@
+package org.brlcad.geometry;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * Collects statistics about overlaps instead of printing them as they are found. Each
+ * thread records into its own table, keyed by the pair of overlapping regions, so
+ * recording an overlap takes no locks and does no I/O. The tables of all threads are
+ * merged when a summary is requested, normally after all the rays have been shot.
+ */
+public class OverlapCollector implements OverlapRecorder {
+
+    private static final int DEFAULT_SAMPLE_SIZE = 5;
+
+    private final int sampleSize;
+    private final ConcurrentLinkedQueue<ThreadTable> tables = new ConcurrentLinkedQueue<ThreadTable>();
+    private final ThreadLocal<ThreadTable> threadTable = new ThreadLocal<ThreadTable>() {
+        @Override
+        protected ThreadTable initialValue() {
+            ThreadTable table = new ThreadTable();
+            tables.add(table);
+            return table;
+        }
+    };
+
+    /**
+     * Construct an OverlapCollector that keeps up to five example overlaps per region pair
+     */
+    public OverlapCollector() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Construct an OverlapCollector
+     * @param sampleSize	The maximum number of example overlaps to keep for each region pair
+     */
+    public OverlapCollector(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Record an overlap
+     * @param region1	The name of the region that claimed the overlapping segment
+     * @param region2	The name of the other region
+     * @param inDist	The distance along the ray where the overlap starts
+     * @param outDist	The distance along the ray where the overlap ends
+     * @param ray	The ray
+     */
+    public void record(String region1, String region2, double inDist, double outDist, Ray ray) {
+        ThreadTable table = this.threadTable.get();
+        Map<String, OverlapStats> row = table.pairs.get(region1);
+        if (row == null) {
+            row = new ConcurrentHashMap<String, OverlapStats>();
+            table.pairs.put(region1, row);
+        }
+        OverlapStats stats = row.get(region2);
+        if (stats == null) {
+            stats = new OverlapStats(region1, region2, this.sampleSize);
+            stats.firstSeen = System.nanoTime();
+            stats.firstRay = copy(ray);
+            row.put(region2, stats);
+        }
+
+        double depth = outDist - inDist;
+        stats.count++;
+        stats.totalDepth += depth;
+        if (depth > stats.maxDepth) {
+            stats.maxDepth = depth;
+        }
+
+        // reservoir sampling, so the examples are spread over the whole run
+        if (stats.sampleCount < this.sampleSize) {
+            stats.samples[stats.sampleCount++] = new Example(copy(ray), inDist, outDist);
+        } else if (this.sampleSize > 0) {
+            long slot = (long) (table.random.nextDouble() * stats.count);
+            if (slot < this.sampleSize) {
+                stats.samples[(int) slot] = new Example(copy(ray), inDist, outDist);
+            }
+        }
+    }
+
+    private static Ray copy(Ray ray) {
+        return new Ray(new Point(ray.getStart()), new Vector3(ray.getDirection()));
+    }
+
+    /**
+     * Merge the statistics of all threads
+     * @return	The statistics for each pair of overlapping regions, most frequent first
+     */
+    public List<OverlapStats> getSummary() {
+        Map<String, OverlapStats> merged = new HashMap<String, OverlapStats>();
+        Random random = new Random();
+        for (ThreadTable table : this.tables) {
+            for (Map<String, OverlapStats> row : table.pairs.values()) {
+                for (OverlapStats stats : row.values()) {
+                    String key = stats.region1 + '\u0000' + stats.region2;
+                    OverlapStats total = merged.get(key);
+                    if (total == null) {
+                        total = new OverlapStats(stats.region1, stats.region2, this.sampleSize);
+                        total.firstSeen = Long.MAX_VALUE;
+                        merged.put(key, total);
+                    }
+                    total.merge(stats, random);
+                }
+            }
+        }
+        List<OverlapStats> summary = new ArrayList<OverlapStats>(merged.values());
+        Collections.sort(summary, new Comparator<OverlapStats>() {
+            public int compare(OverlapStats s1, OverlapStats s2) {
+                if (s1.count != s2.count) {
+                    return s1.count > s2.count ? -1 : 1;
+                }
+                int cmp = s1.region1.compareTo(s2.region1);
+                return cmp != 0 ? cmp : s1.region2.compareTo(s2.region2);
+            }
+        });
+        return summary;
+    }
+
+    /**
+     * @return	The total number of overlaps recorded by all threads
+     */
+    public long getOverlapCount() {
+        long count = 0;
+        for (ThreadTable table : this.tables) {
+            for (Map<String, OverlapStats> row : table.pairs.values()) {
+                for (OverlapStats stats : row.values()) {
+                    count += stats.count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Print a summary of the overlaps
+     * @param out	Where to print the report
+     */
+    public void printReport(PrintStream out) {
+        List<OverlapStats> summary = this.getSummary();
+        long total = 0;
+        for (OverlapStats stats : summary) {
+            total += stats.count;
+        }
+        out.println(total + " overlaps between " + summary.size() + " region pairs");
+        for (OverlapStats stats : summary) {
+            out.println(stats);
+            out.println("\tfirst seen on ray: " + stats.firstRay);
+            for (Example example : stats.getSamples()) {
+                out.println("\t" + example);
+            }
+        }
+    }
+
+    /**
+     * Discard everything recorded so far. Should not be called while rays are being shot.
+     */
+    public void clear() {
+        for (ThreadTable table : this.tables) {
+            table.pairs.clear();
+        }
+    }
+
+    /**
+     * The overlaps recorded by one thread
+     */
+    private static class ThreadTable {
+        private final Map<String, Map<String, OverlapStats>> pairs = new ConcurrentHashMap<String, Map<String, OverlapStats>>();
+        private final Random random = new Random();
+    }
+
+    /**
+     * Statistics for the overlaps between one pair of regions
+     */
+    public static class OverlapStats {
+        private final String region1;
+        private final String region2;
+        private long count;
+        private double maxDepth;
+        private double totalDepth;
+        private long firstSeen;
+        private Ray firstRay;
+        private final Example[] samples;
+        private int sampleCount;
+
+        private OverlapStats(String region1, String region2, int sampleSize) {
+            this.region1 = region1;
+            this.region2 = region2;
+            this.samples = new Example[sampleSize];
+        }
+
+        private void merge(OverlapStats stats, Random random) {
+            this.mergeSamples(stats, random);
+            this.count += stats.count;
+            this.totalDepth += stats.totalDepth;
+            this.maxDepth = Math.max(this.maxDepth, stats.maxDepth);
+            if (stats.firstSeen < this.firstSeen) {
+                this.firstSeen = stats.firstSeen;
+                this.firstRay = stats.firstRay;
+            }
+        }
+
+        /**
+         * Combine two reservoirs into one that is a uniform sample of the overlaps of both.
+         * Drawing the kept samples without replacement from all the overlaps, a draw comes
+         * from each reservoir in proportion to the overlaps it stands for that are left.
+         */
+        private void mergeSamples(OverlapStats stats, Random random) {
+            int size = Math.min(this.samples.length, this.sampleCount + stats.sampleCount);
+            long mine = this.count;
+            long theirs = stats.count;
+            int fromMine = 0;
+            for (int i = 0; i < size; i++) {
+                if (random.nextDouble() * (mine + theirs) < mine) {
+                    fromMine++;
+                    mine--;
+                } else {
+                    theirs--;
+                }
+            }
+            fromMine = Math.max(size - stats.sampleCount, Math.min(fromMine, this.sampleCount));
+            Example[] kept = new Example[size];
+            pick(this.samples, this.sampleCount, kept, 0, fromMine, random);
+            pick(stats.samples.clone(), stats.sampleCount, kept, fromMine, size - fromMine, random);
+            System.arraycopy(kept, 0, this.samples, 0, size);
+            this.sampleCount = size;
+        }
+
+        /**
+         * Copy a random choice of count of the first available examples
+         */
+        private static void pick(Example[] from, int available, Example[] to, int offset, int count, Random random) {
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(available - i);
+                Example chosen = from[j];
+                from[j] = from[i];
+                from[i] = chosen;
+                to[offset + i] = chosen;
+            }
+        }
+
+        /**
+         * @return	The region that claimed the overlapping segments
+         */
+        public String getRegion1() {
+            return region1;
+        }
+
+        /**
+         * @return	The region that lost the overlapping segments
+         */
+        public String getRegion2() {
+            return region2;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return	The longest overlap along any ray
+         */
+        public double getMaxDepth() {
+            return maxDepth;
+        }
+
+        public double getAverageDepth() {
+            return count > 0 ? totalDepth / count : 0.0;
+        }
+
+        /**
+         * @return	The first ray found to pass through this overlap
+         */
+        public Ray getFirstRay() {
+            return firstRay;
+        }
+
+        public List<Example> getSamples() {
+            List<Example> list = new ArrayList<Example>(sampleCount);
+            for (int i = 0; i < sampleCount; i++) {
+                list.add(samples[i]);
+            }
+            return list;
+        }
+
+        @Override
+        public String toString() {
+            return "OVERLAP " + region1 + " / " + region2 + ": " + count + " rays, max depth " + maxDepth
+                    + ", average depth " + this.getAverageDepth();
+        }
+    }
+
+    /**
+     * One example of an overlap
+     */
+    public static class Example {
+        private final Ray ray;
+        private final double inDist;
+        private final double outDist;
+
+        private Example(Ray ray, double inDist, double outDist) {
+            this.ray = ray;
+            this.inDist = inDist;
+            this.outDist = outDist;
+        }
+
+        public Ray getRay() {
+            return ray;
+        }
+
+        public double getInDist() {
+            return inDist;
+        }
+
+        public double getOutDist() {
+            return outDist;
+        }
+
+        @Override
+        public String toString() {
+            return "from " + inDist + " to " + outDist + " on ray " + ray;
+        }
+    }
+}
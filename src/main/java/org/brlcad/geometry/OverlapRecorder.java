@@ -0,0 +1,20 @@
+package org.brlcad.geometry;
+
+import org.brlcad.numerics.Ray;
+
+/**
+ * Receives each overlap as it is resolved along a ray. OverlapCollector keeps statistics
+ * for all the rays shot, other implementations may look at one ray at a time.
+ */
+public interface OverlapRecorder {
+
+    /**
+     * Record an overlap
+     * @param region1	The name of the region that claimed the overlapping segment
+     * @param region2	The name of the other region
+     * @param inDist	The distance along the ray where the overlap starts
+     * @param outDist	The distance along the ray where the overlap ends
+     * @param ray	The ray
+     */
+    void record(String region1, String region2, double inDist, double outDist, Ray ray);
+}
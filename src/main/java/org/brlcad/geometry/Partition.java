@@ -22,14 +22,17 @@ public class Partition implements Comparable,Externalizable {
     private static final  Logger logger = Logger.getLogger(Partition.class.getName());
     private Hit in_hit;
     private boolean flipInNormal = false;
-    private float inObliquity;
+    private float inObliquity = Float.NaN;
     private Hit out_hit;
     private boolean flipOutNormal = false;
-    private float outObliquity;
+    private float outObliquity = Float.NaN;
     private String fromRegion;
-    private double los;
+    private double los = Double.NaN;
+    private Vector3 rayDir;
     private int regionID;
     private int airCode;    
+    /** the index of the region in the RegionTable of the PreppedDb (not serialized) */
+    private int regionIndex = -1;
     private Matrix muvesToOrca = null;
 
     /**
@@ -43,8 +46,17 @@ public class Partition implements Comparable,Externalizable {
         this.fromRegion = reg;
         this.flipInNormal = false;
         this.flipOutNormal = false;
-        this.los = out_hit.getHit_pt().dist(in_hit.getHit_pt());
-        this.calcObliquities(rayData);
+        this.rayDir = rayData.getTheRay().getDirection();
+        this.regionID = regionid;
+    }
+
+    public Partition(Hit inHit, boolean inFlip, Hit outHit, boolean outFlip, String reg, int regionid, RayData rayData) {
+        this.in_hit = inHit;
+        this.flipInNormal = inFlip;
+        this.out_hit = outHit;
+        this.flipOutNormal = outFlip;
+        this.fromRegion = reg;
+        this.rayDir = rayData.getTheRay().getDirection();
         this.regionID = regionid;
     }
 
@@ -57,7 +69,6 @@ public class Partition implements Comparable,Externalizable {
         this.flipOutNormal = outFlip;
         this.outObliquity = exitObl;
         this.fromRegion = reg;
-        this.los = out_hit.getHit_pt().dist(in_hit.getHit_pt());
         this.regionID = regionid;
         this.airCode = aircode;
     }
@@ -71,7 +82,9 @@ public class Partition implements Comparable,Externalizable {
         this.inObliquity = part.inObliquity;
         this.outObliquity = part.outObliquity;
         this.los = part.los;
+        this.rayDir = part.rayDir;
         this.regionID = part.regionID;
+        this.regionIndex = part.regionIndex;
         this.muvesToOrca = part.muvesToOrca;
     }
 
@@ -87,22 +100,35 @@ public class Partition implements Comparable,Externalizable {
         return this.regionID;
     }
 
-    private void calcObliquities( RayData rayData ) {
-        Vector3 rayDir = rayData.getTheRay().getDirection();
-        double dot = -in_hit.getHit_normal().dotProduct(rayDir);
-        if( dot < -1.0 ) {
-            dot = -1.0;
-        } else if( dot > 1.0 ) {
-            dot = 1.0;
+    /**
+     * @return The index of the region in the RegionTable of the PreppedDb that shot this
+     * Partition, or -1 if it is not known (as after deserialization)
+     */
+    public int getRegionIndex() {
+        return this.regionIndex;
+    }
+
+    public void setRegionIndex(int regionIndex) {
+        this.regionIndex = regionIndex;
+    }
+
+    /**
+     * Calculate the obliquity at a Hit
+     * @param hit	The Hit
+     * @param flip	true if the normal of the Hit is reversed
+     * @param sign	-1 for the entrance Hit, 1 for the exit Hit
+     */
+    private float calcObliquity( Hit hit, boolean flip, double sign ) {
+        double dot = sign * hit.getHit_normal().dotProduct(rayDir);
+        if( flip ) {
+            dot = -dot;
         }
-        this.inObliquity = (float) Math.acos(dot);
-        dot = out_hit.getHit_normal().dotProduct(rayDir);
         if( dot < -1.0 ) {
             dot = -1.0;
         } else if( dot > 1.0 ) {
             dot = 1.0;
         }
-        this.outObliquity = (float) Math.acos(dot);
+        return (float) Math.acos(dot);
     }
 
     /**
@@ -112,6 +138,7 @@ public class Partition implements Comparable,Externalizable {
      */
     public void setOutHit(Hit out_hit) {
         this.out_hit = out_hit;
+        this.hitChanged();
     }
 
     /**
@@ -130,6 +157,7 @@ public class Partition implements Comparable,Externalizable {
      */
     public void setInhit(Hit in_hit) {
         this.in_hit = in_hit;
+        this.hitChanged();
     }
 
     /**
@@ -198,11 +226,25 @@ public class Partition implements Comparable,Externalizable {
     public void setInHit(Hit hit, boolean flip) {
         this.in_hit = hit;
         this.flipInNormal = flip;
+        this.hitChanged();
     }
 
     public void setOutHit(Hit hit, boolean flip) {
         this.out_hit = hit;
         this.flipOutNormal = flip;
+        this.hitChanged();
+    }
+
+    /**
+     * Forget the line of sight thickness and obliquities so they are recalculated
+     * for the new Hits (only possible when the ray direction is known)
+     */
+    private void hitChanged() {
+        if (this.rayDir != null) {
+            this.inObliquity = Float.NaN;
+            this.outObliquity = Float.NaN;
+            this.los = Double.NaN;
+        }
     }
 
     public Vector3 getOutHitNormal() {
@@ -315,8 +357,10 @@ public class Partition implements Comparable,Externalizable {
                 }
                 if (inHit != null && outHit != null) {
                     if (Math.abs(inHit.getHit_dist() - outHit.getHit_dist()) > BrlcadDb.getTolerance().getDist()) {
-                        parts.add(new Partition(inHit, inflip, outHit, outflip,
-                                inObliquity, outObliquity, part1.fromRegion, part1.regionID, part1.airCode));
+                        Partition part = new Partition(inHit, inflip, outHit, outflip,
+                                inObliquity, outObliquity, part1.fromRegion, part1.regionID, part1.airCode);
+                        part.regionIndex = part1.regionIndex;
+                        parts.add(part);
                     }
                 }
             }
@@ -555,6 +599,9 @@ public class Partition implements Comparable,Externalizable {
      * @return the inObliquity
      */
     public float getInObliquity() {
+        if (Float.isNaN(inObliquity) && rayDir != null) {
+            inObliquity = this.calcObliquity(in_hit, flipInNormal, -1.0);
+        }
         return inObliquity;
     }
 
@@ -569,6 +616,9 @@ public class Partition implements Comparable,Externalizable {
      * @return the outObliquity
      */
     public float getOutObliquity() {
+        if (Float.isNaN(outObliquity) && rayDir != null) {
+            outObliquity = this.calcObliquity(out_hit, flipOutNormal, 1.0);
+        }
         return outObliquity;
     }
 
@@ -583,6 +633,9 @@ public class Partition implements Comparable,Externalizable {
      * @return the los
      */
     public double getLos() {
+        if (Double.isNaN(los)) {
+            los = out_hit.getHit_pt().dist(in_hit.getHit_pt());
+        }
         return los;
     }
 
@@ -628,11 +681,11 @@ public class Partition implements Comparable,Externalizable {
         out.writeInt(airCode);
         out.writeBoolean(flipInNormal);
         out.writeBoolean(flipOutNormal);
-        out.writeFloat(inObliquity);
-        out.writeFloat(outObliquity);
+        out.writeFloat(getInObliquity());
+        out.writeFloat(getOutObliquity());
         out.writeObject(in_hit);
         out.writeObject(out_hit);
-        out.writeDouble(los);
+        out.writeDouble(getLos());
         out.writeUTF(fromRegion);
     }
 
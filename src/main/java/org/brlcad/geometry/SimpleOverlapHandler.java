@@ -1,6 +1,7 @@
 package org.brlcad.geometry;
 /**
- * A very simple handler for overlapping Partitions
+ * A very simple handler for overlapping Partitions. Overlaps are printed to System.err
+ * (unless this handler is quiet), or recorded by an OverlapCollector if one is set.
  */
 
 
@@ -12,6 +13,18 @@ import org.brlcad.numerics.Ray;
 public class SimpleOverlapHandler implements OverlapHandler
 {
     private boolean quiet = false;
+    private OverlapCollector collector;
+
+    public SimpleOverlapHandler() {}
+
+    /**
+     * Construct a SimpleOverlapHandler that records overlaps instead of printing them
+     * @param collector	The OverlapCollector to record the overlaps in
+     */
+    public SimpleOverlapHandler( OverlapCollector collector )
+    {
+        this.collector = collector;
+    }
 	
 	/**
 	 * Method to reconcile overlaps along a ray trace.
@@ -42,9 +55,9 @@ public class SimpleOverlapHandler implements OverlapHandler
 				if( part2.getOutHit().getHit_dist() < part1.getOutHit().getHit_dist() )
 				{
 					// part2 is entirely inside part1 (delete it)
-					if( !quiet && !part1.getFromRegion().equals(part2.getFromRegion()) )
+					if( !part1.getFromRegion().equals(part2.getFromRegion()) )
 					{
-						System.err.println( "OVERLAP on Ray: " + ray + "\n\t" + part1 + "\n\t" + part2 );
+						reportOverlap( part1, part2, part2.getOutHit().getHit_dist(), ray );
 					}
 					iter.remove();
 					continue;
@@ -61,9 +74,7 @@ public class SimpleOverlapHandler implements OverlapHandler
 					else
 					{
 						// two different regions, select part1
-                        if( !quiet ) {
-                            System.err.println("OVERLAP on Ray: " + ray + "\n\t" + part1 + "\n\t" + part2);
-                        }
+                        reportOverlap( part1, part2, part1.getOutHit().getHit_dist(), ray );
 						part2.setInHit( part1.getOutHit(), !part1.isFlipOutNormal() );
 					}
 				}
@@ -75,6 +86,29 @@ public class SimpleOverlapHandler implements OverlapHandler
 		return parts;
 	}
 
+    private void reportOverlap( Partition part1, Partition part2, double outDist, Ray ray )
+    {
+        if( collector != null )
+        {
+            collector.record( part1.getFromRegion(), part2.getFromRegion(), part2.getInHit().getHit_dist(), outDist, ray );
+        }
+        else if( !quiet )
+        {
+            System.err.println( "OVERLAP on Ray: " + ray + "\n\t" + part1 + "\n\t" + part2 );
+        }
+    }
+
+    public OverlapCollector getOverlapCollector() {
+        return this.collector;
+    }
+
+    /**
+     * Set the OverlapCollector to record overlaps in (null to print them)
+     */
+    public void setOverlapCollector(OverlapCollector collector) {
+        this.collector = collector;
+    }
+
     public void setQuiet(boolean quiet) {
         this.quiet = quiet;
     }
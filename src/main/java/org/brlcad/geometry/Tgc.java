@@ -14,6 +14,7 @@ import org.brlcad.numerics.Vector3;
 import org.brlcad.preppedGeometry.PreppedCombination;
 import org.brlcad.preppedGeometry.PreppedObject;
 import org.brlcad.preppedGeometry.PreppedRec;
+import org.brlcad.preppedGeometry.PreppedTrc;
 import org.brlcad.spacePartition.PreppedDb;
 
 /**
@@ -273,6 +274,8 @@ public class Tgc extends DbObject {
 
         if( isRec ) {
             prepped = new PreppedRec(this, matrix, V, A, B, Hunit, mag_a, mag_b, mag_c, mag_d, mag_h);
+        } else if (isTrc(Hunit, A, B, C, D, mag_a, mag_b, mag_c, mag_d, mag_h)) {
+            prepped = new PreppedTrc(this, V, H, (mag_a + mag_b) / 2.0, (mag_c + mag_d) / 2.0);
         } else {
             prepped = new PreppedTgc(this, matrix, V, H, A, B, C, D, Hunit, mag_a, mag_b, mag_c, mag_d, mag_h);
         }
@@ -284,6 +287,51 @@ public class Tgc extends DbObject {
 		return prepped;
 	}
 
+    /**
+     * Check if the (transformed) vectors describe a right circular cone, possibly truncated.
+     * Both ends must be circles perpendicular to H (one end may be a point) with C and D
+     * pointing the same way as A and B. Unlike the Rec checks above, the allowed deviation
+     * is a distance (a tenth of the distance tolerance), so that PreppedTrc gives the same
+     * hits as PreppedTgc within tolerance.
+     */
+    private static boolean isTrc(Vector3 Hunit, Vector3 A, Vector3 B, Vector3 C, Vector3 D,
+            double mag_a, double mag_b, double mag_c, double mag_d, double mag_h) {
+        double tol = BrlcadDb.tolerance.getDist() * 0.1;
+        if (mag_h < Constants.RT_LEN_TOL) {
+            return false;
+        }
+        if (mag_a < Constants.RT_LEN_TOL && mag_c < Constants.RT_LEN_TOL) {
+            return false;
+        }
+        if (!isCircle(Hunit, A, B, mag_a, mag_b, tol) || !isCircle(Hunit, C, D, mag_c, mag_d, tol)) {
+            return false;
+        }
+        if (mag_a >= Constants.RT_LEN_TOL && mag_c >= Constants.RT_LEN_TOL) {
+            /* no twist between the ends */
+            Vector3 work = Vector3.scale(A, mag_c / mag_a);
+            if (Vector3.minus(work, C).magnitude() >= tol) {
+                return false;
+            }
+            work = Vector3.scale(B, mag_d / mag_b);
+            if (Vector3.minus(work, D).magnitude() >= tol) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCircle(Vector3 Hunit, Vector3 A, Vector3 B, double mag_a, double mag_b, double tol) {
+        if (Math.abs(mag_a - mag_b) >= tol) {
+            return false;
+        }
+        if (mag_a < Constants.RT_LEN_TOL) {
+            return mag_b < Constants.RT_LEN_TOL;	/* a point */
+        }
+        return Math.abs(Hunit.dotProduct(A)) < tol &&
+                Math.abs(Hunit.dotProduct(B)) < tol &&
+                Math.abs(A.dotProduct(B)) / mag_a < tol;
+    }
+
 	/**
 	 * Create a String representation of this Ellipsoid
 	 *
@@ -239,5 +239,12 @@ public class Tree implements Serializable
         return leafName;
     }
 
+    /**
+     * @return the prepped version of the referenced object (null if not a leaf node or not yet prepped)
+     */
+    public PreppedObject getLeaf() {
+        return leaf;
+    }
+
 }
 
@@ -218,6 +218,13 @@ public class BoundingBox implements Serializable {
         }
     }
 
+    /**
+     * @return true if the extents of this box have not been set
+     */
+    public boolean isEmpty() {
+        return min == null || max == null;
+    }
+
     public Vector3 getDiameter() {
         return Vector3.minus(max, min);
     }
@@ -498,6 +505,57 @@ public class BoundingBox implements Serializable {
         }
     }
 
+    /**
+     * Computes the entry and exit distances of the line of a ray through this
+     * box. Uses the cached inverse direction of the ray, so it does no division
+     * and no allocation. The ray is not validated.
+     *
+     * @param r The ray
+     * @param dist Receives the entry distance in dist[0] and the exit distance in dist[1]
+     * @return true if the line passes through the box (dist[0] may be negative)
+     */
+    public boolean isect2(Ray r, double[] dist) {
+        double[] inv = r.getInverseDirection();
+        int[] sign = r.getDirectionSigns();
+        Point start = r.getStart();
+        double inHit = Double.NEGATIVE_INFINITY;
+        double outHit = Double.POSITIVE_INFINITY;
+
+        // a NaN (ray parallel to and in the plane of a face) fails both
+        // comparisons, so that face places no limit on the ray
+        double near = ((sign[0] == 0 ? min.x : max.x) - start.x) * inv[0];
+        double far = ((sign[0] == 0 ? max.x : min.x) - start.x) * inv[0];
+        if (near > inHit) {
+            inHit = near;
+        }
+        if (far < outHit) {
+            outHit = far;
+        }
+        near = ((sign[1] == 0 ? min.y : max.y) - start.y) * inv[1];
+        far = ((sign[1] == 0 ? max.y : min.y) - start.y) * inv[1];
+        if (near > inHit) {
+            inHit = near;
+        }
+        if (far < outHit) {
+            outHit = far;
+        }
+        near = ((sign[2] == 0 ? min.z : max.z) - start.z) * inv[2];
+        far = ((sign[2] == 0 ? max.z : min.z) - start.z) * inv[2];
+        if (near > inHit) {
+            inHit = near;
+        }
+        if (far < outHit) {
+            outHit = far;
+        }
+
+        if (inHit >= outHit) {
+            return false;
+        }
+        dist[0] = inHit;
+        dist[1] = outHit;
+        return true;
+    }
+
     /**
      * Computes intersections of this bounding box and a ray
      *
@@ -679,9 +737,72 @@ public class BoundingBox implements Serializable {
             }
         }
 
+        // The PCA check can miss a box that the cone only clips. Since the center ray
+        // misses the box, the cone can only reach it through one of its edges
+        for (int axis = 0; axis < 3; axis++) {
+            int a1 = (axis + 1) % 3;
+            int a2 = (axis + 2) % 3;
+            for (int corner = 0; corner < 4; corner++) {
+                double c1 = (corner & 1) == 0 ? min.get(a1) : max.get(a1);
+                double c2 = (corner & 2) == 0 ? min.get(a2) : max.get(a2);
+                if (edgeInCone(r, cosHalfAngle, axis, a1, c1, a2, c2)) {
+                    return true;
+                }
+            }
+        }
+
         return false;
     }
 
+    /**
+     * Check if any point of an edge of this box is inside a cone. The edge runs
+     * along one axis from min to max, with the other two coordinates fixed.
+     *
+     * @param r The cone (start at the apex, direction along the axis)
+     * @param cosHalfAngle The cosine of half the cone angle
+     * @param axis The axis the edge runs along
+     * @param a1 The first fixed axis
+     * @param c1 The coordinate on the first fixed axis
+     * @param a2 The second fixed axis
+     * @param c2 The coordinate on the second fixed axis
+     * @return true, if the edge reaches into the cone
+     */
+    private boolean edgeInCone(Ray r, double cosHalfAngle, int axis, int a1, double c1, int a2, double c2) {
+        Point apex = r.getStart();
+        Vector3 dir = r.getDirection();
+        double[] w = new double[3];
+        w[axis] = min.get(axis) - apex.get(axis);
+        w[a1] = c1 - apex.get(a1);
+        w[a2] = c2 - apex.get(a2);
+        double e = max.get(axis) - min.get(axis);
+        // point on the edge is apex + w + t * e * (unit vector along axis), for t in [0,1]
+        double a = w[0] * dir.getX() + w[1] * dir.getY() + w[2] * dir.getZ();
+        double b = e * dir.get(axis);
+        double ww = w[0] * w[0] + w[1] * w[1] + w[2] * w[2];
+        double we = e * w[axis];
+        double ee = e * e;
+        if (isInCone(a, ww, cosHalfAngle) || isInCone(a + b, ww + 2.0 * we + ee, cosHalfAngle)) {
+            return true;
+        }
+        // the only interior extremum of the angle to the cone axis
+        double denom = b * we - a * ee;
+        if (denom != 0.0) {
+            double t = (a * we - b * ww) / denom;
+            if (t > 0.0 && t < 1.0) {
+                return isInCone(a + t * b, ww + 2.0 * t * we + t * t * ee, cosHalfAngle);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInCone(double dot, double lengthSq, double cosHalfAngle) {
+        if (lengthSq == 0.0) {
+            // the apex itself
+            return true;
+        }
+        return dot >= cosHalfAngle * Math.sqrt(lengthSq);
+    }
+
     /**
      * toString() for a BoundingBox
      *
@@ -561,7 +561,13 @@ public class Polynomial {
         }
     }
 
-    private void deflate( Complex root ) {
+    /**
+     * Divide out a root found by roots(), leaving the quotient in this Polynomial.
+     * A complex root divides out the quadratic of it and its conjugate.
+     *
+     * @param root The root
+     */
+    void deflate( Complex root ) {
         Polynomial div = null;
 
         /* Make a polynomial out of the given root:  Linear for a real
@@ -578,7 +584,7 @@ public class Polynomial {
             div = new Polynomial(2);
             div.setCoeff(0, 1.0);
             div.setCoeff(1, -2.0 * root.getReal());
-            div.setCoeff(2, root.amplitude());
+            div.setCoeff(2, root.amplitudeSquared());
         }
 
         /* Use synthetic division to find the quotient (new polynomial)
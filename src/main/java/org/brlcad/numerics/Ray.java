@@ -41,6 +41,15 @@ public class Ray implements Externalizable {
 
     private Vector3 direction;
 
+    /** reciprocal of each direction component, cached for box tests */
+    private transient double[] inverseDirection;
+
+    /** 1 for each negative direction component, 0 otherwise */
+    private transient int[] directionSigns;
+
+    /** the direction that the cached values were computed from */
+    private transient double cachedX, cachedY, cachedZ;
+
     /**
      * No arg constructor for use by Externalization. DO NOT USE THIS CONSTRUCTOR
      */
@@ -97,6 +106,49 @@ public class Ray implements Externalizable {
         return (direction);
     }
 
+    /**
+     * Get the reciprocal of each component of the direction vector. A zero
+     * component produces an infinite value. The values are cached, and are
+     * recomputed if the direction vector has been changed (e.g. normalized).
+     *
+     * @return The inverse direction (do not modify)
+     */
+    public double[] getInverseDirection() {
+        this.updateInverseDirection();
+        return this.inverseDirection;
+    }
+
+    /**
+     * Get the sign of each component of the direction vector, as an index into
+     * a {min, max} pair: 1 if the component is negative, 0 otherwise.
+     *
+     * @return The direction signs (do not modify)
+     */
+    public int[] getDirectionSigns() {
+        this.updateInverseDirection();
+        return this.directionSigns;
+    }
+
+    private void updateInverseDirection() {
+        if (this.inverseDirection != null && this.cachedX == this.direction.x
+                && this.cachedY == this.direction.y && this.cachedZ == this.direction.z) {
+            return;
+        }
+        double[] inv = new double[3];
+        int[] signs = new int[3];
+        inv[0] = 1.0 / this.direction.x;
+        inv[1] = 1.0 / this.direction.y;
+        inv[2] = 1.0 / this.direction.z;
+        for (int i = 0; i < 3; i++) {
+            signs[i] = inv[i] < 0.0 ? 1 : 0;
+        }
+        this.cachedX = this.direction.x;
+        this.cachedY = this.direction.y;
+        this.cachedZ = this.direction.z;
+        this.directionSigns = signs;
+        this.inverseDirection = inv;
+    }
+
     /**
      * Test equality of rays.
      *
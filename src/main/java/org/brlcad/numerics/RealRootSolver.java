@@ -0,0 +1,390 @@
+package org.brlcad.numerics;
+
+/**
+ * Finds the real roots of polynomials of degree one to four without allocating anything.
+ * Coefficients are given highest power first (as in Polynomial), and the real roots are
+ * written into a caller supplied array (of length at least the degree) in increasing
+ * order. Closed form solutions are used (Ferrari's method for quartics, as in Polynomial),
+ * and cubic and quartic roots are polished with a few Newton iterations.
+ *
+ * A pair of complex roots whose imaginary part is smaller than imagTol is reported as a
+ * double real root, just as the callers of Polynomial.roots() treat such roots, since
+ * that is what a ray grazing a surface produces.
+ */
+public final class RealRootSolver {
+
+    private static final int POLISH_ITERATIONS = 4;
+    private static final int MAX_ITERATIONS = 100;
+    private static final double SMALL = 1.0e-8;
+
+    private RealRootSolver() {}
+
+    /**
+     * Find the real roots of a polynomial of degree four or less. Leading coefficients
+     * that are nearly zero are dropped first, so the actual degree may be lower.
+     * @param coeffs	The coefficients, highest power first
+     * @param degree	The degree of the polynomial
+     * @param imagTol	Complex roots with a smaller imaginary part are reported as real
+     * @param roots	Receives the real roots in increasing order
+     * @return	The number of real roots, or -1 if they could not be found
+     */
+    public static int solve(double[] coeffs, int degree, double imagTol, double[] roots) {
+        int first = 0;
+        while (degree > 0 && Math.abs(coeffs[first]) < Constants.SQRT_SMALL_FASTF) {
+            first++;
+            degree--;
+        }
+        switch (degree) {
+            case 0:
+                return 0;
+            case 1:
+                roots[0] = -coeffs[first + 1] / coeffs[first];
+                return 1;
+            case 2:
+                return quadratic(coeffs[first], coeffs[first + 1], coeffs[first + 2], imagTol, roots);
+            case 3:
+                return cubic(coeffs[first], coeffs[first + 1], coeffs[first + 2], coeffs[first + 3],
+                        imagTol, roots);
+            case 4:
+                return quartic(coeffs[first], coeffs[first + 1], coeffs[first + 2], coeffs[first + 3],
+                        coeffs[first + 4], imagTol, roots);
+            default:
+                throw new IllegalArgumentException("Cannot solve polynomials with degree greater than 4, " +
+                        "this polynomial has degree " + degree);
+        }
+    }
+
+    /**
+     * Find the real roots of c0*x^2 + c1*x + c2 (c0 must not be zero)
+     * @return	The number of real roots (0 or 2)
+     */
+    public static int quadratic(double c0, double c1, double c2, double imagTol, double[] roots) {
+        return quadratic(c0, c1, c2, imagTol, roots, 0);
+    }
+
+    private static int quadratic(double c0, double c1, double c2, double imagTol, double[] roots, int offset) {
+        double discrim = c1 * c1 - 4.0 * c0 * c2;
+        if (discrim >= 0.0) {
+            // avoid cancellation by computing the larger root first
+            double t = -0.5 * (c1 + Math.copySign(Math.sqrt(discrim), c1));
+            double r1;
+            double r2;
+            if (t == 0.0) {
+                r1 = 0.0;
+                r2 = 0.0;
+            } else {
+                r1 = t / c0;
+                r2 = c2 / t;
+            }
+            roots[offset] = Math.min(r1, r2);
+            roots[offset + 1] = Math.max(r1, r2);
+            return 2;
+        }
+        double denom = 0.5 / c0;
+        if (Math.abs(Math.sqrt(-discrim) * denom) < imagTol) {
+            roots[offset] = -c1 * denom;
+            roots[offset + 1] = roots[offset];
+            return 2;
+        }
+        return 0;
+    }
+
+    /**
+     * Find the real roots of c0*x^3 + c1*x^2 + c2*x + c3 (c0 must not be zero)
+     * @return	The number of real roots (1 or 3), or -1 if the coefficients are too large
+     */
+    public static int cubic(double c0, double c1, double c2, double c3, double imagTol, double[] roots) {
+        double a1 = c1 / c0;
+        double a2 = c2 / c0;
+        double a3 = c3 / c0;
+        int count = normalizedCubic(a1, a2, a3, imagTol, roots);
+        for (int i = 0; i < count; i++) {
+            roots[i] = polishCubic(a1, a2, a3, roots[i]);
+        }
+        sort(roots, count);
+        return count;
+    }
+
+    /**
+     * The closed form solution of x^3 + c1*x^2 + c2*x + c3 (from Polynomial.cubicRoots())
+     */
+    private static int normalizedCubic(double c1, double c2, double c3, double imagTol, double[] roots) {
+        if (Math.abs(c1) > Constants.SQRT_MAX_FASTF) {
+            return -1;
+        }
+
+        double c1_3rd = c1 * Constants.THIRD;
+        double a = c2 - c1 * c1_3rd;
+        if (Math.abs(a) > Constants.SQRT_MAX_FASTF) {
+            return -1;
+        }
+        double b = (2.0 * c1 * c1 * c1 - 9.0 * c1 * c2 + 27.0 * c3) * Constants.INV_TWENTYSEVEN;
+        if (Math.abs(b) > Constants.SQRT_MAX_FASTF) {
+            return -1;
+        }
+
+        double delta = a * a;
+        if (delta > Constants.SQRT_MAX_FASTF) {
+            return -1;
+        }
+        delta = b * b * 0.25 + delta * a * Constants.INV_TWENTYSEVEN;
+
+        int count;
+        if (delta > 0.0) {
+            double r_delta = Math.sqrt(delta);
+            double A = Math.cbrt(-0.5 * b + r_delta);
+            double B = Math.cbrt(-0.5 * b - r_delta);
+            roots[0] = A + B;
+            count = 1;
+            if (Math.abs((A - B) * Constants.SQRT3 * 0.5) < imagTol) {
+                roots[1] = -0.5 * roots[0];
+                roots[2] = roots[1];
+                count = 3;
+            }
+        } else if (delta == 0.0) {
+            roots[0] = 2.0 * Math.cbrt(-0.5 * b);
+            roots[1] = -0.5 * roots[0];
+            roots[2] = roots[1];
+            count = 3;
+        } else {
+            double fact;
+            double cs_phi;
+            double sn_phi_s3;
+            if (a >= 0.0) {
+                fact = 0.0;
+                cs_phi = 1.0;
+                sn_phi_s3 = 0.0;
+            } else {
+                a *= -Constants.THIRD;
+                fact = Math.sqrt(a);
+                double f = b * (-0.5) / (a * fact);
+                if (f >= 1.0) {
+                    cs_phi = 1.0;
+                    sn_phi_s3 = 0.0;
+                } else if (f <= -1.0) {
+                    cs_phi = Math.cos(Constants.PI_DIV_3);
+                    sn_phi_s3 = Math.sin(Constants.PI_DIV_3) * Constants.SQRT3;
+                } else {
+                    double phi = Math.acos(f) * Constants.THIRD;
+                    cs_phi = Math.cos(phi);
+                    sn_phi_s3 = Math.sin(phi) * Constants.SQRT3;
+                }
+            }
+            roots[0] = 2.0 * fact * cs_phi;
+            roots[1] = fact * (sn_phi_s3 - cs_phi);
+            roots[2] = fact * (-sn_phi_s3 - cs_phi);
+            count = 3;
+        }
+        for (int i = 0; i < count; i++) {
+            roots[i] -= c1_3rd;
+        }
+        return count;
+    }
+
+    /**
+     * Find the real roots of c0*x^4 + c1*x^3 + c2*x^2 + c3*x + c4 (c0 must not be zero)
+     * @return	The number of real roots (0 to 4)
+     */
+    public static int quartic(double c0, double c1, double c2, double c3, double c4, double imagTol,
+            double[] roots) {
+        double a = c1 / c0;
+        double b = c2 / c0;
+        double c = c3 / c0;
+        double d = c4 / c0;
+
+        int count = ferrari(a, b, c, d, imagTol, roots);
+        if (count < 0) {
+            count = isolate(a, b, c, d, imagTol, roots);
+        } else {
+            for (int i = 0; i < count; i++) {
+                roots[i] = polishQuartic(a, b, c, d, roots[i]);
+            }
+            sort(roots, count);
+        }
+        return count;
+    }
+
+    /**
+     * Factor x^4 + a*x^3 + b*x^2 + c*x + d into two quadratics using the largest root of the
+     * resolvent cubic (as Polynomial.quarticRoots() does) and solve them
+     * @return	The number of real roots, or -1 if the factoring failed
+     */
+    private static int ferrari(double a, double b, double c, double d, double imagTol, double[] roots) {
+        // the roots array is used as scratch space for the resolvent cubic
+        int n = normalizedCubic(-b, c * a - 4.0 * d, -c * c - d * a * a + 4.0 * d * b, 0.0, roots);
+        if (n < 1) {
+            return -1;
+        }
+        double U = roots[0];
+        for (int i = 1; i < n; i++) {
+            U = Math.max(U, roots[i]);
+        }
+
+        double p = a * a * 0.25 + U - b;
+        U *= 0.5;
+        double q = U * U - d;
+        if (p < 0.0) {
+            if (p < -SMALL) {
+                return -1;
+            }
+            p = 0.0;
+        } else {
+            p = Math.sqrt(p);
+        }
+        if (q < 0.0) {
+            if (q < -SMALL) {
+                return -1;
+            }
+            q = 0.0;
+        } else {
+            q = Math.sqrt(q);
+        }
+
+        double b1 = a * 0.5 - p;
+        double b2 = a * 0.5 + p;
+        double q1 = U - q;
+        double q2 = U + q;
+        if (Math.abs(b1 * q2 + b2 * q1 - c) >= SMALL) {
+            if (Math.abs(b1 * q1 + b2 * q2 - c) >= SMALL) {
+                return -1;
+            }
+            double tmp = q1;
+            q1 = q2;
+            q2 = tmp;
+        }
+
+        int count = quadratic(1.0, b1, q1, imagTol, roots, 0);
+        return count + quadratic(1.0, b2, q2, imagTol, roots, count);
+    }
+
+    /**
+     * Find the real roots of x^4 + a*x^3 + b*x^2 + c*x + d by bracketing them between
+     * the turning points of the polynomial. This is slower than ferrari(), but does not
+     * fail.
+     */
+    private static int isolate(double a, double b, double c, double d, double imagTol, double[] roots) {
+        // the turning points are the roots of the derivative
+        int n = normalizedCubic(0.75 * a, 0.5 * b, 0.25 * c, 0.0, roots);
+        if (n < 1) {
+            return -1;
+        }
+        sort(roots, n);
+        double t0 = roots[0];
+        double t1 = n > 1 ? roots[1] : t0;
+        double t2 = n > 2 ? roots[2] : t0;
+        double bound = 1.0 + Math.max(Math.max(Math.abs(a), Math.abs(b)), Math.max(Math.abs(c), Math.abs(d)));
+
+        // a monic quartic has a minimum at t0 and t2, and a maximum at t1 (if n == 3)
+        int count = 0;
+        double lo = -bound;
+        for (int i = 0; i < n; i++) {
+            double t = i == 0 ? t0 : (i == 1 ? t1 : t2);
+            count = bracket(a, b, c, d, lo, t, roots, count);
+            double value = quarticValue(a, b, c, d, t);
+            double curvature = (12.0 * t + 6.0 * a) * t + 2.0 * b;
+            if (value == 0.0 || (value * curvature > 0.0 && Math.sqrt(2.0 * value / curvature) < imagTol)) {
+                // a double root, or a nearly real pair of complex roots
+                roots[count++] = t;
+                roots[count++] = t;
+            }
+            lo = t;
+        }
+        return bracket(a, b, c, d, lo, bound, roots, count);
+    }
+
+    /**
+     * If the quartic changes sign between lo and hi, find the root there with a
+     * safeguarded Newton iteration
+     */
+    private static int bracket(double a, double b, double c, double d, double lo, double hi,
+            double[] roots, int count) {
+        double flo = quarticValue(a, b, c, d, lo);
+        double fhi = quarticValue(a, b, c, d, hi);
+        if (!(flo * fhi < 0.0)) {
+            return count;
+        }
+        double x = 0.5 * (lo + hi);
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double f = quarticValue(a, b, c, d, x);
+            if (f == 0.0) {
+                break;
+            }
+            if ((f < 0.0) == (flo < 0.0)) {
+                lo = x;
+            } else {
+                hi = x;
+            }
+            double df = ((4.0 * x + 3.0 * a) * x + 2.0 * b) * x + c;
+            double next = x - f / df;
+            if (!(next > lo && next < hi)) {
+                next = 0.5 * (lo + hi);
+            }
+            if (next == x) {
+                break;
+            }
+            x = next;
+        }
+        roots[count] = x;
+        return count + 1;
+    }
+
+    private static double quarticValue(double a, double b, double c, double d, double x) {
+        return (((x + a) * x + b) * x + c) * x + d;
+    }
+
+    /**
+     * Improve a root of x^4 + a*x^3 + b*x^2 + c*x + d with Newton's method, keeping
+     * only steps that reduce the residual
+     */
+    private static double polishQuartic(double a, double b, double c, double d, double x) {
+        double f = quarticValue(a, b, c, d, x);
+        for (int i = 0; i < POLISH_ITERATIONS && f != 0.0; i++) {
+            double df = ((4.0 * x + 3.0 * a) * x + 2.0 * b) * x + c;
+            if (df == 0.0) {
+                break;
+            }
+            double next = x - f / df;
+            double fnext = quarticValue(a, b, c, d, next);
+            if (!(Math.abs(fnext) < Math.abs(f))) {
+                break;
+            }
+            x = next;
+            f = fnext;
+        }
+        return x;
+    }
+
+    /**
+     * Improve a root of x^3 + a*x^2 + b*x + c with Newton's method, keeping only steps
+     * that reduce the residual
+     */
+    private static double polishCubic(double a, double b, double c, double x) {
+        double f = ((x + a) * x + b) * x + c;
+        for (int i = 0; i < POLISH_ITERATIONS && f != 0.0; i++) {
+            double df = (3.0 * x + 2.0 * a) * x + b;
+            if (df == 0.0) {
+                break;
+            }
+            double next = x - f / df;
+            double fnext = ((next + a) * next + b) * next + c;
+            if (!(Math.abs(fnext) < Math.abs(f))) {
+                break;
+            }
+            x = next;
+            f = fnext;
+        }
+        return x;
+    }
+
+    private static void sort(double[] values, int count) {
+        for (int i = 1; i < count; i++) {
+            double v = values[i];
+            int j = i - 1;
+            while (j >= 0 && values[j] > v) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = v;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import org.brlcad.geometry.Arb8;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.BrlcadDb;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
 import org.brlcad.geometry.Segment;
 
 import java.util.List;
@@ -27,7 +28,7 @@ import java.util.Set;
 import org.brlcad.numerics.Constants;
 import org.brlcad.utils.ArrayCopy;
 
-public class PreppedArb8 extends PreppedObject
+public class PreppedArb8 extends PreppedObject implements HitSurface
 {
 	
 	private ArbFace[] aface;
@@ -281,12 +282,13 @@ public class PreppedArb8 extends PreppedObject
 		int inSurfNum = -1;
 		int outSurfNum = -1;
 		boolean done = false;
+		double[] faceDn = this.getDirectionTerms( ray, rayData );
 		
 		for( int j=0 ; j<this.aface.length ; j++ )
 		{
 			ArbFace af = this.aface[j];
 			double dxbdn = af.plane.distToPlane(ray.getStart());
-			double dn = -(af.plane.getNormal().dotProduct(ray.getDirection()));
+			double dn = faceDn != null ? faceDn[j] : -(af.plane.getNormal().dotProduct(ray.getDirection()));
 			double s = dxbdn / dn;
 
 			if( s == Double.POSITIVE_INFINITY || s == Double.NEGATIVE_INFINITY )
@@ -336,12 +338,8 @@ public class PreppedArb8 extends PreppedObject
 		{
 			if( indist < outdist && outdist < Double.POSITIVE_INFINITY )
 			{
-				Point inPoint = new Point( ray.getStart() );
-				inPoint.join( indist, ray.getDirection() );
-				Hit inhit = new Hit( indist, inPoint, inPlane.getNormal(), inSurfNum, rayData, this.name );
-				Point outPoint = new Point( ray.getStart() );
-				outPoint.join( outdist, ray.getDirection() );
-				Hit outhit = new Hit( outdist, outPoint, outPlane.getNormal(), outSurfNum, rayData, this.name );
+				Hit inhit = new Hit( indist, ray, this, inSurfNum, rayData, this.name );
+				Hit outhit = new Hit( outdist, ray, this, outSurfNum, rayData, this.name );
 				Segment seg = new Segment( inhit, outhit );
 				segs.add( seg );
 			}
@@ -350,6 +348,63 @@ public class PreppedArb8 extends PreppedObject
 		return segs;
 	}
 	
+	/**
+	 * Compute the normal at a Hit (the normal of the face it is on)
+	 *
+	 * @param    hit                 a  Hit
+	 * @param    ray                 a  Ray
+	 *
+	 * @return   a  Vector3
+	 */
+	public Vector3 computeNormal( Hit hit, Ray ray )
+	{
+		return this.aface[hit.getHit_surfno()].plane.getNormal();
+	}
+	
+	/**
+	 * Get -(N . D) for each face, when the ray belongs to a batch of parallel rays
+	 *
+	 * @param    ray                 a  Ray
+	 * @param    rayData             a  RayData
+	 *
+	 * @return   the values for each face, or null if the ray is shot on its own
+	 */
+	private double[] getDirectionTerms( Ray ray, RayData rayData )
+	{
+		if( rayData == null || rayData.getViewCache() == null )
+		{
+			return null;
+		}
+		double[] faceDn = (double[]) this.getViewTerms( rayData );
+		if( faceDn == null )
+		{
+			faceDn = new double[this.aface.length];
+			for( int j=0 ; j<this.aface.length ; j++ )
+			{
+				faceDn[j] = -(this.aface[j].plane.getNormal().dotProduct(ray.getDirection()));
+			}
+			this.putViewTerms( rayData, faceDn );
+		}
+		return faceDn;
+	}
+	
+	/**
+	 * @return	The number of faces of this Arb8
+	 */
+	int getFaceCount()
+	{
+		return this.aface.length;
+	}
+	
+	/**
+	 * @param face	The index of a face (the surface number of hits on that face)
+	 * @return	The outward unit normal of the face
+	 */
+	Vector3 getFaceNormal( int face )
+	{
+		return this.aface[face].plane.getNormal();
+	}
+	
 	/**
 	 * Method makeSegs
 	 *
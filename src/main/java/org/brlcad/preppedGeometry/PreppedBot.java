@@ -7,6 +7,7 @@ package org.brlcad.preppedGeometry;
 
 import org.brlcad.spacePartition.RayData;
 import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.Bot;
 import org.brlcad.geometry.Hit;
@@ -19,8 +20,6 @@ import org.brlcad.numerics.BoundingBox;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Iterator;
-import org.brlcad.numerics.Vector3;
-import org.brlcad.numerics.Point;
 
 public class PreppedBot extends PreppedObject
 {
@@ -82,13 +81,37 @@ public class PreppedBot extends PreppedObject
 	{
 		Set<Hit> hits = new TreeSet<Hit>();
 		
-		// intersect with each triangle of the Bot
-		for( PreppedTriangle tri : this.triangles )
+		if( rayData != null && rayData.getViewCache() != null )
 		{
-			Hit hit = tri.shoot( ray, rayData );
-			if( hit != null )
+			// part of a batch of parallel rays, reuse the direction dependent values
+			double[] terms = (double[]) this.getViewTerms( rayData );
+			if( terms == null )
+			{
+				terms = PreppedTriangle.computeViewTerms( this.triangles, ray.getDirection() );
+				this.putViewTerms( rayData, terms );
+			}
+			Vector3 sxd = ray.getStart().toVector().crossProduct( ray.getDirection() );
+			int offset = 0;
+			for( PreppedTriangle tri : this.triangles )
 			{
-				hits.add( hit );
+				Hit hit = tri.shootInView( ray, rayData, terms, offset, sxd );
+				if( hit != null )
+				{
+					hits.add( hit );
+				}
+				offset += PreppedTriangle.VIEW_TERMS;
+			}
+		}
+		else
+		{
+			// intersect with each triangle of the Bot
+			for( PreppedTriangle tri : this.triangles )
+			{
+				Hit hit = tri.shoot( ray, rayData );
+				if( hit != null )
+				{
+					hits.add( hit );
+				}
 			}
 		}
 		
@@ -130,23 +153,19 @@ public class PreppedBot extends PreppedObject
 			{
 				Hit inHit;
 				Hit outHit;
-				if( hit.getHit_normal().dotProduct( ray.getDirection() ) > 0.0 )
+				if( hit.getDirDotNormal() > 0.0 )
 				{
 					// create a new in Hit wih the opposite normal
 					outHit = hit;
-					Vector3 inNorm = new Vector3( outHit.getHit_normal() );
-					inNorm.negate();
-					inHit = new Hit( outHit.getHit_dist(), outHit.getHit_pt(), inNorm,
-									outHit.getHit_surfno(), rayData, this.name );
+					inHit = new Hit( outHit );
+					inHit.reverseNormal();
 				}
 				else
 				{
 					// create a new out Hit with the opposite normal
 					inHit = hit;
-					Vector3 outNorm = new Vector3( inHit.getHit_normal() );
-					outNorm.negate();
-					outHit = new Hit( inHit.getHit_dist(), inHit.getHit_pt(), outNorm,
-									 inHit.getHit_surfno(), rayData, this.name );
+					outHit = new Hit( inHit );
+					outHit.reverseNormal();
 				}
 				segs.add( new Segment( inHit, outHit ));
 			}
@@ -171,20 +190,17 @@ public class PreppedBot extends PreppedObject
 				}
 
 				// get the in Hit normal pointed in the correct direction
-				if( hit.getHit_normal().dotProduct( ray.getDirection() ) > 0.0 )
+				if( hit.getDirDotNormal() > 0.0 )
 				{
-					hit.getHit_normal().negate();
+					hit.reverseNormal();
 				}
 					
 				if( this.theBot.isFaceThicknessAppendedtoHit( hit.getHit_surfno() ) )
 				{
 					// create an out Hit at a distnce (los) further along the ray
-					Vector3 outNorm = new Vector3( hit.getHit_normal() );
-					outNorm.negate();
-					double outDist = hit.getHit_dist() + los;
-					Point hitPoint = new Point( ray.getStart() );
-					hitPoint.join( outDist, ray.getDirection() );
-					Hit outHit = new Hit( outDist, hitPoint, outNorm, hit.getHit_surfno(), rayData, this.name );
+					Hit outHit = new Hit( hit );
+					outHit.reverseNormal();
+					outHit.setHit_dist( hit.getHit_dist() + los );
 					
 					Segment seg = new Segment( hit, outHit );
 					segs.add( seg );
@@ -193,15 +209,11 @@ public class PreppedBot extends PreppedObject
 				{
 					// move the in Hit a distance (los/2) back along the ray
 					hit.setHit_dist( hit.getHit_dist() - los / 2.0 );
-					hit.getHit_pt().join( los/2.0, ray.getDirection() );
 					
 					// create another Hit (los/2) forward along the ray
-					double outDist = hit.getHit_dist() + los;
-					Point outPoint = new Point( ray.getStart() );
-					outPoint.join( outDist, ray.getDirection() );
-					Vector3 outNorm = new Vector3( hit.getHit_normal() );
-					outNorm.negate();
-					Hit outHit = new Hit( outDist, outPoint, outNorm, hit.getHit_surfno(), rayData, this.name );
+					Hit outHit = new Hit( hit );
+					outHit.reverseNormal();
+					outHit.setHit_dist( hit.getHit_dist() + los );
 					
 					Segment seg = new Segment( hit, outHit );
 					segs.add( seg );
@@ -222,13 +234,13 @@ public class PreppedBot extends PreppedObject
 				if( iter.hasNext() )
 				{
 					second = iter.next();
-					if( first.getHit_normal().dotProduct(ray.getDirection()) > 0.0 )
+					if( first.getDirDotNormal() > 0.0 )
 					{
-						first.getHit_normal().negate();
+						first.reverseNormal();
 					}
-					if( second.getHit_normal().dotProduct(ray.getDirection()) < 0.0 )
+					if( second.getDirDotNormal() < 0.0 )
 					{
-						second.getHit_normal().negate();
+						second.reverseNormal();
 					}
 					
 					Segment seg = new Segment( first, second );
@@ -258,7 +270,7 @@ public class PreppedBot extends PreppedObject
 				while( iter.hasNext() )
 				{
 					inHit = iter.next();
-					if( inHit.getHit_normal().dotProduct( ray.getDirection() ) < 0.0 )
+					if( inHit.getDirDotNormal() < 0.0 )
 					{
 						// found enter hit
 						break;
@@ -270,7 +282,7 @@ public class PreppedBot extends PreppedObject
 				while( iter.hasNext() )
 				{
 					outHit = iter.next();
-					if( outHit.getHit_normal().dotProduct( ray.getDirection() ) > 0.0 )
+					if( outHit.getDirDotNormal() > 0.0 )
 					{
 						// found exit hit
 						break;
@@ -302,11 +314,11 @@ public class PreppedBot extends PreppedObject
 		
 		if( !iter.hasNext() ) return hits;
 		Hit prev = iter.next();
-		double prevDn = prev.getHit_normal().dotProduct( ray.getDirection() );
+		double prevDn = prev.getDirDotNormal();
 		while( iter.hasNext() )
 		{
 			Hit curr = iter.next();
-			double currDn = curr.getHit_normal().dotProduct( ray.getDirection() );
+			double currDn = curr.getDirDotNormal();
 			if( (curr.getHit_dist() - prev.getHit_dist()) < rayData.getTolerance().getDist() )
 			{
 				// prev and curr are at the same hit distance
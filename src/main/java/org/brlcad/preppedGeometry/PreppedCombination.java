@@ -13,6 +13,7 @@ import java.util.SortedSet;
 
 import org.brlcad.geometry.BrlcadDb;
 import org.brlcad.geometry.Combination;
+import org.brlcad.geometry.CompiledTree;
 import org.brlcad.geometry.Hit;
 import org.brlcad.geometry.Partition;
 import org.brlcad.geometry.Segment;
@@ -24,8 +25,12 @@ import org.brlcad.spacePartition.RayData;
 public class PreppedCombination extends PreppedObject
 {
     private Tree tree;
+    private transient CompiledTree program;
     private boolean isRegion;
     private int regionID;
+    private int airCode;
+    private int materialID;
+    private int los = 100;
     private Material material;
 	
     public PreppedCombination(Combination comb)
@@ -40,6 +45,18 @@ public class PreppedCombination extends PreppedObject
         } else {
             this.regionID = Integer.MIN_VALUE;
         }
+        String airCodeStr = comb.getAttribute("aircode");
+        if (this.isRegion && airCodeStr != null) {
+            this.airCode = Integer.parseInt(airCodeStr);
+        }
+        String materialIdStr = comb.getAttribute("material_id");
+        if (this.isRegion && materialIdStr != null) {
+            this.materialID = Integer.parseInt(materialIdStr);
+        }
+        String losStr = comb.getAttribute("los");
+        if (this.isRegion && losStr != null) {
+            this.los = Integer.parseInt(losStr);
+        }
         this.material = comb.getMaterial();
     }
 
@@ -49,6 +66,49 @@ public class PreppedCombination extends PreppedObject
     public int getID() {
         return this.regionID;
     }
+
+    /**
+     * @return the aircode of this region (0 if none)
+     */
+    public int getAirCode() {
+        return this.airCode;
+    }
+
+    /**
+     * @return the material id of this region (0 if none)
+     */
+    public int getMaterialID() {
+        return this.materialID;
+    }
+
+    /**
+     * @return the line of sight thickness percentage of this region (100 if none)
+     */
+    public int getLos() {
+        return this.los;
+    }
+
+    /**
+     * Compile the tree of this combination for evaluation. Must be called after
+     * the tree has been prepped.
+     */
+    public void compile() {
+        this.program = new CompiledTree(this.tree);
+    }
+
+    /**
+     * @return the tree of this combination
+     */
+    public Tree getTree() {
+        return this.tree;
+    }
+
+    /**
+     * @return the compiled tree of this combination (null if not compiled)
+     */
+    public CompiledTree getProgram() {
+        return this.program;
+    }
 	
 	/**
 	 * Intersect this object with the specified Ray
@@ -72,7 +132,11 @@ public class PreppedCombination extends PreppedObject
 		{
             parts = rayData.getPartitions(reg);
             if( parts == null ) {
-                parts = this.tree.evaluate(reg, rayData);
+                if( reg == this && this.program != null ) {
+                    parts = this.program.evaluate(reg, rayData);
+                } else {
+                    parts = this.tree.evaluate(reg, rayData);
+                }
                 rayData.addPartitions(reg, parts);
             }
 		}
@@ -80,7 +144,11 @@ public class PreppedCombination extends PreppedObject
 		{
             parts = rayData.getPartitions(this);
             if( parts == null ) {
-                parts = this.tree.evaluate(this, rayData);
+                if( this.program != null ) {
+                    parts = this.program.evaluate(this, rayData);
+                } else {
+                    parts = this.tree.evaluate(this, rayData);
+                }
                 rayData.addPartitions(this, parts);
             }
 		}
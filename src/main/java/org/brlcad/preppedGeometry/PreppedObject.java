@@ -15,6 +15,7 @@ import java.util.Set;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.BoundingBox;
 import org.brlcad.spacePartition.RayData;
+import org.brlcad.spacePartition.ViewCache;
 import java.util.HashSet;
 
 public abstract class PreppedObject implements Serializable
@@ -37,6 +38,9 @@ public abstract class PreppedObject implements Serializable
 	/** index into PreppedDb's bit vector for this PreppedObject */
 	protected int index;
 	
+	/** true if this object may be intersected on demand during region evaluation */
+	protected boolean deferred;
+	
 	protected PreppedObject( String name )
 	{
 		this.name = name;
@@ -149,6 +153,24 @@ public abstract class PreppedObject implements Serializable
 		return new BoundingBox( boundingBox );
 	}
 	
+	/**
+	 * Mark this object as one that is only needed when evaluating the right hand
+	 * operand of a subtraction or intersection
+	 * @param deferred	true if this object may be intersected on demand
+	 */
+	public void setDeferred( boolean deferred )
+	{
+		this.deferred = deferred;
+	}
+	
+	/**
+	 * @return	true if this object may be intersected on demand during region evaluation
+	 */
+	public boolean isDeferred()
+	{
+		return this.deferred;
+	}
+	
 	/**
 	 * Add a PreppedCombination to the list of regions that contain this object
 	 * @param region	The region to be added
@@ -175,6 +197,36 @@ public abstract class PreppedObject implements Serializable
 	 *
 	 */
 	public abstract List<Segment> shoot( Ray ray, RayData rayData );
+	
+	/**
+	 * Get the direction dependent values this object stored for the batch of parallel rays
+	 * that a ray belongs to
+	 *
+	 * @param    rayData             the RayData of the ray
+	 *
+	 * @return   the values, or null if the ray is not part of a batch or none are stored yet
+	 */
+	protected Object getViewTerms( RayData rayData )
+	{
+		ViewCache view = rayData == null ? null : rayData.getViewCache();
+		return view == null ? null : view.get( this.index );
+	}
+	
+	/**
+	 * Store direction dependent values for the rest of the batch of parallel rays
+	 * that a ray belongs to (does nothing if the ray is not part of a batch)
+	 *
+	 * @param    rayData             the RayData of the ray
+	 * @param    terms               the values, which must not be changed afterwards
+	 */
+	protected void putViewTerms( RayData rayData, Object terms )
+	{
+		ViewCache view = rayData == null ? null : rayData.getViewCache();
+		if( view != null )
+		{
+			view.put( this.index, terms );
+		}
+	}
 
 	/**
 	 * Method makeSegs
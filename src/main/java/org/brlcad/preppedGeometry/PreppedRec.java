@@ -13,6 +13,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
 import org.brlcad.geometry.Segment;
 import org.brlcad.geometry.Tgc;
 import org.brlcad.numerics.BoundingBox;
@@ -27,7 +28,7 @@ import org.brlcad.spacePartition.RayData;
  *
  * @author jra
  */
-public class PreppedRec extends PreppedObject {
+public class PreppedRec extends PreppedObject implements HitSurface {
     
     private Point	rec_V;		/* center of base of cylinder  */
     private Vector3	rec_A;		/* One axis of ellipse */
@@ -204,10 +205,7 @@ public class PreppedRec extends PreppedObject {
         if( !Double.isInfinite(k1) && !Double.isNaN(k1) ) {
             Vector3 vpriv = Vector3.plus(pprime, Vector3.scale(dprime, k1));
             if (vpriv.getX() * vpriv.getX() + vpriv.getY() * vpriv.getY() <= 1.0) {
-                Point hitPoint = new Point(ray.getStart());
-                hitPoint.translate(Vector3.scale(ray.getDirection(), k1));
-                Vector3 norm = Vector3.negate(rec_Hunit);
-                Hit hit = new Hit(k1, hitPoint, norm, Tgc.BOTTOM, rayData, this.name);
+                Hit hit = new Hit(k1, ray, this, Tgc.BOTTOM, rayData, this.name);
                 hits.add(hit);
             }
         }
@@ -215,15 +213,37 @@ public class PreppedRec extends PreppedObject {
         if( !Double.isInfinite(k2) && !Double.isNaN(k2) ) {
             Vector3 vpriv = Vector3.plus(pprime, Vector3.scale(dprime, k2));
             if (vpriv.getX() * vpriv.getX() + vpriv.getY() * vpriv.getY() <= 1.0) {
-                Point hitPoint = new Point(ray.getStart());
-                hitPoint.translate(Vector3.scale(ray.getDirection(), k2));
-                Vector3 norm = new Vector3(rec_Hunit);
-                Hit hit = new Hit(k2, hitPoint, norm, Tgc.TOP, rayData, this.name);
+                Hit hit = new Hit(k2, ray, this, Tgc.TOP, rayData, this.name);
                 hits.add(hit);
             }
         }
     }
 
+    /**
+     * The values of shoot() that depend only on the ray direction, shared by a batch of
+     * parallel rays
+     */
+    private static final class DirectionTerms {
+        final Vector3 dprime;		/* D' */
+        final double dx2dy2;		/* 1/(D'x**2 + D'y**2) */
+
+        DirectionTerms(Vector3 dprime) {
+            this.dprime = dprime;
+            this.dx2dy2 = 1 / (dprime.getX() * dprime.getX() + dprime.getY() * dprime.getY());
+        }
+    }
+
+    private DirectionTerms getDirectionTerms(Ray ray, RayData rayData) {
+        DirectionTerms terms = (DirectionTerms) this.getViewTerms(rayData);
+        if (terms == null) {
+            Vector3 dprime = new Vector3(ray.getDirection());
+            rec_SoR.mult(dprime);
+            terms = new DirectionTerms(dprime);
+            this.putViewTerms(rayData, terms);
+        }
+        return terms;
+    }
+
     @Override
     public List<Segment> shoot(Ray ray, RayData rayData) {
         Vector3 dprime;		/* D' */
@@ -232,8 +252,8 @@ public class PreppedRec extends PreppedObject {
         Set<Hit> hits = new HashSet<Hit>();
 
         /* out, Mat, vect */
-        dprime = new Vector3(ray.getDirection());
-        rec_SoR.mult(dprime);
+        DirectionTerms terms = getDirectionTerms(ray, rayData);
+        dprime = terms.dprime;
         pprime = Vector3.minus(ray.getStart(), rec_V);
         rec_SoR.mult(pprime);
 
@@ -245,7 +265,7 @@ public class PreppedRec extends PreppedObject {
             double root;		/* root of radical */
             double dx2dy2;
 
-            dx2dy2 =  1 / (dprime.getX() * dprime.getX() + dprime.getY() * dprime.getY());
+            dx2dy2 = terms.dx2dy2;
             b = 2 * (dprime.getX() * pprime.getX() + dprime.getY() * pprime.getY()) * dx2dy2;
             root = b * b - 4 * dx2dy2 *
                     (pprime.getX() * pprime.getX() + pprime.getY() * pprime.getY() - 1);
@@ -266,12 +286,8 @@ public class PreppedRec extends PreppedObject {
         if( !Double.isInfinite(k1) && !Double.isNaN(k1) ) {
             vpriv = Vector3.plus(pprime, Vector3.scale(dprime, k1));
             if (vpriv.getZ() >= 0.0 && vpriv.getZ() <= 1.0) {
-                Point hitPoint = new Point(ray.getStart());
-                hitPoint.translate(Vector3.scale(ray.getDirection(), k1));
-                vpriv.setZ(0.0);
-                rec_invRoS.mult(vpriv);
-                vpriv.normalize();
-                Hit hit = new Hit(k1, hitPoint, vpriv, Tgc.BODY, rayData, this.name);
+                Hit hit = new Hit(k1, ray, this, Tgc.BODY, rayData, this.name);
+                hit.setHit_vpriv(vpriv.getX(), vpriv.getY(), 0.0);
                 hits.add(hit);
             }
         }
@@ -279,12 +295,8 @@ public class PreppedRec extends PreppedObject {
         if( !Double.isInfinite(k2) && !Double.isNaN(k2) ) {
             vpriv = Vector3.plus(pprime, Vector3.scale(dprime, k2));
             if (vpriv.getZ() >= 0.0 && vpriv.getZ() <= 1.0) {
-                Point hitPoint = new Point(ray.getStart());
-                hitPoint.translate(Vector3.scale(ray.getDirection(), k2));
-                vpriv.setZ(0.0);
-                rec_invRoS.mult(vpriv);
-                vpriv.normalize();
-                Hit hit = new Hit(k2, hitPoint, vpriv, Tgc.BODY, rayData, this.name);
+                Hit hit = new Hit(k2, ray, this, Tgc.BODY, rayData, this.name);
+                hit.setHit_vpriv(vpriv.getX(), vpriv.getY(), 0.0);
                 hits.add(hit);
             }
         }
@@ -294,6 +306,24 @@ public class PreppedRec extends PreppedObject {
         return segs;
     }
 
+    /**
+     * Compute the normal at a Hit. Hits on the body carry the hit point in the
+     * coordinates of the unit cylinder.
+     */
+    public Vector3 computeNormal(Hit hit, Ray ray) {
+        switch (hit.getHit_surfno()) {
+            case Tgc.BOTTOM:
+                return Vector3.negate(rec_Hunit);
+            case Tgc.TOP:
+                return new Vector3(rec_Hunit);
+            default:
+                Vector3 norm = new Vector3(hit.getHit_vprivX(), hit.getHit_vprivY(), 0.0);
+                rec_invRoS.mult(norm);
+                norm.normalize();
+                return norm;
+        }
+    }
+
     @Override
     public List<Segment> makeSegs(Set<Hit> hits, Ray ray, RayData rayData) {
         List<Segment> segs = new ArrayList<Segment>();
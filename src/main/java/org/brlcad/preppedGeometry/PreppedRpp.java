@@ -0,0 +1,163 @@
+package org.brlcad.preppedGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.brlcad.geometry.Arb8;
+import org.brlcad.geometry.BadGeometryException;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Segment;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Constants;
+import org.brlcad.numerics.Matrix;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.RayData;
+
+/**
+ * The prepped version of an Arb8 whose faces are all perpendicular to the coordinate axes
+ * (a right parallelepiped, or RPP). Each face is reduced to an axis and a coordinate, so
+ * the ray is intersected with the faces using a slab test instead of general plane
+ * arithmetic. The faces are visited in the same order as in PreppedArb8, so the surface
+ * numbers and normals of the hits are the same.
+ */
+public class PreppedRpp extends PreppedArb8 {
+
+    private final int[] faceAxis;	/* the axis perpendicular to each face */
+    private final double[] faceSign;	/* +1 if the face normal points along its axis, else -1 */
+    private final double[] facePos;	/* the coordinate of each face along its axis */
+
+    public PreppedRpp(Arb8 arb8, Matrix matrix) throws BadGeometryException {
+        super(arb8, matrix);
+
+        int faces = this.getFaceCount();
+        if (faces != 6) {
+            throw new BadGeometryException("Arb8 " + this.name + " is not an RPP");
+        }
+        this.faceAxis = new int[faces];
+        this.faceSign = new double[faces];
+        this.facePos = new double[faces];
+        boolean[] used = new boolean[6];
+        for (int j = 0; j < faces; j++) {
+            Vector3 normal = this.getFaceNormal(j);
+            int axis = -1;
+            for (int i = 0; i < 3; i++) {
+                if (Math.abs(normal.get(i)) > 1.0 - Constants.RT_DOT_TOL) {
+                    axis = i;
+                }
+            }
+            if (axis < 0) {
+                throw new BadGeometryException("Arb8 " + this.name + " is not an RPP");
+            }
+            int side = normal.get(axis) > 0.0 ? 1 : 0;
+            if (used[2 * axis + side]) {
+                throw new BadGeometryException("Arb8 " + this.name + " is not an RPP");
+            }
+            used[2 * axis + side] = true;
+            this.faceAxis[j] = axis;
+            this.faceSign[j] = side == 1 ? 1.0 : -1.0;
+            this.facePos[j] = side == 1 ? this.boundingBox.getMax().get(axis) : this.boundingBox.getMin().get(axis);
+        }
+    }
+
+    /**
+     * Check if an Arb8 is an RPP once the matrix is applied, that is, if each of its
+     * faces lies in a distinct face of its bounding box.
+     *
+     * @param arb8	The Arb8
+     * @param matrix	The transformation matrix to be applied to the Arb8
+     * @return	true if a PreppedRpp may be used for this Arb8
+     */
+    public static boolean isRpp(Arb8 arb8, Matrix matrix) {
+        Point[] vertices = new Point[8];
+        BoundingBox bb = new BoundingBox();
+        for (int i = 0; i < 8; i++) {
+            vertices[i] = new Point(arb8.getVertex(i));
+            matrix.mult(vertices[i]);
+            bb.extend(vertices[i]);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            if (bb.getMax().get(axis) - bb.getMin().get(axis) < Constants.RT_LEN_TOL) {
+                return false;
+            }
+        }
+
+        boolean[] used = new boolean[6];
+        for (ArbInfo info : arbInfo) {
+            int[] fv = info.getFaceVertices();
+            int found = -1;
+            for (int axis = 0; axis < 3 && found < 0; axis++) {
+                for (int side = 0; side < 2 && found < 0; side++) {
+                    double pos = side == 1 ? bb.getMax().get(axis) : bb.getMin().get(axis);
+                    boolean inFace = true;
+                    for (int v = 0; v < 4; v++) {
+                        if (Math.abs(vertices[fv[v]].get(axis) - pos) > Constants.RT_LEN_TOL) {
+                            inFace = false;
+                            break;
+                        }
+                    }
+                    if (inFace) {
+                        found = 2 * axis + side;
+                    }
+                }
+            }
+            if (found < 0 || used[found]) {
+                return false;
+            }
+            used[found] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Intersect this object with the specified Ray. This is the loop in PreppedArb8.shoot(),
+     * with the plane distances and dot products reduced to one coordinate.
+     */
+    @Override
+    public List<Segment> shoot(Ray ray, RayData rayData) {
+        List<Segment> segs = new ArrayList<Segment>();
+        Point start = ray.getStart();
+        Vector3 dir = ray.getDirection();
+        double indist = Double.NEGATIVE_INFINITY;
+        double outdist = Double.POSITIVE_INFINITY;
+        int inSurfNum = -1;
+        int outSurfNum = -1;
+        for (int j = 0; j < this.faceAxis.length; j++) {
+            int axis = this.faceAxis[j];
+            double sign = this.faceSign[j];
+            double dxbdn = sign * (start.get(axis) - this.facePos[j]);
+            double dn = -sign * dir.get(axis);
+            double s = dxbdn / dn;
+            if (s == Double.POSITIVE_INFINITY || s == Double.NEGATIVE_INFINITY) {
+                // ray is parallel to face, if it is outside this face, we missed
+                if (dxbdn > Double.MIN_VALUE) {
+                    return segs;
+                }
+            } else {
+                if (dn < -Constants.SQRT_SMALL_FASTF) {
+                    if (outdist > s) {
+                        outdist = s;
+                        outSurfNum = j;
+                    }
+                } else if (dn > Constants.SQRT_SMALL_FASTF) {
+                    if (indist < s) {
+                        indist = s;
+                        inSurfNum = j;
+                    }
+                } else if (dxbdn > Constants.SQRT_SMALL_FASTF) {
+                    // nearly parallel and outside
+                    return segs;
+                }
+                if (indist > outdist) {
+                    return segs;
+                }
+            }
+        }
+        if (inSurfNum >= 0 && outSurfNum >= 0 && indist < outdist && outdist < Double.POSITIVE_INFINITY) {
+            Hit inhit = new Hit(indist, ray, this, inSurfNum, rayData, this.name);
+            Hit outhit = new Hit(outdist, ray, this, outSurfNum, rayData, this.name);
+            segs.add(new Segment(inhit, outhit));
+        }
+        return segs;
+    }
+}
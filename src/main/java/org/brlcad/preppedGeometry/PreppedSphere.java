@@ -0,0 +1,97 @@
+package org.brlcad.preppedGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.brlcad.geometry.Ellipsoid;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
+import org.brlcad.geometry.Segment;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.RayData;
+
+/**
+ * The prepped version of an ellipsoid whose three semi-axes have the same length.
+ * The ray is intersected with the sphere directly in model space, so no matrices are
+ * involved in either the intersection or the normal.
+ */
+public class PreppedSphere extends PreppedObject implements HitSurface {
+
+    private final double rSquared;
+
+    /**
+     * Constructor
+     *
+     * @param ell	The ellipsoid primitive
+     * @param center	The center of the sphere (with the transformation matrix already applied)
+     * @param rSquared	The square of the radius of the sphere
+     */
+    public PreppedSphere(Ellipsoid ell, Point center, double rSquared) {
+        super(ell.getName());
+        this.center = center;
+        this.rSquared = rSquared;
+        double radius = Math.sqrt(rSquared);
+        Point max = new Point(center.getX() + radius,
+                center.getY() + radius,
+                center.getZ() + radius);
+        Point min = new Point(center.getX() - radius,
+                center.getY() - radius,
+                center.getZ() - radius);
+        this.boundingRadius = radius;
+        this.boundingBox = new BoundingBox(min, max);
+    }
+
+    @Override
+    public List<Segment> shoot(Ray ray, RayData rayData) {
+        List<Segment> segments = new ArrayList<Segment>();
+        Point start = ray.getStart();
+        Vector3 dir = ray.getDirection();
+
+        // vector from the ray origin to the center
+        double ox = this.center.getX() - start.getX();
+        double oy = this.center.getY() - start.getY();
+        double oz = this.center.getZ() - start.getZ();
+        double magsq_OTV = ox * ox + oy * oy + oz * oz;
+        double dot = ox * dir.getX() + oy * dir.getY() + oz * dir.getZ();
+        double root;
+        if (magsq_OTV >= this.rSquared) {
+            // ray origin is outside of sphere
+            if (dot < 0.0) {
+                // ray direction is away from sphere
+                return segments;
+            }
+            root = dot * dot - magsq_OTV + this.rSquared;
+            if (root <= 0) {
+                // no real roots
+                return segments;
+            }
+        } else {
+            root = dot * dot - magsq_OTV + this.rSquared;
+        }
+        root = Math.sqrt(root);
+
+        Hit hit1 = new Hit(dot - root, ray, this, 1, rayData, this.name);
+        Hit hit2 = new Hit(dot + root, ray, this, 1, rayData, this.name);
+        segments.add(new Segment(hit1, hit2));
+
+        return segments;
+    }
+
+    /**
+     * Compute the normal at a Hit
+     */
+    public Vector3 computeNormal(Hit hit, Ray ray) {
+        Vector3 norm = Vector3.minus(hit.getHit_pt(), this.center);
+        norm.normalize();
+        return norm;
+    }
+
+    @Override
+    public List<Segment> makeSegs(Set<Hit> hits, Ray ray, RayData rayData) {
+        // this should never get called
+        return null;
+    }
+}
@@ -14,23 +14,23 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
 import org.brlcad.geometry.Segment;
 import org.brlcad.geometry.Tgc;
 import org.brlcad.numerics.BoundingBox;
-import org.brlcad.numerics.Complex;
 import org.brlcad.numerics.Matrix;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Vector3;
 import org.brlcad.numerics.Constants;
-import org.brlcad.numerics.Polynomial;
+import org.brlcad.numerics.RealRootSolver;
 import org.brlcad.spacePartition.RayData;
 
 /**
  *
  * @author jra
  */
-public class PreppedTgc extends PreppedObject {
+public class PreppedTgc extends PreppedObject implements HitSurface {
     private static final double VLARGE = 1000000.0;
     private Point   tgc_V;		/*  center of base of TGC	*/
     private double	tgc_sH;		/*  magnitude of sheared H vector	*/
@@ -267,14 +267,81 @@ public class PreppedTgc extends PreppedObject {
         }
     }
 
+    /**
+     * The values of shoot() that depend only on the ray direction, shared by a batch of
+     * parallel rays
+     */
+    private static final class DirectionTerms {
+        Vector3 unit;		/* unit D' (used to correct the ray origin) */
+        Vector3 dprime;		/* unit D' with tiny components set to zero */
+        double t_scale;		/* restores model space distances */
+        double X0, Y0, R0, RR0, Q0, QQ0;	/* constant terms of the polynomials in 'k' */
+        double dir;		/* N . D */
+    }
+
+    /**
+     * Get the values of shoot() that depend only on the ray direction
+     *
+     * @return	The values, or null if the ray direction is degenerate in unit tgc space
+     */
+    private DirectionTerms getDirectionTerms(Ray ray, RayData rayData) {
+        Object cached = this.getViewTerms(rayData);
+        if (cached != null) {
+            return cached instanceof DirectionTerms ? (DirectionTerms) cached : null;
+        }
+
+        Vector3 dprime = new Vector3(ray.getDirection());
+        tgc_ScShR.mult(dprime);
+
+        /*
+         *  A vector of unit length in model space (r_dir) changes length in
+         *  the special unit-tgc space.  This scale factor will restore
+         *  proper length after hit points are found.
+         */
+        double t_scale = dprime.magnitude();
+        if (t_scale < Constants.SMALL_FASTF) {
+            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE,
+                    "tgc(" + this.name + ") dprime=" + dprime + ", t_scale=" + t_scale + ", miss.\n");
+            this.putViewTerms(rayData, Boolean.FALSE);
+            return null;
+        }
+        DirectionTerms terms = new DirectionTerms();
+        terms.t_scale = 1 / t_scale;
+        dprime.scale(terms.t_scale);	/* VUNITIZE( dprime ); */
+
+        if (Math.abs(dprime.getZ()) < Constants.RT_PCOEF_TOL) {
+            dprime.setZ(0.0);	/* prevent rootfinder heartburn */
+        }
+        terms.unit = new Vector3(dprime);
+
+        /* Direction cosines (see the comment in shoot()) */
+        for (int i = 0; i < 3; i++) {
+            if (Math.abs(dprime.get(i)) < 1e-10) {
+                dprime.set(i, 0.0);
+            }
+        }
+        terms.dprime = dprime;
+
+        terms.X0 = dprime.getX() * dprime.getX();
+        terms.Y0 = dprime.getY() * dprime.getY();
+        terms.R0 = dprime.getZ() * tgc_CdAm1;
+        terms.RR0 = terms.R0 * terms.R0;
+        terms.Q0 = dprime.getZ() * tgc_DdBm1;
+        terms.QQ0 = terms.Q0 * terms.Q0;
+        terms.dir = tgc_N.dotProduct(ray.getDirection());
+
+        this.putViewTerms(rayData, terms);
+        return terms;
+    }
+
     @Override
     public List<Segment> shoot(Ray ray, RayData rayData) {
         Set<Hit> hits = new HashSet<Hit>();
         Vector3 pprime;
         Vector3 dprime;
         Vector3 work;
-        double[] k = new double[6];
-        int[] hit_type = new int[6];
+        double[] k = rayData != null ? rayData.getRoots() : new double[6];
+        int[] hit_type = rayData != null ? rayData.getHitTypes() : new int[6];
         int npts = 0;
         double t, b, zval, dir;
         double t_scale;
@@ -283,32 +350,14 @@ public class PreppedTgc extends PreppedObject {
         Vector3 cor_pprime;	/* corrected P prime */
         double cor_proj = 0;	/* corrected projected dist */
         int i;
-        Polynomial C;	/*  final equation	*/
-        Polynomial Xsqr, Ysqr;
-        Polynomial R, Rsqr;
-        Vector3 vpriv;
 
         /* find rotated point and direction */
-        dprime = new Vector3(ray.getDirection());
-        tgc_ScShR.mult(dprime);
-
-        /*
-         *  A vector of unit length in model space (r_dir) changes length in
-         *  the special unit-tgc space.  This scale factor will restore
-         *  proper length after hit points are found.
-         */
-        t_scale = dprime.magnitude();
-        if (t_scale < Constants.SMALL_FASTF) {
-            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE,
-                    "tgc(" + this.name + ") dprime=" + dprime + ", t_scale=" + t_scale + ", miss.\n");
+        DirectionTerms terms = getDirectionTerms(ray, rayData);
+        if (terms == null) {
             return new ArrayList<Segment>();
         }
-        t_scale = 1 / t_scale;
-        dprime.scale(t_scale);	/* VUNITIZE( dprime ); */
-
-        if (Math.abs(dprime.getZ()) < Constants.RT_PCOEF_TOL) {
-            dprime.setZ(0.0);	/* prevent rootfinder heartburn */
-        }
+        dprime = terms.dprime;
+        t_scale = terms.t_scale;
 
         pprime = Vector3.minus(ray.getStart(), tgc_V);
         tgc_ScShR.mult(pprime);
@@ -317,9 +366,9 @@ public class PreppedTgc extends PreppedObject {
          * pt. to origin of solids coordinate system, new ray origin
          * is 'cor_pprime'.
          */
-        cor_proj = -pprime.dotProduct(dprime);
+        cor_proj = -pprime.dotProduct(terms.unit);
         cor_pprime = new Vector3(pprime);
-        cor_pprime.join(cor_proj, dprime);
+        cor_pprime.join(cor_proj, terms.unit);
 
         /*
          * The TGC is defined in "unit" space, so the parametric distance
@@ -331,10 +380,7 @@ public class PreppedTgc extends PreppedObject {
          * squared (below) they will cause difficulties.
          */
         for (i = 0; i < 3; i++) {
-            /* Direction cosines */
-            if (Math.abs(dprime.get(i)) < 1e-10) {
-                dprime.set(i, 0.0);
-            }
+            /* Direction cosines were done in getDirectionTerms() */
             /* Position in -1..+1 coordinates */
             if (Math.abs(cor_pprime.get(i)) < 1e-20) {
                 cor_pprime.set(i, 0.0);
@@ -363,28 +409,23 @@ public class PreppedTgc extends PreppedObject {
          *  in 'k', eg, (dprime[X] * k) + cor_pprime[X], and
          *  substitute into the cone equation.
          */
-        double[] cf = new double[5];
-        cf[0] = dprime.getX() * dprime.getX();
-        cf[1] = 2.0 * dprime.getX() * cor_pprime.getX();
-        cf[2] = cor_pprime.getX() * cor_pprime.getX();
-        Xsqr = new Polynomial(2, cf);
-
-        cf[0] = dprime.getY() * dprime.getY();
-        cf[1] = 2.0 * dprime.getY() * cor_pprime.getY();
-        cf[2] = cor_pprime.getY() * cor_pprime.getY();
-        Ysqr = new Polynomial(2, cf);
-
-        cf[0] = dprime.getZ() * tgc_CdAm1;
+        /* X**2, Y**2, R and R**2 as polynomials in 'k' */
+        double X0 = terms.X0;
+        double X1 = 2.0 * dprime.getX() * cor_pprime.getX();
+        double X2 = cor_pprime.getX() * cor_pprime.getX();
+
+        double Y0 = terms.Y0;
+        double Y1 = 2.0 * dprime.getY() * cor_pprime.getY();
+        double Y2 = cor_pprime.getY() * cor_pprime.getY();
+
+        double R0 = terms.R0;
         /* A vector is unitized (tgc->tgc_A == 1.0) */
-        cf[1] = (cor_pprime.getZ() * tgc_CdAm1) + 1.0;
-        R = new Polynomial(1, cf);
+        double R1 = (cor_pprime.getZ() * tgc_CdAm1) + 1.0;
 
         /* (void) rt_poly_mul(&Rsqr, &R, &R); */
-        double[] cfsq = new double[3];
-        cfsq[0] = cf[0] * cf[0];
-        cfsq[1] = cf[0] * cf[1] * 2;
-        cfsq[2] = cf[1] * cf[1];
-        Rsqr = new Polynomial(2, cfsq);
+        double RR0 = terms.RR0;
+        double RR1 = R0 * R1 * 2;
+        double RR2 = R1 * R1;
 
         /*
          *  If the eccentricities of the two ellipses are the same,
@@ -393,44 +434,39 @@ public class PreppedTgc extends PreppedObject {
          *
          *  this can only be done when C.cf[0] is not too small!!!! (JRA)
          */
-        cf[0] = Xsqr.getCoeff(0) + Ysqr.getCoeff(0) - Rsqr.getCoeff(0);
-        if (tgc_AD_CB && !(Math.abs(cf[0]) < 1.0e-10)) {
+        double C0 = X0 + Y0 - RR0;
+        if (tgc_AD_CB && !(Math.abs(C0) < 1.0e-10)) {
             double roots;
 
             /*
              *  (void) bn_poly_add( &sum, &Xsqr, &Ysqr );
              *  (void) bn_poly_sub( &C, &sum, &Rsqr );
              */
-            cf[1] = Xsqr.getCoeff(1) + Ysqr.getCoeff(1) - Rsqr.getCoeff(1);
-            cf[2] = Xsqr.getCoeff(2) + Ysqr.getCoeff(2) - Rsqr.getCoeff(2);
-            C = new Polynomial(2, cf);
+            double C1 = X1 + Y1 - RR1;
+            double C2 = X2 + Y2 - RR2;
 
             /* Find the real roots the easy way.  C.dgr==2 */
-            if ((roots = C.getCoeff(1) * C.getCoeff(1) - 4 * C.getCoeff(0) * C.getCoeff(2)) >= 0) {
-                double f = 0.5 / C.getCoeff(0);
+            if ((roots = C1 * C1 - 4 * C0 * C2) >= 0) {
+                double f = 0.5 / C0;
                 roots = Math.sqrt(roots);
-                k[0] = (roots - C.getCoeff(1)) * f;
+                k[0] = (roots - C1) * f;
                 hit_type[0] = Tgc.BODY;
 
-                k[1] = (roots + C.getCoeff(1)) * -f;
+                k[1] = (roots + C1) * -f;
                 hit_type[1] = Tgc.BODY;
                 npts = 2;
             }
         } else {
-            Polynomial Q, Qsqr;
-            Complex[] val;	/* roots of final equation */
-            int l;
+            double[] cf = rayData != null ? rayData.getCoefficients() : new double[5];
 
-            cf[0] = dprime.getZ() * tgc_DdBm1;
+            double Q0 = terms.Q0;
             /* B vector is unitized (tgc->tgc_B == 1.0) */
-            cf[1] = (cor_pprime.getZ() * tgc_DdBm1) + 1.0;
-            Q = new Polynomial(1, cf);
+            double Q1 = (cor_pprime.getZ() * tgc_DdBm1) + 1.0;
 
             /* (void) bn_poly_mul( &Qsqr, &Q, &Q ); */
-            cf[0] = Q.getCoeff(0) * Q.getCoeff(0);
-            cf[1] = Q.getCoeff(0) * Q.getCoeff(1) * 2;
-            cf[2] = Q.getCoeff(1) * Q.getCoeff(1);
-            Qsqr = new Polynomial(2, cf);
+            double QQ0 = terms.QQ0;
+            double QQ1 = Q0 * Q1 * 2;
+            double QQ2 = Q1 * Q1;
 
             /*
              * (void) bn_poly_mul( &T1, &Qsqr, &Xsqr );
@@ -439,68 +475,46 @@ public class PreppedTgc extends PreppedObject {
              * (void) bn_poly_add( &sum, &T1, &T2 );
              * (void) bn_poly_sub( &C, &sum, &T3 );
              */
-            cf[0] = Qsqr.getCoeff(0) * Xsqr.getCoeff(0) +
-                    Rsqr.getCoeff(0) * Ysqr.getCoeff(0) -
-                    (Rsqr.getCoeff(0) * Qsqr.getCoeff(0));
-            cf[1] = Qsqr.getCoeff(0) * Xsqr.getCoeff(1) + Qsqr.getCoeff(1) * Xsqr.getCoeff(0) +
-                    Rsqr.getCoeff(0) * Ysqr.getCoeff(1) + Rsqr.getCoeff(1) * Ysqr.getCoeff(0) -
-                    (Rsqr.getCoeff(0) * Qsqr.getCoeff(1) + Rsqr.getCoeff(1) * Qsqr.getCoeff(0));
-            cf[2] = Qsqr.getCoeff(0) * Xsqr.getCoeff(2) + Qsqr.getCoeff(1) * Xsqr.getCoeff(1) +
-                    Qsqr.getCoeff(2) * Xsqr.getCoeff(0) +
-                    Rsqr.getCoeff(0) * Ysqr.getCoeff(2) + Rsqr.getCoeff(1) * Ysqr.getCoeff(1) +
-                    Rsqr.getCoeff(2) * Ysqr.getCoeff(0) -
-                    (Rsqr.getCoeff(0) * Qsqr.getCoeff(2) + Rsqr.getCoeff(1) * Qsqr.getCoeff(1) +
-                    Rsqr.getCoeff(2) * Qsqr.getCoeff(0));
-            cf[3] = Qsqr.getCoeff(1) * Xsqr.getCoeff(2) + Qsqr.getCoeff(2) * Xsqr.getCoeff(1) +
-                    Rsqr.getCoeff(1) * Ysqr.getCoeff(2) + Rsqr.getCoeff(2) * Ysqr.getCoeff(1) -
-                    (Rsqr.getCoeff(1) * Qsqr.getCoeff(2) + Rsqr.getCoeff(2) * Qsqr.getCoeff(1));
-            cf[4] = Qsqr.getCoeff(2) * Xsqr.getCoeff(2) +
-                    Rsqr.getCoeff(2) * Ysqr.getCoeff(2) -
-                    (Rsqr.getCoeff(2) * Qsqr.getCoeff(2));
-            C = new Polynomial(4, cf);
-
-            /*  The equation is 4th order, so we expect 0 to 4 roots */
-            val = C.roots();
-
-            /* bn_pr_roots("roots", val, nroots); */
-
-            /*  Only real roots indicate an intersection in real space.
+            cf[0] = QQ0 * X0 +
+                    RR0 * Y0 -
+                    (RR0 * QQ0);
+            cf[1] = QQ0 * X1 + QQ1 * X0 +
+                    RR0 * Y1 + RR1 * Y0 -
+                    (RR0 * QQ1 + RR1 * QQ0);
+            cf[2] = QQ0 * X2 + QQ1 * X1 +
+                    QQ2 * X0 +
+                    RR0 * Y2 + RR1 * Y1 +
+                    RR2 * Y0 -
+                    (RR0 * QQ2 + RR1 * QQ1 +
+                    RR2 * QQ0);
+            cf[3] = QQ1 * X2 + QQ2 * X1 +
+                    RR1 * Y2 + RR2 * Y1 -
+                    (RR1 * QQ2 + RR2 * QQ1);
+            cf[4] = QQ2 * X2 +
+                    RR2 * Y2 -
+                    (RR2 * QQ2);
+
+            /*  The equation is 4th order, so we expect 0 to 4 roots.
              *
-             *  Look at each root returned; if the imaginary part is zero
-             *  or sufficiently close, then use the real part as one value
-             *  of 't' for the intersections
+             *  Only real roots indicate an intersection in real space,
+             *  but complex roots with an imaginary part that is
+             *  sufficiently close to zero are counted as real.
              */
-            for (l = 0; l < val.length; l++) {
-                if( val[l] == null ) {
-                    continue;
-                }
-                if (Math.abs(val[l].getImaginary()) < 1e-2) {
-                    hit_type[npts] = Tgc.BODY;
-                    k[npts] = val[l].getReal();
-                    npts++;
-                }
-            }
-            /* bu_log("npts rooted is %d; ", npts); */
-
-            /* Here, 'npts' is number of points being returned */
-            if (npts != 0 && npts != 2 && npts != 4 && npts > 0) {
-                StringBuilder str = new StringBuilder("tgc:  reduced " + val.length +
-                        " to " + npts + " roots:\n");
-                for (int j = 0; j < val.length; j++) {
-                    str.append("\t" + val[j] + "\n");
+            npts = RealRootSolver.solve(cf, 4, 1e-2, k);
+            if (npts < 0) {
+                npts = 0;
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING,
+                        "The root solver failed to find a solution for " + this.name +
+                        " while shooting from " + ray.getStart() + " at " + ray.getDirection());
+            } else if (npts != 0 && npts != 2 && npts != 4) {
+                StringBuilder str = new StringBuilder("tgc:  found " + npts + " roots:\n");
+                for (int j = 0; j < npts; j++) {
+                    str.append("\t" + k[j] + "\n");
                 }
                 Logger.getLogger(this.getClass().getName()).log(Level.WARNING, str.toString() );
-            } else if (val.length < 0) {
-                boolean reported = false;
-                StringBuilder str = new StringBuilder("The root solver failed to converge on a solution for " +
-                        this.name + "\n");
-                if (!reported) {
-                    str.append("while shooting from:\t" + ray.getStart());
-                    str.append("while shooting at:\t" + ray.getDirection());
-                    str.append("Additional truncated general cone convergence failure details will be suppressed.\n");
-                    Logger.getLogger(this.getClass().getName()).log(Level.WARNING, str.toString());
-                    reported = true;
-                }
+            }
+            for (int l = 0; l < npts; l++) {
+                hit_type[l] = Tgc.BODY;
             }
         }
 
@@ -536,7 +550,7 @@ public class PreppedTgc extends PreppedObject {
          * Consider intersections with the end ellipses
          */
         /* bu_log("npts before base is %d; ", npts); */
-        dir = tgc_N.dotProduct(ray.getDirection());
+        dir = terms.dir;
         if (!(Math.abs(dprime.getZ()) < Constants.SMALL_FASTF) &&
                 !(Math.abs(dir) < Constants.RT_DOT_TOL)) {
             b = (-pprime.getZ()) / dprime.getZ();
@@ -572,32 +586,13 @@ public class PreppedTgc extends PreppedObject {
 
         /* bu_log("npts FINAL is %d\n", npts); */
         for( i=0 ; i<npts ; i++ ) {
-            Point hit_pt = null;
-            Vector3 norm = null;
-            switch( hit_type[i] ) {
-                case Tgc.BODY:
-                    vpriv = new Vector3(pprime);
-                    vpriv.join(k[i], dprime);
-                    hit_pt = new Point(ray.getStart());
-                    k[i] *= t_scale;
-                    hit_pt.join(k[i], ray.getDirection());
-                    norm = normal( vpriv );
-                    break;
-                case Tgc.TOP:
-                    hit_pt = new Point(ray.getStart());
-                    k[i] *= t_scale;
-                    hit_pt.join(k[i], ray.getDirection());
-                    norm = new Vector3(tgc_N);
-                    break;
-                case Tgc.BOTTOM:
-                    hit_pt = new Point(ray.getStart());
-                    k[i] *= t_scale;
-                    hit_pt.join(k[i], ray.getDirection());
-                    norm = new Vector3(tgc_N);
-                    norm.negate();
-                    break;
+            Hit hit = new Hit(k[i] * t_scale, ray, this, hit_type[i], rayData, this.name);
+            if (hit_type[i] == Tgc.BODY) {
+                // save the hit point on the standard cone for the normal
+                hit.setHit_vpriv(pprime.getX() + k[i] * dprime.getX(),
+                        pprime.getY() + k[i] * dprime.getY(),
+                        pprime.getZ() + k[i] * dprime.getZ());
             }
-            Hit hit = new Hit(k[i], hit_pt, norm, hit_type[i], rayData, this.name);
             hits.add(hit);
         }
         List<Segment> segs = this.makeSegs(hits, ray, rayData);
@@ -605,6 +600,20 @@ public class PreppedTgc extends PreppedObject {
         return segs;
     }
 
+    /**
+     * Compute the normal at a Hit
+     */
+    public Vector3 computeNormal(Hit hit, Ray ray) {
+        switch (hit.getHit_surfno()) {
+            case Tgc.BODY:
+                return normal(new Vector3(hit.getHit_vprivX(), hit.getHit_vprivY(), hit.getHit_vprivZ()));
+            case Tgc.TOP:
+                return new Vector3(tgc_N);
+            default:
+                return Vector3.negate(tgc_N);
+        }
+    }
+
     private Vector3 normal( Vector3 vpriv ) {
 
 	    /* Compute normal, given hit point on standard (unit) cone */
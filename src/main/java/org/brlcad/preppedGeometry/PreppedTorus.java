@@ -12,13 +12,13 @@ import java.util.logging.Logger;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.BrlcadDb;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
 import org.brlcad.geometry.Segment;
 import org.brlcad.geometry.Torus;
 import org.brlcad.numerics.BoundingBox;
-import org.brlcad.numerics.Complex;
 import org.brlcad.numerics.Matrix;
 import org.brlcad.numerics.Point;
-import org.brlcad.numerics.Polynomial;
+import org.brlcad.numerics.RealRootSolver;
 import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Vector3;
 import org.brlcad.spacePartition.RayData;
@@ -27,7 +27,7 @@ import org.brlcad.spacePartition.RayData;
  *
  * @author jra
  */
-public class PreppedTorus extends PreppedObject {
+public class PreppedTorus extends PreppedObject implements HitSurface {
 
     double tor_alpha;	/* 0 < (R2/R1) <= 1 */
 
@@ -149,30 +149,56 @@ public class PreppedTorus extends PreppedObject {
         boundingBox = new BoundingBox(min, max);
     }
 
+    /**
+     * The values of shoot() that depend only on the ray direction, shared by a batch of
+     * parallel rays
+     */
+    private static final class DirectionTerms {
+        final Vector3 dprime;		/* unit D' */
+        final double XY0;		/* X**2 + Y**2 term in t**2 */
+        final double A0;		/* X**2 + Y**2 + Z**2 term in t**2 */
+
+        DirectionTerms(Vector3 dprime) {
+            this.dprime = dprime;
+            this.XY0 = dprime.getX() * dprime.getX() + dprime.getY() * dprime.getY();
+            this.A0 = this.XY0 + dprime.getZ() * dprime.getZ();
+        }
+    }
+
+    private DirectionTerms getDirectionTerms(Ray ray, RayData rayData) {
+        DirectionTerms terms = (DirectionTerms) this.getViewTerms(rayData);
+        if (terms == null) {
+            Vector3 dprime = new Vector3(ray.getDirection());
+            tor_SoR.mult(dprime);
+            dprime.normalize();
+            terms = new DirectionTerms(dprime);
+            this.putViewTerms(rayData, terms);
+        }
+        return terms;
+    }
+
     @Override
     public List<Segment> shoot(Ray ray, RayData rayData) {
         List<Segment> segments = new ArrayList<Segment>();
         Vector3 dprime;		/* D' */
         Vector3 pprime;		/* P' */
         Vector3 work;		/* temporary vector */
-        Polynomial C;		/* The final equation */
-        Complex[] val = new Complex[4];		/* The complex roots */
-        double[] k = new double[4];		/* The real roots */
+        double[] k = rayData != null ? rayData.getRoots() : new double[4];		/* The real roots */
         int i;
         int j;
-        Polynomial A, Asqr;
-        Polynomial X2_Y2;		/* X**2 + Y**2 */
+        double A0, A1, A2;		/* X**2 + Y**2 + Z**2 + (1 - alpha**2) */
+        double XY0, XY1, XY2;		/* X**2 + Y**2 */
         Vector3 cor_pprime;	/* new ray origin */
         double cor_proj;
 
-        if (!boundingBox.doesIntersect(ray)) {
+        double[] bbDist = rayData != null ? rayData.getBoxDistances() : new double[2];
+        if (!boundingBox.isect2(ray, bbDist)) {
             return segments;
         }
 
         /* Convert vector into the space of the unit torus */
-        dprime = new Vector3(ray.getDirection());
-        tor_SoR.mult(dprime);
-        dprime.normalize();
+        DirectionTerms terms = getDirectionTerms(ray, rayData);
+        dprime = terms.dprime;
 
         pprime = Vector3.minus(ray.getStart(), tor_V);
         tor_SoR.mult(pprime);
@@ -202,70 +228,30 @@ public class PreppedTorus extends PreppedObject {
          * Wx**2 = Dx**2 * t**2  +  2 * Dx * Px  +  Px**2
          *		[0]                [1]           [2]    dgr=2
          */
-        X2_Y2 = new Polynomial(2);
-        X2_Y2.setCoeff(0, dprime.getX() * dprime.getX() + dprime.getY() * dprime.getY());
-        X2_Y2.setCoeff(1, 2.0 * (dprime.getX() * cor_pprime.getX() +
-                dprime.getY() * cor_pprime.getY()));
-        X2_Y2.setCoeff(2, cor_pprime.getX() * cor_pprime.getX() +
-                cor_pprime.getY() * cor_pprime.getY());
+        XY0 = terms.XY0;
+        XY1 = 2.0 * (dprime.getX() * cor_pprime.getX() +
+                dprime.getY() * cor_pprime.getY());
+        XY2 = cor_pprime.getX() * cor_pprime.getX() +
+                cor_pprime.getY() * cor_pprime.getY();
 
         /* A = X2_Y2 + Z2 */
-        A = new Polynomial(2);
-        A.setCoeff(0, X2_Y2.getCoeff(0) + dprime.getZ() * dprime.getZ());
-        A.setCoeff(1, X2_Y2.getCoeff(1) + 2.0 * dprime.getZ() * cor_pprime.getZ());
-        A.setCoeff(2, X2_Y2.getCoeff(2) + cor_pprime.getZ() * cor_pprime.getZ() +
-                1.0 - tor_alpha * tor_alpha);
-
-        /* Inline expansion of (void) bn_poly_mul(&Asqr, &A, &A) */
-        /* Both polys have degree two */
-        Asqr = new Polynomial(4);
-        Asqr.setCoeff(0, A.getCoeff(0) * A.getCoeff(0));
-        Asqr.setCoeff(1, A.getCoeff(0) * A.getCoeff(1) + A.getCoeff(1) * A.getCoeff(0));
-        Asqr.setCoeff(2, A.getCoeff(0) * A.getCoeff(2) + A.getCoeff(1) * A.getCoeff(1) + A.getCoeff(2) * A.getCoeff(0));
-        Asqr.setCoeff(3, A.getCoeff(1) * A.getCoeff(2) + A.getCoeff(2) * A.getCoeff(1));
-        Asqr.setCoeff(4, A.getCoeff(2) * A.getCoeff(2));
-
-        /* Inline expansion of bn_poly_scale(&X2_Y2, 4.0) and
-         * bn_poly_sub(&C, &Asqr, &X2_Y2).
-         */
-        C = new Polynomial(4);
-        C.setCoeff(0, Asqr.getCoeff(0));
-        C.setCoeff(1, Asqr.getCoeff(1));
-        C.setCoeff(2, Asqr.getCoeff(2) - X2_Y2.getCoeff(0) * 4.0);
-        C.setCoeff(3, Asqr.getCoeff(3) - X2_Y2.getCoeff(1) * 4.0);
-        C.setCoeff(4, Asqr.getCoeff(4) - X2_Y2.getCoeff(2) * 4.0);
-
-        /* It is known that the equation is 4th order.  Therefore, if the
-         * root finder returns other than 4 roots, error.
-         */
-        try {
-        val = C.roots();
-        } catch (ArrayIndexOutOfBoundsException ex) {
-            System.err.println( "ray = " + ray);
-            ex.printStackTrace();
-        }
-        if (val.length != 4) {
-            if (val.length > 0) {
-                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE,
-                        "tor:  Poynomial.roots() did not find 4 roots!! (got " + val.length + ")\n");
-            }
-            return segments;
-        }
+        A0 = terms.A0;
+        A1 = XY1 + 2.0 * dprime.getZ() * cor_pprime.getZ();
+        A2 = XY2 + cor_pprime.getZ() * cor_pprime.getZ() +
+                1.0 - tor_alpha * tor_alpha;
 
-        /* Only real roots indicate an intersection in real space.
+        /* The final equation is A**2 - 4 * X2_Y2 (with A**2 expanded inline).
          *
-         * Look at each root returned; if the imaginary part is zero or
-         * sufficiently close, then use the real part as one value of 't'
-         * for the intersections
+         * Only real roots indicate an intersection in real space, but
+         * complex roots with an imaginary part that is sufficiently
+         * close to zero are counted as real (the ray grazes the torus).
          */
-        i = 0;
-        for (j = 0, i = 0; j < 4; j++) {
-            if (val[j] != null) {
-                if (Math.abs(val[j].getImaginary()) < BrlcadDb.getTolerance().getDist()) {
-                    k[i++] = val[j].getReal();
-                }
-            }
-        }
+        i = RealRootSolver.quartic(A0 * A0,
+                2.0 * A0 * A1,
+                2.0 * A0 * A2 + A1 * A1 - XY0 * 4.0,
+                2.0 * A1 * A2 - XY1 * 4.0,
+                A2 * A2 - XY2 * 4.0,
+                BrlcadDb.getTolerance().getDist(), k);
 
         /* reverse above translation by adding distance to all 'k' values.
          */
@@ -316,16 +302,8 @@ public class PreppedTorus extends PreppedObject {
 
         /* Now, t[0] > t[npts-1] */
         /* k[1] is entry point, and k[0] is farthest exit point */
-        double dist = k[1]*tor_r1;
-        Point inPoint = new Point(ray.getStart());
-        inPoint.join(dist, ray.getDirection());
-        Vector3 inNorm = normal(pprime, dprime, k[1], inPoint, tor_alpha, tor_invR);
-        Hit in = new Hit(dist, inPoint, inNorm, 0, rayData, name);
-        dist = k[0]*tor_r1;
-        Point outPoint = new Point(ray.getStart());
-        outPoint.join(dist, ray.getDirection());
-        Vector3 outNorm = normal(pprime, dprime, k[0], outPoint, tor_alpha, tor_invR);
-        Hit out = new Hit(dist, outPoint, outNorm, 0, rayData, name);
+        Hit in = this.makeHit(k[1], pprime, dprime, ray, rayData);
+        Hit out = this.makeHit(k[0], pprime, dprime, ray, rayData);
         Segment seg = new Segment(in, out);
         segments.add(seg);
 
@@ -334,25 +312,31 @@ public class PreppedTorus extends PreppedObject {
 
         /* 4 points */
         /* k[3] is entry point, and k[2] is exit point */
-        dist = k[3]*tor_r1;
-        inPoint = new Point(ray.getStart());
-        inPoint.join(dist, ray.getDirection());
-        inNorm = normal(pprime, dprime, k[3], inPoint, tor_alpha, tor_invR);
-        in = new Hit(dist, inPoint, inNorm, 0, rayData, name);
-        dist = k[2]*tor_r1;
-        outPoint = new Point(ray.getStart());
-        outPoint.join(dist, ray.getDirection());
-        outNorm = normal(pprime, dprime, k[2], outPoint, tor_alpha, tor_invR);
-        out = new Hit(dist, outPoint, outNorm, 0, rayData, name);
+        in = this.makeHit(k[3], pprime, dprime, ray, rayData);
+        out = this.makeHit(k[2], pprime, dprime, ray, rayData);
         seg = new Segment(in, out);
         segments.add(seg);
         return segments;
     }
 
-    private Vector3 normal(Vector3 pprime, Vector3 dprime, double dist, Point hitPt, double tor_alpha, Matrix tor_invR)
+    /**
+     * Create a Hit at the specified distance along the unit-torus ray, saving the hit
+     * point on the unit torus for the normal calculation
+     */
+    private Hit makeHit(double k, Vector3 pprime, Vector3 dprime, Ray ray, RayData rayData) {
+        Hit hit = new Hit(k * tor_r1, ray, this, 0, rayData, name);
+        hit.setHit_vpriv(pprime.getX() + k * dprime.getX(),
+                pprime.getY() + k * dprime.getY(),
+                pprime.getZ() + k * dprime.getZ());
+        return hit;
+    }
+
+    /**
+     * Compute the normal at a Hit
+     */
+    public Vector3 computeNormal(Hit hit, Ray ray)
     {
-        Vector3 hit_vpriv = new Vector3(pprime);
-        hit_vpriv.join(dist, dprime);
+        Vector3 hit_vpriv = new Vector3(hit.getHit_vprivX(), hit.getHit_vprivY(), hit.getHit_vprivZ());
 
         double w = hit_vpriv.getX() * hit_vpriv.getX() +
                 hit_vpriv.getY() * hit_vpriv.getY() +
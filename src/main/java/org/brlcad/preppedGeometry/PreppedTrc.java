@@ -0,0 +1,267 @@
+package org.brlcad.preppedGeometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.brlcad.geometry.BadGeometryException;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
+import org.brlcad.geometry.Segment;
+import org.brlcad.geometry.Tgc;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Constants;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.RayData;
+
+/**
+ * The prepped version of a TGC that is a right circular cone, either truncated (TRC) or
+ * coming to a point at one end. The ray is intersected with the cone in model space,
+ * using the radial distance from the axis, so no matrices or quartics are needed.
+ * Hits, surface numbers and normals follow PreppedTgc.
+ */
+public class PreppedTrc extends PreppedObject implements HitSurface {
+    private static final double VLARGE = 1000000.0;
+    private Point   trc_V;		/*  center of base of cone		*/
+    private Vector3 trc_Hunit;		/*  unit H vector			*/
+    private double  trc_H;		/*  magnitude of H vector		*/
+    private double  trc_R1;		/*  radius of the base			*/
+    private double  trc_slope;		/*  change of radius per unit height	*/
+    private double  trc_invRR1;	/*  1/(base radius**2)			*/
+    private double  trc_invRR2;	/*  1/(top radius**2)			*/
+
+    /**
+     * Constructor
+     *
+     * @param tgc	The TGC primitive
+     * @param V	The center of the base (with the transformation matrix already applied)
+     * @param H	The height vector (with the transformation matrix already applied)
+     * @param r1	The radius of the base
+     * @param r2	The radius of the top
+     */
+    public PreppedTrc(Tgc tgc, Point V, Vector3 H, double r1, double r2) throws BadGeometryException {
+        super(tgc.getName());
+
+        double mag_h = H.magnitude();
+        if (mag_h < Constants.RT_LEN_TOL) {
+            throw new BadGeometryException(tgc.getName() + " has zero length height vector");
+        }
+        if (r1 * r1 <= Constants.SQRT_SMALL_FASTF) {
+            if (r2 * r2 <= Constants.SQRT_SMALL_FASTF) {
+                throw new BadGeometryException(tgc.getName() + " is degenerate at both ends");
+            }
+            /* Exchange ends, so that the top is always the degenerate one */
+            trc_V = new Point(V);
+            trc_V.join(1.0, H);
+            trc_Hunit = Vector3.negate(H);
+            double tmp = r1;
+            r1 = r2;
+            r2 = tmp;
+        } else {
+            trc_V = new Point(V);
+            trc_Hunit = new Vector3(H);
+        }
+        trc_Hunit.scale(1.0 / mag_h);
+        trc_H = mag_h;
+        trc_R1 = r1;
+        trc_slope = (r2 - r1) / mag_h;
+        trc_invRR1 = 1.0 / (r1 * r1);
+        if (r2 * r2 < Constants.SQRT_SMALL_FASTF) {
+            trc_invRR2 = VLARGE * trc_invRR1;
+        } else {
+            trc_invRR2 = 1.0 / (r2 * r2);
+        }
+
+        /* Compute bounding sphere and RPP, each end circle extends r*sin(angle to H) */
+        Point top = new Point(trc_V);
+        top.join(mag_h, trc_Hunit);
+        Point st_min = new Point();
+        Point st_max = new Point();
+        for (int i = 0; i < 3; i++) {
+            double f = 1.0 - trc_Hunit.get(i) * trc_Hunit.get(i);
+            f = f > 0.0 ? Math.sqrt(f) : 0.0;
+            st_min.set(i, Math.min(trc_V.get(i) - r1 * f, top.get(i) - r2 * f));
+            st_max.set(i, Math.max(trc_V.get(i) + r1 * f, top.get(i) + r2 * f));
+        }
+        this.boundingBox = new BoundingBox(st_min, st_max);
+        this.center = new Point(this.boundingBox.getMin());
+        this.center.plus(this.boundingBox.getMax());
+        this.center.scale(0.5);
+        this.boundingRadius = this.boundingBox.getDiameter().magnitude() / 2.0;
+    }
+
+    @Override
+    public List<Segment> shoot(Ray ray, RayData rayData) {
+        Set<Hit> hits = new HashSet<Hit>();
+        Point start = ray.getStart();
+        Vector3 dir = ray.getDirection();
+        Vector3 Hu = trc_Hunit;
+
+        /* Move the ray origin to the point on the ray closest to V */
+        double wx = start.getX() - trc_V.getX();
+        double wy = start.getY() - trc_V.getY();
+        double wz = start.getZ() - trc_V.getZ();
+        double cor_proj = -(wx * dir.getX() + wy * dir.getY() + wz * dir.getZ());
+        wx += cor_proj * dir.getX();
+        wy += cor_proj * dir.getY();
+        wz += cor_proj * dir.getZ();
+
+        /* Split the origin and direction into parts along and across the axis */
+        double z0 = wx * Hu.getX() + wy * Hu.getY() + wz * Hu.getZ();
+        double px = wx - z0 * Hu.getX();
+        double py = wy - z0 * Hu.getY();
+        double pz = wz - z0 * Hu.getZ();
+        double[] terms = getDirectionTerms(ray, rayData);
+        double dz = terms[0];
+        double qx = terms[1];
+        double qy = terms[2];
+        double qz = terms[3];
+
+        /*
+         *  The cone is |radial|**2 = R**2 with R = r1 + slope * z,
+         *  which is a quadratic in the distance along the ray
+         */
+        double R = trc_R1 + trc_slope * z0;
+        double a = terms[4];
+        double b = 2.0 * (px * qx + py * qy + pz * qz - trc_slope * dz * R);
+        double c = px * px + py * py + pz * pz - R * R;
+
+        double[] k = new double[4];
+        int[] hit_type = new int[4];
+        int npts = 0;
+        if (!(Math.abs(a) < 1.0e-10)) {
+            double roots = b * b - 4 * a * c;
+            if (roots >= 0) {
+                double f = 0.5 / a;
+                roots = Math.sqrt(roots);
+                k[npts] = (roots - b) * f;
+                hit_type[npts++] = Tgc.BODY;
+                k[npts] = (roots + b) * -f;
+                hit_type[npts++] = Tgc.BODY;
+            }
+        } else if (b != 0.0) {
+            /* ray is parallel to a line of the cone */
+            k[npts] = -c / b;
+            hit_type[npts++] = Tgc.BODY;
+        }
+
+        /* Eliminate hits beyond the end planes */
+        int i = 0;
+        while (i < npts) {
+            double zval = z0 + k[i] * dz;
+            if (zval >= trc_H || zval <= 0.0) {
+                npts--;
+                for (int j = i; j < npts; j++) {
+                    hit_type[j] = hit_type[j + 1];
+                    k[j] = k[j + 1];
+                }
+            } else {
+                i++;
+            }
+        }
+
+        /* Consider intersections with the end circles */
+        if (!(Math.abs(dz) < Constants.RT_DOT_TOL)) {
+            double kb = -z0 / dz;
+            double kt = (trc_H - z0) / dz;
+            double x = px + kb * qx;
+            double y = py + kb * qy;
+            double z = pz + kb * qz;
+            if ((x * x + y * y + z * z) * trc_invRR1 <= 1.0) {
+                hit_type[npts] = Tgc.BOTTOM;
+                k[npts++] = kb;
+            }
+            x = px + kt * qx;
+            y = py + kt * qy;
+            z = pz + kt * qz;
+            if ((x * x + y * y + z * z) * trc_invRR2 <= 1.0) {
+                hit_type[npts] = Tgc.TOP;
+                k[npts++] = kt;
+            }
+        }
+
+        for (i = 0; i < npts; i++) {
+            Hit hit = new Hit(k[i] + cor_proj, ray, this, hit_type[i], rayData, this.name);
+            if (hit_type[i] == Tgc.BODY) {
+                // save the radial vector of the hit point for the normal
+                hit.setHit_vpriv(px + k[i] * qx, py + k[i] * qy, pz + k[i] * qz);
+            }
+            hits.add(hit);
+        }
+
+        return this.makeSegs(hits, ray, rayData);
+    }
+
+    /**
+     * Get the values of shoot() that depend only on the ray direction, shared by a batch
+     * of parallel rays
+     *
+     * @return	The part of the direction along the axis, the part across it and the
+     *		coefficient of k**2
+     */
+    private double[] getDirectionTerms(Ray ray, RayData rayData) {
+        double[] terms = (double[]) this.getViewTerms(rayData);
+        if (terms == null) {
+            Vector3 dir = ray.getDirection();
+            Vector3 Hu = trc_Hunit;
+            double dz = dir.getX() * Hu.getX() + dir.getY() * Hu.getY() + dir.getZ() * Hu.getZ();
+            double qx = dir.getX() - dz * Hu.getX();
+            double qy = dir.getY() - dz * Hu.getY();
+            double qz = dir.getZ() - dz * Hu.getZ();
+            double a = qx * qx + qy * qy + qz * qz - trc_slope * trc_slope * dz * dz;
+            terms = new double[]{dz, qx, qy, qz, a};
+            this.putViewTerms(rayData, terms);
+        }
+        return terms;
+    }
+
+    /**
+     * Compute the normal at a Hit. Hits on the body carry the radial vector from the
+     * axis to the hit point.
+     */
+    public Vector3 computeNormal(Hit hit, Ray ray) {
+        switch (hit.getHit_surfno()) {
+            case Tgc.BODY:
+                Vector3 norm = new Vector3(hit.getHit_vprivX(), hit.getHit_vprivY(), hit.getHit_vprivZ());
+                norm.join(-trc_slope * norm.magnitude(), trc_Hunit);
+                norm.normalize();
+                return norm;
+            case Tgc.TOP:
+                return new Vector3(trc_Hunit);
+            default:
+                return Vector3.negate(trc_Hunit);
+        }
+    }
+
+    @Override
+    public List<Segment> makeSegs(Set<Hit> hitSet, Ray ray, RayData rayData) {
+        List<Segment> segs = new ArrayList<Segment>();
+
+        List<Hit> hits = new ArrayList<Hit>(hitSet);
+        Collections.sort(hits);
+
+        if (hits.size() % 2 != 0) {
+            /* odd number of hits, perhaps two hits on an edge */
+            for (int i = hits.size() - 1; i > 0; i--) {
+                double diff = hits.get(i - 1).getHit_dist() - hits.get(i).getHit_dist();
+                if (diff < rayData.getTolerance().getDist()) {
+                    hits.remove(i);
+                    break;
+                }
+            }
+        }
+
+        if (hits.size() != 0 && hits.size() != 2 && hits.size() != 4) {
+            return segs;			/* No hit */
+        }
+
+        for (int i = 0; i < hits.size(); i += 2) {
+            segs.add(new Segment(hits.get(i), hits.get(i + 1)));
+        }
+
+        return segs;
+    }
+}
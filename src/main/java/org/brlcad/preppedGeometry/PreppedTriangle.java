@@ -6,10 +6,12 @@ package org.brlcad.preppedGeometry;
 
 
 import java.io.Serializable;
+import java.util.List;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.Bot;
 import org.brlcad.geometry.Face;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.HitSurface;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.Vector3;
 import org.brlcad.spacePartition.RayData;
@@ -17,9 +19,13 @@ import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.BoundingBox;
 import org.brlcad.numerics.Matrix;
 
-public class PreppedTriangle implements Serializable
+public class PreppedTriangle implements Serializable, HitSurface
 {
 	public static final double MIN_DOT_NORMAL = 1.0E-9;
+	
+	/** the number of values computeViewTerms() keeps for each triangle */
+	public static final int VIEW_TERMS = 5;
+	
 	private Point A;			// triangle vertex (A)
 	private Vector3 BA;			// Vector from A to second point (B)
 	private Vector3 CA;			// Vector from A to third point (C)
@@ -144,19 +150,130 @@ public class PreppedTriangle implements Serializable
 		}
 		
 		double hitDist = wxb.dotProduct( this.normal ) / dn;
-		Point hitPoint = new Point( ray.getStart() );
-		hitPoint.join( hitDist, ray.getDirection() );
+		Hit hit = new Hit( hitDist, ray, this, this.surfaceNumber, rayData, this.parent.name );
+		hit.setHit_vpriv( alpha, beta, dn );
+		if( this.vertexNormals != null && this.vertexNormals.length == 3 )
+		{
+			// the interpolated normal is clamped to agree with dn (as in BRL-CAD)
+			hit.setDirDotNormal( dn );
+		}
+		else
+		{
+			hit.setDirDotNormal( this.norm.dotProduct( ray.getDirection() ) );
+		}
+		return hit;
+	}
+
+	/**
+	 * Compute the values used by shootInView() that depend only on the ray direction
+	 *
+	 * @param    triangles           the triangles of a Bot (or BotPiece)
+	 * @param    dir                 the unit direction shared by a batch of parallel rays
+	 *
+	 * @return   VIEW_TERMS values for each triangle, in the order of the list
+	 */
+	public static double[] computeViewTerms( List<PreppedTriangle> triangles, Vector3 dir )
+	{
+		double[] terms = new double[VIEW_TERMS * triangles.size()];
+		int offset = 0;
+		for( PreppedTriangle tri : triangles )
+		{
+			// (A - S) x dir is split into A x dir, which is the same for every ray, and S x dir
+			Vector3 axd = tri.A.toVector().crossProduct( dir );
+			terms[offset] = tri.normal.dotProduct( dir );
+			terms[offset + 1] = tri.CA.dotProduct( axd );
+			terms[offset + 2] = tri.BA.dotProduct( axd );
+			terms[offset + 3] = tri.normal.dotProduct( tri.A );
+			terms[offset + 4] = tri.norm.dotProduct( dir );
+			offset += VIEW_TERMS;
+		}
+		return terms;
+	}
+	
+	/**
+	 * Intersect a ray that belongs to a batch of parallel rays with this triangle. This is
+	 * shoot(Ray, RayData) with the direction dependent values taken from computeViewTerms().
+	 *
+	 * @param    ray                 the ray
+	 * @param    rayData             the RayData of the ray
+	 * @param    terms               the values from computeViewTerms()
+	 * @param    offset              the index of the first value for this triangle in terms
+	 * @param    sxd                 the cross product of the ray start and the ray direction
+	 *
+	 * @return   the Hit, or null if the ray misses this triangle
+	 */
+	public Hit shootInView( Ray ray, RayData rayData, double[] terms, int offset, Vector3 sxd )
+	{
+		double dn = terms[offset];
+		double abs_dn = Math.abs(dn);
+		if( abs_dn < PreppedTriangle.MIN_DOT_NORMAL )
+		{
+			// ray is parallel to triangle plane
+			return null;
+		}
+		double tolDist = rayData.getTolerance().getDist();
+		double dn_plus_tol = abs_dn + tolDist;
+		
+		double alpha = terms[offset + 1] - this.CA.dotProduct( sxd );
+		if( dn < 0.0 ) alpha = -alpha;
+		if( alpha < -tolDist || alpha > dn_plus_tol )
+		{
+			// missed
+			return null;
+		}
+		
+		double beta = terms[offset + 2] - this.BA.dotProduct( sxd );
+		if( dn > 0.0 ) beta = -beta;
+		if( beta < -tolDist || beta > dn_plus_tol )
+		{
+			// missed
+			return null;
+		}
+		
+		if( alpha + beta > dn_plus_tol )
+		{
+			// missed
+			return null;
+		}
+		
+		double hitDist = (terms[offset + 3] - this.normal.dotProduct( ray.getStart() )) / dn;
+		Hit hit = new Hit( hitDist, ray, this, this.surfaceNumber, rayData, this.parent.name );
+		hit.setHit_vpriv( alpha, beta, dn );
+		if( this.vertexNormals != null && this.vertexNormals.length == 3 )
+		{
+			// the interpolated normal is clamped to agree with dn (as in BRL-CAD)
+			hit.setDirDotNormal( dn );
+		}
+		else
+		{
+			hit.setDirDotNormal( terms[offset + 4] );
+		}
+		return hit;
+	}
+	
+	/**
+	 * Compute the normal at a Hit from the values saved by shoot()
+	 *
+	 * @param    hit                 a  Hit
+	 * @param    ray                 a  Ray
+	 *
+	 * @return   a  Vector3
+	 */
+	public Vector3 computeNormal( Hit hit, Ray ray )
+	{
         Vector3 returnNormal;
         if (vertexNormals != null && vertexNormals.length == 3) {
             // use vertex normals
-            double v = alpha / abs_dn;
+            double dn = hit.getHit_vprivZ();
+            double abs_dn = Math.abs(dn);
+            double v = hit.getHit_vprivX() / abs_dn;
             if (v < 0.0) {
                 v = 0.0;
             }
             if (v > 1.0) {
                 v = 1.0;
             }
-            double w = beta / abs_dn;
+            double w = hit.getHit_vprivY() / abs_dn;
             if (w < 0.0) {
                 w = 0.0;
             }
@@ -198,7 +315,7 @@ public class PreppedTriangle implements Serializable
         } else {
             returnNormal = new Vector3(this.norm);
         }
-        return new Hit(hitDist, hitPoint, returnNormal, this.surfaceNumber, rayData, this.parent.name);
+        return returnNormal;
 	}
 }
 
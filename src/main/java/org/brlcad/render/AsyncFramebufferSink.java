@@ -0,0 +1,267 @@
+package org.brlcad.render;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Sends the tiles of a Renderer to a BRL-CAD framebuffer server from one writer thread,
+ * so the rendering threads never wait for the network.
+ * <p>
+ * A finished tile only goes into a table of pending tiles, which holds the newest unsent
+ * version of each tile, so the queue never holds more than one image. When the network
+ * is slower than the renderer, a later pass of a tile replaces the earlier one before it
+ * is sent, and the framebuffer skips straight to the sharper version. The writer takes
+ * every pending tile at once, sorts their rows, and joins rows of neighbouring tiles
+ * that touch into one write message. It writes to the channel in non-blocking mode,
+ * waiting on a Selector whenever the socket buffer is full.
+ */
+public class AsyncFramebufferSink implements TileSink {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /** the bits of a run key given to the column and to the index of the tile */
+    private static final int KEY_BITS = 21;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    private final SocketChannel channel;
+    private final Object lock = new Object();
+    /** the newest unsent version of each tile, by position, in the order they were first queued */
+    private final LinkedHashMap<Long, RenderTile> pending = new LinkedHashMap<Long, RenderTile>();
+    private boolean closing;
+    private Thread writer;
+    private volatile IOException failure;
+
+    private long tiles;
+    private long supersededTiles;
+    private long batches;
+    private long messages;
+    private long bytesWritten;
+
+    /**
+     * @param channel The channel connected to the framebuffer server, which is put in
+     * non-blocking mode (it is not closed by the sink)
+     * @throws IOException If the channel cannot be made non-blocking
+     */
+    public AsyncFramebufferSink(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+    }
+
+    public void renderStarted(RenderView view, int passes) {
+        synchronized (this.lock) {
+            this.pending.clear();
+            this.closing = false;
+        }
+        this.failure = null;
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                writeTiles();
+            }
+        }, "framebuffer writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void tileFinished(RenderTile tile) throws IOException {
+        IOException e = this.failure;
+        if (e != null) {
+            throw e;
+        }
+        Long position = ((long) tile.getY() << 32) | tile.getX();
+        synchronized (this.lock) {
+            this.tiles++;
+            if (this.pending.put(position, tile) != null) {
+                this.supersededTiles++;
+            }
+            this.lock.notifyAll();
+        }
+    }
+
+    public void passFinished(int pass) {
+    }
+
+    /**
+     * Wait for the writer to send every pending tile
+     *
+     * @throws IOException If a write failed
+     */
+    public void renderFinished() throws IOException {
+        synchronized (this.lock) {
+            this.closing = true;
+            this.lock.notifyAll();
+        }
+        if (this.writer != null) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the framebuffer writer");
+            }
+            this.writer = null;
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    /**
+     * The body of the writer thread
+     */
+    private void writeTiles() {
+        Selector selector = null;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        try {
+            selector = Selector.open();
+            this.channel.register(selector, SelectionKey.OP_WRITE);
+            while (true) {
+                List<RenderTile> batch;
+                synchronized (this.lock) {
+                    while (this.pending.isEmpty() && !this.closing) {
+                        this.lock.wait();
+                    }
+                    if (this.pending.isEmpty()) {
+                        return;
+                    }
+                    batch = new ArrayList<RenderTile>(this.pending.values());
+                    this.pending.clear();
+                }
+                buffer = this.writeBatch(batch, buffer, selector);
+            }
+        } catch (IOException e) {
+            this.failure = e;
+        } catch (InterruptedException e) {
+            this.failure = new InterruptedIOException("Framebuffer writer interrupted");
+        } finally {
+            synchronized (this.lock) {
+                this.pending.clear();
+            }
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // nothing more to send
+                }
+            }
+        }
+    }
+
+    /**
+     * Send the rows of a batch of tiles, one message per run of touching rows
+     *
+     * @return The buffer, or a larger one if it had to grow
+     */
+    private ByteBuffer writeBatch(List<RenderTile> batch, ByteBuffer buffer, Selector selector) throws IOException {
+        // sort the rows of the tiles by row and then column of the image
+        int rowCount = 0;
+        for (RenderTile tile : batch) {
+            rowCount += tile.getHeight();
+        }
+        long[] runs = new long[rowCount];
+        int size = 0;
+        int r = 0;
+        for (int t = 0; t < batch.size(); t++) {
+            RenderTile tile = batch.get(t);
+            for (int row = 0; row < tile.getHeight(); row++) {
+                runs[r++] = ((long) (tile.getY() + row) << (2 * KEY_BITS)) | ((long) tile.getX() << KEY_BITS) | t;
+            }
+            size += tile.getHeight() * (FramebufferSink.HEADER_SIZE + 3 * tile.getWidth());
+        }
+        Arrays.sort(runs);
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, 2 * buffer.capacity()));
+        }
+
+        buffer.clear();
+        int first = 0;
+        while (first < runs.length) {
+            int y = (int) (runs[first] >>> (2 * KEY_BITS));
+            int x = (int) ((runs[first] >>> KEY_BITS) & KEY_MASK);
+            int end = x + batch.get((int) (runs[first] & KEY_MASK)).getWidth();
+            int last = first + 1;
+            while (last < runs.length && (int) (runs[last] >>> (2 * KEY_BITS)) == y
+                    && (int) ((runs[last] >>> KEY_BITS) & KEY_MASK) == end) {
+                end += batch.get((int) (runs[last] & KEY_MASK)).getWidth();
+                last++;
+            }
+            FramebufferSink.putHeader(buffer, x, y, end - x);
+            for (int i = first; i < last; i++) {
+                RenderTile tile = batch.get((int) (runs[i] & KEY_MASK));
+                int row = y - tile.getY();
+                for (int column = 0; column < tile.getWidth(); column++) {
+                    int rgb = tile.getRgb(column, row);
+                    buffer.put((byte) (rgb >> 16));
+                    buffer.put((byte) (rgb >> 8));
+                    buffer.put((byte) rgb);
+                }
+            }
+            this.messages++;
+            first = last;
+        }
+
+        buffer.flip();
+        this.bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            if (this.channel.write(buffer) == 0) {
+                // the socket buffer is full, wait until the server has read some of it
+                selector.select();
+                selector.selectedKeys().clear();
+            }
+        }
+        this.batches++;
+        return buffer;
+    }
+
+    /**
+     * @return The number of tiles the sink has received
+     */
+    public long getTiles() {
+        synchronized (this.lock) {
+            return tiles;
+        }
+    }
+
+    /**
+     * @return The number of tiles replaced by a later pass before they were sent
+     */
+    public long getSupersededTiles() {
+        synchronized (this.lock) {
+            return supersededTiles;
+        }
+    }
+
+    /**
+     * @return The number of batches of tiles sent (complete once the render has finished)
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return The number of write messages sent (complete once the render has finished)
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return The number of bytes sent (complete once the render has finished)
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncFramebufferSink: " + this.getTiles() + " tiles (" + this.getSupersededTiles()
+                + " superseded) sent as " + this.messages + " messages in " + this.batches + " batches, "
+                + this.bytesWritten + " bytes";
+    }
+}
@@ -0,0 +1,84 @@
+package org.brlcad.render;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends every pass of every tile to a BRL-CAD framebuffer server, one write message per
+ * row of a tile, so the image appears coarse at once and then sharpens.
+ */
+public class FramebufferSink implements TileSink {
+
+    /** the type of the message that writes pixels to the framebuffer */
+    private static final short MSG_FBWRITE = 105;
+
+    /** the size of the header of a write message */
+    static final int HEADER_SIZE = 20;
+
+    private final OutputStream out;
+
+    /**
+     * @param out The stream connected to the framebuffer server
+     */
+    public FramebufferSink(OutputStream out) {
+        this.out = out;
+    }
+
+    public void renderStarted(RenderView view, int passes) {
+    }
+
+    public void tileFinished(RenderTile tile) throws IOException {
+        int lineBytes = 3 * tile.getWidth();
+        ByteBuffer bb = ByteBuffer.allocate(tile.getHeight() * (HEADER_SIZE + lineBytes));
+        for (int row = 0; row < tile.getHeight(); row++) {
+            putHeader(bb, tile.getX(), tile.getY() + row, tile.getWidth());
+            tile.getBytes(row, bb.array(), bb.position());
+            bb.position(bb.position() + lineBytes);
+        }
+        synchronized (this.out) {
+            this.out.write(bb.array());
+        }
+    }
+
+    public void passFinished(int pass) throws IOException {
+        synchronized (this.out) {
+            this.out.flush();
+        }
+    }
+
+    public void renderFinished() throws IOException {
+        synchronized (this.out) {
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Write a run of pixels to a framebuffer
+     *
+     * @param out The stream connected to the framebuffer server
+     * @param x The column of the first pixel
+     * @param y The row of the pixels
+     * @param pixels The red, green and blue bytes of each pixel
+     * @throws IOException If the message cannot be sent
+     */
+    public static void writePixels(OutputStream out, int x, int y, byte[] pixels) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + pixels.length);
+        putHeader(bb, x, y, pixels.length / 3);
+        bb.put(pixels);
+        out.write(bb.array());
+    }
+
+    /**
+     * Put the header of a message that writes a run of pixels
+     */
+    static void putHeader(ByteBuffer bb, int x, int y, int count) {
+        bb.put((byte) 0x41);
+        bb.put((byte) 0xFE);
+        bb.putShort(MSG_FBWRITE);
+        bb.putInt(12 + 3 * count);
+        bb.putInt(x);
+        bb.putInt(y);
+        bb.putInt(count);
+    }
+}
@@ -0,0 +1,401 @@
+package org.brlcad.render;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.shading.Material;
+import org.brlcad.spacePartition.PreppedDb;
+
+/**
+ * The first hit of every pixel of a rendered view: the index of the region hit, the
+ * distance to the hit, the normal and the obliquity. With the region dictionary and the
+ * materials of the regions it holds everything a Shader needs, so a Reshader can shade
+ * the view again with other lights or colors without shooting a ray.
+ * <p>
+ * A pixel takes 14 bytes: the normal is packed into one int (an octahedral mapping with
+ * 16 bits per coordinate, accurate to about 0.005 degrees) and the obliquity into a char.
+ * A G-buffer can be saved to a file, laid out as:
+ * <pre>
+ * header:   int magic, byte version, int width, int height,
+ *           12 * double gridStart, xDir, yDir and direction, double delta,
+ *           int regionCount, regionCount * region
+ * region:   short nameLength, UTF-8 name, int regionID, byte hasMaterial,
+ *           [short materialNameLength, UTF-8 material name, int rgb, double ks, kd, ka, int alpha]
+ * pixels:   width * height * int region, then float depth, then int normal, then char obliquity
+ * </pre>
+ * Pixels are in rows from the bottom of the image, and a pixel that hits nothing has
+ * region PreppedDb.NO_REGION.
+ */
+public class GBuffer {
+
+    static final int MAGIC = 0x4a424742;
+    static final byte VERSION = 1;
+
+    /** obliquities are stored as fractions of a right angle, which is the largest they can be */
+    private static final double OBLIQUITY_SCALE = 65535.0 / (0.5 * Math.PI);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RenderView view;
+    private final String[] regionNames;
+    private final int[] regionIDs;
+    private final Material[] materials;
+
+    private final int[] region;
+    private final float[] depth;
+    private final int[] normal;
+    private final char[] obliquity;
+
+    GBuffer(RenderView view, String[] regionNames, int[] regionIDs, Material[] materials) {
+        this.view = view;
+        this.regionNames = regionNames;
+        this.regionIDs = regionIDs;
+        this.materials = materials;
+        int size = view.getWidth() * view.getHeight();
+        this.region = new int[size];
+        this.depth = new float[size];
+        this.normal = new int[size];
+        this.obliquity = new char[size];
+    }
+
+    /**
+     * Record the first hit of a pixel
+     *
+     * @param normal The unit normal at the hit, packed by packNormal()
+     */
+    void set(int column, int row, int regionIndex, float dist, int normal) {
+        int i = row * this.view.getWidth() + column;
+        this.region[i] = regionIndex;
+        if (regionIndex == PreppedDb.NO_REGION) {
+            return;
+        }
+        this.depth[i] = dist;
+        this.normal[i] = normal;
+        this.obliquity[i] = packObliquity(normal, this.view.getDirection());
+    }
+
+    /**
+     * @param normal The unit normal at a hit, packed by packNormal()
+     * @param direction The direction of the rays
+     * @return The angle between the ray and the normal, as stored in a G-buffer
+     */
+    static char packObliquity(int normal, Vector3 direction) {
+        Vector3 n = unpackNormal(normal);
+        double cosine = -n.dotProduct(direction);
+        double angle = Math.acos(Math.max(0.0, Math.min(1.0, cosine)));
+        return (char) Math.round(angle * OBLIQUITY_SCALE);
+    }
+
+    public RenderView getView() {
+        return view;
+    }
+
+    public int getWidth() {
+        return view.getWidth();
+    }
+
+    public int getHeight() {
+        return view.getHeight();
+    }
+
+    /**
+     * @return The number of regions in the region dictionary
+     */
+    public int getRegionCount() {
+        return regionNames.length;
+    }
+
+    public String getRegionName(int index) {
+        return regionNames[index];
+    }
+
+    public int getRegionID(int index) {
+        return regionIDs[index];
+    }
+
+    /**
+     * @param index The index of a region
+     * @return The material the region was shaded with when rendered (may be null)
+     */
+    public Material getMaterial(int index) {
+        return materials[index];
+    }
+
+    /**
+     * @param column The column of the image
+     * @param row The row of the image (0 at the bottom)
+     * @return The index of the first region hit, or PreppedDb.NO_REGION for a miss
+     */
+    public int getRegion(int column, int row) {
+        return region[row * view.getWidth() + column];
+    }
+
+    /**
+     * @return The distance from the start of the ray to the first hit, in millimeters
+     */
+    public float getDepth(int column, int row) {
+        return depth[row * view.getWidth() + column];
+    }
+
+    /**
+     * @return The unit normal at the first hit, pointing against the ray
+     */
+    public Vector3 getNormal(int column, int row) {
+        return unpackNormal(normal[row * view.getWidth() + column]);
+    }
+
+    /**
+     * @param normal Receives the x, y and z of the unit normal at the first hit
+     */
+    void getNormal(int column, int row, double[] normal) {
+        unpackNormal(this.normal[row * view.getWidth() + column], normal);
+    }
+
+    /**
+     * @return The angle in radians between the ray and the normal at the first hit
+     */
+    public double getObliquity(int column, int row) {
+        return obliquity[row * view.getWidth() + column] / OBLIQUITY_SCALE;
+    }
+
+    /**
+     * @return The point of the first hit
+     */
+    public Point getHitPoint(int column, int row) {
+        Point pt = view.getRayStart(column, row);
+        pt.join(getDepth(column, row), view.getDirection());
+        return pt;
+    }
+
+    /**
+     * Pack a unit vector into an int, by folding the octahedron |x| + |y| + |z| = 1 onto
+     * the square |u| + |v| &lt;= 1 and storing u and v in 16 bits each
+     */
+    static int packNormal(double x, double y, double z) {
+        double sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        double u = x / sum;
+        double v = y / sum;
+        if (z < 0.0) {
+            double fu = (1.0 - Math.abs(v)) * (u >= 0.0 ? 1.0 : -1.0);
+            double fv = (1.0 - Math.abs(u)) * (v >= 0.0 ? 1.0 : -1.0);
+            u = fu;
+            v = fv;
+        }
+        // an odd number of steps, so 0 and the axes are exact
+        int qu = (int) Math.round((u + 1.0) * 32767.0);
+        int qv = (int) Math.round((v + 1.0) * 32767.0);
+        return (qu << 16) | qv;
+    }
+
+    static Vector3 unpackNormal(int packed) {
+        double[] n = new double[3];
+        unpackNormal(packed, n);
+        return new Vector3(n[0], n[1], n[2]);
+    }
+
+    static void unpackNormal(int packed, double[] n) {
+        double u = (packed >>> 16) / 32767.0 - 1.0;
+        double v = (packed & 0xffff) / 32767.0 - 1.0;
+        double z = 1.0 - Math.abs(u) - Math.abs(v);
+        if (z < 0.0) {
+            double fu = (1.0 - Math.abs(v)) * (u >= 0.0 ? 1.0 : -1.0);
+            double fv = (1.0 - Math.abs(u)) * (v >= 0.0 ? 1.0 : -1.0);
+            u = fu;
+            v = fv;
+        }
+        double mag = Math.sqrt((u * u) + (v * v) + (z * z));
+        n[0] = u / mag;
+        n[1] = v / mag;
+        n[2] = z / mag;
+    }
+
+    /**
+     * Save the G-buffer to a file
+     *
+     * @param file The file to write (replaced if it exists)
+     * @throws IOException If the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0L);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer bb = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            putHeader(channel, bb, this.view, this.regionNames, this.regionIDs, this.materials);
+            for (int i = 0; i < this.region.length; i++) {
+                reserve(channel, bb, 4);
+                bb.putInt(this.region[i]);
+            }
+            for (int i = 0; i < this.depth.length; i++) {
+                reserve(channel, bb, 4);
+                bb.putFloat(this.depth[i]);
+            }
+            for (int i = 0; i < this.normal.length; i++) {
+                reserve(channel, bb, 4);
+                bb.putInt(this.normal[i]);
+            }
+            for (int i = 0; i < this.obliquity.length; i++) {
+                reserve(channel, bb, 2);
+                bb.putChar(this.obliquity[i]);
+            }
+            flush(channel, bb);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write the header and the region dictionary of a G-buffer file, starting at the
+     * position of the channel
+     *
+     * @return The length of the header in bytes, where the pixels start
+     */
+    static long writeHeader(FileChannel channel, RenderView view, String[] regionNames, int[] regionIDs,
+            Material[] materials) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(BUFFER_SIZE);
+        long start = channel.position();
+        putHeader(channel, bb, view, regionNames, regionIDs, materials);
+        flush(channel, bb);
+        return channel.position() - start;
+    }
+
+    /**
+     * Put the header in the buffer, writing out the buffer when it fills
+     */
+    private static void putHeader(FileChannel channel, ByteBuffer bb, RenderView view, String[] regionNames,
+            int[] regionIDs, Material[] materials) throws IOException {
+        bb.putInt(MAGIC);
+        bb.put(VERSION);
+        bb.putInt(view.getWidth());
+        bb.putInt(view.getHeight());
+        putTuple(bb, view.getGridStart().getX(), view.getGridStart().getY(), view.getGridStart().getZ());
+        putTuple(bb, view.getXDir().getX(), view.getXDir().getY(), view.getXDir().getZ());
+        putTuple(bb, view.getYDir().getX(), view.getYDir().getY(), view.getYDir().getZ());
+        putTuple(bb, view.getDirection().getX(), view.getDirection().getY(), view.getDirection().getZ());
+        bb.putDouble(view.getDelta());
+        bb.putInt(regionNames.length);
+        for (int r = 0; r < regionNames.length; r++) {
+            byte[] name = regionNames[r].getBytes(StandardCharsets.UTF_8);
+            byte[] materialName = materials[r] == null || materials[r].getName() == null ? new byte[0]
+                    : materials[r].getName().getBytes(StandardCharsets.UTF_8);
+            reserve(channel, bb, 2 + name.length + 4 + 1 + 2 + materialName.length + 4 + 3 * 8 + 4);
+            bb.putShort((short) name.length);
+            bb.put(name);
+            bb.putInt(regionIDs[r]);
+            Material mat = materials[r];
+            bb.put((byte) (mat == null ? 0 : 1));
+            if (mat != null) {
+                bb.putShort((short) materialName.length);
+                bb.put(materialName);
+                bb.putInt(mat.getColor().getRGB());
+                bb.putDouble(mat.getKs());
+                bb.putDouble(mat.getKd());
+                bb.putDouble(mat.getKa());
+                bb.putInt(mat.getAlpha());
+            }
+        }
+    }
+
+    /**
+     * Read a G-buffer saved by write()
+     *
+     * @param file The file to read
+     * @return The G-buffer
+     * @throws IOException If the file cannot be read or is not a G-buffer
+     */
+    public static GBuffer read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer bb = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, raf.length());
+            if (bb.remaining() < 13 || bb.getInt() != MAGIC) {
+                throw new IOException("Not a G-buffer file: " + file);
+            }
+            byte version = bb.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported G-buffer version: " + version);
+            }
+            int width = bb.getInt();
+            int height = bb.getInt();
+            Point gridStart = new Point(bb.getDouble(), bb.getDouble(), bb.getDouble());
+            Vector3 xDir = new Vector3(bb.getDouble(), bb.getDouble(), bb.getDouble());
+            Vector3 yDir = new Vector3(bb.getDouble(), bb.getDouble(), bb.getDouble());
+            Vector3 direction = new Vector3(bb.getDouble(), bb.getDouble(), bb.getDouble());
+            double delta = bb.getDouble();
+            RenderView view = new RenderView(gridStart, xDir, yDir, direction, delta, width, height);
+
+            int regionCount = bb.getInt();
+            String[] names = new String[regionCount];
+            int[] ids = new int[regionCount];
+            Material[] materials = new Material[regionCount];
+            for (int r = 0; r < regionCount; r++) {
+                names[r] = getString(bb);
+                ids[r] = bb.getInt();
+                if (bb.get() != 0) {
+                    String materialName = getString(bb);
+                    Material mat = new Material(materialName, new Color(bb.getInt(), true));
+                    mat.setKs(bb.getDouble());
+                    mat.setKd(bb.getDouble());
+                    mat.setKa(bb.getDouble());
+                    mat.setAlpha(bb.getInt());
+                    materials[r] = mat;
+                }
+            }
+
+            GBuffer gbuffer = new GBuffer(view, names, ids, materials);
+            int size = width * height;
+            if (bb.remaining() != 14L * size) {
+                throw new IOException("G-buffer file is truncated: " + file);
+            }
+            bb.asIntBuffer().get(gbuffer.region);
+            bb.position(bb.position() + 4 * size);
+            bb.asFloatBuffer().get(gbuffer.depth);
+            bb.position(bb.position() + 4 * size);
+            bb.asIntBuffer().get(gbuffer.normal);
+            bb.position(bb.position() + 4 * size);
+            bb.asCharBuffer().get(gbuffer.obliquity);
+            return gbuffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String getString(ByteBuffer bb) {
+        byte[] bytes = new byte[bb.getShort() & 0xffff];
+        bb.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putTuple(ByteBuffer bb, double x, double y, double z) {
+        bb.putDouble(x);
+        bb.putDouble(y);
+        bb.putDouble(z);
+    }
+
+    /**
+     * Write out the buffer if it does not have room for the specified number of bytes
+     */
+    private static void reserve(FileChannel channel, ByteBuffer bb, int bytes) throws IOException {
+        if (bb.remaining() < bytes) {
+            flush(channel, bb);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer bb) throws IOException {
+        bb.flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        bb.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "GBuffer: " + view.getWidth() + " x " + view.getHeight() + ", " + regionNames.length + " regions";
+    }
+}
@@ -0,0 +1,155 @@
+package org.brlcad.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+
+/**
+ * Collects the first hit of every pixel of the final pass into a G-buffer. Given a file,
+ * the sink writes the final tiles straight into it (as PixFileSink does for colors), so
+ * only the tiles being written are in memory; otherwise it keeps a GBuffer in memory.
+ * Adding the sink to its Renderer is up to the caller, but the sink turns on the
+ * recording of surfaces itself.
+ */
+public class GBufferSink implements TileSink {
+
+    private final Renderer renderer;
+    private final File file;
+    private GBuffer gbuffer;
+    private RenderView view;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long pixelStart;
+    private int passes;
+    private boolean complete;
+
+    /**
+     * @param renderer The Renderer whose tiles this sink will receive
+     */
+    public GBufferSink(Renderer renderer) {
+        this(renderer, null);
+    }
+
+    /**
+     * @param renderer The Renderer whose tiles this sink will receive
+     * @param file The file to write the G-buffer to (may be null to keep it in memory)
+     */
+    public GBufferSink(Renderer renderer, File file) {
+        this.renderer = renderer;
+        this.file = file;
+        renderer.setRecordSurfaces(true);
+    }
+
+    public void renderStarted(RenderView view, int passes) throws IOException {
+        RegionTable regions = this.renderer.getRegionTable();
+        String[] names = new String[regions.size()];
+        int[] ids = new int[regions.size()];
+        for (int r = 0; r < names.length; r++) {
+            names[r] = regions.getName(r);
+            ids[r] = regions.getRegionID(r);
+        }
+        this.view = view;
+        this.passes = passes;
+        this.complete = false;
+        this.gbuffer = null;
+        if (this.file == null) {
+            this.gbuffer = new GBuffer(view, names, ids, this.renderer.resolveMaterials());
+            return;
+        }
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.channel = this.raf.getChannel();
+        this.channel.truncate(0);
+        this.pixelStart = GBuffer.writeHeader(this.channel, view, names, ids, this.renderer.resolveMaterials());
+        this.raf.setLength(this.pixelStart + 14L * view.getWidth() * view.getHeight());
+    }
+
+    public void tileFinished(RenderTile tile) throws IOException {
+        if (!tile.isFinal()) {
+            return;
+        }
+        if (!tile.hasSurfaces()) {
+            throw new IllegalStateException("The Renderer is not recording surfaces");
+        }
+        if (this.channel == null) {
+            // tiles never overlap, so no locking is needed
+            for (int row = 0; row < tile.getHeight(); row++) {
+                for (int column = 0; column < tile.getWidth(); column++) {
+                    this.gbuffer.set(tile.getX() + column, tile.getY() + row, tile.getRegion(column, row),
+                            tile.getDepth(column, row), tile.getPackedNormal(column, row));
+                }
+            }
+            return;
+        }
+
+        // each row of the tile goes into the four arrays of the file
+        long size = (long) this.view.getWidth() * this.view.getHeight();
+        ByteBuffer regions = ByteBuffer.allocate(4 * tile.getWidth());
+        ByteBuffer depths = ByteBuffer.allocate(4 * tile.getWidth());
+        ByteBuffer normals = ByteBuffer.allocate(4 * tile.getWidth());
+        ByteBuffer obliquities = ByteBuffer.allocate(2 * tile.getWidth());
+        for (int row = 0; row < tile.getHeight(); row++) {
+            regions.clear();
+            depths.clear();
+            normals.clear();
+            obliquities.clear();
+            for (int column = 0; column < tile.getWidth(); column++) {
+                int region = tile.getRegion(column, row);
+                regions.putInt(region);
+                if (region == PreppedDb.NO_REGION) {
+                    depths.putFloat(0.0f);
+                    normals.putInt(0);
+                    obliquities.putChar((char) 0);
+                } else {
+                    int normal = tile.getPackedNormal(column, row);
+                    depths.putFloat(tile.getDepth(column, row));
+                    normals.putInt(normal);
+                    obliquities.putChar(GBuffer.packObliquity(normal, this.view.getDirection()));
+                }
+            }
+            long pixel = (long) (tile.getY() + row) * this.view.getWidth() + tile.getX();
+            write(regions, this.pixelStart + 4L * pixel);
+            write(depths, this.pixelStart + 4L * size + 4L * pixel);
+            write(normals, this.pixelStart + 8L * size + 4L * pixel);
+            write(obliquities, this.pixelStart + 12L * size + 2L * pixel);
+        }
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        // positional writes may come from any number of threads at once
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    public void passFinished(int pass) {
+        this.complete = pass == this.passes - 1;
+    }
+
+    public void renderFinished() throws IOException {
+        if (this.raf != null) {
+            this.raf.close();
+            this.raf = null;
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Get the G-buffer of the last render. A sink without a file returns the G-buffer it
+     * kept in memory (only complete once the render has finished), a sink with a file reads
+     * it back from the file (see GBuffer.read()) once the final pass is done.
+     *
+     * @return The G-buffer, or null if the file has no complete G-buffer
+     * @throws IOException If the file cannot be read
+     */
+    public GBuffer getGBuffer() throws IOException {
+        if (this.gbuffer == null && this.file != null && this.complete && this.channel == null) {
+            this.gbuffer = GBuffer.read(this.file);
+        }
+        return this.gbuffer;
+    }
+}
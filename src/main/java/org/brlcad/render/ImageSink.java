@@ -0,0 +1,64 @@
+package org.brlcad.render;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps the whole image in memory, for small images and for clients that display it.
+ * Every pass is copied in, so the image always shows the latest version of each tile.
+ */
+public class ImageSink implements TileSink {
+
+    private int width;
+    private int height;
+    private int[] rgb;
+
+    public void renderStarted(RenderView view, int passes) {
+        this.width = view.getWidth();
+        this.height = view.getHeight();
+        this.rgb = new int[this.width * this.height];
+    }
+
+    public void tileFinished(RenderTile tile) {
+        // tiles never overlap, so no locking is needed
+        for (int row = 0; row < tile.getHeight(); row++) {
+            int index = (tile.getY() + row) * this.width + tile.getX();
+            for (int column = 0; column < tile.getWidth(); column++) {
+                this.rgb[index++] = tile.getRgb(column, row);
+            }
+        }
+    }
+
+    public void passFinished(int pass) {
+    }
+
+    public void renderFinished() {
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param column The column of the image
+     * @param row The row of the image (0 at the bottom)
+     * @return The color of the pixel, as 0xRRGGBB
+     */
+    public int getRgb(int column, int row) {
+        return rgb[row * width + column];
+    }
+
+    /**
+     * @return The image the right way up (row 0 of the view at the bottom)
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+        for (int row = 0; row < this.height; row++) {
+            image.setRGB(0, this.height - 1 - row, this.width, 1, this.rgb, row * this.width, this.width);
+        }
+        return image;
+    }
+}
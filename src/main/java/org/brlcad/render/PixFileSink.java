@@ -0,0 +1,66 @@
+package org.brlcad.render;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the final tiles of an image straight into a BRL-CAD pix file (red, green and
+ * blue bytes per pixel, bottom row first), so only the tiles being written are in memory.
+ * Preview tiles are ignored.
+ */
+public class PixFileSink implements TileSink {
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private int width;
+
+    /**
+     * @param file The pix file to write (replaced if it exists)
+     */
+    public PixFileSink(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void renderStarted(RenderView view, int passes) throws IOException {
+        this.width = view.getWidth();
+        this.raf = new RandomAccessFile(this.file, "rw");
+        this.channel = this.raf.getChannel();
+        this.channel.truncate(0);
+        this.raf.setLength(3L * view.getWidth() * view.getHeight());
+    }
+
+    public void tileFinished(RenderTile tile) throws IOException {
+        if (!tile.isFinal()) {
+            return;
+        }
+        byte[] bytes = new byte[3 * tile.getWidth()];
+        for (int row = 0; row < tile.getHeight(); row++) {
+            tile.getBytes(row, bytes, 0);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long position = 3L * ((long) (tile.getY() + row) * this.width + tile.getX());
+            // positional writes may come from any number of threads at once
+            while (buffer.hasRemaining()) {
+                position += this.channel.write(buffer, position);
+            }
+        }
+    }
+
+    public void passFinished(int pass) {
+    }
+
+    public void renderFinished() throws IOException {
+        if (this.raf != null) {
+            this.raf.close();
+            this.raf = null;
+            this.channel = null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.brlcad.render;
+
+import java.io.PrintStream;
+
+/**
+ * The rays shot by one Renderer.render(), and what full supersampling would have cost
+ */
+public class RenderStats {
+
+    private final long pixels;
+    private final int passes;
+    private final int antiAliasSamples;
+    private final long primaryRays;
+    private final long apronRays;
+    private final long subsampleRays;
+    private final long edgePixels;
+    private final long millis;
+
+    RenderStats(long pixels, int passes, int antiAliasSamples, long primaryRays, long apronRays, long subsampleRays,
+            long edgePixels, long millis) {
+        this.pixels = pixels;
+        this.passes = passes;
+        this.antiAliasSamples = antiAliasSamples;
+        this.primaryRays = primaryRays;
+        this.apronRays = apronRays;
+        this.subsampleRays = subsampleRays;
+        this.edgePixels = edgePixels;
+        this.millis = millis;
+    }
+
+    /**
+     * @return The number of pixels in the image
+     */
+    public long getPixels() {
+        return pixels;
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return The number of subsamples along each edge of an anti-aliased pixel (1 if off)
+     */
+    public int getAntiAliasSamples() {
+        return antiAliasSamples;
+    }
+
+    /**
+     * @return The number of rays shot for the pixels themselves, over all passes
+     */
+    public long getPrimaryRays() {
+        return primaryRays;
+    }
+
+    /**
+     * @return The number of rays shot just outside the tiles, to find edges between tiles
+     */
+    public long getApronRays() {
+        return apronRays;
+    }
+
+    /**
+     * @return The number of extra rays shot inside edge pixels
+     */
+    public long getSubsampleRays() {
+        return subsampleRays;
+    }
+
+    /**
+     * @return The number of pixels that were anti-aliased
+     */
+    public long getEdgePixels() {
+        return edgePixels;
+    }
+
+    /**
+     * @return The total number of rays shot
+     */
+    public long getRays() {
+        return primaryRays + apronRays + subsampleRays;
+    }
+
+    /**
+     * @return The number of rays that supersampling every pixel would shoot
+     */
+    public long getSupersamplingRays() {
+        return pixels * antiAliasSamples * antiAliasSamples;
+    }
+
+    /**
+     * @return The time taken, in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Print the ray counts
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        out.println(String.format("%d pixels in %d passes: %d rays (%d primary, %d apron, %d subsample) in %d ms",
+                this.pixels, this.passes, this.getRays(), this.primaryRays, this.apronRays, this.subsampleRays,
+                this.millis));
+        if (this.antiAliasSamples > 1) {
+            out.println(String.format("%d edge pixels (%.1f%%) anti-aliased with %d x %d samples: %.1f%% of the %d rays of full supersampling",
+                    this.edgePixels, 100.0 * this.edgePixels / this.pixels, this.antiAliasSamples,
+                    this.antiAliasSamples, 100.0 * this.getRays() / this.getSupersamplingRays(),
+                    this.getSupersamplingRays()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenderStats: " + this.pixels + " pixels, " + this.getRays() + " rays, " + this.edgePixels
+                + " edge pixels";
+    }
+}
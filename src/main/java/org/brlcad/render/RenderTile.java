@@ -0,0 +1,153 @@
+package org.brlcad.render;
+
+/**
+ * One square (or, at the edges of the image, rectangular) tile of an image, as finished
+ * by one pass of a Renderer. On a coarse pass only one pixel of each block of pixels is
+ * shot, and its color fills the whole block.
+ */
+public class RenderTile {
+
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final int pass;
+    private final int blockSize;
+    private final boolean last;
+    private final int[] rgb;
+    private int[] regions;
+    private float[] depths;
+    /** packed as by GBuffer.packNormal() */
+    private int[] normals;
+
+    RenderTile(int x, int y, int width, int height, int pass, int blockSize, boolean last, int[] rgb) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.pass = pass;
+        this.blockSize = blockSize;
+        this.last = last;
+        this.rgb = rgb;
+    }
+
+    void setSurfaces(int[] regions, float[] depths, int[] normals) {
+        this.regions = regions;
+        this.depths = depths;
+        this.normals = normals;
+    }
+
+    /**
+     * @return The column of the image of the first column of the tile
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return The row of the image of the first (bottom) row of the tile
+     */
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The pass that finished the tile (0 for the coarsest)
+     */
+    public int getPass() {
+        return pass;
+    }
+
+    /**
+     * @return The width and height of the blocks of pixels that share one ray on this pass
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return True if this is the final version of the tile, with a ray for every pixel
+     */
+    public boolean isFinal() {
+        return last;
+    }
+
+    /**
+     * @param column The column within the tile
+     * @param row The row within the tile
+     * @return The color of the pixel, as 0xRRGGBB
+     */
+    public int getRgb(int column, int row) {
+        return rgb[row * width + column];
+    }
+
+    /**
+     * @return True if the tile has the first hit of each pixel (only final tiles of a
+     * Renderer that records surfaces do)
+     */
+    public boolean hasSurfaces() {
+        return regions != null;
+    }
+
+    /**
+     * @param column The column within the tile
+     * @param row The row within the tile
+     * @return The index in the RegionTable of the first region hit (PreppedDb.NO_REGION for a miss)
+     */
+    public int getRegion(int column, int row) {
+        return regions[row * width + column];
+    }
+
+    /**
+     * @return The distance along the ray to the first hit, in millimeters
+     */
+    public float getDepth(int column, int row) {
+        return depths[row * width + column];
+    }
+
+    /**
+     * @param axis 0, 1 or 2 for the X, Y or Z component
+     * @return One component of the unit normal at the first hit
+     */
+    public float getNormal(int column, int row, int axis) {
+        return (float) GBuffer.unpackNormal(normals[row * width + column]).get(axis);
+    }
+
+    /**
+     * @return The unit normal at the first hit, packed as by GBuffer.packNormal()
+     */
+    int getPackedNormal(int column, int row) {
+        return normals[row * width + column];
+    }
+
+    /**
+     * Copy one row of the tile as red, green and blue bytes
+     *
+     * @param row The row within the tile
+     * @param bytes The array to copy into
+     * @param offset The index in bytes of the red byte of the first pixel
+     */
+    public void getBytes(int row, byte[] bytes, int offset) {
+        int index = row * width;
+        for (int column = 0; column < width; column++) {
+            int color = rgb[index++];
+            bytes[offset++] = (byte) (color >> 16);
+            bytes[offset++] = (byte) (color >> 8);
+            bytes[offset++] = (byte) color;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RenderTile: " + width + " x " + height + " at (" + x + ", " + y + "), pass " + pass + ", blocks of "
+                + blockSize;
+    }
+}
@@ -0,0 +1,144 @@
+package org.brlcad.render;
+
+import javax.measure.quantity.Angle;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Vector3;
+import org.jscience.physics.amount.Amount;
+
+/**
+ * An orthographic view: a grid of parallel rays, one per pixel. The ray of column c and
+ * row r starts at gridStart + c * delta * xDir + r * delta * yDir, so row 0 is the bottom
+ * row of the image, as in a BRL-CAD pix file.
+ */
+public class RenderView {
+
+    private final Point gridStart;
+    private final Vector3 xDir;
+    private final Vector3 yDir;
+    private final Vector3 direction;
+    private final double delta;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param gridStart The start of the ray for column 0 and row 0
+     * @param xDir The unit vector along a row of the image
+     * @param yDir The unit vector along a column of the image
+     * @param direction The direction of all the rays
+     * @param delta The distance between neighbouring rays
+     * @param width The number of columns
+     * @param height The number of rows
+     */
+    public RenderView(Point gridStart, Vector3 xDir, Vector3 yDir, Vector3 direction, double delta, int width,
+            int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("The image must have at least one pixel: " + width + " x " + height);
+        }
+        if (!(delta > 0.0)) {
+            throw new IllegalArgumentException("The pixel spacing must be positive: " + delta);
+        }
+        this.gridStart = new Point(gridStart);
+        this.xDir = new Vector3(xDir);
+        this.yDir = new Vector3(yDir);
+        this.direction = new Vector3(direction);
+        this.delta = delta;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Make a square view of the whole of a bounding box, the way Rt always has: the grid
+     * covers the bounding sphere of the box and starts one radius in front of its center
+     *
+     * @param bb The bounding box of the model
+     * @param direction The direction of the rays
+     * @param size The width and height of the image in pixels
+     * @return The view
+     */
+    public static RenderView fromBoundingBox(BoundingBox bb, Vector3 direction, int size) {
+        Vector3 rayDir = new Vector3(direction);
+        rayDir.normalize();
+        Vector3 xDir = rayDir.crossProduct(new Vector3(0, 0, 1));
+        if (xDir.magnitude() < 1.0e-9) {
+            // looking straight up or down
+            xDir = rayDir.crossProduct(new Vector3(0, 1, 0));
+        }
+        xDir.normalize();
+        Vector3 yDir = xDir.crossProduct(rayDir);
+        yDir.normalize();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        double radius = bb.getDiameter().magnitude() / 2.0;
+        Point gridStart = new Point(center);
+        gridStart.join(-radius, rayDir);
+        gridStart.join(-radius, yDir);
+        gridStart.join(-radius, xDir);
+        return new RenderView(gridStart, xDir, yDir, rayDir, radius * 2.0 / size, size, size);
+    }
+
+    /**
+     * @param bb The bounding box of the model
+     * @param azimuth The azimuth of the view (see Vector3.fromAzimuthAndElevation())
+     * @param elevation The elevation of the view
+     * @param size The width and height of the image in pixels
+     * @return The view
+     */
+    public static RenderView fromAzimuthAndElevation(BoundingBox bb, Amount<Angle> azimuth, Amount<Angle> elevation,
+            int size) {
+        return fromBoundingBox(bb, Vector3.fromAzimuthAndElevation(azimuth, elevation), size);
+    }
+
+    /**
+     * @param column The column, which may be fractional for rays between pixel centers
+     * @param row The row, which may be fractional
+     * @return The start of the ray through that point of the image
+     */
+    public Point getRayStart(double column, double row) {
+        Point start = new Point(this.gridStart);
+        start.join(this.delta * row, this.yDir);
+        start.join(this.delta * column, this.xDir);
+        return start;
+    }
+
+    public Point getGridStart() {
+        return new Point(gridStart);
+    }
+
+    public Vector3 getXDir() {
+        return new Vector3(xDir);
+    }
+
+    public Vector3 getYDir() {
+        return new Vector3(yDir);
+    }
+
+    /**
+     * @return The direction of all the rays
+     */
+    public Vector3 getDirection() {
+        return new Vector3(direction);
+    }
+
+    /**
+     * @return The distance between neighbouring rays
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderView: " + this.width + " x " + this.height + " pixels of " + this.delta + " mm, direction "
+                + this.direction;
+    }
+}
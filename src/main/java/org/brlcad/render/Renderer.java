@@ -0,0 +1,757 @@
+package org.brlcad.render;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.brlcad.geometry.OverlapHandler;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.shading.ColorTable;
+import org.brlcad.shading.Light;
+import org.brlcad.shading.Material;
+import org.brlcad.shading.PackedPhong;
+import org.brlcad.shading.Phong;
+import org.brlcad.shading.Shader;
+import org.brlcad.spacePartition.PacketStats;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.brlcad.spacePartition.ViewCache;
+
+/**
+ * Renders a view of a PreppedDb as square tiles, shot by a work stealing pool of threads.
+ * Each finished tile goes to the TileSinks, so the whole image never has to be held in
+ * memory.
+ * <p>
+ * With preview levels, the first pass shoots one ray per block of 2^levels by 2^levels
+ * pixels, so a framebuffer shows the whole image almost at once. Each later pass halves
+ * the block size and shoots only the pixels that no earlier pass shot, until every pixel
+ * has its own ray. Between passes each tile keeps the colors of the pixels it has shot,
+ * which is at most a quarter of the image.
+ * <p>
+ * Anti-aliasing is adaptive: the final pass compares each pixel with its four neighbours
+ * (using a ring of rays just outside the tile for the pixels on its border), and only
+ * where the first region hit, its depth or its normal differ is the pixel shot again
+ * with a grid of subsamples.
+ */
+public class Renderer {
+
+    /** the default width and height of a tile in pixels */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /** the default largest angle between the normals of neighbouring pixels that is not an edge */
+    public static final double DEFAULT_NORMAL_THRESHOLD = 20.0;
+
+    /** the default largest difference in depth between neighbouring pixels that is not an edge, in pixel spacings */
+    public static final double DEFAULT_DEPTH_THRESHOLD = 4.0;
+
+    /** the rays of a tile are shot as packets of this many by this many pixels */
+    private static final int PACKET_SIDE = 4;
+
+    /** the region of a pixel outside the image, which is never on an edge */
+    private static final int OUTSIDE = -2;
+
+    private final PreppedDb prepped;
+    private final RenderView view;
+    private final List<TileSink> sinks = new ArrayList<TileSink>();
+    private Shader shader;
+    private Color background = new Color(200, 200, 200);
+    private ColorTable colorTable;
+    private OverlapHandler overlapHandler;
+    private PacketStats packetStats;
+    private int tileSize = DEFAULT_TILE_SIZE;
+    private int previewLevels = 3;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int antiAliasSamples = 1;
+    private double depthThreshold;
+    private double normalThreshold = DEFAULT_NORMAL_THRESHOLD;
+    private boolean recordSurfaces;
+
+    /**
+     * @param prepped The prepped model to render
+     * @param view The view to render
+     */
+    public Renderer(PreppedDb prepped, RenderView view) {
+        this.prepped = prepped;
+        this.view = view;
+    }
+
+    public RenderView getView() {
+        return view;
+    }
+
+    RegionTable getRegionTable() {
+        return prepped.getRegionTable();
+    }
+
+    /**
+     * @param sink A sink to send the tiles to
+     */
+    public void addSink(TileSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink must not be null");
+        }
+        this.sinks.add(sink);
+    }
+
+    public List<TileSink> getSinks() {
+        return Collections.unmodifiableList(sinks);
+    }
+
+    /**
+     * @param shader The shader (null for Phong with one white light at the center of the
+     * grid, as Rt uses)
+     */
+    public void setShader(Shader shader) {
+        this.shader = shader;
+    }
+
+    public Shader getShader() {
+        return shader;
+    }
+
+    /**
+     * @param background The color of pixels whose ray misses the model
+     */
+    public void setBackground(Color background) {
+        if (background == null) {
+            throw new IllegalArgumentException("Background must not be null");
+        }
+        this.background = background;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    /**
+     * @param colorTable The colors of regions that have no material, by ident (may be null)
+     */
+    public void setColorTable(ColorTable colorTable) {
+        this.colorTable = colorTable;
+    }
+
+    public ColorTable getColorTable() {
+        return colorTable;
+    }
+
+    /**
+     * @param overlapHandler The OverlapHandler to use (null for a quiet SimpleOverlapHandler
+     * that records overlaps in the OverlapCollector of the PreppedDb, if one is set). It
+     * must return the Partitions it is given, or copies made with Partition(Partition),
+     * since their region index picks the material and the region of each pixel.
+     */
+    public void setOverlapHandler(OverlapHandler overlapHandler) {
+        this.overlapHandler = overlapHandler;
+    }
+
+    public OverlapHandler getOverlapHandler() {
+        return overlapHandler;
+    }
+
+    /**
+     * @param packetStats Receives the statistics of the packets shot (may be null)
+     */
+    public void setPacketStats(PacketStats packetStats) {
+        this.packetStats = packetStats;
+    }
+
+    public PacketStats getPacketStats() {
+        return packetStats;
+    }
+
+    /**
+     * @param tileSize The width and height of a tile in pixels (a multiple of the
+     * largest block size, 2^previewLevels, keeps the blocks aligned across tiles)
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param previewLevels The number of coarse passes before the final one (0 renders
+     * each tile once, keeping nothing between passes)
+     */
+    public void setPreviewLevels(int previewLevels) {
+        if (previewLevels < 0 || previewLevels > 8) {
+            throw new IllegalArgumentException("Preview levels must be between 0 and 8: " + previewLevels);
+        }
+        this.previewLevels = previewLevels;
+    }
+
+    public int getPreviewLevels() {
+        return previewLevels;
+    }
+
+    /**
+     * @param threads The number of threads to shoot rays with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param antiAliasSamples The number of subsamples along each edge of a pixel on an
+     * edge (so an edge pixel gets antiAliasSamples squared rays), or 1 for no anti-aliasing
+     */
+    public void setAntiAliasSamples(int antiAliasSamples) {
+        if (antiAliasSamples < 1 || antiAliasSamples > 4) {
+            throw new IllegalArgumentException("Anti-alias samples must be between 1 and 4: " + antiAliasSamples);
+        }
+        this.antiAliasSamples = antiAliasSamples;
+    }
+
+    public int getAntiAliasSamples() {
+        return antiAliasSamples;
+    }
+
+    /**
+     * @param depthThreshold The largest difference in millimeters between the depths of the
+     * first hits of neighbouring pixels that is not an edge (0 for four pixel spacings)
+     */
+    public void setDepthThreshold(double depthThreshold) {
+        if (!(depthThreshold >= 0.0)) {
+            throw new IllegalArgumentException("Depth threshold must not be negative: " + depthThreshold);
+        }
+        this.depthThreshold = depthThreshold;
+    }
+
+    public double getDepthThreshold() {
+        return depthThreshold;
+    }
+
+    /**
+     * @param normalThreshold The largest angle in degrees between the normals of the first
+     * hits of neighbouring pixels that is not an edge
+     */
+    public void setNormalThreshold(double normalThreshold) {
+        if (!(normalThreshold >= 0.0 && normalThreshold <= 180.0)) {
+            throw new IllegalArgumentException("Normal threshold must be between 0 and 180 degrees: "
+                    + normalThreshold);
+        }
+        this.normalThreshold = normalThreshold;
+    }
+
+    public double getNormalThreshold() {
+        return normalThreshold;
+    }
+
+    /**
+     * @param recordSurfaces True to give the final tiles the region, depth and normal of
+     * the first hit of each pixel (see RenderTile.hasSurfaces())
+     */
+    public void setRecordSurfaces(boolean recordSurfaces) {
+        this.recordSurfaces = recordSurfaces;
+    }
+
+    public boolean isRecordSurfaces() {
+        return recordSurfaces;
+    }
+
+    /**
+     * Render the view, sending every tile of every pass to the sinks
+     *
+     * @return The rays shot
+     * @throws IOException If a sink fails
+     */
+    public RenderStats render() throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<TileState> tiles = new ArrayList<TileState>();
+        for (int y = 0; y < this.view.getHeight(); y += this.tileSize) {
+            for (int x = 0; x < this.view.getWidth(); x += this.tileSize) {
+                tiles.add(new TileState(x, y, Math.min(this.tileSize, this.view.getWidth() - x),
+                        Math.min(this.tileSize, this.view.getHeight() - y)));
+            }
+        }
+        int passes = this.previewLevels + 1;
+        Shader tileShader = this.shader != null ? this.shader : this.defaultShader();
+        // looked up once, so shading a pixel is an array index rather than a search
+        Material[] materials = this.resolveMaterials();
+        PackedPhong packed = tileShader.getClass() == Phong.class ? new PackedPhong((Phong) tileShader, materials)
+                : null;
+        OverlapHandler oh = this.overlapHandler;
+        if (oh == null) {
+            oh = new SimpleOverlapHandler(this.prepped.getOverlapCollector());
+            oh.setQuiet(true);
+        }
+        ViewCache viewCache = this.prepped.createViewCache(this.view.getDirection());
+        Counts counts = new Counts();
+
+        ForkJoinPool pool = null;
+        boolean finished = false;
+        try {
+            for (TileSink sink : this.sinks) {
+                sink.renderStarted(this.view, passes);
+            }
+            pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+            for (int pass = 0; pass < passes; pass++) {
+                Pass work = new Pass(pass, 1 << (this.previewLevels - pass), pass == passes - 1, tileShader,
+                        materials, packed, oh, viewCache, counts);
+                if (pool == null) {
+                    for (TileState tile : tiles) {
+                        work.render(tile);
+                    }
+                } else {
+                    pool.invoke(new TileRange(work, tiles, 0, tiles.size()));
+                }
+                if (work.failure.get() != null) {
+                    throw work.failure.get();
+                }
+                for (TileSink sink : this.sinks) {
+                    sink.passFinished(pass);
+                }
+            }
+            finished = true;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (TileSink sink : this.sinks) {
+                if (finished) {
+                    sink.renderFinished();
+                } else {
+                    try {
+                        sink.renderFinished();
+                    } catch (IOException e) {
+                        // report the first failure
+                    }
+                }
+            }
+        }
+        return new RenderStats((long) this.view.getWidth() * this.view.getHeight(), passes, this.antiAliasSamples,
+                counts.primary.get(), counts.apron.get(), counts.subsamples.get(), counts.edgePixels.get(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    private Shader defaultShader() {
+        return defaultShader(this.view);
+    }
+
+    /**
+     * @return Phong with one white light at the center of the grid of a view
+     */
+    static Shader defaultShader(RenderView view) {
+        Set<Light> lights = new HashSet<Light>();
+        Point center = view.getRayStart(0.5 * view.getWidth(), 0.5 * view.getHeight());
+        lights.add(new Light(center, Color.WHITE, Color.WHITE));
+        return new Phong(lights);
+    }
+
+    /**
+     * @return The material each region is shaded with, by region index: its own material,
+     * or else a material of its color in the color table, or else null
+     */
+    Material[] resolveMaterials() {
+        RegionTable regions = this.prepped.getRegionTable();
+        Material[] materials = new Material[regions.size()];
+        for (int r = 0; r < materials.length; r++) {
+            materials[r] = regions.getMaterial(r);
+            if (materials[r] == null && this.colorTable != null) {
+                Color matColor = this.colorTable.getColor(regions.getRegionID(r));
+                if (matColor != null) {
+                    materials[r] = new Material("dummy", matColor);
+                }
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * The position of a tile, and the colors it has shot so far
+     */
+    private static class TileState {
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        /** the colors of the pixels shot by the passes so far, on the grid of the last pass */
+        int[] samples;
+        /** the first hits of those pixels, when anti-aliasing or recording surfaces */
+        Surface surface;
+
+        TileState(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * The region, depth and normal of the first hit of each of a set of rays, in 12 bytes
+     * a ray (the normal packed as in GBuffer)
+     */
+    private static class Surface {
+
+        final int[] region;
+        final float[] depth;
+        final int[] normal;
+        private final double[] normalI = new double[3];
+        private final double[] normalJ = new double[3];
+
+        Surface(int size) {
+            this.region = new int[size];
+            this.depth = new float[size];
+            this.normal = new int[size];
+        }
+
+        void set(int i, SortedSet<Partition> parts) {
+            if (parts.isEmpty()) {
+                this.region[i] = PreppedDb.NO_REGION;
+                return;
+            }
+            Partition first = parts.first();
+            this.region[i] = first.getRegionIndex();
+            this.depth[i] = (float) first.getInHit().getHit_dist();
+            Vector3 n = first.getInHitNormal();
+            this.normal[i] = GBuffer.packNormal(n.getX(), n.getY(), n.getZ());
+        }
+
+        void copy(int i, Surface from, int j) {
+            this.region[i] = from.region[j];
+            this.depth[i] = from.depth[j];
+            this.normal[i] = from.normal[j];
+        }
+
+        /**
+         * @return True if there is an edge between rays i and j
+         */
+        boolean differs(int i, int j, double depthThreshold, double cosThreshold) {
+            if (this.region[j] == OUTSIDE) {
+                return false;
+            }
+            if (this.region[i] != this.region[j]) {
+                return true;
+            }
+            if (this.region[i] == PreppedDb.NO_REGION) {
+                return false;
+            }
+            if (Math.abs(this.depth[i] - this.depth[j]) > depthThreshold) {
+                return true;
+            }
+            if (this.normal[i] == this.normal[j]) {
+                return false;
+            }
+            GBuffer.unpackNormal(this.normal[i], this.normalI);
+            GBuffer.unpackNormal(this.normal[j], this.normalJ);
+            double dot = this.normalI[0] * this.normalJ[0] + this.normalI[1] * this.normalJ[1]
+                    + this.normalI[2] * this.normalJ[2];
+            return dot < cosThreshold;
+        }
+    }
+
+    /**
+     * The rays shot by all the tiles
+     */
+    private static class Counts {
+
+        final AtomicLong primary = new AtomicLong();
+        final AtomicLong apron = new AtomicLong();
+        final AtomicLong subsamples = new AtomicLong();
+        final AtomicLong edgePixels = new AtomicLong();
+    }
+
+    /**
+     * Shoots the new pixels of one pass of a tile
+     */
+    private class Pass {
+
+        final int pass;
+        final int blockSize;
+        final boolean last;
+        final Shader tileShader;
+        final Material[] materials;
+        /** the shader, when it is a plain Phong */
+        final PackedPhong packed;
+        final int backgroundRgb = background.getRGB() & 0xffffff;
+        final OverlapHandler oh;
+        final ViewCache viewCache;
+        final Counts counts;
+        final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+        Pass(int pass, int blockSize, boolean last, Shader tileShader, Material[] materials, PackedPhong packed,
+                OverlapHandler oh, ViewCache viewCache, Counts counts) {
+            this.pass = pass;
+            this.blockSize = blockSize;
+            this.last = last;
+            this.tileShader = tileShader;
+            this.materials = materials;
+            this.packed = packed;
+            this.oh = oh;
+            this.viewCache = viewCache;
+            this.counts = counts;
+        }
+
+        void render(TileState tile) {
+            if (this.failure.get() != null) {
+                return;
+            }
+            int b = this.blockSize;
+            int columns = (tile.width + b - 1) / b;
+            int rows = (tile.height + b - 1) / b;
+            int[] samples = new int[columns * rows];
+            Surface surface = antiAliasSamples > 1 || recordSurfaces ? new Surface(columns * rows) : null;
+            int[] previous = tile.samples;
+            int previousColumns = (tile.width + 2 * b - 1) / (2 * b);
+
+            Ray[] rays = new Ray[PreppedDb.MAX_PACKET_SIZE];
+            int[] index = new int[PreppedDb.MAX_PACKET_SIZE];
+            long shot = 0;
+            for (int packetRow = 0; packetRow < rows; packetRow += PACKET_SIDE) {
+                for (int packetColumn = 0; packetColumn < columns; packetColumn += PACKET_SIDE) {
+                    int count = 0;
+                    for (int row = packetRow; row < Math.min(packetRow + PACKET_SIDE, rows); row++) {
+                        for (int column = packetColumn; column < Math.min(packetColumn + PACKET_SIDE, columns);
+                                column++) {
+                            if (previous != null && row % 2 == 0 && column % 2 == 0) {
+                                // shot on an earlier pass
+                                int from = (row / 2) * previousColumns + column / 2;
+                                samples[row * columns + column] = previous[from];
+                                if (surface != null) {
+                                    surface.copy(row * columns + column, tile.surface, from);
+                                }
+                                continue;
+                            }
+                            rays[count] = new Ray(view.getRayStart(tile.x + column * b, tile.y + row * b),
+                                    view.getDirection());
+                            index[count++] = row * columns + column;
+                        }
+                    }
+                    if (count == 0) {
+                        continue;
+                    }
+                    List<SortedSet<Partition>> parts = prepped.shootPacket(rays, 0, count, this.oh, this.viewCache,
+                            packetStats);
+                    for (int i = 0; i < count; i++) {
+                        samples[index[i]] = this.shade(parts.get(i), rays[i]);
+                        if (surface != null) {
+                            surface.set(index[i], parts.get(i));
+                        }
+                    }
+                    shot += count;
+                }
+            }
+            this.counts.primary.addAndGet(shot);
+            tile.samples = this.last ? null : samples;
+            tile.surface = this.last ? null : surface;
+            if (this.last && antiAliasSamples > 1) {
+                this.antiAlias(tile, samples, surface);
+            }
+
+            int[] rgb = samples;
+            if (b > 1) {
+                rgb = new int[tile.width * tile.height];
+                for (int row = 0; row < tile.height; row++) {
+                    for (int column = 0; column < tile.width; column++) {
+                        rgb[row * tile.width + column] = samples[(row / b) * columns + column / b];
+                    }
+                }
+            }
+            RenderTile finished = new RenderTile(tile.x, tile.y, tile.width, tile.height, this.pass, b, this.last, rgb);
+            if (this.last && recordSurfaces) {
+                finished.setSurfaces(surface.region, surface.depth, surface.normal);
+            }
+            try {
+                for (TileSink sink : sinks) {
+                    sink.tileFinished(finished);
+                }
+            } catch (IOException e) {
+                this.failure.compareAndSet(null, e);
+            }
+        }
+
+        /**
+         * Find the pixels of a finished tile on an edge and replace their colors with the
+         * mean of a grid of subsamples
+         */
+        private void antiAlias(TileState tile, int[] rgb, Surface surface) {
+            int w = tile.width;
+            int h = tile.height;
+
+            // the first hits of the tile with a border of one pixel, shot for the pixels just
+            // outside the tile that are inside the image
+            int span = w + 2;
+            Surface padded = new Surface(span * (h + 2));
+            Arrays.fill(padded.region, OUTSIDE);
+            Ray[] rays = new Ray[PreppedDb.MAX_PACKET_SIZE];
+            int[] index = new int[PreppedDb.MAX_PACKET_SIZE];
+            int count = 0;
+            long shot = 0;
+            for (int row = -1; row <= h; row++) {
+                for (int column = -1; column <= w; column++) {
+                    int i = (row + 1) * span + column + 1;
+                    if (row >= 0 && row < h && column >= 0 && column < w) {
+                        padded.copy(i, surface, row * w + column);
+                        continue;
+                    }
+                    boolean corner = (row < 0 || row == h) && (column < 0 || column == w);
+                    if (corner || tile.x + column < 0 || tile.y + row < 0 || tile.x + column >= view.getWidth()
+                            || tile.y + row >= view.getHeight()) {
+                        continue;
+                    }
+                    rays[count] = new Ray(view.getRayStart(tile.x + column, tile.y + row), view.getDirection());
+                    index[count++] = i;
+                    if (count == rays.length) {
+                        this.shootSurfaces(rays, index, count, padded);
+                        shot += count;
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                this.shootSurfaces(rays, index, count, padded);
+                shot += count;
+            }
+            this.counts.apron.addAndGet(shot);
+
+            double depthTol = depthThreshold > 0.0 ? depthThreshold : DEFAULT_DEPTH_THRESHOLD * view.getDelta();
+            double cosTol = Math.cos(Math.toRadians(normalThreshold));
+            int[] edges = new int[w * h];
+            int edgeCount = 0;
+            for (int row = 0; row < h; row++) {
+                for (int column = 0; column < w; column++) {
+                    int i = (row + 1) * span + column + 1;
+                    if (padded.differs(i, i - 1, depthTol, cosTol) || padded.differs(i, i + 1, depthTol, cosTol)
+                            || padded.differs(i, i - span, depthTol, cosTol)
+                            || padded.differs(i, i + span, depthTol, cosTol)) {
+                        edges[edgeCount++] = row * w + column;
+                    }
+                }
+            }
+            this.counts.edgePixels.addAndGet(edgeCount);
+            if (edgeCount == 0) {
+                return;
+            }
+
+            // an odd grid has a subsample at the center of the pixel, which is the primary ray
+            int n = antiAliasSamples;
+            int center = n % 2 == 1 ? (n / 2) * n + n / 2 : -1;
+            int[] sums = new int[3 * edgeCount];
+            count = 0;
+            shot = 0;
+            for (int e = 0; e < edgeCount; e++) {
+                int column = tile.x + edges[e] % w;
+                int row = tile.y + edges[e] / w;
+                for (int s = 0; s < n * n; s++) {
+                    if (s == center) {
+                        add(sums, e, rgb[edges[e]]);
+                        continue;
+                    }
+                    double dx = (s % n + 0.5) / n - 0.5;
+                    double dy = (s / n + 0.5) / n - 0.5;
+                    rays[count] = new Ray(view.getRayStart(column + dx, row + dy), view.getDirection());
+                    index[count++] = e;
+                    if (count == rays.length) {
+                        this.shootSubsamples(rays, index, count, sums);
+                        shot += count;
+                        count = 0;
+                    }
+                }
+            }
+            if (count > 0) {
+                this.shootSubsamples(rays, index, count, sums);
+                shot += count;
+            }
+            this.counts.subsamples.addAndGet(shot);
+            int half = n * n / 2;
+            for (int e = 0; e < edgeCount; e++) {
+                int red = (sums[3 * e] + half) / (n * n);
+                int green = (sums[3 * e + 1] + half) / (n * n);
+                int blue = (sums[3 * e + 2] + half) / (n * n);
+                rgb[edges[e]] = (red << 16) | (green << 8) | blue;
+            }
+        }
+
+        /**
+         * @return The color of the first partition along a ray, as 0xRRGGBB
+         */
+        private int shade(SortedSet<Partition> parts, Ray ray) {
+            if (parts.isEmpty()) {
+                return this.backgroundRgb;
+            }
+            Partition first = parts.first();
+            int region = first.getRegionIndex();
+            if (this.packed != null) {
+                return this.packed.shade(region, first, ray);
+            }
+            Material material = region >= 0 ? this.materials[region] : null;
+            return this.tileShader.shade(first, material, ray.getStart()).getRGB() & 0xffffff;
+        }
+
+        private void shootSurfaces(Ray[] rays, int[] index, int count, Surface surface) {
+            List<SortedSet<Partition>> parts = prepped.shootPacket(rays, 0, count, this.oh, this.viewCache,
+                    packetStats);
+            for (int i = 0; i < count; i++) {
+                surface.set(index[i], parts.get(i));
+            }
+        }
+
+        private void shootSubsamples(Ray[] rays, int[] index, int count, int[] sums) {
+            List<SortedSet<Partition>> parts = prepped.shootPacket(rays, 0, count, this.oh, this.viewCache,
+                    packetStats);
+            for (int i = 0; i < count; i++) {
+                add(sums, index[i], this.shade(parts.get(i), rays[i]));
+            }
+        }
+    }
+
+    private static void add(int[] sums, int e, int rgb) {
+        sums[3 * e] += (rgb >> 16) & 0xff;
+        sums[3 * e + 1] += (rgb >> 8) & 0xff;
+        sums[3 * e + 2] += rgb & 0xff;
+    }
+
+    /**
+     * Renders a range of tiles, splitting it in two until there is one tile left, so idle
+     * threads can steal the other halves
+     */
+    private static class TileRange extends RecursiveAction {
+
+        private final Pass work;
+        private final List<TileState> tiles;
+        private final int start;
+        private final int end;
+
+        TileRange(Pass work, List<TileState> tiles, int start, int end) {
+            this.work = work;
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start == 1) {
+                this.work.render(this.tiles.get(this.start));
+                return;
+            }
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new TileRange(this.work, this.tiles, this.start, middle),
+                    new TileRange(this.work, this.tiles, middle, this.end));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.brlcad.render;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Triple;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.shading.Material;
+import org.brlcad.shading.PackedPhong;
+import org.brlcad.shading.Phong;
+import org.brlcad.shading.Shader;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RayData;
+
+/**
+ * Shades a GBuffer again, with any Shader, lights and materials, and sends the image to
+ * TileSinks as one final pass. No ray is shot: each pixel gets a Partition made from its
+ * first hit, so shading a view again costs a small fraction of rendering it.
+ */
+public class Reshader {
+
+    private final GBuffer gbuffer;
+    private final List<TileSink> sinks = new ArrayList<TileSink>();
+    private final Material[] materials;
+    private Shader shader;
+    private Color background = new Color(200, 200, 200);
+    private int tileSize = Renderer.DEFAULT_TILE_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param gbuffer The first hits of the view to shade
+     */
+    public Reshader(GBuffer gbuffer) {
+        this.gbuffer = gbuffer;
+        this.materials = new Material[gbuffer.getRegionCount()];
+        for (int r = 0; r < this.materials.length; r++) {
+            this.materials[r] = gbuffer.getMaterial(r);
+        }
+    }
+
+    public GBuffer getGBuffer() {
+        return gbuffer;
+    }
+
+    /**
+     * @param sink A sink to send the tiles to
+     */
+    public void addSink(TileSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink must not be null");
+        }
+        this.sinks.add(sink);
+    }
+
+    /**
+     * @param shader The shader (null for Phong with one white light at the center of the
+     * grid, as Renderer uses)
+     */
+    public void setShader(Shader shader) {
+        this.shader = shader;
+    }
+
+    public Shader getShader() {
+        return shader;
+    }
+
+    /**
+     * @param background The color of pixels that hit nothing
+     */
+    public void setBackground(Color background) {
+        if (background == null) {
+            throw new IllegalArgumentException("Background must not be null");
+        }
+        this.background = background;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    /**
+     * @param region The index of a region in the GBuffer
+     * @param material The material to shade the region with, instead of the one it was
+     * rendered with (null for the default material of the shader)
+     */
+    public void setMaterial(int region, Material material) {
+        this.materials[region] = material;
+    }
+
+    public Material getMaterial(int region) {
+        return materials[region];
+    }
+
+    /**
+     * @param tileSize The width and height of a tile in pixels
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @param threads The number of threads to shade with
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Shade every pixel, sending each tile to the sinks
+     *
+     * @throws IOException If a sink fails
+     */
+    public void render() throws IOException {
+        RenderView view = this.gbuffer.getView();
+        final Shading shading = new Shading(this.shader != null ? this.shader : Renderer.defaultShader(view));
+        List<int[]> tiles = new ArrayList<int[]>();
+        for (int y = 0; y < view.getHeight(); y += this.tileSize) {
+            for (int x = 0; x < view.getWidth(); x += this.tileSize) {
+                tiles.add(new int[] {x, y, Math.min(this.tileSize, view.getWidth() - x),
+                    Math.min(this.tileSize, view.getHeight() - y)});
+            }
+        }
+
+        ForkJoinPool pool = null;
+        boolean finished = false;
+        try {
+            for (TileSink sink : this.sinks) {
+                sink.renderStarted(view, 1);
+            }
+            if (this.threads > 1) {
+                pool = new ForkJoinPool(this.threads);
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (final int[] tile : tiles) {
+                    tasks.add(new Callable<Void>() {
+                        public Void call() throws IOException {
+                            shadeTile(tile[0], tile[1], tile[2], tile[3], shading);
+                            return null;
+                        }
+                    });
+                }
+                for (Future<Void> future : pool.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw new RuntimeException(e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while shading", e);
+                    }
+                }
+            } else {
+                for (int[] tile : tiles) {
+                    this.shadeTile(tile[0], tile[1], tile[2], tile[3], shading);
+                }
+            }
+            for (TileSink sink : this.sinks) {
+                sink.passFinished(0);
+            }
+            finished = true;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (TileSink sink : this.sinks) {
+                if (finished) {
+                    sink.renderFinished();
+                } else {
+                    try {
+                        sink.renderFinished();
+                    } catch (IOException e) {
+                        // report the first failure
+                    }
+                }
+            }
+        }
+    }
+
+    private void shadeTile(int x, int y, int width, int height, Shading shading) throws IOException {
+        int[] rgb = new int[width * height];
+        double[] scratch = new double[9];
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                rgb[row * width + column] = shading.shade(x + column, y + row, scratch);
+            }
+        }
+        RenderTile tile = new RenderTile(x, y, width, height, 0, 1, true, rgb);
+        for (TileSink sink : this.sinks) {
+            sink.tileFinished(tile);
+        }
+    }
+
+    /**
+     * What one render() shades with: the shader, the materials as they were when it
+     * started, and the grid of the view as numbers
+     */
+    private class Shading {
+
+        final Shader shader;
+        final Material[] materials = Reshader.this.materials.clone();
+        /** the shader, when it is a plain Phong */
+        final PackedPhong packed;
+        final int backgroundRgb = background.getRGB() & 0xffffff;
+        final double[] gridStart;
+        final double[] xDir;
+        final double[] yDir;
+        final double[] direction;
+        final double delta;
+
+        Shading(Shader shader) {
+            this.shader = shader;
+            this.packed = shader.getClass() == Phong.class ? new PackedPhong((Phong) shader, this.materials) : null;
+            RenderView view = gbuffer.getView();
+            this.gridStart = toArray(view.getGridStart());
+            this.xDir = toArray(view.getXDir());
+            this.yDir = toArray(view.getYDir());
+            this.direction = toArray(view.getDirection());
+            this.delta = view.getDelta();
+        }
+
+        /**
+         * @param scratch Room for the normal, the eye point and the hit point of the pixel
+         * @return The color of one pixel, as 0xRRGGBB
+         */
+        int shade(int column, int row, double[] scratch) {
+            int region = gbuffer.getRegion(column, row);
+            if (region == PreppedDb.NO_REGION) {
+                return this.backgroundRgb;
+            }
+            // the eye and hit points as RenderView.getRayStart() and Hit.getHit_pt() find them
+            double dist = gbuffer.getDepth(column, row);
+            for (int axis = 0; axis < 3; axis++) {
+                double eye = this.gridStart[axis] + this.delta * row * this.yDir[axis];
+                eye += this.delta * column * this.xDir[axis];
+                scratch[3 + axis] = eye;
+                scratch[6 + axis] = eye + dist * this.direction[axis];
+            }
+            gbuffer.getNormal(column, row, scratch);
+            if (this.packed != null) {
+                return this.packed.shade(region, scratch[6], scratch[7], scratch[8], scratch[0], scratch[1],
+                        scratch[2], this.direction[0], this.direction[1], this.direction[2], scratch[3], scratch[4],
+                        scratch[5]);
+            }
+            Vector3 dir = new Vector3(this.direction[0], this.direction[1], this.direction[2]);
+            Point eyePt = new Point(scratch[3], scratch[4], scratch[5]);
+            Ray ray = new Ray(eyePt, dir);
+            RayData rayData = new RayData(null, 0.0, null, null, null, ray);
+            Hit hit = new Hit(dist, new Point(scratch[6], scratch[7], scratch[8]),
+                    new Vector3(scratch[0], scratch[1], scratch[2]), 0, rayData, null);
+            Partition part = new Partition(hit, false, hit, false, gbuffer.getRegionName(region),
+                    gbuffer.getRegionID(region), rayData);
+            return this.shader.shade(part, this.materials[region], eyePt).getRGB() & 0xffffff;
+        }
+    }
+
+    private static double[] toArray(Triple t) {
+        return new double[] {t.getX(), t.getY(), t.getZ()};
+    }
+}
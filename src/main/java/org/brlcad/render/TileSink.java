@@ -0,0 +1,41 @@
+package org.brlcad.render;
+
+import java.io.IOException;
+
+/**
+ * Receives the tiles of an image as a Renderer finishes them. tileFinished() is called
+ * from the rendering threads, so it must be thread safe; the other methods are called
+ * on the thread that called Renderer.render().
+ */
+public interface TileSink {
+
+    /**
+     * Called before the first tile is shot
+     *
+     * @param view The view being rendered
+     * @param passes The number of passes (the tiles of the last pass are final)
+     * @throws IOException If the sink cannot be set up
+     */
+    void renderStarted(RenderView view, int passes) throws IOException;
+
+    /**
+     * @param tile A tile finished by one pass
+     * @throws IOException If the tile cannot be written
+     */
+    void tileFinished(RenderTile tile) throws IOException;
+
+    /**
+     * Called when every tile of a pass is finished
+     *
+     * @param pass The pass
+     * @throws IOException If the sink fails
+     */
+    void passFinished(int pass) throws IOException;
+
+    /**
+     * Called after the last pass, and also when rendering fails
+     *
+     * @throws IOException If the sink cannot be finished
+     */
+    void renderFinished() throws IOException;
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains the tiled render engine and the sinks that receive its tiles, and
+ * the G-buffer of first hits that lets a view be shaded again without shooting it
+ */
+
+package org.brlcad.render;
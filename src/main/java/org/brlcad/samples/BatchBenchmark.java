@@ -0,0 +1,135 @@
+package org.brlcad.samples;
+/**
+ * Measures the effect of reordering a batch of rays before shooting it
+ * (PreppedDb.shootRays()) on scattered rays and on a grid of parallel rays.
+ */
+
+
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.utils.ArrayCopy;
+
+public class BatchBenchmark
+{
+    private static final String usage = "Usage: BatchBenchmark [-n ray_count] [-r repetitions] file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        int rayCount = 100000;
+        int repetitions = 5;
+        int argNo = 0;
+        while( argNo < args.length ) {
+            if( "-n".equals(args[argNo]) ) {
+                rayCount = Integer.parseInt(args[argNo + 1]);
+                argNo += 2;
+            } else if( "-r".equals(args[argNo]) ) {
+                repetitions = Integer.parseInt(args[argNo + 1]);
+                argNo += 2;
+            } else {
+                break;
+            }
+        }
+        if( (args.length - argNo) < 2 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+            SimpleOverlapHandler overlapHandler = new SimpleOverlapHandler();
+            overlapHandler.setQuiet(true);
+
+            BoundingBox bb = prepped.getBoundingBox();
+            Point center = new Point(bb.getMin());
+            center.plus(bb.getMax());
+            center.scale(0.5);
+            Vector3 diameter = bb.getDiameter();
+            double radius = diameter.magnitude() / 2.0;
+
+            // scattered rays, from points all around the model toward random points inside it
+            Random random = new Random(1);
+            Ray[] scattered = new Ray[rayCount];
+            for( int i=0 ; i<rayCount ; i++ ) {
+                Vector3 offset = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+                offset.normalize();
+                Point start = new Point(center);
+                start.join(radius, offset);
+                Point target = new Point(bb.getMin());
+                target.plus(new Vector3(diameter.getX() * random.nextDouble(),
+                        diameter.getY() * random.nextDouble(), diameter.getZ() * random.nextDouble()));
+                Vector3 dir = Vector3.minus(target, start);
+                dir.normalize();
+                scattered[i] = new Ray(start, dir);
+            }
+
+            // a grid of parallel rays, row by row
+            int gridSize = (int) Math.sqrt(rayCount);
+            Ray[] grid = new Ray[gridSize * gridSize];
+            Vector3 dir = new Vector3(-0.7424, -0.5198, -0.4226);
+            dir.normalize();
+            Vector3 xDir = dir.crossProduct(new Vector3(0, 0, 1));
+            xDir.normalize();
+            Vector3 yDir = xDir.crossProduct(dir);
+            Point gridStart = new Point(center);
+            gridStart.join(-radius, dir);
+            gridStart.join(-radius, xDir);
+            gridStart.join(-radius, yDir);
+            double delta = 2.0 * radius / gridSize;
+            for( int row=0 ; row<gridSize ; row++ ) {
+                for( int col=0 ; col<gridSize ; col++ ) {
+                    Point start = new Point(gridStart);
+                    start.join(delta * row, yDir);
+                    start.join(delta * col, xDir);
+                    grid[row * gridSize + col] = new Ray(start, new Vector3(dir));
+                }
+            }
+
+            for( int rep=0 ; rep<repetitions ; rep++ ) {
+                compare( "scattered", prepped, scattered, overlapHandler );
+                compare( "grid", prepped, grid, overlapHandler );
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit( 1 );
+        }
+    }
+
+    private static void compare( String name, PreppedDb prepped, Ray[] rays, SimpleOverlapHandler overlapHandler )
+    {
+        long startTime = System.nanoTime();
+        long plainCount = count( prepped.shootRays(rays, overlapHandler, false) );
+        long plainTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        long sortedCount = count( prepped.shootRays(rays, overlapHandler, true) );
+        long sortedTime = System.nanoTime() - startTime;
+
+        System.out.println( String.format( "%-10s %8d rays  submission order %8.1f ms  reordered %8.1f ms  speedup %5.2f  [%d %d partitions]",
+                name, rays.length, plainTime / 1.0e6, sortedTime / 1.0e6, (double) plainTime / sortedTime,
+                plainCount, sortedCount ) );
+    }
+
+    private static long count( List<SortedSet<Partition>> results )
+    {
+        long count = 0;
+        for( SortedSet<Partition> parts : results ) {
+            count += parts.size();
+        }
+        return count;
+    }
+}
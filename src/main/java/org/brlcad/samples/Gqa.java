@@ -0,0 +1,71 @@
+package org.brlcad.samples;
+/**
+ * Computes the volume, mass and centroid of each region of a model (see MassAnalysis),
+ * like the volume and weight analyses of the BRL-CAD gqa tool.
+ */
+
+
+import org.brlcad.analysis.DensityTable;
+import org.brlcad.analysis.MassAnalysis;
+import org.brlcad.analysis.MassReport;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.utils.ArrayCopy;
+
+public class Gqa
+{
+    private static final String usage = "Usage: Gqa [-d density_file] [-g initial_spacing] [-t tolerance] [-p max_passes] [-P threads] file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        String densityFile = null;
+        double spacing = 0.0;
+        double tolerance = 0.01;
+        int maxPasses = 6;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argNo = 0;
+        while( argNo < args.length - 1 && args[argNo].startsWith("-") ) {
+            if( "-d".equals(args[argNo]) ) {
+                densityFile = args[argNo + 1];
+            } else if( "-g".equals(args[argNo]) ) {
+                spacing = Double.parseDouble(args[argNo + 1]);
+            } else if( "-t".equals(args[argNo]) ) {
+                tolerance = Double.parseDouble(args[argNo + 1]);
+            } else if( "-p".equals(args[argNo]) ) {
+                maxPasses = Integer.parseInt(args[argNo + 1]);
+            } else if( "-P".equals(args[argNo]) ) {
+                threads = Integer.parseInt(args[argNo + 1]);
+            } else {
+                System.err.println( usage );
+                return;
+            }
+            argNo += 2;
+        }
+        if( (args.length - argNo) < 2 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+
+            MassAnalysis analysis = new MassAnalysis(prepped);
+            if( densityFile != null ) {
+                analysis.setDensities(DensityTable.read(densityFile));
+            }
+            analysis.setInitialSpacing(spacing);
+            analysis.setTolerance(tolerance);
+            analysis.setMaxPasses(maxPasses);
+            analysis.setThreads(threads);
+            MassReport report = analysis.run();
+            report.printReport(System.out);
+        }
+        catch( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+}
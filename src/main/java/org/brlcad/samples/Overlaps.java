@@ -0,0 +1,75 @@
+package org.brlcad.samples;
+/**
+ * Surveys a model for overlapping regions (see OverlapSurvey) and prints the overlapping
+ * pairs, as comma separated values with -c.
+ */
+
+
+import org.brlcad.analysis.OverlapReport;
+import org.brlcad.analysis.OverlapSurvey;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.utils.ArrayCopy;
+
+public class Overlaps
+{
+    private static final String usage = "Usage: Overlaps [-c] [-g initial_spacing] [-l refinements] [-m min_depth] [-P threads] file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        boolean csv = false;
+        double spacing = 0.0;
+        int refinements = 4;
+        double minDepth = -1.0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argNo = 0;
+        while( argNo < args.length - 1 && args[argNo].startsWith("-") ) {
+            if( "-c".equals(args[argNo]) ) {
+                csv = true;
+                argNo++;
+                continue;
+            } else if( "-g".equals(args[argNo]) ) {
+                spacing = Double.parseDouble(args[argNo + 1]);
+            } else if( "-l".equals(args[argNo]) ) {
+                refinements = Integer.parseInt(args[argNo + 1]);
+            } else if( "-m".equals(args[argNo]) ) {
+                minDepth = Double.parseDouble(args[argNo + 1]);
+            } else if( "-P".equals(args[argNo]) ) {
+                threads = Integer.parseInt(args[argNo + 1]);
+            } else {
+                System.err.println( usage );
+                return;
+            }
+            argNo += 2;
+        }
+        if( (args.length - argNo) < 2 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+
+            OverlapSurvey survey = new OverlapSurvey(prepped);
+            survey.setInitialSpacing(spacing);
+            survey.setRefinements(refinements);
+            if( minDepth >= 0.0 ) {
+                survey.setMinDepth(minDepth);
+            }
+            survey.setThreads(threads);
+            OverlapReport report = survey.run();
+            if( csv ) {
+                report.writeCsv(System.out);
+            } else {
+                report.printReport(System.out);
+            }
+        }
+        catch( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+}
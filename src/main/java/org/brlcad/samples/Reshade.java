@@ -0,0 +1,73 @@
+package org.brlcad.samples;
+/**
+ * Shades a G-buffer saved by Rt -G again with other lights or background, writing a pix
+ * file without prepping the model or shooting a ray.
+ */
+
+
+import java.awt.Color;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import org.brlcad.numerics.Point;
+import org.brlcad.render.GBuffer;
+import org.brlcad.render.PixFileSink;
+import org.brlcad.render.Reshader;
+import org.brlcad.shading.Light;
+import org.brlcad.shading.Phong;
+
+public class Reshade
+{
+    private static final String usage = "Usage: Reshade [-L x y z] [-B red green blue] [-P threads] file.gbuf output.pix";
+
+    public static void main(String[] args)
+    {
+        Set<Light> lights = new HashSet<Light>();
+        Color background = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argNo = 0;
+        while( argNo < args.length - 2 && args[argNo].startsWith("-") ) {
+            if( "-L".equals(args[argNo]) && argNo + 3 < args.length ) {
+                Point location = new Point(Double.parseDouble(args[argNo + 1]), Double.parseDouble(args[argNo + 2]),
+                        Double.parseDouble(args[argNo + 3]));
+                lights.add(new Light(location, Color.WHITE, Color.WHITE));
+                argNo += 4;
+            } else if( "-B".equals(args[argNo]) && argNo + 3 < args.length ) {
+                background = new Color(Integer.parseInt(args[argNo + 1]), Integer.parseInt(args[argNo + 2]),
+                        Integer.parseInt(args[argNo + 3]));
+                argNo += 4;
+            } else if( "-P".equals(args[argNo]) ) {
+                threads = Integer.parseInt(args[argNo + 1]);
+                argNo += 2;
+            } else {
+                System.err.println( usage );
+                return;
+            }
+        }
+        if( (args.length - argNo) != 2 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            GBuffer gbuffer = GBuffer.read( new File(args[argNo]) );
+            Reshader reshader = new Reshader(gbuffer);
+            if( !lights.isEmpty() ) {
+                reshader.setShader(new Phong(lights));
+            }
+            if( background != null ) {
+                reshader.setBackground(background);
+            }
+            reshader.setThreads(threads);
+            reshader.addSink(new PixFileSink(new File(args[argNo + 1])));
+            long start = System.currentTimeMillis();
+            reshader.render();
+            System.out.println( gbuffer + " shaded in " + (System.currentTimeMillis() - start) + " ms" );
+        }
+        catch( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+}
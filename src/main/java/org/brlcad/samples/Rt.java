@@ -5,19 +5,16 @@
 package org.brlcad.samples;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.net.UnknownHostException;
-import java.nio.ByteBuffer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.measure.quantity.Angle;
@@ -28,6 +25,7 @@ import org.brlcad.geometry.DbAttributeOnly;
 import org.brlcad.geometry.DbException;
 import org.brlcad.geometry.DbNameNotFoundException;
 import org.brlcad.geometry.DbObject;
+import org.brlcad.geometry.OverlapCollector;
 import org.brlcad.geometry.OverlapHandler;
 import org.brlcad.geometry.Partition;
 import org.brlcad.geometry.SimpleOverlapHandler;
@@ -35,11 +33,19 @@ import org.brlcad.numerics.BoundingBox;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Vector3;
+import org.brlcad.render.AsyncFramebufferSink;
+import org.brlcad.render.FramebufferSink;
+import org.brlcad.render.GBufferSink;
+import org.brlcad.render.PixFileSink;
+import org.brlcad.render.RenderStats;
+import org.brlcad.render.RenderView;
+import org.brlcad.render.Renderer;
 import org.brlcad.shading.ColorTable;
 import org.brlcad.shading.Light;
 import org.brlcad.shading.Material;
 import org.brlcad.shading.Shader;
 import org.brlcad.shading.Phong;
+import org.brlcad.spacePartition.PacketStats;
 import org.brlcad.spacePartition.PreppedDb;
 import org.jscience.physics.amount.Amount;
 
@@ -49,7 +55,7 @@ import org.jscience.physics.amount.Amount;
  */
 public class Rt {
 
-    private static final String usage = "Usage: Rt [-R] [-b # #] [-s size] [-a azimuth] [-e elevation] [-o output_file] [-F frame_buffer_port] dbfile.g object1 [object2 object3 ...]";
+    private static final String usage = "Usage: Rt [-R] [-b # #] [-s size] [-p preview_levels] [-A antialias_samples] [-a azimuth] [-e elevation] [-o output_file] [-G gbuffer_file] [-F frame_buffer_port] dbfile.g object1 [object2 object3 ...]";
 
     @SuppressWarnings("empty-statement")
     public static void main(String[] args) {
@@ -58,10 +64,13 @@ public class Rt {
         Amount<Angle> az = Amount.valueOf(35, NonSI.DEGREE_ANGLE);
         Amount<Angle> el = Amount.valueOf(25, NonSI.DEGREE_ANGLE);
         String outputFileName = null;
+        String gbufferFileName = null;
         String dbFileName = null;
         String[] tlos = null;
         int fbPort = -1;
         boolean reportOverlaps = true;
+        int previewLevels = -1;
+        int antiAliasSamples = 1;
 
         if (args.length < 2) {
             System.err.println(usage);
@@ -79,9 +88,18 @@ public class Rt {
                 if ("-s".equals(arg)) {
                     argNo++;
                     size = Integer.valueOf(args[argNo]);
+                } else if ("-p".equals(arg)) {
+                    argNo++;
+                    previewLevels = Integer.valueOf(args[argNo]);
+                } else if ("-A".equals(arg)) {
+                    argNo++;
+                    antiAliasSamples = Integer.valueOf(args[argNo]);
                 } else if ("-o".equals(arg)) {
                     argNo++;
                     outputFileName = args[argNo];
+                } else if ("-G".equals(arg)) {
+                    argNo++;
+                    gbufferFileName = args[argNo];
                 } else if( "-F".equals(arg)) {
                     argNo++;
                     fbPort = Integer.valueOf(args[argNo]) + 5559;
@@ -121,28 +139,20 @@ public class Rt {
             outputFileName = "out.pix";
         }
         Vector3 rayDir = Vector3.fromAzimuthAndElevation(az, el);
-        Vector3 xDir = null;
-        Vector3 yDir = null;
-        FileOutputStream outputFile = null;
-        OutputStream fbOs = null;
+        SocketChannel fbChannel = null;
         BrlcadDb brlcadDb = null;
         PreppedDb prepped = null;
-        Socket sock = null;
         try {
             if( fbPort > 0 ) {
-                    sock = new Socket((String) null, fbPort);
-                    fbOs = sock.getOutputStream();
+                    fbChannel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), fbPort));
             }
-            if( outputFileName != null ) {
-                outputFile = new FileOutputStream(outputFileName);
-            }
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (UnknownHostException ex) {
-            Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
         } catch (IOException ex) {
             Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
         }
+        if( previewLevels < 0 ) {
+            // only a framebuffer shows the coarse passes
+            previewLevels = fbChannel != null ? 3 : 0;
+        }
         try {
             brlcadDb = new BrlcadDb(dbFileName);
 			prepped = new PreppedDb( brlcadDb, tlos );
@@ -156,21 +166,8 @@ public class Rt {
                 System.err.println( "Bounding Box is null (perhaps the object you specified is empty)");
                 System.exit(1);
             }
-            Vector3 tmp = new Vector3(0, 0, 1);
-            xDir = rayDir.crossProduct(tmp);;
-            xDir.normalize();
-            yDir = xDir.crossProduct(rayDir);
-            yDir.normalize();
-            Point center = new Point(bb.getMin());
-            center.plus(bb.getMax());
-            center.scale(0.5);
-            Point gridCenter = new Point(center);
-            double radius = bb.getDiameter().magnitude() / 2.0;
-            gridCenter.join(-radius, rayDir);
-            Point gridStart = new Point( gridCenter );
-            gridStart.join(-radius, yDir);
-            gridStart.join(-radius, xDir);
-            double delta = radius * 2.0 / size;
+            RenderView view = RenderView.fromBoundingBox(bb, rayDir, size);
+            Point gridCenter = view.getRayStart(0.5 * size, 0.5 * size);
             Set<Light> lights = new HashSet<Light>();
             Light light = new Light( gridCenter, new Color(255, 255, 255), new Color(255, 255, 255) );
             lights.add(light);
@@ -186,17 +183,13 @@ public class Rt {
                     colorTable = new ColorTable(colortab);
                 }
             }
-            OverlapHandler oh = new SimpleOverlapHandler();
+            // collect overlaps while rendering and report them at the end
+            OverlapCollector overlaps = reportOverlaps ? new OverlapCollector() : null;
+            OverlapHandler oh = new SimpleOverlapHandler(overlaps);
             oh.setQuiet(!reportOverlaps);
-            ByteBuffer buffer = null;
-            if( outputFile != null ) {
-                buffer = ByteBuffer.allocate(3 * size * size);
-            }
             if( xPixelNo != -1 && yPixelNo != -1 ) {
                 // just do one pixel
-                Point start = new Point(gridStart);
-                start.join(delta * xPixelNo, xDir);
-                start.join(delta * yPixelNo, yDir);
+                Point start = view.getRayStart(xPixelNo, yPixelNo);
                 Ray ray = new Ray(start, rayDir);
                 Shader shader = new Phong(lights);
 //                Shader shader = new NormalShader();
@@ -218,22 +211,47 @@ public class Rt {
                 bytes[0] = (byte) color.getRed();
                 bytes[1] = (byte) color.getGreen();
                 bytes[2] = (byte) color.getBlue();
-                Rt.writePixelToFrameBuffer(fbOs, xPixelNo, yPixelNo, bytes);
+                if( fbChannel != null ) {
+                    FramebufferSink.writePixels(Channels.newOutputStream(fbChannel), xPixelNo, yPixelNo, bytes);
+                }
+                if( overlaps != null ) {
+                    overlaps.printReport(System.err);
+                }
                 return;
             }
-            ExecutorService executor = Executors.newFixedThreadPool(cpus);
-            Object lock = new Object();
-            for( int row = 0 ; row < size ; row++ ) {
-                executor.submit(new RowTask(row, size, gridStart, xDir, yDir, rayDir,
-                        delta, lights, oh, backGround, prepped, colorTable, buffer, fbOs, lock));
+            PacketStats packetStats = new PacketStats();
+            Renderer renderer = new Renderer(prepped, view);
+            renderer.setShader(new Phong(lights));
+            renderer.setBackground(backGround);
+            renderer.setColorTable(colorTable);
+            renderer.setOverlapHandler(oh);
+            renderer.setPacketStats(packetStats);
+            renderer.setPreviewLevels(previewLevels);
+            renderer.setAntiAliasSamples(antiAliasSamples);
+            renderer.setThreads(cpus);
+            if( outputFileName != null ) {
+                // the tiles go straight into the file, the image is never held in memory
+                renderer.addSink(new PixFileSink(new File(outputFileName)));
             }
-            executor.shutdown();
-            while( !executor.awaitTermination(10, TimeUnit.SECONDS));
-            if( outputFile != null ) {
-                outputFile.write(buffer.array());
+            AsyncFramebufferSink fbSink = null;
+            if( fbChannel != null ) {
+                // written from its own thread, so the rendering threads never wait for the socket
+                fbSink = new AsyncFramebufferSink(fbChannel);
+                renderer.addSink(fbSink);
+            }
+            if( gbufferFileName != null ) {
+                // the first hits, so Reshade can light the view again without shooting it
+                renderer.addSink(new GBufferSink(renderer, new File(gbufferFileName)));
+            }
+            RenderStats stats = renderer.render();
+            if( overlaps != null ) {
+                overlaps.printReport(System.err);
+            }
+            packetStats.printReport(System.err);
+            stats.printReport(System.err);
+            if( fbSink != null ) {
+                System.err.println(fbSink);
             }
-        } catch (InterruptedException ex) {
-            Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
         } catch (BadGeometryException ex) {
             Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
         } catch (DbNameNotFoundException ex) {
@@ -246,131 +264,12 @@ public class Rt {
             Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
             try {
-                if( outputFile != null ) {
-                    outputFile.close();
-                }
-                if( fbOs != null ) {
-                    sock.close();
-                    fbOs.close();
+                if( fbChannel != null ) {
+                    fbChannel.close();
                 }
             } catch (IOException ex) {
                 Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
     }
-
-    private static class RowTask implements Runnable {
-        private int row;
-        private int size;
-        private Point gridStart;
-        private Vector3 xDir;
-        private Vector3 yDir;
-        private double delta;
-        private Set<Light> lights;
-        private ByteBuffer buffer;
-        private Vector3 rayDir;
-        private Color backGround;
-        private ColorTable colorTable;
-        private PreppedDb prepped;
-        private final Object lock;
-        private OutputStream fbOs;
-        private OverlapHandler oh;
-
-        public RowTask(int row, int size, Point gridStart, Vector3 xDir, Vector3 yDir, Vector3 rayDir,
-                double delta, Set<Light> lights, OverlapHandler oh, Color backGround, PreppedDb prepped,
-                ColorTable colorTable, ByteBuffer buffer, OutputStream fbOs, Object lock) {
-            this.row = row;
-            this.size = size;
-            this.gridStart = gridStart;
-            this.xDir = xDir;
-            this.yDir = yDir;
-            this.rayDir = rayDir;
-            this.delta = delta;
-            this.lights = lights;
-            this.oh = oh;
-            this.backGround = backGround;
-            this.buffer = buffer;
-            this.prepped = prepped;
-            this.colorTable = colorTable;
-            this.lock = lock;
-            this.fbOs = fbOs;
-        }
-
-        public void run() {
-            try {
-            byte[] bytes = new byte[3*size];
-            for (int col = 0; col < size; col++) {
-                Point start = new Point(gridStart);
-                start.join(delta * row, yDir);
-                start.join(delta * col, xDir);
-                Ray ray = new Ray(start, rayDir);
-                Shader shader = new Phong(lights);
-//                Shader shader = new NormalShader();
-                SortedSet<Partition> parts = prepped.shootRay(ray, oh);
-                Color color = null;
-                if (parts.size() > 0) {
-                    Partition first = parts.first();
-                    Material material = prepped.getCombination(first.getFromRegion()).getMaterial();
-                    if( material == null && colorTable != null ) {
-                        Color matColor = colorTable.getColor(first.getRegionID());
-                        if (matColor != null) {
-                            material = new Material("dummy", matColor);
-//                          System.out.println( "Setting color of " + first.getFromRegion() + " to " + matColor);
-                        }
-                    }
-                    color = shader.shade(first, material, start);
-                } else {
-                    color = backGround;
-                }
-                int index = col*3;
-                bytes[index] = (byte) color.getRed();
-                bytes[index+1] = (byte) color.getGreen();
-                bytes[index+2] = (byte) color.getBlue();
-            }
-            if (buffer != null) {
-                synchronized (lock) {
-                    buffer.position(row * size * 3);
-                    buffer.put(bytes);
-                }
-            }
-            if (fbOs != null) {
-                try {
-                    writeLineToFrameBuffer(fbOs, row, bytes);
-                } catch (IOException ex) {
-                    Logger.getLogger(Rt.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-        }
-    }
-
-    private static void writeLineToFrameBuffer( OutputStream fbOs, int line, byte[] pixels ) throws IOException {
-        short type = 105;
-        ByteBuffer bb = ByteBuffer.allocate(20 + pixels.length);
-        bb.put((byte) 0x41);
-        bb.put((byte) 0xFE);
-        bb.putShort(type);
-        bb.putInt(12 + pixels.length);
-        bb.putInt(0);
-        bb.putInt(line);
-        bb.putInt(pixels.length/3);
-        bb.put(pixels);
-        fbOs.write(bb.array());
-    }
-
-    private static void writePixelToFrameBuffer( OutputStream fbOs, int xPixelNo, int yPixelNo, byte[] pixel) throws IOException {
-        short type = 105;
-        ByteBuffer bb = ByteBuffer.allocate(20 + 3);
-        bb.put((byte) 0x41);
-        bb.put((byte) 0xFE);
-        bb.putShort(type);
-        bb.putInt(12 + 1);
-        bb.putInt(xPixelNo);
-        bb.putInt(yPixelNo);
-        bb.putInt(1);
-        bb.put(pixel);
-        fbOs.write(bb.array());
-    }
 }
@@ -0,0 +1,77 @@
+package org.brlcad.samples;
+/**
+ * Prints the presented and exposed areas of each region and ident from one or more
+ * views (see AreaAnalysis), like the BRL-CAD rtarea tool. Each view is given as
+ * -v azimuth,elevation in degrees, and its areas are printed as soon as it is done.
+ */
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.brlcad.analysis.AreaAnalysis;
+import org.brlcad.analysis.AreaListener;
+import org.brlcad.analysis.AreaResult;
+import org.brlcad.analysis.AreaView;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.utils.ArrayCopy;
+
+public class Rtarea
+{
+    private static final String usage = "Usage: Rtarea [-s cell_size] [-P threads] [-v azimuth,elevation]... file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        double cellSize = 0.0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<AreaView> views = new ArrayList<AreaView>();
+        int argNo = 0;
+        while( argNo < args.length - 1 && args[argNo].startsWith("-") ) {
+            if( "-s".equals(args[argNo]) ) {
+                cellSize = Double.parseDouble(args[argNo + 1]);
+            } else if( "-P".equals(args[argNo]) ) {
+                threads = Integer.parseInt(args[argNo + 1]);
+            } else if( "-v".equals(args[argNo]) ) {
+                String[] angles = args[argNo + 1].split(",");
+                if( angles.length != 2 ) {
+                    System.err.println( usage );
+                    return;
+                }
+                views.add(AreaView.fromDegrees(Double.parseDouble(angles[0]), Double.parseDouble(angles[1])));
+            } else {
+                System.err.println( usage );
+                return;
+            }
+            argNo += 2;
+        }
+        if( (args.length - argNo) < 2 ) {
+            System.err.println( usage );
+            return;
+        }
+        if( views.isEmpty() ) {
+            // the default view of Rt
+            views.add(AreaView.fromDegrees(35.0, 25.0));
+        }
+
+        try
+        {
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+
+            AreaAnalysis analysis = new AreaAnalysis(prepped);
+            analysis.setCellSize(cellSize);
+            analysis.setThreads(threads);
+            analysis.run(views, new AreaListener() {
+                public void viewFinished(AreaResult result) {
+                    result.printReport(System.out);
+                }
+            });
+        }
+        catch( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+}
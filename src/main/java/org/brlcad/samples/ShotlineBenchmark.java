@@ -0,0 +1,154 @@
+package org.brlcad.samples;
+/**
+ * Compares the speed and size of the binary shotline format (ShotlineWriter and
+ * ShotlineReader) with Java serialization of Rays and Partitions (Externalizable).
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.brlcad.spacePartition.ShotlineReader;
+import org.brlcad.spacePartition.ShotlineWriter;
+import org.brlcad.utils.ArrayCopy;
+
+public class ShotlineBenchmark
+{
+    private static final String usage = "Usage: ShotlineBenchmark [-n grid_size] [-r repetitions] file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        int gridSize = 200;
+        int repetitions = 5;
+        int argNo = 0;
+        while( argNo < args.length ) {
+            if( "-n".equals(args[argNo]) ) {
+                gridSize = Integer.parseInt(args[argNo + 1]);
+                argNo += 2;
+            } else if( "-r".equals(args[argNo]) ) {
+                repetitions = Integer.parseInt(args[argNo + 1]);
+                argNo += 2;
+            } else {
+                break;
+            }
+        }
+        if( (args.length - argNo) < 2 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+            SimpleOverlapHandler overlapHandler = new SimpleOverlapHandler();
+            overlapHandler.setQuiet(true);
+
+            // shoot a grid of rays looking down the Y axis
+            BoundingBox bb = prepped.getBoundingBox();
+            Vector3 dir = new Vector3(0, -1, 0);
+            Ray[] rays = new Ray[gridSize * gridSize];
+            List<SortedSet<Partition>> parts = new ArrayList<SortedSet<Partition>>();
+            ShotlineBuffer shotlines = new ShotlineBuffer(true, true);
+            int rayNo = 0;
+            for( int i=0 ; i<gridSize ; i++ ) {
+                for( int j=0 ; j<gridSize ; j++ ) {
+                    Point start = new Point(
+                            bb.getMin().getX() + (i + 0.5) * (bb.getMax().getX() - bb.getMin().getX()) / gridSize,
+                            bb.getMax().getY() + 1.0,
+                            bb.getMin().getZ() + (j + 0.5) * (bb.getMax().getZ() - bb.getMin().getZ()) / gridSize);
+                    rays[rayNo] = new Ray(start, dir);
+                    parts.add(prepped.shootRay(rays[rayNo], overlapHandler));
+                    prepped.shootRay(rays[rayNo], null, shotlines);
+                    rayNo++;
+                }
+            }
+            System.out.println( rays.length + " rays, " + shotlines.size() + " partitions" );
+
+            for( int rep=0 ; rep<repetitions ; rep++ ) {
+                // binary format
+                long startTime = System.nanoTime();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ShotlineWriter writer = new ShotlineWriter(Channels.newChannel(bytes), prepped.getRegionTable(), true, true);
+                writer.writeRays(rays, shotlines);
+                writer.close();
+                long encodeTime = System.nanoTime() - startTime;
+                byte[] binary = bytes.toByteArray();
+
+                startTime = System.nanoTime();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+                buffer.put(binary);
+                buffer.flip();
+                ShotlineReader reader = new ShotlineReader(buffer);
+                double sum = 0.0;
+                while( reader.nextRay() ) {
+                    while( reader.nextPartition() ) {
+                        sum += reader.getOutDist() - reader.getInDist() + reader.getInNormal(0);
+                    }
+                }
+                long decodeTime = System.nanoTime() - startTime;
+                report( "binary", binary.length, rays.length, encodeTime, decodeTime, sum );
+
+                // Externalizable
+                startTime = System.nanoTime();
+                bytes = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bytes);
+                for( int i=0 ; i<rays.length ; i++ ) {
+                    oos.writeObject(rays[i]);
+                    oos.writeInt(parts.get(i).size());
+                    for( Partition part : parts.get(i) ) {
+                        oos.writeObject(part);
+                    }
+                }
+                oos.close();
+                encodeTime = System.nanoTime() - startTime;
+                byte[] serialized = bytes.toByteArray();
+
+                startTime = System.nanoTime();
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+                sum = 0.0;
+                for( int i=0 ; i<rays.length ; i++ ) {
+                    ois.readObject();
+                    int count = ois.readInt();
+                    for( int j=0 ; j<count ; j++ ) {
+                        Partition part = (Partition) ois.readObject();
+                        sum += part.getOutHit().getHit_dist() - part.getInHit().getHit_dist() + part.getInHitNormal().getX();
+                    }
+                }
+                ois.close();
+                decodeTime = System.nanoTime() - startTime;
+                report( "Externalizable", serialized.length, rays.length, encodeTime, decodeTime, sum );
+            }
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit( 1 );
+        }
+    }
+
+    private static void report( String name, int bytes, int rays, long encodeNanos, long decodeNanos, double check )
+    {
+        System.out.println( String.format( "%-15s %10d bytes (%6.1f per ray)  encode %8.1f ms (%9.0f rays/s)  decode %8.1f ms (%9.0f rays/s)  [%g]",
+                name, bytes, (double) bytes / rays,
+                encodeNanos / 1.0e6, rays / (encodeNanos / 1.0e9),
+                decodeNanos / 1.0e6, rays / (decodeNanos / 1.0e9), check ) );
+    }
+}
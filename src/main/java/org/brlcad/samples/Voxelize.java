@@ -0,0 +1,82 @@
+package org.brlcad.samples;
+/**
+ * Converts the regions of a model into a raw grid of voxels (see Voxelizer), like the
+ * BRL-CAD voxelize analysis, and writes a detached NRRD header next to it.
+ */
+
+
+import java.io.File;
+import java.io.PrintStream;
+import org.brlcad.analysis.VoxelGrid;
+import org.brlcad.analysis.Voxelizer;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.utils.ArrayCopy;
+
+public class Voxelize
+{
+    private static final String usage = "Usage: Voxelize [-s voxel_size] [-n samples] [-t threshold] [-m region|ident|fill] [-T short|int] [-P threads] output.raw file.g obj1 [ obj2 obj3 ...]";
+
+    public static void main(String[] args)
+    {
+        double voxelSize = 0.0;
+        int samples = 2;
+        double threshold = 0.5;
+        Voxelizer.Mode mode = Voxelizer.Mode.REGION;
+        Voxelizer.Type type = Voxelizer.Type.SHORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int argNo = 0;
+        while( argNo < args.length - 1 && args[argNo].startsWith("-") ) {
+            if( "-s".equals(args[argNo]) ) {
+                voxelSize = Double.parseDouble(args[argNo + 1]);
+            } else if( "-n".equals(args[argNo]) ) {
+                samples = Integer.parseInt(args[argNo + 1]);
+            } else if( "-t".equals(args[argNo]) ) {
+                threshold = Double.parseDouble(args[argNo + 1]);
+            } else if( "-m".equals(args[argNo]) ) {
+                mode = Voxelizer.Mode.valueOf(args[argNo + 1].toUpperCase());
+            } else if( "-T".equals(args[argNo]) ) {
+                type = Voxelizer.Type.valueOf(args[argNo + 1].toUpperCase());
+            } else if( "-P".equals(args[argNo]) ) {
+                threads = Integer.parseInt(args[argNo + 1]);
+            } else {
+                System.err.println( usage );
+                return;
+            }
+            argNo += 2;
+        }
+        if( (args.length - argNo) < 3 ) {
+            System.err.println( usage );
+            return;
+        }
+
+        try
+        {
+            File output = new File( args[argNo++] );
+            BrlcadDb brlcadDb = new BrlcadDb( args[argNo++] );
+            String[] tlos = ArrayCopy.copyOfRange(args, argNo, args.length);
+            PreppedDb prepped = new PreppedDb( brlcadDb, tlos );
+
+            Voxelizer voxelizer = new Voxelizer(prepped);
+            voxelizer.setVoxelSize(voxelSize);
+            voxelizer.setSamples(samples);
+            voxelizer.setThreshold(threshold);
+            voxelizer.setMode(mode);
+            voxelizer.setType(type);
+            voxelizer.setThreads(threads);
+            VoxelGrid grid = voxelizer.run(output);
+
+            PrintStream header = new PrintStream( output.getPath() + ".nhdr" );
+            try {
+                grid.writeNrrdHeader(header);
+            } finally {
+                header.close();
+            }
+            System.out.println( grid );
+        }
+        catch( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.brlcad.shading;
+
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * The arithmetic of a Phong shader, with the materials of the regions and the lights laid
+ * out in arrays once, so that shading a hit allocates nothing and looks nothing up but an
+ * array index. Colors come back packed as 0xRRGGBB.
+ * <p>
+ * The colors are exactly those Phong.shade() gives for the same lights and materials,
+ * since the same float and double operations are done in the same order. A PackedPhong
+ * never changes once built, so one may be shared by any number of threads; a change to
+ * the Phong, its lights or the materials needs a new PackedPhong.
+ */
+public final class PackedPhong {
+
+    private final double ambientIntensity;
+    private final int lightCount;
+    /** x, y and z of each light */
+    private final double[] lightLocation;
+    /** red, green and blue of each light, from 0 to 1 */
+    private final float[] lightDiffuse;
+    private final float[] lightSpecular;
+
+    /** red, green and blue of each material, from 0 to 1 (the last material is the default) */
+    private final float[] color;
+    private final double[] ka;
+    private final double[] kd;
+    private final double[] ks;
+    private final int[] alpha;
+    /** the index of the material of each region */
+    private final int[] materialIndex;
+
+    /**
+     * @param phong The shader whose lights and ambient intensity to use
+     * @param materials The material of each region by region index (a null entry, or a
+     * region index outside the array, gets the default material of Phong)
+     */
+    public PackedPhong(Phong phong, Material[] materials) {
+        this.ambientIntensity = phong.getAmbientIntensity();
+        // in the order Phong iterates over them, since the sums are clamped as they go
+        this.lightCount = phong.getLights().size();
+        this.lightLocation = new double[3 * this.lightCount];
+        this.lightDiffuse = new float[3 * this.lightCount];
+        this.lightSpecular = new float[3 * this.lightCount];
+        int l = 0;
+        for (Light light : phong.getLights()) {
+            Point location = light.getLocation();
+            this.lightLocation[3 * l] = location.getX();
+            this.lightLocation[3 * l + 1] = location.getY();
+            this.lightLocation[3 * l + 2] = location.getZ();
+            System.arraycopy(light.getDiffuse().getRGBColorComponents(null), 0, this.lightDiffuse, 3 * l, 3);
+            System.arraycopy(light.getSpecular().getRGBColorComponents(null), 0, this.lightSpecular, 3 * l, 3);
+            l++;
+        }
+
+        int count = materials.length + 1;
+        this.color = new float[3 * count];
+        this.ka = new double[count];
+        this.kd = new double[count];
+        this.ks = new double[count];
+        this.alpha = new int[count];
+        this.materialIndex = new int[materials.length];
+        this.setMaterial(materials.length, Phong.defaultMaterial);
+        for (int r = 0; r < materials.length; r++) {
+            if (materials[r] == null) {
+                this.materialIndex[r] = materials.length;
+            } else {
+                this.materialIndex[r] = r;
+                this.setMaterial(r, materials[r]);
+            }
+        }
+    }
+
+    private void setMaterial(int m, Material mat) {
+        System.arraycopy(mat.getColor().getRGBColorComponents(null), 0, this.color, 3 * m, 3);
+        this.ka[m] = mat.getKa();
+        this.kd[m] = mat.getKd();
+        this.ks[m] = mat.getKs();
+        this.alpha[m] = mat.getAlpha();
+    }
+
+    /**
+     * Shade the entrance of a partition
+     *
+     * @param region The index of the region of the partition
+     * @param part The partition
+     * @param ray The ray, whose start is the eye point
+     * @return The color, as 0xRRGGBB
+     */
+    public int shade(int region, Partition part, Ray ray) {
+        Hit in = part.getInHit();
+        Point pt = in.getHit_pt();
+        Vector3 n = in.getHit_normal();
+        double sign = part.isFlipInNormal() ? -1.0 : 1.0;
+        Point eye = ray.getStart();
+        Vector3 dir = ray.getDirection();
+        return this.shade(region, pt.getX(), pt.getY(), pt.getZ(), sign * n.getX(), sign * n.getY(), sign * n.getZ(),
+                dir.getX(), dir.getY(), dir.getZ(), eye.getX(), eye.getY(), eye.getZ());
+    }
+
+    /**
+     * Shade a hit
+     *
+     * @param region The index of the region hit
+     * @param px The hit point
+     * @param nx The unit normal at the hit, pointing out of the region
+     * @param dx The direction of the ray
+     * @param ex The eye point
+     * @return The color, as 0xRRGGBB
+     */
+    public int shade(int region, double px, double py, double pz, double nx, double ny, double nz, double dx,
+            double dy, double dz, double ex, double ey, double ez) {
+        int m = region >= 0 && region < this.materialIndex.length ? this.materialIndex[region]
+                : this.materialIndex.length;
+
+        double tex = ex - px;
+        double tey = ey - py;
+        double tez = ez - pz;
+        double mag = Math.sqrt((tex * tex) + (tey * tey) + (tez * tez));
+        if (mag != 0.0) {
+            tex = tex / mag;
+            tey = tey / mag;
+            tez = tez / mag;
+        }
+
+        double scale = -((dx * nx) + (dy * ny) + (dz * nz));
+        if (scale < 0.0) {
+            scale = 0.0;
+        }
+        if (scale > 1.0) {
+            scale = 1.0;
+        }
+        scale *= this.ambientIntensity;
+        float ambient = (float) (this.ka[m] * scale);
+        float red = clamp(this.color[3 * m] * ambient);
+        float green = clamp(this.color[3 * m + 1] * ambient);
+        float blue = clamp(this.color[3 * m + 2] * ambient);
+
+        for (int l = 0; l < this.lightCount; l++) {
+            double tlx = this.lightLocation[3 * l] - px;
+            double tly = this.lightLocation[3 * l + 1] - py;
+            double tlz = this.lightLocation[3 * l + 2] - pz;
+            mag = Math.sqrt((tlx * tlx) + (tly * tly) + (tlz * tlz));
+            if (mag != 0.0) {
+                tlx = tlx / mag;
+                tly = tly / mag;
+                tlz = tlz / mag;
+            }
+            double cosine = (tlx * nx) + (tly * ny) + (tlz * nz);
+            if (cosine < 0.0) {
+                continue;
+            } else if (cosine > 1.0) {
+                cosine = 1.0;
+            }
+            float diffuse = (float) (3.0 * this.kd[m] * cosine / this.lightCount);
+            red = clamp(red + clamp(this.lightDiffuse[3 * l] * diffuse));
+            green = clamp(green + clamp(this.lightDiffuse[3 * l + 1] * diffuse));
+            blue = clamp(blue + clamp(this.lightDiffuse[3 * l + 2] * diffuse));
+
+            double twice = 2.0 * cosine;
+            double rx = nx * twice - tlx;
+            double ry = ny * twice - tly;
+            double rz = nz * twice - tlz;
+            mag = Math.sqrt((rx * rx) + (ry * ry) + (rz * rz));
+            if (mag != 0.0) {
+                rx = rx / mag;
+                ry = ry / mag;
+                rz = rz / mag;
+            }
+            cosine = (rx * tex) + (ry * tey) + (rz * tez);
+            if (cosine > 1.0) {
+                cosine = 1.0;
+            }
+            if (cosine > 0.0) {
+                float specular = (float) (this.ks[m] * Math.pow(cosine, this.alpha[m]));
+                red = clamp(red + clamp(this.lightSpecular[3 * l] * specular));
+                green = clamp(green + clamp(this.lightSpecular[3 * l + 1] * specular));
+                blue = clamp(blue + clamp(this.lightSpecular[3 * l + 2] * specular));
+            }
+        }
+        // as java.awt.Color rounds its float components
+        return ((int) (red * 255 + 0.5) << 16) | ((int) (green * 255 + 0.5) << 8) | (int) (blue * 255 + 0.5);
+    }
+
+    private static float clamp(float c) {
+        if (c > 1.0) {
+            c = 1.0f;
+        } else if (c < 0.0) {
+            c = 0.0f;
+        }
+        return c;
+    }
+}
@@ -17,7 +17,7 @@ import org.brlcad.numerics.Vector3;
  * @author jra
  */
 public class Phong implements Shader {
-    private static final Material defaultMaterial = new Material("default", new Color(200, 200, 200));
+    static final Material defaultMaterial = new Material("default", new Color(200, 200, 200));
     private Set<Light> lights;
     private double ambientIntensity = 0.7;
 
@@ -112,6 +112,13 @@ public class Phong implements Shader {
         return new Color(rgb1[0], rgb1[1], rgb1[2]);
     }
 
+    /**
+     * @return the fraction of the ambient light that a surface facing the eye reflects
+     */
+    public double getAmbientIntensity() {
+        return ambientIntensity;
+    }
+
     public void addLight( Light l ) {
         this.lights.add(l);
     }
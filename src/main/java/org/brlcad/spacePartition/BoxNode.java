@@ -11,6 +11,8 @@ import org.brlcad.preppedGeometry.PreppedObjectPiece;
 import org.brlcad.geometry.Segment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,6 +29,14 @@ public class BoxNode extends Node
 	private List<PreppedObject> preppedObjects;
 	private List<PreppedObjectPiece> preppedPieces;
 	
+	/** bounds of the objects followed by the pieces in this box, one array per slab (null until prepared) */
+	private double[] slabMinX;
+	private double[] slabMinY;
+	private double[] slabMinZ;
+	private double[] slabMaxX;
+	private double[] slabMaxY;
+	private double[] slabMaxZ;
+	
 	public BoxNode()
 	{
 		this.preppedObjects = new ArrayList<PreppedObject>();
@@ -86,6 +96,112 @@ public class BoxNode extends Node
 		this.preppedPieces.add( obj );
 	}
 	
+	/**
+	 * Copy the bounding boxes of the objects and pieces in this box into
+	 * contiguous arrays for the prefilter in shootRay. The bounds are expanded
+	 * by the distance tolerance so that the prefilter never rejects a grazing hit.
+	 * Must be called after the space partitioning is complete.
+	 *
+	 * @param    tol                 the distance tolerance
+	 */
+	void prepareSlabs( double tol )
+	{
+		int n = this.size();
+		this.slabMinX = new double[n];
+		this.slabMinY = new double[n];
+		this.slabMinZ = new double[n];
+		this.slabMaxX = new double[n];
+		this.slabMaxY = new double[n];
+		this.slabMaxZ = new double[n];
+		int i = 0;
+		for( PreppedObject obj:this.preppedObjects )
+		{
+			this.setSlabs( i++, obj.getBoundingBox(), tol );
+		}
+		for( PreppedObjectPiece obj:this.preppedPieces )
+		{
+			this.setSlabs( i++, obj.getBoundingBox(), tol );
+		}
+	}
+	
+	private void setSlabs( int i, BoundingBox bb, double tol )
+	{
+		Point min = bb.getMin();
+		Point max = bb.getMax();
+		this.slabMinX[i] = min.getX() - tol;
+		this.slabMinY[i] = min.getY() - tol;
+		this.slabMinZ[i] = min.getZ() - tol;
+		this.slabMaxX[i] = max.getX() + tol;
+		this.slabMaxY[i] = max.getY() + tol;
+		this.slabMaxZ[i] = max.getZ() + tol;
+	}
+	
+	/**
+	 * Test the line of the ray against the bounds of every object and piece in
+	 * this box. Hits behind the ray start are kept, just as the intersectors keep them.
+	 *
+	 * @param    ray                 a  Ray
+	 * @param    rayData             a  RayData
+	 * @param    survivors           receives a flag for each object, then each piece
+	 *
+	 */
+	private void slabTest( Ray ray, RayData rayData, boolean[] survivors )
+	{
+		double[] inv = rayData.getInverseDirection();
+		Point start = ray.getStart();
+		double ox = start.getX();
+		double oy = start.getY();
+		double oz = start.getZ();
+		double ix = inv[0];
+		double iy = inv[1];
+		double iz = inv[2];
+		int n = this.slabMinX.length;
+		for( int i=0 ; i<n ; i++ )
+		{
+			// a NaN (ray parallel to and in the plane of a slab) fails both
+			// comparisons below, so that slab places no limit on the ray
+			double t1 = (this.slabMinX[i] - ox) * ix;
+			double t2 = (this.slabMaxX[i] - ox) * ix;
+			double tNear = Double.NEGATIVE_INFINITY;
+			double tFar = Double.POSITIVE_INFINITY;
+			double tn = Math.min( t1, t2 );
+			double tf = Math.max( t1, t2 );
+			tNear = tn > tNear ? tn : tNear;
+			tFar = tf < tFar ? tf : tFar;
+			t1 = (this.slabMinY[i] - oy) * iy;
+			t2 = (this.slabMaxY[i] - oy) * iy;
+			tn = Math.min( t1, t2 );
+			tf = Math.max( t1, t2 );
+			tNear = tn > tNear ? tn : tNear;
+			tFar = tf < tFar ? tf : tFar;
+			t1 = (this.slabMinZ[i] - oz) * iz;
+			t2 = (this.slabMaxZ[i] - oz) * iz;
+			tn = Math.min( t1, t2 );
+			tf = Math.max( t1, t2 );
+			tNear = tn > tNear ? tn : tNear;
+			tFar = tf < tFar ? tf : tFar;
+			survivors[i] = tNear <= tFar;
+		}
+	}
+	
+	/**
+	 * Get the objects in this box (not including pieces)
+	 * @return	The objects
+	 */
+	public List<PreppedObject> getPreppedObjects()
+	{
+		return this.preppedObjects;
+	}
+	
+	/**
+	 * Get the pieces in this box
+	 * @return	The pieces
+	 */
+	List<PreppedObjectPiece> getPreppedPieces()
+	{
+		return this.preppedPieces;
+	}
+	
 	public int size()
 	{
 		return this.preppedObjects.size() + this.preppedPieces.size();
@@ -114,45 +230,293 @@ public class BoxNode extends Node
 	 */
 	public void shootRay(PreppedDb db, Ray ray, RayData rayData)
 	{
+		boolean lazy = rayData.isLazyEvaluation();
+		boolean[] survivors = null;
+		if( this.slabMinX != null )
+		{
+			survivors = rayData.getSlabScratch( this.slabMinX.length );
+			this.slabTest( ray, rayData, survivors );
+		}
+		int i = 0;
 		for( PreppedObject obj:this.preppedObjects )
 		{
-			if( rayData.getBit( obj.getIndex() ) )
+			if( survivors != null && !survivors[i++] )
 			{
-				// already intersected
+				// missed the bounding box
 				continue;
 			}
-			List<Segment> segs = obj.shoot( ray, rayData );
-			rayData.setBit( obj.getIndex() );
-			if (segs != null && segs.size() > 0)
+			this.shootObject( obj, ray, rayData, lazy );
+		}
+		for( PreppedObjectPiece obj:this.preppedPieces )
+		{
+			if( survivors != null && !survivors[i++] )
 			{
-				rayData.addSegs( obj, segs );
+				// missed the bounding box
+				continue;
+			}
+			this.shootPiece( obj, ray, rayData );
+		}
+		this.leave( ray, rayData );
+    }
+	
+	/**
+	 * Take one step for each of a set of rays of a packet. The bounding box prefilter
+	 * loops over the lanes of the packet for each object, then each object is intersected
+	 * with the lanes that passed, in the same order as shootRay() would for each ray.
+	 *
+	 * @param    db                  a  PreppedDb
+	 * @param    packet              the packet
+	 * @param    mask                the lanes of the packet in this box
+	 */
+	void shootPacket( PreppedDb db, RayPacket packet, int mask )
+	{
+		packet.countLeaf( mask );
+		int n = this.size();
+		int[] objectMasks = packet.getObjectMasks( n );
+		if( this.slabMinX != null )
+		{
+			this.slabTest( packet, mask, objectMasks );
+		}
+		else
+		{
+			Arrays.fill( objectMasks, 0, n, mask );
+		}
+		int i = 0;
+		for( PreppedObject obj:this.preppedObjects )
+		{
+			for( int m=objectMasks[i++] ; m!=0 ; m &= m - 1 )
+			{
+				int lane = Integer.numberOfTrailingZeros( m );
+				RayData rayData = packet.rayData[lane];
+				this.shootObject( obj, packet.rays[lane], rayData, rayData.isLazyEvaluation() );
 			}
 		}
 		for( PreppedObjectPiece obj:this.preppedPieces )
 		{
-			if( rayData.getBit( obj.getIndex() ) )
+			for( int m=objectMasks[i++] ; m!=0 ; m &= m - 1 )
 			{
-				// already intersected
-				continue;
+				int lane = Integer.numberOfTrailingZeros( m );
+				this.shootPiece( obj, packet.rays[lane], packet.rayData[lane] );
+			}
+		}
+		for( int m=mask ; m!=0 ; m &= m - 1 )
+		{
+			int lane = Integer.numberOfTrailingZeros( m );
+			this.leave( packet.rays[lane], packet.rayData[lane] );
+		}
+	}
+	
+	BoxNode findBox( double x, double y, double z )
+	{
+		return this;
+	}
+	
+	void queryBox( double[] min, double[] max, BitSet found )
+	{
+		for( PreppedObject obj:this.preppedObjects )
+		{
+			if( !found.get( obj.getIndex() ) && overlaps( obj.getBoundingBox(), min, max ) )
+			{
+				found.set( obj.getIndex() );
+			}
+		}
+		for( PreppedObjectPiece obj:this.preppedPieces )
+		{
+			if( !found.get( obj.getIndex() ) && overlaps( obj.getBoundingBox(), min, max ) )
+			{
+				found.set( obj.getIndex() );
 			}
-			Set<Hit> hits = obj.shoot( ray, rayData );
-			rayData.setBit( obj.getIndex() );
-			if( hits != null && hits.size() > 0 )
+		}
+	}
+	
+	static boolean overlaps( BoundingBox bb, double[] min, double[] max )
+	{
+		if( bb == null || bb.getMin() == null )
+		{
+			return false;
+		}
+		Point bbMin = bb.getMin();
+		Point bbMax = bb.getMax();
+		return bbMin.getX() <= max[0] && bbMax.getX() >= min[0]
+				&& bbMin.getY() <= max[1] && bbMax.getY() >= min[1]
+				&& bbMin.getZ() <= max[2] && bbMax.getZ() >= min[2];
+	}
+	
+	/**
+	 * Test the lines of a set of rays of a packet against the bounds of every object
+	 * and piece in this box (see slabTest( Ray, RayData, boolean[] ))
+	 *
+	 * @param    packet              the packet
+	 * @param    mask                the lanes to test
+	 * @param    objectMasks         receives the lanes that pass for each object, then each piece
+	 *
+	 */
+	private void slabTest( RayPacket packet, int mask, int[] objectMasks )
+	{
+		double[] ox = packet.ox;
+		double[] oy = packet.oy;
+		double[] oz = packet.oz;
+		double[] ix = packet.ix;
+		double[] iy = packet.iy;
+		double[] iz = packet.iz;
+		int n = this.slabMinX.length;
+		for( int i=0 ; i<n ; i++ )
+		{
+			double minX = this.slabMinX[i];
+			double minY = this.slabMinY[i];
+			double minZ = this.slabMinZ[i];
+			double maxX = this.slabMaxX[i];
+			double maxY = this.slabMaxY[i];
+			double maxZ = this.slabMaxZ[i];
+			int survivors = 0;
+			for( int m=mask ; m!=0 ; m &= m - 1 )
+			{
+				int lane = Integer.numberOfTrailingZeros( m );
+				double t1 = (minX - ox[lane]) * ix[lane];
+				double t2 = (maxX - ox[lane]) * ix[lane];
+				double tNear = Double.NEGATIVE_INFINITY;
+				double tFar = Double.POSITIVE_INFINITY;
+				double tn = Math.min( t1, t2 );
+				double tf = Math.max( t1, t2 );
+				tNear = tn > tNear ? tn : tNear;
+				tFar = tf < tFar ? tf : tFar;
+				t1 = (minY - oy[lane]) * iy[lane];
+				t2 = (maxY - oy[lane]) * iy[lane];
+				tn = Math.min( t1, t2 );
+				tf = Math.max( t1, t2 );
+				tNear = tn > tNear ? tn : tNear;
+				tFar = tf < tFar ? tf : tFar;
+				t1 = (minZ - oz[lane]) * iz[lane];
+				t2 = (maxZ - oz[lane]) * iz[lane];
+				tn = Math.min( t1, t2 );
+				tf = Math.max( t1, t2 );
+				tNear = tn > tNear ? tn : tNear;
+				tFar = tf < tFar ? tf : tFar;
+				if( tNear <= tFar )
+				{
+					survivors |= 1 << lane;
+				}
+			}
+			objectMasks[i] = survivors;
+		}
+	}
+	
+	/**
+	 * Intersect a ray with just the objects of this box whose bounds contain a point on
+	 * the ray. Used to classify that point, which only those primitives can contain. Pieces
+	 * are not intersected, the triangles that bound a point need not be in the pieces of
+	 * the box that contains it.
+	 *
+	 * @param    ray                 a  Ray through the point
+	 * @param    rayData             a  RayData
+	 * @param    x                   the point
+	 * @param    y
+	 * @param    z
+	 * @return   the number of objects intersected
+	 */
+	int shootContaining( Ray ray, RayData rayData, double x, double y, double z )
+	{
+		boolean lazy = rayData.isLazyEvaluation();
+		int count = 0;
+		int i = 0;
+		for( PreppedObject obj:this.preppedObjects )
+		{
+			if( this.contains( i++, obj.getBoundingBox(), x, y, z ) )
+			{
+				this.shootObject( obj, ray, rayData, lazy );
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Intersect a ray with the pieces of this box that were split from one primitive
+	 *
+	 * @param    obj                 the primitive
+	 * @param    ray                 a  Ray
+	 * @param    rayData             a  RayData
+	 */
+	void shootPieces( PreppedObject obj, Ray ray, RayData rayData )
+	{
+		for( PreppedObjectPiece piece:this.preppedPieces )
+		{
+			if( piece.getPreppedObject() == obj )
 			{
-				rayData.addHits( obj.getPreppedObject(), hits );
+				shootPiece( piece, ray, rayData );
 			}
 		}
-        double [] hits = this.boundingBox.isect2(ray);
-        if (hits == null) {
+	}
+
+	private boolean contains( int i, BoundingBox bb, double x, double y, double z )
+	{
+		if( this.slabMinX == null )
+		{
+			Point min = bb.getMin();
+			Point max = bb.getMax();
+			return x >= min.getX() && x <= max.getX() && y >= min.getY() && y <= max.getY()
+					&& z >= min.getZ() && z <= max.getZ();
+		}
+		return x >= this.slabMinX[i] && x <= this.slabMaxX[i] && y >= this.slabMinY[i] && y <= this.slabMaxY[i]
+				&& z >= this.slabMinZ[i] && z <= this.slabMaxZ[i];
+	}
+
+	/**
+	 * Intersect a ray with one object of this box, unless it has already been intersected
+	 * or is to be intersected on demand
+	 */
+	private void shootObject( PreppedObject obj, Ray ray, RayData rayData, boolean lazy )
+	{
+		if( lazy && obj.isDeferred() )
+		{
+			// will be intersected during region evaluation, if needed
+			return;
+		}
+		if( rayData.getBit( obj.getIndex() ) )
+		{
+			// already intersected
+			return;
+		}
+		List<Segment> segs = obj.shoot( ray, rayData );
+		rayData.setBit( obj.getIndex() );
+		if (segs != null && segs.size() > 0)
+		{
+			rayData.addSegs( obj, segs );
+		}
+	}
+	
+	/**
+	 * Intersect a ray with one piece, unless it has already been intersected
+	 */
+	static void shootPiece( PreppedObjectPiece obj, Ray ray, RayData rayData )
+	{
+		if( rayData.getBit( obj.getIndex() ) )
+		{
+			// already intersected
+			return;
+		}
+		Set<Hit> hits = obj.shoot( ray, rayData );
+		rayData.setBit( obj.getIndex() );
+		if( hits != null && hits.size() > 0 )
+		{
+			rayData.addHits( obj.getPreppedObject(), hits );
+		}
+	}
+	
+	/**
+	 * Move a ray to where it leaves this box
+	 */
+	private void leave( Ray ray, RayData rayData )
+	{
+        double[] hits = rayData.getBoxDistances();
+        if (!this.boundingBox.isect2(ray, hits)) {
             // missed
             rayData.setDist(Double.MAX_VALUE);
             return;
         }
 		rayData.setDist( hits[1] );
-		Point locator = new Point( ray.getStart() );
-		locator.join( hits[1] + BoxNode.MIN_BOX_WIDTH/10.0, ray.getDirection() );
-		rayData.setLocator( locator );
-    }
+		rayData.setLocator( hits[1] + BoxNode.MIN_BOX_WIDTH/10.0 );
+	}
 
     @Override
     public String toString() {
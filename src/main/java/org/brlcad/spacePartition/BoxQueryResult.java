@@ -0,0 +1,56 @@
+package org.brlcad.spacePartition;
+
+import org.brlcad.numerics.BoundingBox;
+
+/**
+ * The regions and primitives whose prepped bounding boxes intersect a query box
+ * (see PreppedDb.queryBox())
+ */
+public class BoxQueryResult {
+
+    private final BoundingBox box;
+    private final int[] regions;
+    private final int[] primitives;
+
+    BoxQueryResult(BoundingBox box, int[] regions, int[] primitives) {
+        this.box = box;
+        this.regions = regions;
+        this.primitives = primitives;
+    }
+
+    /**
+     * @return The query box
+     */
+    public BoundingBox getBox() {
+        return box;
+    }
+
+    /**
+     * @return The indices (see PreppedDb.getRegionTable()) of the regions whose bounds
+     * intersect the query box, in increasing order
+     */
+    public int[] getRegions() {
+        return regions;
+    }
+
+    /**
+     * @return The indices (see PreppedDb.getPrimitiveName()) of the primitives and primitive
+     * pieces whose bounds intersect the query box, in increasing order
+     */
+    public int[] getPrimitives() {
+        return primitives;
+    }
+
+    /**
+     * @return true, if nothing intersects the query box
+     */
+    public boolean isEmpty() {
+        return this.regions.length == 0 && this.primitives.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BoxQueryResult: " + this.box + ", " + this.regions.length + " regions, "
+                + this.primitives.length + " primitives";
+    }
+}
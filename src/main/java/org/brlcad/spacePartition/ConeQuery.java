@@ -0,0 +1,238 @@
+package org.brlcad.spacePartition;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.OverlapHandler;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.brlcad.preppedGeometry.PreppedObjectPiece;
+
+/**
+ * Shoots many rays from one burst point, all inside a cone (or a hemisphere, or the
+ * whole sphere) around that point. The space partitioning is walked once when the query
+ * is created, using BoundingBox.intersectsCone() to collect the primitives that the cone
+ * can reach. Each ray is then intersected with only those primitives, with no walk of
+ * the space partitioning at all.
+ * <p>
+ * Partitions that lie entirely behind the burst point are not reported, since the
+ * primitives behind it are not candidates. The exception is a BoT around the burst
+ * point: the pieces of it that the reversed cone reaches are collected in the same walk,
+ * since they are needed to find where the rays leave it.
+ */
+public class ConeQuery {
+
+    /** allowance for directions on the surface of the cone */
+    private static final double DIRECTION_TOLERANCE = 1.0e-9;
+
+    private final PreppedDb db;
+    private final Point apex;
+    private final Vector3 axis;
+    private final double cosHalfAngle;
+    private final BoxNode candidates;
+    private final int objectCount;
+    private final int pieceCount;
+
+    /**
+     * Collect the candidate primitives of a cone
+     *
+     * @param db The PreppedDb
+     * @param spacePartition The root of its space partitioning
+     * @param apex The burst point
+     * @param axis The axis of the cone (normalized here)
+     * @param cosHalfAngle The cosine of half the cone angle (-1 for the whole sphere)
+     */
+    ConeQuery(PreppedDb db, Node spacePartition, Point apex, Vector3 axis, double cosHalfAngle) {
+        this.db = db;
+        this.apex = new Point(apex);
+        this.axis = new Vector3(axis);
+        this.axis.normalize();
+        this.cosHalfAngle = cosHalfAngle;
+
+        List<PreppedObject> objects = new ArrayList<PreppedObject>();
+        List<PreppedObjectPiece> pieces = new ArrayList<PreppedObjectPiece>();
+        this.collect(spacePartition, new Ray(this.apex, this.axis), new Ray(this.apex, Vector3.negate(this.axis)),
+                new BitSet(), objects, pieces);
+        this.objectCount = objects.size();
+        this.pieceCount = pieces.size();
+
+        if (objects.isEmpty() && pieces.isEmpty()) {
+            this.candidates = null;
+        } else {
+            this.candidates = new BoxNode();
+            for (PreppedObject obj : objects) {
+                this.candidates.addPreppedObjectAndExtendBB(obj);
+            }
+            for (PreppedObjectPiece piece : pieces) {
+                this.candidates.addPreppedObjectPieceAndExtendBB(piece);
+            }
+            this.candidates.prepareSlabs(BrlcadDb.getTolerance().getDist());
+        }
+    }
+
+    /**
+     * Walk the space partitioning, collecting the objects and pieces the cone reaches, and
+     * the pieces that the reverse cone reaches of a split primitive around the burst point
+     * (a ray from inside it needs the triangles behind the burst point too)
+     */
+    private void collect(Node node, Ray cone, Ray reverse, BitSet seen, List<PreppedObject> objects,
+            List<PreppedObjectPiece> pieces) {
+        if (node instanceof CutNode) {
+            CutNode cut = (CutNode) node;
+            this.collect(cut.getLtCutValue(), cone, reverse, seen, objects, pieces);
+            this.collect(cut.getGteCutValue(), cone, reverse, seen, objects, pieces);
+            return;
+        }
+        if (!(node instanceof BoxNode)) {
+            return;
+        }
+        BoxNode box = (BoxNode) node;
+        if (box.size() == 0) {
+            return;
+        }
+        boolean ahead = this.reaches(box.getBoundingBox(), cone);
+        if (ahead) {
+            // an object may be in many boxes, check each one once
+            for (PreppedObject obj : box.getPreppedObjects()) {
+                if (!seen.get(obj.getIndex())) {
+                    seen.set(obj.getIndex());
+                    if (this.reaches(obj.getBoundingBox(), cone)) {
+                        objects.add(obj);
+                    }
+                }
+            }
+        } else if (!this.reaches(box.getBoundingBox(), reverse)) {
+            return;
+        }
+        for (PreppedObjectPiece piece : box.getPreppedPieces()) {
+            if (!seen.get(piece.getIndex())) {
+                seen.set(piece.getIndex());
+                if (this.reaches(piece.getBoundingBox(), cone)
+                        || (contains(piece.getPreppedObject().getBoundingBox(), this.apex)
+                        && this.reaches(piece.getBoundingBox(), reverse))) {
+                    pieces.add(piece);
+                }
+            }
+        }
+    }
+
+    private static boolean contains(BoundingBox bb, Point p) {
+        return bb != null && !bb.isEmpty() && p.getX() >= bb.getMin().getX() && p.getX() <= bb.getMax().getX()
+                && p.getY() >= bb.getMin().getY() && p.getY() <= bb.getMax().getY()
+                && p.getZ() >= bb.getMin().getZ() && p.getZ() <= bb.getMax().getZ();
+    }
+
+    private boolean reaches(BoundingBox bb, Ray cone) {
+        if (this.cosHalfAngle <= -1.0) {
+            // the whole sphere
+            return true;
+        }
+        return bb != null && !bb.isEmpty() && bb.intersectsCone(cone, this.cosHalfAngle);
+    }
+
+    /**
+     * @param direction A unit vector
+     * @return true, if a ray from the burst point in that direction is inside the cone
+     */
+    public boolean accepts(Vector3 direction) {
+        return direction.dotProduct(this.axis) >= this.cosHalfAngle - DIRECTION_TOLERANCE;
+    }
+
+    /**
+     * Shoot one ray from the burst point
+     *
+     * @param direction The direction of the ray, which must be inside the cone
+     * @param overlapHandler The OverlapHandler to use
+     * @return The partitions along the ray (not including those behind the burst point)
+     */
+    public SortedSet<Partition> shootRay(Vector3 direction, OverlapHandler overlapHandler) {
+        Vector3 dir = new Vector3(direction);
+        dir.normalize();
+        if (!this.accepts(dir)) {
+            throw new IllegalArgumentException("Direction " + direction + " is outside the cone around "
+                    + this.axis);
+        }
+        Ray ray = new Ray(new Point(this.apex), dir);
+        RayData rayData = null;
+        if (this.candidates != null) {
+            rayData = this.db.startRay(ray, null, new double[2]);
+            if (rayData != null) {
+                this.candidates.shootRay(this.db, ray, rayData);
+                rayData.makeSegs();
+            }
+        }
+        SortedSet<Partition> parts = this.db.evaluate(ray, rayData, overlapHandler);
+        Iterator<Partition> iter = parts.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getOutHit().getHit_dist() <= 0.0) {
+                // behind the burst point
+                iter.remove();
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Shoot a ray from the burst point in each of a number of directions
+     *
+     * @param directions The directions, which must all be inside the cone
+     * @param overlapHandler The OverlapHandler to use
+     * @return The partitions along each ray, in the order of the directions
+     */
+    public List<SortedSet<Partition>> shootRays(Vector3[] directions, OverlapHandler overlapHandler) {
+        List<SortedSet<Partition>> results = new ArrayList<SortedSet<Partition>>(directions.length);
+        for (Vector3 direction : directions) {
+            results.add(this.shootRay(direction, overlapHandler));
+        }
+        return results;
+    }
+
+    /**
+     * @return The burst point
+     */
+    public Point getApex() {
+        return apex;
+    }
+
+    /**
+     * @return The (unit) axis of the cone
+     */
+    public Vector3 getAxis() {
+        return axis;
+    }
+
+    /**
+     * @return The cosine of half the cone angle
+     */
+    public double getCosHalfAngle() {
+        return cosHalfAngle;
+    }
+
+    /**
+     * @return The number of objects (not counting pieces) that the rays are intersected with
+     */
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * @return The number of pieces (such as BOT triangle groups) that the rays are intersected with
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ConeQuery: apex=" + this.apex + ", axis=" + this.axis + ", half angle="
+                + Math.toDegrees(Math.acos(this.cosHalfAngle)) + " degrees, " + this.objectCount
+                + " objects and " + this.pieceCount + " pieces";
+    }
+}
@@ -5,6 +5,7 @@
  */
 
 package org.brlcad.spacePartition;
+import java.util.BitSet;
 import org.brlcad.numerics.Ray;
 
 
@@ -36,6 +37,50 @@ public class CutNode extends Node
 		}
 	}
 
+	void shootPacket( PreppedDb db, RayPacket packet, int mask )
+	{
+		int ltMask = 0;
+		for( int m=mask ; m!=0 ; m &= m - 1 )
+		{
+			int lane = Integer.numberOfTrailingZeros( m );
+			if( packet.rayData[lane].getLocator().get( cutAxis ) < cutValue )
+			{
+				ltMask |= 1 << lane;
+			}
+		}
+		// the lanes stay together as long as they fall on the same side of each cut
+		if( ltMask != 0 )
+		{
+			ltCutValue.shootPacket( db, packet, ltMask );
+		}
+		if( ltMask != mask )
+		{
+			gteCutValue.shootPacket( db, packet, mask & ~ltMask );
+		}
+	}
+
+	BoxNode findBox( double x, double y, double z )
+	{
+		double value = cutAxis == 0 ? x : (cutAxis == 1 ? y : z);
+		if( value < cutValue )
+		{
+			return ltCutValue.findBox( x, y, z );
+		}
+		return gteCutValue.findBox( x, y, z );
+	}
+
+	void queryBox( double[] min, double[] max, BitSet found )
+	{
+		if( min[cutAxis] < cutValue )
+		{
+			ltCutValue.queryBox( min, max, found );
+		}
+		if( max[cutAxis] >= cutValue )
+		{
+			gteCutValue.queryBox( min, max, found );
+		}
+	}
+
     /**
      * @return the ltCutValue
      */
@@ -5,6 +5,7 @@
  */
 
 package org.brlcad.spacePartition;
+import java.util.BitSet;
 import org.brlcad.numerics.Ray;
 
 
@@ -12,5 +13,30 @@ import org.brlcad.numerics.Ray;
 public abstract class Node
 {
 	public abstract void shootRay( PreppedDb db, Ray ray, RayData rayData );
+	
+	/**
+	 * Take one step for each of a set of rays of a packet, as shootRay() does for a single ray
+	 *
+	 * @param    db                  a  PreppedDb
+	 * @param    packet              the packet
+	 * @param    mask                the lanes of the packet to step
+	 */
+	abstract void shootPacket( PreppedDb db, RayPacket packet, int mask );
+	
+	/**
+	 * Find the leaf box that contains a point, as shootRay() does for the ray locator
+	 *
+	 * @return   the BoxNode
+	 */
+	abstract BoxNode findBox( double x, double y, double z );
+	
+	/**
+	 * Find the objects and pieces whose bounding boxes intersect a box
+	 *
+	 * @param    min                 the minimum corner of the box (x, y, z)
+	 * @param    max                 the maximum corner of the box
+	 * @param    found               receives the index of each object and piece found
+	 */
+	abstract void queryBox( double[] min, double[] max, BitSet found );
 }
 
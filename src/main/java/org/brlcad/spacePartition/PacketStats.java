@@ -0,0 +1,125 @@
+package org.brlcad.spacePartition;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how well the rays of packets stayed together while walking the space
+ * partitioning (see PreppedDb.shootPacket()). A PacketStats may be shared by all the
+ * threads shooting packets.
+ */
+public class PacketStats {
+
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong rays = new AtomicLong();
+    private final AtomicLong leafVisits = new AtomicLong();
+    private final AtomicLong laneVisits = new AtomicLong();
+    private final AtomicLong laneSlots = new AtomicLong();
+    private final AtomicLong fallbackRays = new AtomicLong();
+    private final AtomicLong fallbackSteps = new AtomicLong();
+
+    /**
+     * Record the traversal of one packet
+     *
+     * @param size	The number of rays in the packet
+     * @param hitModel	The number of those rays that hit the model bounding box
+     * @param leaves	The number of leaf box visits made by the packet
+     * @param lanes	The number of rays passed through those leaf boxes
+     * @param fallback	The number of rays that were finished on their own
+     * @param steps	The number of leaf boxes visited by those rays on their own
+     */
+    void record(int size, int hitModel, int leaves, int lanes, int fallback, int steps) {
+        this.packets.incrementAndGet();
+        this.rays.addAndGet(hitModel);
+        this.leafVisits.addAndGet(leaves);
+        this.laneVisits.addAndGet(lanes);
+        this.laneSlots.addAndGet((long) leaves * size);
+        if (fallback > 0) {
+            this.fallbackRays.addAndGet(fallback);
+            this.fallbackSteps.addAndGet(steps);
+        }
+    }
+
+    /**
+     * @return	The number of packets shot
+     */
+    public long getPackets() {
+        return this.packets.get();
+    }
+
+    /**
+     * @return	The number of rays that entered the model
+     */
+    public long getRays() {
+        return this.rays.get();
+    }
+
+    /**
+     * @return	The number of leaf box visits made by packets
+     */
+    public long getLeafVisits() {
+        return this.leafVisits.get();
+    }
+
+    /**
+     * @return	The average number of rays passed through a leaf box by each packet visit
+     */
+    public double getRaysPerLeafVisit() {
+        long leaves = this.leafVisits.get();
+        return leaves == 0 ? 0.0 : (double) this.laneVisits.get() / leaves;
+    }
+
+    /**
+     * @return	The fraction of the packet lanes that were active at each leaf box visit
+     *		(1.0 means the rays of each packet never split up)
+     */
+    public double getEfficiency() {
+        long slots = this.laneSlots.get();
+        return slots == 0 ? 0.0 : (double) this.laneVisits.get() / slots;
+    }
+
+    /**
+     * @return	The number of rays that left their packet and were finished on their own
+     */
+    public long getFallbackRays() {
+        return this.fallbackRays.get();
+    }
+
+    /**
+     * @return	The fraction of all leaf box steps that were taken by rays on their own
+     */
+    public double getFallbackFraction() {
+        long steps = this.fallbackSteps.get();
+        long total = steps + this.laneVisits.get();
+        return total == 0 ? 0.0 : (double) steps / total;
+    }
+
+    /**
+     * Print a summary of the statistics
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        out.println(this);
+    }
+
+    /**
+     * Discard everything recorded so far. Should not be called while rays are being shot.
+     */
+    public void clear() {
+        this.packets.set(0);
+        this.rays.set(0);
+        this.leafVisits.set(0);
+        this.laneVisits.set(0);
+        this.laneSlots.set(0);
+        this.fallbackRays.set(0);
+        this.fallbackSteps.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d packets (%d rays): %.2f rays per leaf visit, packet efficiency %.1f%%, "
+                + "%d rays finished alone (%.1f%% of leaf steps)",
+                this.getPackets(), this.getRays(), this.getRaysPerLeafVisit(), 100.0 * this.getEfficiency(),
+                this.getFallbackRays(), 100.0 * this.getFallbackFraction());
+    }
+}
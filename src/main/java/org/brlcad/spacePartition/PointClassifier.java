@@ -0,0 +1,188 @@
+package org.brlcad.spacePartition;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.SortedSet;
+import org.brlcad.geometry.CompiledTree;
+import org.brlcad.geometry.IntervalList;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedCombination;
+import org.brlcad.preppedGeometry.PreppedObject;
+
+/**
+ * Finds the region that contains a point. The point is located in the space partitioning
+ * and a ray through it is intersected with only the primitives of that box whose bounds
+ * contain the point, since no other primitive can contain it. For a primitive split into
+ * pieces (a large BoT) whose bounds contain the point, the triangles that bound the point
+ * may be anywhere along the line through it, so the line is walked through the space
+ * partitioning from where it enters the bounds of the primitive to where it leaves them,
+ * and only the pieces in the boxes it crosses are intersected. The regions are then
+ * evaluated along the ray, and the region whose partition spans the point wins. When
+ * regions overlap at the point, the winner is the one that SimpleOverlapHandler would
+ * keep (the partition that sorts first).
+ * <p>
+ * Not thread safe, use one PointClassifier per thread.
+ */
+final class PointClassifier {
+
+    /** direction of the classifying rays, chosen to avoid running along the faces of axis aligned primitives */
+    private static final Vector3 DIRECTION = new Vector3(0.2673, 0.5345, 0.8018);
+
+    private final PreppedDb db;
+    private final Node spacePartition;
+    private final List<PreppedCombination> regions;
+    private final int[] sortRanks;
+    private final int target;
+    private final double[] min;
+    private final double[] max;
+    private final double[] hits = new double[2];
+    private final PreppedObject[] splitObjects;
+
+    /**
+     * @param db The PreppedDb
+     * @param spacePartition The root of its space partitioning
+     * @param regions The regions, in region bit order
+     * @param sortRanks The rank of each region when sorted by name
+     * @param splitObjects The primitives of the PreppedDb that are split into pieces
+     * @param target The only region to consider, or -1 to consider all regions
+     */
+    PointClassifier(PreppedDb db, Node spacePartition, List<PreppedCombination> regions, int[] sortRanks,
+            PreppedObject[] splitObjects, int target) {
+        this.db = db;
+        this.spacePartition = spacePartition;
+        this.regions = regions;
+        this.sortRanks = sortRanks;
+        this.target = target;
+        BoundingBox bb = db.getBoundingBox();
+        if (bb == null || bb.isEmpty()) {
+            this.min = null;
+            this.max = null;
+        } else {
+            this.min = new double[]{bb.getMin().getX(), bb.getMin().getY(), bb.getMin().getZ()};
+            this.max = new double[]{bb.getMax().getX(), bb.getMax().getY(), bb.getMax().getZ()};
+        }
+
+        this.splitObjects = splitObjects;
+    }
+
+    /**
+     * Classify a point
+     *
+     * @return The index of the region containing the point, or PreppedDb.NO_REGION
+     */
+    int classify(double x, double y, double z) {
+        if (this.min == null || x < this.min[0] || y < this.min[1] || z < this.min[2]
+                || x > this.max[0] || y > this.max[1] || z > this.max[2]) {
+            return PreppedDb.NO_REGION;
+        }
+        BoxNode box = this.spacePartition.findBox(x, y, z);
+        Ray ray = new Ray(new Point(x, y, z), new Vector3(DIRECTION));
+        RayData rayData = this.db.startRay(ray, null, this.hits);
+        if (rayData == null) {
+            return PreppedDb.NO_REGION;
+        }
+        int count = box.shootContaining(ray, rayData, x, y, z);
+        for (PreppedObject obj : this.splitObjects) {
+            BoundingBox bounds = obj.getBoundingBox();
+            if (x >= bounds.getMin().getX() && x <= bounds.getMax().getX() && y >= bounds.getMin().getY()
+                    && y <= bounds.getMax().getY() && z >= bounds.getMin().getZ() && z <= bounds.getMax().getZ()) {
+                this.shootPieces(obj, ray, rayData, x, y, z);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return PreppedDb.NO_REGION;
+        }
+        rayData.makeSegs();
+
+        // the ray starts at the point, so look for the partition that spans distance zero
+        int best = PreppedDb.NO_REGION;
+        double bestIn = 0.0;
+        double bestOut = 0.0;
+        BitSet regbits = rayData.getRegbits();
+        for (int i = regbits.nextSetBit(0); i > -1; i = regbits.nextSetBit(i + 1)) {
+            if (this.target >= 0 && i != this.target) {
+                continue;
+            }
+            PreppedCombination region = this.regions.get(i);
+            CompiledTree program = region.getProgram();
+            if (program != null) {
+                IntervalList list = program.evaluate(rayData);
+                if (list == null) {
+                    continue;
+                }
+                for (int j = 0; j < list.size(); j++) {
+                    double in = list.getInDist(j);
+                    double out = list.getOutDist(j);
+                    if (in <= 0.0 && out > 0.0 && (best < 0 || this.sortsBefore(in, out, i, bestIn, bestOut, best))) {
+                        best = i;
+                        bestIn = in;
+                        bestOut = out;
+                    }
+                }
+            } else {
+                SortedSet<Partition> parts = region.evaluate(region, rayData);
+                if (parts == null) {
+                    continue;
+                }
+                for (Partition part : parts) {
+                    double in = part.getInHit().getHit_dist();
+                    double out = part.getOutHit().getHit_dist();
+                    if (in <= 0.0 && out > 0.0 && (best < 0 || this.sortsBefore(in, out, i, bestIn, bestOut, best))) {
+                        best = i;
+                        bestIn = in;
+                        bestOut = out;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Intersect a ray through a point with the pieces of a split primitive in each box the
+     * line through the point crosses inside the bounds of the primitive (which contain the point)
+     */
+    private void shootPieces(PreppedObject obj, Ray ray, RayData rayData, double x, double y, double z) {
+        double[] inverse = ray.getInverseDirection();
+        BoundingBox bounds = obj.getBoundingBox();
+        double t = distance(bounds, inverse, x, y, z, false);
+        double end = distance(bounds, inverse, x, y, z, true);
+        Vector3 dir = ray.getDirection();
+        while (t <= end) {
+            BoxNode box = this.spacePartition.findBox(x + t * dir.getX(), y + t * dir.getY(), z + t * dir.getZ());
+            box.shootPieces(obj, ray, rayData);
+            // step just past where the line leaves the box, as BoxNode.shootRay() does
+            t = Math.max(t, distance(box.getBoundingBox(), inverse, x, y, z, true)) + BoxNode.MIN_BOX_WIDTH / 10.0;
+        }
+    }
+
+    /**
+     * @return The distance along the line from a point to where it enters (or leaves) a box
+     */
+    private static double distance(BoundingBox bb, double[] inverse, double x, double y, double z, boolean leave) {
+        Point min = bb.getMin();
+        Point max = bb.getMax();
+        double tx = ((inverse[0] >= 0.0 == leave ? max.getX() : min.getX()) - x) * inverse[0];
+        double ty = ((inverse[1] >= 0.0 == leave ? max.getY() : min.getY()) - y) * inverse[1];
+        double tz = ((inverse[2] >= 0.0 == leave ? max.getZ() : min.getZ()) - z) * inverse[2];
+        return leave ? Math.min(tx, Math.min(ty, tz)) : Math.max(tx, Math.max(ty, tz));
+    }
+
+    /**
+     * Compare partitions the same way as Partition and ShotlineBuffer sort them
+     */
+    private boolean sortsBefore(double in1, double out1, int region1, double in2, double out2, int region2) {
+        if (in1 != in2) {
+            return in1 < in2;
+        }
+        if (out1 != out2) {
+            return out1 < out2;
+        }
+        return this.sortRanks[region1] < this.sortRanks[region2];
+    }
+}
@@ -7,22 +7,33 @@ package org.brlcad.spacePartition;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import java.util.logging.Logger;
 import org.brlcad.geometry.BadGeometryException;
 import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.CompiledTree;
 import org.brlcad.geometry.DbException;
 import org.brlcad.geometry.DbNameNotFoundException;
 import org.brlcad.geometry.DbObject;
 import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.IntervalList;
+import org.brlcad.geometry.OverlapCollector;
 import org.brlcad.geometry.OverlapHandler;
+import org.brlcad.geometry.OverlapRecorder;
 import org.brlcad.geometry.Partition;
 import org.brlcad.geometry.Segment;
 import org.brlcad.numerics.BoundingBox;
@@ -33,6 +44,7 @@ import org.brlcad.numerics.Vector3;
 import org.brlcad.preppedGeometry.PreppedCombination;
 import org.brlcad.preppedGeometry.PreppedObject;
 import org.brlcad.preppedGeometry.PreppedObjectPiece;
+import org.brlcad.utils.TaskRunner;
 
 public class PreppedDb {
 
@@ -46,7 +58,23 @@ public class PreppedDb {
     private int preppedSolidCount = 0;
     private int preppedRegionCount = 0;
     private final List<PreppedObjectPiece> pieces = new ArrayList<PreppedObjectPiece>();
+    /** the primitives split into the pieces, each once */
+    private PreppedObject[] splitObjects;
+    private boolean lazyEvaluation = false;
+    private RegionTable regionTable;
+    private OverlapCollector overlapCollector;
+    private volatile String[] primitiveNames;
     public static final String DbBoundingBoxName = "DB BoundingBox";
+    /** the largest number of rays that shootPacket() accepts */
+    public static final int MAX_PACKET_SIZE = RayPacket.MAX_RAYS;
+    /** the width and height of the tiles that shootGrid() shoots as packets */
+    private static final int GRID_TILE = 4;
+    /** the region index that classifyPoints() returns for a point that is in no region */
+    public static final int NO_REGION = -1;
+    /** the number of points that each task of classifyPoints() classifies */
+    private static final int CLASSIFY_CHUNK = 4096;
+    /** the number of boxes that each task of queryBoxes() queries */
+    private static final int QUERY_CHUNK = 256;
     private Logger logger;
 
     public PreppedDb(BrlcadDb db, String... objs) throws BadGeometryException, DbException, IOException, DbNameNotFoundException {
@@ -85,10 +113,19 @@ public class PreppedDb {
 
         }
 
+        this.markDeferredObjects();
+        this.regionTable = new RegionTable(this.regions);
+        Set<PreppedObject> split = new LinkedHashSet<PreppedObject>();
+        for (PreppedObjectPiece piece : this.pieces) {
+            split.add(piece.getPreppedObject());
+        }
+        this.splitObjects = split.toArray(new PreppedObject[split.size()]);
+
         //start cutting initialBox
         logger.info("Starting space partitioning..");
         long startTime = System.currentTimeMillis();
         this.spacePartition = this.cut(this.initialBox);
+        this.prepareSlabs(this.spacePartition, BrlcadDb.getTolerance().getDist());
         logger.info("Completed space partitioning in " + (System.currentTimeMillis()-startTime) + "ms (Prep complete)");
 //        AtomicInteger boxCount = new AtomicInteger(0);
 //        plotBoxes(this.spacePartition, boxCount);
@@ -115,6 +152,72 @@ public class PreppedDb {
     protected PreppedDb() {
     }
 
+    private void prepareSlabs(Node n, double tol) {
+        if (n instanceof BoxNode) {
+            ((BoxNode) n).prepareSlabs(tol);
+        } else if (n instanceof CutNode) {
+            CutNode cn = (CutNode) n;
+            prepareSlabs(cn.getGteCutValue(), tol);
+            prepareSlabs(cn.getLtCutValue(), tol);
+        }
+    }
+
+    /**
+     * Mark the primitives that are only used as the right hand operand of a
+     * subtraction or intersection, so they can be intersected on demand when
+     * lazy evaluation is enabled. Objects that are split into pieces are
+     * always intersected during the space partition walk.
+     */
+    private void markDeferredObjects() {
+        Set<PreppedObject> solids = new HashSet<PreppedObject>(this.initialBox.getPreppedObjects());
+        int count = 0;
+        for (PreppedCombination region : this.regions) {
+            if (region.getProgram() == null) {
+                continue;
+            }
+            for (PreppedObject leaf : region.getProgram().getDeferrableLeaves()) {
+                if (solids.contains(leaf)) {
+                    leaf.setDeferred(true);
+                    count++;
+                }
+            }
+        }
+        logger.info("\t" + count + " of " + solids.size() + " primitives may be intersected on demand");
+    }
+
+    /**
+     * Enable or disable lazy evaluation. When enabled, primitives that are only
+     * subtracted or intersected are not intersected while walking the space
+     * partition, but during region evaluation and only if the left hand operand
+     * produced segments.
+     *
+     * @param lazyEvaluation	true to enable lazy evaluation
+     */
+    public void setLazyEvaluation(boolean lazyEvaluation) {
+        this.lazyEvaluation = lazyEvaluation;
+    }
+
+    /**
+     * @return	true if lazy evaluation is enabled
+     */
+    public boolean isLazyEvaluation() {
+        return this.lazyEvaluation;
+    }
+
+    /**
+     * Set the OverlapCollector that records the overlaps resolved when shooting into a
+     * ShotlineBuffer without an OverlapHandler
+     *
+     * @param overlapCollector	The collector (null to ignore overlaps)
+     */
+    public void setOverlapCollector(OverlapCollector overlapCollector) {
+        this.overlapCollector = overlapCollector;
+    }
+
+    public OverlapCollector getOverlapCollector() {
+        return this.overlapCollector;
+    }
+
     private Node cut(BoxNode box) {
         logger.finest("Cutting BoxNode: " + box);
         if (box.size() < 15) {
@@ -189,6 +292,13 @@ public class PreppedDb {
         return this.boundingBox;
     }
 
+    /**
+     * @return the root of the space partitioning
+     */
+    Node getSpacePartition() {
+        return this.spacePartition;
+    }
+
     public void addPreppedObjectToInitialBox(PreppedObject preppedObject) {
         this.initialBox.addPreppedObjectAndExtendBB(preppedObject);
         preppedObject.setIndex(this.preppedSolidCount++);
@@ -278,45 +388,497 @@ public class PreppedDb {
         return new Segment(inHit, outHit);
     }
 
+    /**
+     * Intersect a ray with a bounding box without allocating any objects
+     *
+     * @param ray The ray
+     * @param bb The bounding box
+     * @param dist Receives the entry distance (never less than zero) in dist[0]
+     *             and the exit distance in dist[1]
+     * @return true if the ray hits the box
+     */
+    public boolean shootBoundingBox(Ray ray, BoundingBox bb, double[] dist) {
+        if (!bb.isect2(ray, dist) || dist[1] < 0.0) {
+            return false;
+        }
+        if (dist[0] < 0.0) {
+            dist[0] = 0.0;
+        }
+        return true;
+    }
+
+    /**
+     * @return the table of the prepped regions, indexed by region bit number
+     */
+    public RegionTable getRegionTable() {
+        return this.regionTable;
+    }
+
+    /**
+     * Create a ViewCache for a batch of parallel rays, such as the rays of an
+     * orthographic view. Passing it to shootRay() lets each primitive compute the
+     * values that depend only on the ray direction once for the whole batch.
+     *
+     * @param direction The direction shared by all the rays of the batch
+     * @return The new (empty) ViewCache
+     */
+    public ViewCache createViewCache(Vector3 direction) {
+        return new ViewCache(direction, this.preppedSolidCount);
+    }
+
+    /**
+     * Create a ConeQuery for shooting many rays from one burst point, all within a cone
+     *
+     * @param apex The burst point
+     * @param axis The axis of the cone
+     * @param halfAngle Half the cone angle, in radians (greater than 0 and at most PI)
+     * @return The ConeQuery, holding the primitives that the cone reaches
+     */
+    public ConeQuery createConeQuery(Point apex, Vector3 axis, double halfAngle) {
+        if (!(halfAngle > 0.0 && halfAngle <= Math.PI)) {
+            throw new IllegalArgumentException("Cone half angle must be in (0, PI], got " + halfAngle);
+        }
+        return new ConeQuery(this, this.spacePartition, apex, axis, halfAngle == Math.PI ? -1.0 : Math.cos(halfAngle));
+    }
+
+    /**
+     * Create a ConeQuery for shooting rays from a burst point into the half space
+     * on one side of it
+     *
+     * @param center The burst point
+     * @param pole The direction of the center of the hemisphere
+     * @return The ConeQuery
+     */
+    public ConeQuery createHemisphereQuery(Point center, Vector3 pole) {
+        return new ConeQuery(this, this.spacePartition, center, pole, 0.0);
+    }
+
+    /**
+     * Create a ConeQuery for shooting rays from a burst point in any direction
+     *
+     * @param center The burst point
+     * @return The ConeQuery
+     */
+    public ConeQuery createSphereQuery(Point center) {
+        return new ConeQuery(this, this.spacePartition, center, new Vector3(0, 0, 1), -1.0);
+    }
+
     public SortedSet<Partition> shootRay(Ray ray, OverlapHandler overlapHandler) {
-        logger.finest("Shooting ray: " + ray);
+        return this.shootRay(ray, overlapHandler, (ViewCache) null);
+    }
 
-        SortedSet<Partition> parts = new TreeSet<Partition>();
-        ray.getDirection().normalize();
+    /**
+     * Shoot a ray that belongs to a batch of parallel rays
+     *
+     * @param ray The ray, whose direction must be that of the view
+     * @param overlapHandler The OverlapHandler to use
+     * @param view The ViewCache of the batch (may be null)
+     * @return The partitions along the ray
+     */
+    public SortedSet<Partition> shootRay(Ray ray, OverlapHandler overlapHandler, ViewCache view) {
+        return this.evaluate(ray, this.traverse(ray, view), overlapHandler);
+    }
 
+    /**
+     * Shoot a batch of rays, one at a time
+     *
+     * @param rays The rays
+     * @param overlapHandler The OverlapHandler to use
+     * @param reorder If true, the rays are shot in an order that keeps rays entering the
+     * model close together and heading the same way next to each other, which helps
+     * when the batch is scattered (see RayOrder)
+     * @return The partitions along each ray, in the order of the rays array
+     */
+    public List<SortedSet<Partition>> shootRays(Ray[] rays, OverlapHandler overlapHandler, boolean reorder) {
+        List<SortedSet<Partition>> results = new ArrayList<SortedSet<Partition>>(rays.length);
+        if (!reorder || this.boundingBox == null || this.boundingBox.isEmpty()) {
+            for (Ray ray : rays) {
+                results.add(this.shootRay(ray, overlapHandler));
+            }
+            return results;
+        }
 
-        // first intersect with model bounding box
-        double[] hits = null;
+        for (int i = 0; i < rays.length; i++) {
+            results.add(null);
+        }
+        for (int index : RayOrder.sort(rays, this.boundingBox)) {
+            // put the results back in the original order
+            results.set(index, this.shootRay(rays[index], overlapHandler));
+        }
+        return results;
+    }
 
-        if (this.boundingBox != null) {
-            if (this.boundingBox.getMin() != null && this.boundingBox.getMax() != null) {
-                hits = this.boundingBox.isect2(ray);
+    /**
+     * Shoot a packet of rays that start close together and head the same way, such as
+     * neighbouring pixels of a view. The rays walk the space partitioning together, as
+     * long as they pass through the same boxes. When they spread out over too many boxes,
+     * the rest of each ray is finished on its own.
+     *
+     * @param rays The rays
+     * @param offset The index of the first ray of the packet
+     * @param count The number of rays in the packet (at most MAX_PACKET_SIZE)
+     * @param overlapHandler The OverlapHandler to use
+     * @param view The ViewCache of the batch the rays belong to (may be null)
+     * @param stats Receives the packet statistics (may be null)
+     * @return The partitions along each ray, in the order of the rays
+     */
+    public List<SortedSet<Partition>> shootPacket(Ray[] rays, int offset, int count, OverlapHandler overlapHandler,
+            ViewCache view, PacketStats stats) {
+        if (count < 1 || count > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException("A packet must have between 1 and " + MAX_PACKET_SIZE
+                    + " rays (got " + count + ")");
+        }
+        RayPacket packet = new RayPacket(count);
+        double[] hits = new double[2];
+        int mask = 0;
+        for (int lane = 0; lane < count; lane++) {
+            Ray ray = rays[offset + lane];
+            RayData rayData = this.startRay(ray, view, hits);
+            if (rayData != null) {
+                packet.set(lane, ray, rayData, hits[1]);
+                mask |= 1 << lane;
             }
         }
+        int hitModel = Integer.bitCount(mask);
 
-        if (hits == null) {
-            logger.finest("\tMissed BoundingBox");
-            return parts;
+        int fallback = 0;
+        int steps = 0;
+        mask = packet.activeLanes(mask);
+        while (mask != 0) {
+            int lanes = Integer.bitCount(mask);
+            int leaves = packet.leafVisits;
+            this.spacePartition.shootPacket(this, packet, mask);
+            leaves = packet.leafVisits - leaves;
+            mask = packet.activeLanes(mask);
+            if (Integer.bitCount(mask) == 1 || (mask != 0 && 2 * leaves > lanes)) {
+                // the packet has diverged (fewer than two rays per box), finish each ray on its own
+                for (int m = mask; m != 0; m &= m - 1) {
+                    int lane = Integer.numberOfTrailingZeros(m);
+                    RayData rayData = packet.rayData[lane];
+                    while (rayData.getDist() < packet.maxDist[lane]) {
+                        this.spacePartition.shootRay(this, packet.rays[lane], rayData);
+                        steps++;
+                    }
+                    fallback++;
+                }
+                mask = 0;
+            }
+        }
+        if (stats != null) {
+            stats.record(count, hitModel, packet.leafVisits, packet.laneVisits, fallback, steps);
         }
 
-        double maxDist = hits[1];
-        Point locator = new Point(ray.getStart());
-        locator.join(hits[0] + BoxNode.MIN_BOX_WIDTH / 10.0, ray.getDirection());
-        BitSet regbits = new BitSet(this.preppedRegionCount);
-        BitSet solidBits = new BitSet(this.preppedSolidCount);
-        RayData rayData = new RayData(locator, hits[0] + BoxNode.MIN_BOX_WIDTH / 10.0, solidBits, regbits, BrlcadDb.getTolerance(), ray);
-        logger.finest("Pushing ray through space partitions");
-        while (rayData.getDist() < maxDist) {
-            this.spacePartition.shootRay(this, ray, rayData);
+        List<SortedSet<Partition>> results = new ArrayList<SortedSet<Partition>>(count);
+        for (int lane = 0; lane < count; lane++) {
+            RayData rayData = packet.rayData[lane];
+            if (rayData != null) {
+                // make segments from hits on pieces
+                rayData.makeSegs();
+            }
+            results.add(this.evaluate(rays[offset + lane], rayData, overlapHandler));
         }
+        return results;
+    }
 
-        // make segments from hits on pieces
-        rayData.makeSegs();
+    /**
+     * Shoot a grid of parallel rays, such as the pixels of an orthographic view. The
+     * ray for column c and row r starts at gridStart + c * delta * xDir + r * delta * yDir.
+     * The grid is cut into tiles of 4 by 4 rays that are shot as packets.
+     *
+     * @param gridStart The start of the ray for column 0 and row 0
+     * @param xDir The unit vector along a row of the grid
+     * @param yDir The unit vector along a column of the grid
+     * @param delta The distance between neighbouring rays
+     * @param columns The number of columns
+     * @param rows The number of rows
+     * @param direction The direction of all the rays
+     * @param overlapHandler The OverlapHandler to use
+     * @param view The ViewCache for the direction (may be null)
+     * @param stats Receives the packet statistics (may be null)
+     * @return The partitions along each ray, row by row
+     */
+    public List<SortedSet<Partition>> shootGrid(Point gridStart, Vector3 xDir, Vector3 yDir, double delta,
+            int columns, int rows, Vector3 direction, OverlapHandler overlapHandler, ViewCache view,
+            PacketStats stats) {
+        List<SortedSet<Partition>> results = new ArrayList<SortedSet<Partition>>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            results.add(null);
+        }
+        Ray[] rays = new Ray[MAX_PACKET_SIZE];
+        int[] index = new int[MAX_PACKET_SIZE];
+        for (int tileRow = 0; tileRow < rows; tileRow += GRID_TILE) {
+            for (int tileCol = 0; tileCol < columns; tileCol += GRID_TILE) {
+                int count = 0;
+                for (int row = tileRow; row < Math.min(tileRow + GRID_TILE, rows); row++) {
+                    for (int col = tileCol; col < Math.min(tileCol + GRID_TILE, columns); col++) {
+                        Point start = new Point(gridStart);
+                        start.join(delta * row, yDir);
+                        start.join(delta * col, xDir);
+                        rays[count] = new Ray(start, new Vector3(direction));
+                        index[count++] = row * columns + col;
+                    }
+                }
+                List<SortedSet<Partition>> parts = this.shootPacket(rays, 0, count, overlapHandler, view, stats);
+                for (int i = 0; i < count; i++) {
+                    results.set(index[i], parts.get(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find the region that contains each of a batch of points, using as many threads
+     * as there are processors. Where regions overlap, the point is given to the region
+     * that SimpleOverlapHandler would keep.
+     *
+     * @param xyz The coordinates of the points (x, y and z of each point in turn)
+     * @return The index of the region (see getRegionTable()) containing each point, or
+     * NO_REGION for points that are in no region
+     */
+    public int[] classifyPoints(double[] xyz) {
+        return this.classifyPoints(xyz, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Find the region that contains each of a batch of points (see classifyPoints(double[]))
+     *
+     * @param xyz The coordinates of the points (x, y and z of each point in turn)
+     * @param threads The number of threads to use
+     * @return The index of the region containing each point, or NO_REGION
+     */
+    public int[] classifyPoints(double[] xyz, int threads) {
+        return this.classifyPoints(xyz, null, threads);
+    }
+
+    /**
+     * Find which of a batch of points are inside one region, whether or not other
+     * regions overlap it there
+     *
+     * @param xyz The coordinates of the points (x, y and z of each point in turn)
+     * @param regionName The name of the region
+     * @param threads The number of threads to use
+     * @return For each point, the index of the region if the point is inside it, otherwise NO_REGION
+     */
+    public int[] classifyPoints(double[] xyz, String regionName, int threads) {
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            return this.classifyPoints(xyz, regionName, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
 
+    /**
+     * Find the region containing each of a batch of points (see classifyPoints(double[], String, int)),
+     * running the work on a thread pool that the caller keeps between batches
+     *
+     * @param xyz The coordinates of the points (x, y and z of each point in turn)
+     * @param regionName The name of the region (null to classify against all regions)
+     * @param executor The thread pool (null to run on the calling thread)
+     * @return For each point, the index of the region containing it, or NO_REGION
+     */
+    public int[] classifyPoints(double[] xyz, String regionName, ExecutorService executor) {
+        if (xyz.length % 3 != 0) {
+            throw new IllegalArgumentException("Point coordinates must come in threes (got " + xyz.length + ")");
+        }
+        final int target;
+        if (regionName == null) {
+            target = NO_REGION;
+        } else {
+            target = this.regionTable.indexOf(regionName);
+            if (target < 0) {
+                throw new IllegalArgumentException("No region named " + regionName);
+            }
+        }
+        final double[] points = xyz;
+        final int[] results = new int[xyz.length / 3];
+        this.runInChunks(results.length, CLASSIFY_CHUNK, executor, new ChunkTask() {
+            void run(int start, int end) {
+                classifyPoints(points, results, start, end, target);
+            }
+        });
+        return results;
+    }
+
+    private void classifyPoints(double[] xyz, int[] results, int start, int end, int target) {
+        PointClassifier classifier = new PointClassifier(this, this.spacePartition, this.regions,
+                this.regionTable.getSortRanks(), this.splitObjects, target);
+        for (int i = start; i < end; i++) {
+            results[i] = classifier.classify(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+        }
+    }
+
+    /**
+     * Find the regions and primitives whose prepped bounding boxes intersect a box.
+     * The primitives are found through the space partitioning, the regions through a
+     * hierarchy of the bounds of the regions (see RegionTable.getBoundingBox()).
+     *
+     * @param box The query box
+     * @return The regions and primitives found
+     */
+    public BoxQueryResult queryBox(BoundingBox box) {
+        return this.queryBox(box, new BitSet(this.preppedSolidCount), new BitSet(this.preppedRegionCount));
+    }
+
+    /**
+     * Run queryBox() using scratch sets, which are cleared first
+     */
+    private BoxQueryResult queryBox(BoundingBox box, BitSet primitives, BitSet regionBits) {
+        if (box == null || box.isEmpty()) {
+            throw new IllegalArgumentException("queryBox() called with an empty box");
+        }
+        double[] min = {box.getMin().getX(), box.getMin().getY(), box.getMin().getZ()};
+        double[] max = {box.getMax().getX(), box.getMax().getY(), box.getMax().getZ()};
+        primitives.clear();
+        if (this.spacePartition != null && BoxNode.overlaps(this.boundingBox, min, max)) {
+            this.spacePartition.queryBox(min, max, primitives);
+        }
+        regionBits.clear();
+        this.regionTable.queryBox(min, max, regionBits);
+        return new BoxQueryResult(box, toIndices(regionBits), toIndices(primitives));
+    }
+
+    /**
+     * Run queryBox() for each of a batch of boxes
+     *
+     * @param boxes The query boxes
+     * @param threads The number of threads to use
+     * @param stats Receives the latency of each query (may be null)
+     * @return The result for each box, in the order of the boxes
+     */
+    public List<BoxQueryResult> queryBoxes(List<BoundingBox> boxes, int threads, QueryStats stats) {
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            return this.queryBoxes(boxes, executor, stats);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Run queryBox() for each of a batch of boxes, on a thread pool that the caller
+     * keeps between batches
+     *
+     * @param boxes The query boxes
+     * @param executor The thread pool (null to run on the calling thread)
+     * @param stats Receives the latency of each query (may be null)
+     * @return The result for each box, in the order of the boxes
+     */
+    public List<BoxQueryResult> queryBoxes(final List<BoundingBox> boxes, ExecutorService executor,
+            final QueryStats stats) {
+        final BoxQueryResult[] results = new BoxQueryResult[boxes.size()];
+        this.runInChunks(results.length, QUERY_CHUNK, executor, new ChunkTask() {
+            void run(int start, int end) {
+                BitSet primitives = new BitSet(preppedSolidCount);
+                BitSet regionBits = new BitSet(preppedRegionCount);
+                for (int i = start; i < end; i++) {
+                    long startTime = System.nanoTime();
+                    results[i] = queryBox(boxes.get(i), primitives, regionBits);
+                    if (stats != null) {
+                        stats.record(System.nanoTime() - startTime);
+                    }
+                }
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return The number of primitives and primitive pieces (one more than the largest primitive index)
+     */
+    public int getPrimitiveCount() {
+        return this.preppedSolidCount;
+    }
+
+    /**
+     * @param index The index of a primitive or primitive piece (as returned by queryBox())
+     * @return The name of the primitive (a piece has the name of the primitive it is part of)
+     */
+    public String getPrimitiveName(int index) {
+        if (this.primitiveNames == null) {
+            String[] names = new String[this.preppedSolidCount];
+            for (PreppedObject obj : this.initialBox.getPreppedObjects()) {
+                names[obj.getIndex()] = obj.getName();
+            }
+            for (PreppedObjectPiece piece : this.pieces) {
+                names[piece.getIndex()] = piece.getName();
+            }
+            this.primitiveNames = names;
+        }
+        return this.primitiveNames[index];
+    }
+
+    private static int[] toIndices(BitSet bits) {
+        int[] indices = new int[bits.cardinality()];
+        int n = 0;
+        for (int i = bits.nextSetBit(0); i > -1; i = bits.nextSetBit(i + 1)) {
+            indices[n++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * A piece of work over a range of items, for runInChunks()
+     */
+    private abstract static class ChunkTask {
+        abstract void run(int start, int end);
+    }
+
+    /**
+     * Run a task over a number of items, split into chunks that are run on a pool of threads
+     *
+     * @param count The number of items
+     * @param chunk The number of items in each chunk
+     * @param executor The thread pool (null to run on the calling thread)
+     * @param task The task
+     */
+    private static void runInChunks(int count, int chunk, ExecutorService executor, final ChunkTask task) {
+        if (executor == null || count <= chunk) {
+            task.run(0, count);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < count; start += chunk) {
+            final int first = start;
+            final int end = Math.min(start + chunk, count);
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    task.run(first, end);
+                    return null;
+                }
+            });
+        }
+        TaskRunner.runAll(executor, tasks);
+    }
+
+    /**
+     * Evaluate the regions hit by a ray
+     *
+     * @param ray The ray
+     * @param rayData The RayData from traverse() (null if the ray missed the model)
+     * @param overlapHandler The OverlapHandler to use
+     * @return The partitions along the ray
+     */
+    SortedSet<Partition> evaluate(Ray ray, RayData rayData, OverlapHandler overlapHandler) {
+        SortedSet<Partition> parts = new TreeSet<Partition>();
+        if (rayData == null) {
+            return parts;
+        }
+
+        BitSet regbits = rayData.getRegbits();
         for (int i = regbits.nextSetBit(0); i > -1; i = regbits.nextSetBit(i + 1)) {
             PreppedCombination region = this.regions.get(i);
             SortedSet<Partition> regParts = region.evaluate(region, rayData);
             if (regParts != null && regParts.size() > 0) {
+                for (Partition part : regParts) {
+                    part.setRegionIndex(i);
+                }
                 parts.addAll(regParts);
             }
         }
@@ -326,6 +888,151 @@ public class PreppedDb {
         return parts;
     }
 
+    /**
+     * Shoot a ray and append the resulting partitions to a ShotlineBuffer. When no
+     * OverlapHandler is supplied, overlaps are resolved the same way as SimpleOverlapHandler
+     * (recording them in the OverlapCollector, if one is set) and no Partition objects
+     * are created.
+     *
+     * @param ray The ray
+     * @param overlapHandler The OverlapHandler to use (may be null)
+     * @param buffer The buffer that receives the partitions of the ray
+     * @return The number of partitions added to the buffer
+     */
+    public int shootRay(Ray ray, OverlapHandler overlapHandler, ShotlineBuffer buffer) {
+        return this.shootRay(ray, overlapHandler, buffer, null);
+    }
+
+    /**
+     * Shoot a ray that belongs to a batch of parallel rays and append the resulting
+     * partitions to a ShotlineBuffer, as in shootRay(Ray, OverlapHandler, ShotlineBuffer)
+     *
+     * @param ray The ray, whose direction must be that of the view
+     * @param overlapHandler The OverlapHandler to use (may be null)
+     * @param buffer The buffer that receives the partitions of the ray
+     * @param view The ViewCache of the batch (may be null)
+     * @return The number of partitions added to the buffer
+     */
+    public int shootRay(Ray ray, OverlapHandler overlapHandler, ShotlineBuffer buffer, ViewCache view) {
+        if (overlapHandler != null) {
+            SortedSet<Partition> parts = this.shootRay(ray, overlapHandler, view);
+            buffer.beginRay(ray);
+            for (Partition part : parts) {
+                int region = part.getRegionIndex();
+                if (region < 0) {
+                    // a Partition made by the OverlapHandler
+                    region = this.regionTable.indexOf(part.getFromRegion());
+                }
+                buffer.add(region, part.getInHit(), part.isFlipInNormal(),
+                        part.getOutHit(), part.isFlipOutNormal());
+            }
+            return buffer.endRay();
+        }
+        return this.shootRayRecording(ray, buffer, view, this.overlapCollector);
+    }
+
+    /**
+     * Shoot a ray that belongs to a batch of parallel rays and append the resulting
+     * partitions to a ShotlineBuffer, resolving overlaps the same way as SimpleOverlapHandler
+     * but recording them in the given OverlapRecorder rather than the OverlapCollector set on
+     * this PreppedDb
+     *
+     * @param ray The ray, whose direction must be that of the view
+     * @param buffer The buffer that receives the partitions of the ray
+     * @param view The ViewCache of the batch (may be null)
+     * @param collector Where to record the overlaps (may be null)
+     * @return The number of partitions added to the buffer
+     */
+    public int shootRayRecording(Ray ray, ShotlineBuffer buffer, ViewCache view, OverlapRecorder collector) {
+        RayData rayData = this.traverse(ray, view);
+        buffer.beginRay(ray);
+        if (rayData != null) {
+            BitSet regbits = rayData.getRegbits();
+            for (int i = regbits.nextSetBit(0); i > -1; i = regbits.nextSetBit(i + 1)) {
+                PreppedCombination region = this.regions.get(i);
+                CompiledTree program = region.getProgram();
+                if (program != null) {
+                    IntervalList list = program.evaluate(rayData);
+                    if (list != null) {
+                        for (int j = 0; j < list.size(); j++) {
+                            buffer.add(i, list.getInHit(j), list.isFlipIn(j), list.getOutHit(j), list.isFlipOut(j));
+                        }
+                    }
+                } else {
+                    SortedSet<Partition> regParts = region.evaluate(region, rayData);
+                    if (regParts != null) {
+                        for (Partition part : regParts) {
+                            buffer.add(i, part.getInHit(), part.isFlipInNormal(), part.getOutHit(), part.isFlipOutNormal());
+                        }
+                    }
+                }
+            }
+            buffer.sortRay(this.regionTable.getSortRanks());
+            buffer.resolveOverlaps(collector, this.regionTable);
+        }
+        return buffer.endRay();
+    }
+
+    /**
+     * Push a ray through the space partitioning, intersecting it with the primitives
+     * that it passes near
+     *
+     * @param ray The ray (its direction is normalized)
+     * @param view The ViewCache of the batch the ray belongs to (may be null)
+     * @return The RayData holding the intersections, or null if the ray misses the model
+     */
+    private RayData traverse(Ray ray, ViewCache view) {
+        double[] hits = new double[2];
+        RayData rayData = this.startRay(ray, view, hits);
+        if (rayData == null) {
+            return null;
+        }
+
+        double maxDist = hits[1];
+        logger.finest("Pushing ray through space partitions");
+        while (rayData.getDist() < maxDist) {
+            this.spacePartition.shootRay(this, ray, rayData);
+        }
+
+        // make segments from hits on pieces
+        rayData.makeSegs();
+
+        return rayData;
+    }
+
+    /**
+     * Set up a ray for the walk through the space partitioning
+     *
+     * @param ray The ray (its direction is normalized)
+     * @param view The ViewCache of the batch the ray belongs to (may be null)
+     * @param hits Receives the distances where the ray enters and leaves the model
+     * @return The RayData for the ray, or null if the ray misses the model
+     */
+    RayData startRay(Ray ray, ViewCache view, double[] hits) {
+        logger.finest("Shooting ray: " + ray);
+
+        ray.getDirection().normalize();
+        if (view != null && !view.accepts(ray.getDirection())) {
+            throw new IllegalArgumentException("Ray direction " + ray.getDirection()
+                    + " does not match the view direction " + view.getDirection());
+        }
+
+        // first intersect with model bounding box
+        if (this.boundingBox == null || this.boundingBox.isEmpty() || !this.boundingBox.isect2(ray, hits)) {
+            logger.finest("\tMissed BoundingBox");
+            return null;
+        }
+
+        Point locator = new Point(ray.getStart());
+        locator.join(hits[0] + BoxNode.MIN_BOX_WIDTH / 10.0, ray.getDirection());
+        BitSet regbits = new BitSet(this.preppedRegionCount);
+        BitSet solidBits = new BitSet(this.preppedSolidCount);
+        RayData rayData = new RayData(locator, hits[0] + BoxNode.MIN_BOX_WIDTH / 10.0, solidBits, regbits, BrlcadDb.getTolerance(), ray);
+        rayData.setLazyEvaluation(this.lazyEvaluation);
+        rayData.setViewCache(view);
+        return rayData;
+    }
+
     private void printNodes(Node n) {
         if (n == null) {
             return;
@@ -0,0 +1,90 @@
+package org.brlcad.spacePartition;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Records the latency of each query of a batch (see PreppedDb.queryBoxes()) and reports
+ * percentiles of it. A QueryStats may be shared by all the threads running queries.
+ */
+public class QueryStats {
+
+    private long[] latencies = new long[1024];
+    private int count;
+
+    /**
+     * Record the latency of one query
+     *
+     * @param nanos	The time taken, in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, 2 * this.count);
+        }
+        this.latencies[this.count++] = nanos;
+    }
+
+    /**
+     * @return	The number of queries recorded
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get a percentile of the query latency
+     *
+     * @param percent	The percentile, from 0 to 100 (50 is the median)
+     * @return	The latency in nanoseconds, or 0 if no queries were recorded
+     */
+    public synchronized long getPercentile(double percent) {
+        if (percent < 0.0 || percent > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percent);
+        }
+        if (this.count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, this.count);
+        Arrays.sort(sorted);
+        // nearest rank
+        int rank = (int) Math.ceil(percent / 100.0 * this.count);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * @return	The mean latency in nanoseconds
+     */
+    public synchronized double getMean() {
+        if (this.count == 0) {
+            return 0.0;
+        }
+        long total = 0;
+        for (int i = 0; i < this.count; i++) {
+            total += this.latencies[i];
+        }
+        return (double) total / this.count;
+    }
+
+    /**
+     * Print a summary of the statistics
+     * @param out	The stream to print on
+     */
+    public void printReport(PrintStream out) {
+        out.println(this);
+    }
+
+    /**
+     * Discard everything recorded so far
+     */
+    public synchronized void clear() {
+        this.count = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d queries: latency mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                this.getCount(), this.getMean() / 1.0e3, this.getPercentile(50.0) / 1.0e3,
+                this.getPercentile(90.0) / 1.0e3, this.getPercentile(99.0) / 1.0e3,
+                this.getPercentile(100.0) / 1.0e3);
+    }
+}
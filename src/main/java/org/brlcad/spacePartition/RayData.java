@@ -22,6 +22,7 @@ import org.brlcad.geometry.Partition;
 import org.brlcad.numerics.Point;
 import org.brlcad.numerics.Ray;
 import org.brlcad.numerics.Tolerance;
+import org.brlcad.numerics.Vector3;
 
 
 
@@ -36,6 +37,13 @@ public class RayData implements Serializable
     private Map<PreppedCombination,SortedSet<Partition>>  partitions;
 	private Map<PreppedObject,List<Segment>> segs;
 	private Map<PreppedObject,Set<Hit>> hits;
+	private boolean lazyEvaluation;
+	private transient ViewCache viewCache;
+	private transient boolean[] slabScratch;
+	private final double[] boxDistances = new double[2];
+	private final double[] roots = new double[6];
+	private final int[] hitTypes = new int[6];
+	private final double[] coefficients = new double[5];
 	
 	public RayData( Point pt, double d, BitSet solidBits, BitSet regbits, Tolerance tol, Ray ray )
 	{
@@ -49,6 +57,76 @@ public class RayData implements Serializable
 		this.segs = new HashMap<PreppedObject,List<Segment>>();
 		this.hits = new HashMap<PreppedObject,Set<Hit>>();
 	}
+	
+	/**
+	 * Get the reciprocal of each component of the ray direction (infinite for a zero component)
+	 *
+	 * @return    the inverse direction
+	 */
+	public double[] getInverseDirection()
+	{
+		return this.theRay.getInverseDirection();
+	}
+	
+	/**
+	 * Get storage for the entry and exit distances of a bounding box test,
+	 * reused for every box along this ray
+	 *
+	 * @return    a two element array
+	 */
+	public double[] getBoxDistances()
+	{
+		return this.boxDistances;
+	}
+	
+	/**
+	 * Get storage for the roots a primitive finds along this ray, reused by every primitive
+	 * shot with this ray
+	 *
+	 * @return    a six element array
+	 */
+	public double[] getRoots()
+	{
+		return this.roots;
+	}
+	
+	/**
+	 * Get storage for the kind of surface hit at each of the roots, reused by every primitive
+	 * shot with this ray
+	 *
+	 * @return    a six element array
+	 */
+	public int[] getHitTypes()
+	{
+		return this.hitTypes;
+	}
+	
+	/**
+	 * Get storage for the coefficients of a polynomial of degree four or less, reused by
+	 * every primitive shot with this ray
+	 *
+	 * @return    a five element array
+	 */
+	public double[] getCoefficients()
+	{
+		return this.coefficients;
+	}
+	
+	/**
+	 * Get a scratch array for BoxNode bounding box tests, reused for every box along this ray
+	 *
+	 * @param    size                the minimum length needed
+	 *
+	 * @return   a boolean array of at least the requested length
+	 */
+	boolean[] getSlabScratch( int size )
+	{
+		if( this.slabScratch == null || this.slabScratch.length < size )
+		{
+			this.slabScratch = new boolean[Math.max( size, 16 )];
+		}
+		return this.slabScratch;
+	}
 
     public void addPartitions( PreppedCombination comb, SortedSet<Partition> parts ) {
         this.partitions.put(comb, parts);
@@ -147,6 +225,16 @@ public class RayData implements Serializable
 		return this.solidBits.get( i );
 	}
 	
+	/**
+	 * Get the bits of the regions that this ray may hit
+	 *
+	 * @return    the region bits
+	 */
+	BitSet getRegbits()
+	{
+		return this.regbits;
+	}
+	
 	public synchronized void addSegs( PreppedObject obj, List<Segment> segs )
 	{
 		if( ! (obj instanceof PreppedCombination) )
@@ -164,6 +252,70 @@ public class RayData implements Serializable
 		return this.segs.get( obj );
 	}
 	
+	/**
+	 * Get the Segments for an object, intersecting it now if it is a deferred
+	 * object that has not been intersected with this ray yet. The result is cached
+	 * for the rest of this ray.
+	 *
+	 * @param    obj                 a  PreppedObject
+	 *
+	 * @return   the Segments (null if the object was missed)
+	 */
+	public synchronized List<Segment> getSegsOnDemand( PreppedObject obj )
+	{
+		if( this.lazyEvaluation && obj.isDeferred() && !this.solidBits.get( obj.getIndex() ) )
+		{
+			List<Segment> objSegs = obj.shoot( this.theRay, this );
+			this.solidBits.set( obj.getIndex() );
+			if( objSegs != null && objSegs.size() > 0 )
+			{
+				this.segs.put( obj, objSegs );
+			}
+		}
+		return this.segs.get( obj );
+	}
+	
+	/**
+	 * Sets LazyEvaluation
+	 *
+	 * @param    lazyEvaluation      true if deferred objects are to be intersected on demand
+	 */
+	public void setLazyEvaluation(boolean lazyEvaluation)
+	{
+		this.lazyEvaluation = lazyEvaluation;
+	}
+	
+	/**
+	 * Returns LazyEvaluation
+	 *
+	 * @return    true if deferred objects are intersected on demand
+	 */
+	public boolean isLazyEvaluation()
+	{
+		return lazyEvaluation;
+	}
+	
+	/**
+	 * Sets ViewCache
+	 *
+	 * @param    viewCache           the cache of direction dependent values shared by the batch
+	 *                               this ray belongs to (null if the ray is shot on its own)
+	 */
+	public void setViewCache(ViewCache viewCache)
+	{
+		this.viewCache = viewCache;
+	}
+	
+	/**
+	 * Returns ViewCache
+	 *
+	 * @return    the ViewCache of the batch of parallel rays, or null
+	 */
+	public ViewCache getViewCache()
+	{
+		return viewCache;
+	}
+	
 	/**
 	 * Sets Locator
 	 *
@@ -174,6 +326,20 @@ public class RayData implements Serializable
 		this.locator = locator;
 	}
 	
+	/**
+	 * Move the Locator to the point at the specified distance along the ray
+	 *
+	 * @param    distance            the distance from the start of the ray
+	 */
+	public void setLocator(double distance)
+	{
+		Point start = this.theRay.getStart();
+		Vector3 dir = this.theRay.getDirection();
+		this.locator.setX( start.getX() + distance * dir.getX() );
+		this.locator.setY( start.getY() + distance * dir.getY() );
+		this.locator.setZ( start.getZ() + distance * dir.getZ() );
+	}
+	
 	/**
 	 * Returns Locator
 	 *
@@ -0,0 +1,90 @@
+package org.brlcad.spacePartition;
+
+import java.util.Arrays;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * Orders a batch of scattered rays so that rays which enter the model close together and
+ * head the same way are shot one after the other. The sort key is the octant of the ray
+ * direction followed by the Morton code (Z-order) of the point where the ray enters the
+ * model bounding box. Rays that miss the model sort last.
+ */
+final class RayOrder {
+
+    /** bits of each coordinate of the entry point used in the Morton code */
+    private static final int BITS = 9;
+    private static final int CELLS = 1 << BITS;
+
+    private RayOrder() {
+    }
+
+    /**
+     * Compute the shooting order of a batch of rays
+     *
+     * @param rays	The rays
+     * @param bb	The bounding box of the model
+     * @return	The indices of the rays, in the order they should be shot
+     */
+    static int[] sort(Ray[] rays, BoundingBox bb) {
+        long[] keys = new long[rays.length];
+        double[] dist = new double[2];
+        Point min = bb.getMin();
+        Vector3 diameter = bb.getDiameter();
+        double sx = diameter.getX() > 0.0 ? CELLS / diameter.getX() : 0.0;
+        double sy = diameter.getY() > 0.0 ? CELLS / diameter.getY() : 0.0;
+        double sz = diameter.getZ() > 0.0 ? CELLS / diameter.getZ() : 0.0;
+        for (int i = 0; i < rays.length; i++) {
+            Ray ray = rays[i];
+            Point start = ray.getStart();
+            Vector3 dir = ray.getDirection();
+            long key;
+            if (!bb.isect2(ray, dist) || dist[1] < 0.0) {
+                // misses the model, shoot it last
+                key = 1L << (3 * BITS + 3);
+            } else {
+                double t = Math.max(dist[0], 0.0);
+                int x = cell((start.getX() + t * dir.getX() - min.getX()) * sx);
+                int y = cell((start.getY() + t * dir.getY() - min.getY()) * sy);
+                int z = cell((start.getZ() + t * dir.getZ() - min.getZ()) * sz);
+                int octant = (dir.getX() < 0.0 ? 4 : 0) | (dir.getY() < 0.0 ? 2 : 0) | (dir.getZ() < 0.0 ? 1 : 0);
+                key = ((long) octant << (3 * BITS)) | morton(x, y, z);
+            }
+            keys[i] = (key << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static int cell(double value) {
+        if (!(value > 0.0)) {
+            return 0;
+        }
+        return value >= CELLS ? CELLS - 1 : (int) value;
+    }
+
+    /**
+     * Interleave the bits of three coordinates (x in the highest bit of each triple)
+     */
+    static long morton(int x, int y, int z) {
+        return (spread(x) << 2) | (spread(y) << 1) | spread(z);
+    }
+
+    /**
+     * Spread the low ten bits of a value so there are two zero bits between each of them
+     */
+    private static long spread(int value) {
+        long v = value & 0x3ff;
+        v = (v | (v << 16)) & 0x30000ffL;
+        v = (v | (v << 8)) & 0x300f00fL;
+        v = (v | (v << 4)) & 0x30c30c3L;
+        v = (v | (v << 2)) & 0x9249249L;
+        return v;
+    }
+}
@@ -0,0 +1,110 @@
+package org.brlcad.spacePartition;
+
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+
+/**
+ * A small group of rays that walk the space partitioning together. Each ray is a lane,
+ * and a set of lanes is an int mask with one bit per lane. The ray starts and inverse
+ * directions are kept in separate arrays, one element per lane, so that the bounding box
+ * tests in a BoxNode loop over the packet rather than over the rays one at a time.
+ */
+final class RayPacket {
+
+    /** the maximum number of rays in a packet (one bit per ray in an int mask) */
+    static final int MAX_RAYS = 16;
+
+    final Ray[] rays;
+    final RayData[] rayData;
+    final double[] maxDist;
+    final double[] ox;
+    final double[] oy;
+    final double[] oz;
+    final double[] ix;
+    final double[] iy;
+    final double[] iz;
+
+    /** scratch space for BoxNode, one lane mask per object and piece */
+    private int[] objectMasks = new int[16];
+
+    /** leaf boxes visited by the packet, and rays passed through them */
+    int leafVisits;
+    int laneVisits;
+
+    RayPacket(int size) {
+        this.rays = new Ray[size];
+        this.rayData = new RayData[size];
+        this.maxDist = new double[size];
+        this.ox = new double[size];
+        this.oy = new double[size];
+        this.oz = new double[size];
+        this.ix = new double[size];
+        this.iy = new double[size];
+        this.iz = new double[size];
+    }
+
+    /**
+     * @return	The number of lanes in this packet
+     */
+    int size() {
+        return this.rays.length;
+    }
+
+    /**
+     * Put a ray in a lane
+     *
+     * @param lane	The lane
+     * @param ray	The ray (with a unit direction)
+     * @param data	The RayData of the ray
+     * @param max	The distance at which the ray leaves the model
+     */
+    void set(int lane, Ray ray, RayData data, double max) {
+        Point start = ray.getStart();
+        double[] inv = ray.getInverseDirection();
+        this.rays[lane] = ray;
+        this.rayData[lane] = data;
+        this.maxDist[lane] = max;
+        this.ox[lane] = start.getX();
+        this.oy[lane] = start.getY();
+        this.oz[lane] = start.getZ();
+        this.ix[lane] = inv[0];
+        this.iy[lane] = inv[1];
+        this.iz[lane] = inv[2];
+    }
+
+    /**
+     * @param mask	A set of lanes
+     * @return	The lanes of the set whose rays have not yet left the model
+     */
+    int activeLanes(int mask) {
+        int active = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            int lane = Integer.numberOfTrailingZeros(m);
+            if (this.rayData[lane].getDist() < this.maxDist[lane]) {
+                active |= 1 << lane;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Get scratch space for a lane mask per object
+     *
+     * @param size	The minimum length needed
+     * @return	An int array of at least the requested length
+     */
+    int[] getObjectMasks(int size) {
+        if (this.objectMasks.length < size) {
+            this.objectMasks = new int[Math.max(size, 2 * this.objectMasks.length)];
+        }
+        return this.objectMasks;
+    }
+
+    /**
+     * Count a visit of a leaf box by a set of lanes
+     */
+    void countLeaf(int mask) {
+        this.leafVisits++;
+        this.laneVisits += Integer.bitCount(mask);
+    }
+}
@@ -0,0 +1,271 @@
+package org.brlcad.spacePartition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.preppedGeometry.PreppedCombination;
+import org.brlcad.shading.Material;
+
+/**
+ * The regions of a PreppedDb, indexed by their region bit number. Results stored in a
+ * ShotlineBuffer refer to regions by this index rather than by name.
+ */
+public class RegionTable {
+
+    private final String[] names;
+    private final int[] regionIDs;
+    private final int[] airCodes;
+    private final int[] materialIDs;
+    private final int[] los;
+    private final Material[] materials;
+    private final BoundingBox[] boundingBoxes;
+
+    /** the region bounds, x, y and z of each region in turn (NaN for a region without bounds) */
+    private final double[] boundsMin;
+    private final double[] boundsMax;
+
+    /** the most regions in a leaf of the bounds hierarchy */
+    private static final int LEAF_SIZE = 4;
+
+    /**
+     * A bounding volume hierarchy over the bounded regions, laid out in depth first order:
+     * the left child of a node is the next node, the right child is nodeRight (-1 for a
+     * leaf), and a leaf holds the regions from nodeStart to nodeEnd of boundsOrder
+     */
+    private final int[] boundsOrder;
+    private final double[] nodeMin;
+    private final double[] nodeMax;
+    private final int[] nodeStart;
+    private final int[] nodeEnd;
+    private final int[] nodeRight;
+    private int nodeCount;
+
+    /** position of each region when sorted by name (as Partitions are sorted) */
+    private final int[] sortRanks;
+
+    private final Map<String, Integer> indices;
+
+    /**
+     * Construct a RegionTable
+     * @param regions	The prepped regions, in region bit order
+     */
+    RegionTable(List<PreppedCombination> regions) {
+        int n = regions.size();
+        this.names = new String[n];
+        this.regionIDs = new int[n];
+        this.airCodes = new int[n];
+        this.materialIDs = new int[n];
+        this.los = new int[n];
+        this.materials = new Material[n];
+        this.boundingBoxes = new BoundingBox[n];
+        this.boundsMin = new double[3 * n];
+        this.boundsMax = new double[3 * n];
+        this.indices = new HashMap<String, Integer>(n * 2);
+        for (int i = 0; i < n; i++) {
+            PreppedCombination region = regions.get(i);
+            this.names[i] = region.getName();
+            this.regionIDs[i] = region.getID();
+            this.airCodes[i] = region.getAirCode();
+            this.materialIDs[i] = region.getMaterialID();
+            this.los[i] = region.getLos();
+            this.materials[i] = region.getMaterial();
+            this.indices.put(region.getName(), i);
+            BoundingBox bb = region.getBoundingBox();
+            this.boundingBoxes[i] = bb;
+            boolean bounded = bb != null && !bb.isEmpty();
+            for (int axis = 0; axis < 3; axis++) {
+                this.boundsMin[3 * i + axis] = bounded ? bb.getMin().get(axis) : Double.NaN;
+                this.boundsMax[3 * i + axis] = bounded ? bb.getMax().get(axis) : Double.NaN;
+            }
+        }
+
+        List<Integer> bounded = new ArrayList<Integer>(n);
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(this.boundsMin[3 * i])) {
+                bounded.add(i);
+            }
+        }
+        Integer[] leaves = bounded.toArray(new Integer[bounded.size()]);
+        this.nodeMin = new double[3 * 2 * leaves.length];
+        this.nodeMax = new double[3 * 2 * leaves.length];
+        this.nodeStart = new int[2 * leaves.length];
+        this.nodeEnd = new int[2 * leaves.length];
+        this.nodeRight = new int[2 * leaves.length];
+        if (leaves.length > 0) {
+            this.build(leaves, 0, leaves.length);
+        }
+        this.boundsOrder = new int[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            this.boundsOrder[i] = leaves[i];
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]);
+            }
+        });
+        this.sortRanks = new int[n];
+        int rank = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && String.CASE_INSENSITIVE_ORDER.compare(this.names[order[i - 1]], this.names[order[i]]) != 0) {
+                rank++;
+            }
+            this.sortRanks[order[i]] = rank;
+        }
+    }
+
+    /**
+     * Build the node of the bounds hierarchy for some of the bounded regions, sorting them
+     * along the longest axis of their centers and splitting them in half
+     *
+     * @return the index of the node
+     */
+    private int build(Integer[] leaves, int start, int end) {
+        int node = this.nodeCount++;
+        double[] centerMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] centerMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int axis = 0; axis < 3; axis++) {
+            this.nodeMin[3 * node + axis] = Double.POSITIVE_INFINITY;
+            this.nodeMax[3 * node + axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            int j = 3 * leaves[i];
+            for (int axis = 0; axis < 3; axis++) {
+                this.nodeMin[3 * node + axis] = Math.min(this.nodeMin[3 * node + axis], this.boundsMin[j + axis]);
+                this.nodeMax[3 * node + axis] = Math.max(this.nodeMax[3 * node + axis], this.boundsMax[j + axis]);
+                double center = this.boundsMin[j + axis] + this.boundsMax[j + axis];
+                centerMin[axis] = Math.min(centerMin[axis], center);
+                centerMax[axis] = Math.max(centerMax[axis], center);
+            }
+        }
+        this.nodeStart[node] = start;
+        this.nodeEnd[node] = end;
+        if (end - start <= LEAF_SIZE) {
+            this.nodeRight[node] = -1;
+            return node;
+        }
+        int longest = 0;
+        for (int axis = 1; axis < 3; axis++) {
+            if (centerMax[axis] - centerMin[axis] > centerMax[longest] - centerMin[longest]) {
+                longest = axis;
+            }
+        }
+        final int axis = longest;
+        Arrays.sort(leaves, start, end, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(boundsMin[3 * a + axis] + boundsMax[3 * a + axis],
+                        boundsMin[3 * b + axis] + boundsMax[3 * b + axis]);
+            }
+        });
+        int middle = (start + end) >>> 1;
+        this.build(leaves, start, middle);
+        this.nodeRight[node] = this.build(leaves, middle, end);
+        return node;
+    }
+
+    /**
+     * @return the number of regions
+     */
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+     * Get the index of a region
+     * @param name	The name of the region
+     * @return	The index, or -1 if there is no such region
+     */
+    public int indexOf(String name) {
+        Integer index = this.indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public String getName(int index) {
+        return this.names[index];
+    }
+
+    public int getRegionID(int index) {
+        return this.regionIDs[index];
+    }
+
+    public int getAirCode(int index) {
+        return this.airCodes[index];
+    }
+
+    public int getMaterialID(int index) {
+        return this.materialIDs[index];
+    }
+
+    /**
+     * @param index	The index of a region
+     * @return	The line of sight thickness percentage of the region
+     */
+    public int getLos(int index) {
+        return this.los[index];
+    }
+
+    public Material getMaterial(int index) {
+        return this.materials[index];
+    }
+
+    /**
+     * @param index	The index of a region
+     * @return	The prepped bounding box of the region (may be null)
+     */
+    public BoundingBox getBoundingBox(int index) {
+        return this.boundingBoxes[index];
+    }
+
+    /**
+     * Find the regions whose bounding boxes intersect a box. The bounds of a region
+     * can take in space that none of its primitives reach, so the regions are found
+     * through a hierarchy of the region bounds rather than the space partitioning.
+     * @param min	The minimum corner of the box (x, y, z)
+     * @param max	The maximum corner of the box
+     * @param found	Receives the index of each region found
+     */
+    void queryBox(double[] min, double[] max, BitSet found) {
+        if (this.nodeCount > 0) {
+            this.queryBox(0, min, max, found);
+        }
+    }
+
+    private void queryBox(int node, double[] min, double[] max, BitSet found) {
+        int k = 3 * node;
+        if (this.nodeMin[k] > max[0] || this.nodeMax[k] < min[0]
+                || this.nodeMin[k + 1] > max[1] || this.nodeMax[k + 1] < min[1]
+                || this.nodeMin[k + 2] > max[2] || this.nodeMax[k + 2] < min[2]) {
+            return;
+        }
+        if (this.nodeRight[node] >= 0) {
+            this.queryBox(node + 1, min, max, found);
+            this.queryBox(this.nodeRight[node], min, max, found);
+            return;
+        }
+        for (int n = this.nodeStart[node]; n < this.nodeEnd[node]; n++) {
+            int i = this.boundsOrder[n];
+            int j = 3 * i;
+            if (this.boundsMin[j] <= max[0] && this.boundsMax[j] >= min[0]
+                    && this.boundsMin[j + 1] <= max[1] && this.boundsMax[j + 1] >= min[1]
+                    && this.boundsMin[j + 2] <= max[2] && this.boundsMax[j + 2] >= min[2]) {
+                found.set(i);
+            }
+        }
+    }
+
+    /**
+     * @return the rank of each region when sorted by name, ignoring case
+     */
+    int[] getSortRanks() {
+        return this.sortRanks;
+    }
+}
@@ -0,0 +1,394 @@
+package org.brlcad.spacePartition;
+
+import java.util.Arrays;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.OverlapRecorder;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * Columnar storage for the results of shooting one or more rays. Each partition is a row
+ * of a set of parallel arrays holding its entrance and exit distances, its region (an
+ * index into the RegionTable of the PreppedDb), the surface numbers and, optionally, the
+ * normals and obliquities. The rows of ray i run from getRayStart(i) up to getRayEnd(i).
+ * A buffer may be reused by calling clear(), and must not be shared between threads.
+ */
+public class ShotlineBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final boolean storeNormals;
+    private final boolean storeObliquities;
+
+    private int rayCount;
+    private int[] rayStarts = new int[DEFAULT_CAPACITY + 1];
+
+    private int size;
+    private double[] inDist;
+    private double[] outDist;
+    private int[] region;
+    private int[] inSurfno;
+    private int[] outSurfno;
+    private float[] inNormal;
+    private float[] outNormal;
+    private float[] inObliquity;
+    private float[] outObliquity;
+
+    // the Hits of the ray being added (only valid between beginRay() and endRay())
+    private Hit[] inHit;
+    private Hit[] outHit;
+    private boolean[] inFlip;
+    private boolean[] outFlip;
+    private Ray ray;
+    private Vector3 rayDir;
+
+    /**
+     * Construct a ShotlineBuffer that holds distances, regions and surface numbers only
+     */
+    public ShotlineBuffer() {
+        this(false, false);
+    }
+
+    /**
+     * Construct a ShotlineBuffer
+     * @param storeNormals	true to also store the entrance and exit normals
+     * @param storeObliquities	true to also store the entrance and exit obliquities
+     */
+    public ShotlineBuffer(boolean storeNormals, boolean storeObliquities) {
+        this.storeNormals = storeNormals;
+        this.storeObliquities = storeObliquities;
+        this.allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.inDist = new double[capacity];
+        this.outDist = new double[capacity];
+        this.region = new int[capacity];
+        this.inSurfno = new int[capacity];
+        this.outSurfno = new int[capacity];
+        this.inHit = new Hit[capacity];
+        this.outHit = new Hit[capacity];
+        this.inFlip = new boolean[capacity];
+        this.outFlip = new boolean[capacity];
+        if (this.storeNormals) {
+            this.inNormal = new float[3 * capacity];
+            this.outNormal = new float[3 * capacity];
+        }
+        if (this.storeObliquities) {
+            this.inObliquity = new float[capacity];
+            this.outObliquity = new float[capacity];
+        }
+    }
+
+    private void grow() {
+        int capacity = this.inDist.length * 2;
+        this.inDist = Arrays.copyOf(this.inDist, capacity);
+        this.outDist = Arrays.copyOf(this.outDist, capacity);
+        this.region = Arrays.copyOf(this.region, capacity);
+        this.inSurfno = Arrays.copyOf(this.inSurfno, capacity);
+        this.outSurfno = Arrays.copyOf(this.outSurfno, capacity);
+        this.inHit = Arrays.copyOf(this.inHit, capacity);
+        this.outHit = Arrays.copyOf(this.outHit, capacity);
+        this.inFlip = Arrays.copyOf(this.inFlip, capacity);
+        this.outFlip = Arrays.copyOf(this.outFlip, capacity);
+        if (this.storeNormals) {
+            this.inNormal = Arrays.copyOf(this.inNormal, 3 * capacity);
+            this.outNormal = Arrays.copyOf(this.outNormal, 3 * capacity);
+        }
+        if (this.storeObliquities) {
+            this.inObliquity = Arrays.copyOf(this.inObliquity, capacity);
+            this.outObliquity = Arrays.copyOf(this.outObliquity, capacity);
+        }
+    }
+
+    /**
+     * Remove all rays and partitions from this buffer
+     */
+    public void clear() {
+        this.rayCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Start adding the partitions of a new ray
+     * @param ray	The ray
+     */
+    public void beginRay(Ray ray) {
+        if (this.rayCount + 1 >= this.rayStarts.length) {
+            int[] newStarts = new int[this.rayStarts.length * 2];
+            System.arraycopy(this.rayStarts, 0, newStarts, 0, this.rayCount + 1);
+            this.rayStarts = newStarts;
+        }
+        this.rayStarts[this.rayCount] = this.size;
+        this.ray = ray;
+        this.rayDir = ray.getDirection();
+    }
+
+    /**
+     * Add a partition to the current ray
+     * @param regionIndex	The index of the region in the RegionTable
+     * @param in	The entrance Hit
+     * @param flipIn	true if the entrance normal must be reversed
+     * @param out	The exit Hit
+     * @param flipOut	true if the exit normal must be reversed
+     */
+    public void add(int regionIndex, Hit in, boolean flipIn, Hit out, boolean flipOut) {
+        if (this.size == this.inDist.length) {
+            this.grow();
+        }
+        this.region[this.size] = regionIndex;
+        this.setIn(this.size, in, flipIn);
+        this.setOut(this.size, out, flipOut);
+        this.size++;
+    }
+
+    private void setIn(int row, Hit hit, boolean flip) {
+        this.inDist[row] = hit.getHit_dist();
+        this.inHit[row] = hit;
+        this.inFlip[row] = flip;
+    }
+
+    private void setOut(int row, Hit hit, boolean flip) {
+        this.outDist[row] = hit.getHit_dist();
+        this.outHit[row] = hit;
+        this.outFlip[row] = flip;
+    }
+
+    private void move(int from, int to) {
+        this.region[to] = this.region[from];
+        this.setIn(to, this.inHit[from], this.inFlip[from]);
+        this.setOut(to, this.outHit[from], this.outFlip[from]);
+    }
+
+    /**
+     * Sort the partitions of the current ray the same way a SortedSet of Partitions is
+     * sorted (entrance distance, exit distance, then region name) and drop duplicates
+     * @param ranks	The rank of each region when sorted by name
+     */
+    void sortRay(int[] ranks) {
+        int start = this.rayStarts[this.rayCount];
+        for (int i = start + 1; i < this.size; i++) {
+            int reg = this.region[i];
+            Hit hIn = this.inHit[i];
+            Hit hOut = this.outHit[i];
+            boolean fIn = this.inFlip[i];
+            boolean fOut = this.outFlip[i];
+            int j = i - 1;
+            while (j >= start && this.compare(i, j, ranks) < 0) {
+                j--;
+            }
+            if (j == i - 1) {
+                continue;
+            }
+            for (int k = i; k > j + 1; k--) {
+                this.move(k - 1, k);
+            }
+            this.region[j + 1] = reg;
+            this.setIn(j + 1, hIn, fIn);
+            this.setOut(j + 1, hOut, fOut);
+        }
+
+        // the sort is stable, so this keeps the first of any equal partitions
+        int next = start + 1;
+        for (int i = start + 1; i < this.size; i++) {
+            if (this.compare(i, next - 1, ranks) != 0) {
+                if (i != next) {
+                    this.move(i, next);
+                }
+                next++;
+            }
+        }
+        if (this.size > start) {
+            this.size = next;
+        }
+    }
+
+    private int compare(int row1, int row2, int[] ranks) {
+        int cmp = Double.compare(this.inDist[row1], this.inDist[row2]);
+        if (cmp == 0) {
+            cmp = Double.compare(this.outDist[row1], this.outDist[row2]);
+        }
+        if (cmp == 0) {
+            int rank1 = ranks[this.region[row1]];
+            int rank2 = ranks[this.region[row2]];
+            cmp = rank1 < rank2 ? -1 : (rank1 == rank2 ? 0 : 1);
+        }
+        return cmp;
+    }
+
+    /**
+     * Resolve overlaps between the partitions of the current ray the same way as
+     * SimpleOverlapHandler (the first partition wins)
+     * @param collector	Where to record the overlaps (may be null)
+     * @param regions	The regions that the partitions refer to
+     * @return	The number of overlaps between different regions
+     */
+    int resolveOverlaps(OverlapRecorder collector, RegionTable regions) {
+        int start = this.rayStarts[this.rayCount];
+        if (this.size - start < 2) {
+            return 0;
+        }
+        int overlaps = 0;
+        int part1 = start;
+        int next = start + 1;
+        for (int part2 = start + 1; part2 < this.size; part2++) {
+            if (this.inDist[part2] < this.outDist[part1]) {
+                if (this.outDist[part2] < this.outDist[part1]) {
+                    // part2 is entirely inside part1 (delete it)
+                    if (this.region[part1] != this.region[part2]) {
+                        overlaps++;
+                        if (collector != null) {
+                            collector.record(regions.getName(this.region[part1]), regions.getName(this.region[part2]),
+                                    this.inDist[part2], this.outDist[part2], this.ray);
+                        }
+                    }
+                    continue;
+                }
+                if (this.region[part1] == this.region[part2]) {
+                    // not really an overlap, but handle it
+                    this.setOut(part1, this.outHit[part2], this.outFlip[part2]);
+                    continue;
+                }
+                // two different regions, select part1
+                overlaps++;
+                if (collector != null) {
+                    collector.record(regions.getName(this.region[part1]), regions.getName(this.region[part2]),
+                            this.inDist[part2], this.outDist[part1], this.ray);
+                }
+                this.setIn(part2, this.outHit[part1], !this.outFlip[part1]);
+            }
+            if (part2 != next) {
+                this.move(part2, next);
+            }
+            part1 = next++;
+        }
+        this.size = next;
+        return overlaps;
+    }
+
+    /**
+     * Finish the current ray, computing any normals and obliquities of its partitions
+     * @return	The number of partitions of the ray
+     */
+    public int endRay() {
+        int start = this.rayStarts[this.rayCount];
+        for (int i = start; i < this.size; i++) {
+            this.inSurfno[i] = this.inHit[i].getHit_surfno();
+            this.outSurfno[i] = this.outHit[i].getHit_surfno();
+            if (this.storeNormals || this.storeObliquities) {
+                Vector3 inNorm = this.inHit[i].getHit_normal();
+                Vector3 outNorm = this.outHit[i].getHit_normal();
+                double inSign = this.inFlip[i] ? -1.0 : 1.0;
+                double outSign = this.outFlip[i] ? -1.0 : 1.0;
+                if (this.storeNormals) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        this.inNormal[3 * i + axis] = (float) (inSign * inNorm.get(axis));
+                        this.outNormal[3 * i + axis] = (float) (outSign * outNorm.get(axis));
+                    }
+                }
+                if (this.storeObliquities) {
+                    this.inObliquity[i] = obliquity(-inSign * inNorm.dotProduct(this.rayDir));
+                    this.outObliquity[i] = obliquity(outSign * outNorm.dotProduct(this.rayDir));
+                }
+            }
+            this.inHit[i] = null;
+            this.outHit[i] = null;
+        }
+        this.rayCount++;
+        this.rayStarts[this.rayCount] = this.size;
+        this.ray = null;
+        this.rayDir = null;
+        return this.size - start;
+    }
+
+    private static float obliquity(double dot) {
+        if (dot < -1.0) {
+            dot = -1.0;
+        } else if (dot > 1.0) {
+            dot = 1.0;
+        }
+        return (float) Math.acos(dot);
+    }
+
+    /**
+     * @return the number of rays in this buffer
+     */
+    public int getRayCount() {
+        return this.rayCount;
+    }
+
+    /**
+     * @return the first row of the specified ray
+     */
+    public int getRayStart(int ray) {
+        return this.rayStarts[ray];
+    }
+
+    /**
+     * @return one past the last row of the specified ray
+     */
+    public int getRayEnd(int ray) {
+        return this.rayStarts[ray + 1];
+    }
+
+    /**
+     * @return the number of partitions (rows) in this buffer
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public boolean hasNormals() {
+        return this.storeNormals;
+    }
+
+    public boolean hasObliquities() {
+        return this.storeObliquities;
+    }
+
+    public double getInDist(int row) {
+        return this.inDist[row];
+    }
+
+    public double getOutDist(int row) {
+        return this.outDist[row];
+    }
+
+    public int getRegion(int row) {
+        return this.region[row];
+    }
+
+    public int getInSurfno(int row) {
+        return this.inSurfno[row];
+    }
+
+    public int getOutSurfno(int row) {
+        return this.outSurfno[row];
+    }
+
+    /**
+     * Get a component of the entrance normal (already reversed where needed)
+     * @param row	The row
+     * @param axis	0, 1 or 2 for X, Y or Z
+     */
+    public float getInNormal(int row, int axis) {
+        return this.inNormal[3 * row + axis];
+    }
+
+    /**
+     * Get a component of the exit normal (already reversed where needed)
+     * @param row	The row
+     * @param axis	0, 1 or 2 for X, Y or Z
+     */
+    public float getOutNormal(int row, int axis) {
+        return this.outNormal[3 * row + axis];
+    }
+
+    public float getInObliquity(int row) {
+        return this.inObliquity[row];
+    }
+
+    public float getOutObliquity(int row) {
+        return this.outObliquity[row];
+    }
+}
@@ -0,0 +1,255 @@
+package org.brlcad.spacePartition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads shotlines written by ShotlineWriter directly from a ByteBuffer (which may be a
+ * direct or memory mapped buffer). Nothing is copied or allocated per ray: nextRay() and
+ * nextPartition() move a cursor through the buffer and the getters read the values at
+ * the cursor. When reading a stream in pieces, nextRay() returns false if the rest of a
+ * ray has not arrived yet, leaving the buffer positioned at the start of that ray so
+ * that it may be compacted, refilled and passed to setBuffer(). The header is read the
+ * same way by open(), which returns null until all of it has arrived.
+ */
+public class ShotlineReader {
+
+    private ByteBuffer buffer;
+    private final boolean normals;
+    private final boolean obliquities;
+    private final int partitionBytes;
+
+    private final String[] regionNames;
+    private final int[] regionIDs;
+    private final int[] airCodes;
+    private final int[] materialIDs;
+
+    // the current ray
+    private int rayPosition = -1;
+    private int partitionCount;
+
+    // the current partition
+    private int partitionIndex;
+    private int partitionPosition;
+    private double inDist;
+    private double outDist;
+
+    /**
+     * Construct a ShotlineReader, reading the stream header from the buffer
+     * @param buffer	The buffer, positioned at the start of the stream
+     * @throws IOException if the buffer does not start with a shotline header, or does not
+     * hold all of it (see open())
+     */
+    public ShotlineReader(ByteBuffer buffer) throws IOException {
+        int size = getHeaderSize(buffer);
+        if (size < 0 || buffer.remaining() < size) {
+            throw new IOException("Incomplete shotline header: " + buffer.remaining() + " bytes of "
+                    + (size < 0 ? "at least " + ShotlineWriter.HEADER_PREFIX_BYTES : String.valueOf(size)));
+        }
+        this.buffer = buffer;
+        buffer.position(buffer.position() + 4 + 1);
+        byte flags = buffer.get();
+        buffer.getInt();
+        this.normals = (flags & ShotlineWriter.FLAG_NORMALS) != 0;
+        this.obliquities = (flags & ShotlineWriter.FLAG_OBLIQUITIES) != 0;
+        this.partitionBytes = ShotlineWriter.PARTITION_BYTES + (this.normals ? ShotlineWriter.NORMAL_BYTES : 0)
+                + (this.obliquities ? ShotlineWriter.OBLIQUITY_BYTES : 0);
+
+        int regionCount = buffer.getInt();
+        this.regionNames = new String[regionCount];
+        this.regionIDs = new int[regionCount];
+        this.airCodes = new int[regionCount];
+        this.materialIDs = new int[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xffff];
+            buffer.get(name);
+            this.regionNames[i] = new String(name, StandardCharsets.UTF_8);
+            this.regionIDs[i] = buffer.getInt();
+            this.airCodes[i] = buffer.getInt();
+            this.materialIDs[i] = buffer.getInt();
+        }
+    }
+
+    /**
+     * Read the stream header from a buffer that may not hold all of it yet
+     * @param buffer	The buffer, positioned at the start of the stream
+     * @return	a reader positioned after the header, or null (leaving the buffer where it
+     * was) if the rest of the header has not arrived yet
+     * @throws IOException if the buffer does not start with a shotline header
+     */
+    public static ShotlineReader open(ByteBuffer buffer) throws IOException {
+        int size = getHeaderSize(buffer);
+        if (size < 0 || buffer.remaining() < size) {
+            return null;
+        }
+        return new ShotlineReader(buffer);
+    }
+
+    /**
+     * Find the size of the stream header, without moving the buffer
+     * @param buffer	The buffer, positioned at the start of the stream
+     * @return	the number of bytes in the header, or -1 if too little of it has arrived
+     * to tell
+     * @throws IOException if the buffer does not start with a shotline header
+     */
+    public static int getHeaderSize(ByteBuffer buffer) throws IOException {
+        int pos = buffer.position();
+        if (buffer.remaining() >= 4 && buffer.getInt(pos) != ShotlineWriter.MAGIC) {
+            throw new IOException("Not a shotline stream");
+        }
+        if (buffer.remaining() >= 5 && buffer.get(pos + 4) != ShotlineWriter.VERSION) {
+            throw new IOException("Unsupported shotline stream version: " + buffer.get(pos + 4));
+        }
+        if (buffer.remaining() < ShotlineWriter.HEADER_PREFIX_BYTES) {
+            return -1;
+        }
+        return ShotlineWriter.HEADER_PREFIX_BYTES + buffer.getInt(pos + 6);
+    }
+
+    /**
+     * Continue reading from another buffer (or the same buffer after it was refilled)
+     * @param buffer	The buffer, positioned at the start of a ray
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.rayPosition = -1;
+    }
+
+    /**
+     * Move to the next ray
+     * @return	false if there is no complete ray left in the buffer
+     */
+    public boolean nextRay() {
+        ByteBuffer buf = this.buffer;
+        int pos = buf.position();
+        if (buf.remaining() < 4 || buf.remaining() < 4 + buf.getInt(pos)) {
+            this.rayPosition = -1;
+            return false;
+        }
+        this.rayPosition = pos + 4;
+        buf.position(this.rayPosition + buf.getInt(pos));
+        this.partitionCount = buf.getInt(this.rayPosition + 48);
+        this.partitionIndex = -1;
+        this.partitionPosition = this.rayPosition + ShotlineWriter.RAY_HEADER_BYTES + 8 - this.partitionBytes;
+        this.outDist = this.partitionCount > 0 ? buf.getDouble(this.rayPosition + ShotlineWriter.RAY_HEADER_BYTES) : 0.0;
+        return true;
+    }
+
+    /**
+     * Move to the next partition of the current ray
+     * @return	false if there are no more partitions on this ray
+     */
+    public boolean nextPartition() {
+        if (this.partitionIndex + 1 >= this.partitionCount) {
+            return false;
+        }
+        this.partitionIndex++;
+        this.partitionPosition += this.partitionBytes;
+        this.inDist = this.outDist + this.buffer.getFloat(this.partitionPosition + 4);
+        this.outDist = this.inDist + this.buffer.getFloat(this.partitionPosition + 8);
+        return true;
+    }
+
+    /**
+     * @param axis	0, 1 or 2 for X, Y or Z
+     * @return a component of the start point of the current ray
+     */
+    public double getRayStart(int axis) {
+        return this.buffer.getDouble(this.rayPosition + 8 * axis);
+    }
+
+    /**
+     * @param axis	0, 1 or 2 for X, Y or Z
+     * @return a component of the direction of the current ray
+     */
+    public double getRayDirection(int axis) {
+        return this.buffer.getDouble(this.rayPosition + 24 + 8 * axis);
+    }
+
+    /**
+     * @return the number of partitions on the current ray
+     */
+    public int getPartitionCount() {
+        return this.partitionCount;
+    }
+
+    public int getRegion() {
+        return this.buffer.getInt(this.partitionPosition);
+    }
+
+    public double getInDist() {
+        return this.inDist;
+    }
+
+    public double getOutDist() {
+        return this.outDist;
+    }
+
+    public int getInSurfno() {
+        return this.buffer.getInt(this.partitionPosition + 12);
+    }
+
+    public int getOutSurfno() {
+        return this.buffer.getInt(this.partitionPosition + 16);
+    }
+
+    public boolean hasNormals() {
+        return this.normals;
+    }
+
+    public boolean hasObliquities() {
+        return this.obliquities;
+    }
+
+    /**
+     * @param axis	0, 1 or 2 for X, Y or Z
+     * @return a component of the entrance normal of the current partition
+     */
+    public float getInNormal(int axis) {
+        return this.buffer.getFloat(this.partitionPosition + ShotlineWriter.PARTITION_BYTES + 4 * axis);
+    }
+
+    /**
+     * @param axis	0, 1 or 2 for X, Y or Z
+     * @return a component of the exit normal of the current partition
+     */
+    public float getOutNormal(int axis) {
+        return this.buffer.getFloat(this.partitionPosition + ShotlineWriter.PARTITION_BYTES + 12 + 4 * axis);
+    }
+
+    public float getInObliquity() {
+        return this.buffer.getFloat(this.obliquityPosition());
+    }
+
+    public float getOutObliquity() {
+        return this.buffer.getFloat(this.obliquityPosition() + 4);
+    }
+
+    private int obliquityPosition() {
+        return this.partitionPosition + ShotlineWriter.PARTITION_BYTES + (this.normals ? ShotlineWriter.NORMAL_BYTES : 0);
+    }
+
+    /**
+     * @return the number of regions in the dictionary
+     */
+    public int getRegionCount() {
+        return this.regionNames.length;
+    }
+
+    public String getRegionName(int region) {
+        return this.regionNames[region];
+    }
+
+    public int getRegionID(int region) {
+        return this.regionIDs[region];
+    }
+
+    public int getAirCode(int region) {
+        return this.airCodes[region];
+    }
+
+    public int getMaterialID(int region) {
+        return this.materialIDs[region];
+    }
+}
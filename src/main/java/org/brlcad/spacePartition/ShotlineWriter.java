@@ -0,0 +1,219 @@
+package org.brlcad.spacePartition;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * Writes shotlines (a ray and its partitions) to a channel in a compact binary format
+ * that can be read by ShotlineReader. The stream starts with a header holding the
+ * region dictionary, so each partition only carries a region index. The layout is:
+ * <pre>
+ * header:    int magic, byte version, byte flags, int headerLength (bytes that follow),
+ *            int regionCount,
+ *            regionCount * (short nameLength, UTF-8 name, int regionID, int airCode, int materialID)
+ * ray:       int recordLength (bytes that follow), 6 * double start and direction,
+ *            int partitionCount, double baseDist (only if partitionCount &gt; 0),
+ *            partitionCount * partition
+ * partition: int region, float inDelta, float outDelta, int inSurfno, int outSurfno,
+ *            [6 * float normals], [2 * float obliquities]
+ * </pre>
+ * The entrance distance of a partition is stored relative to the exit distance of the
+ * previous one (or to baseDist), and the exit distance relative to the entrance. The
+ * deltas are taken from the values the reader will reconstruct, so rounding errors do
+ * not accumulate along the ray.
+ */
+public class ShotlineWriter implements Flushable, Closeable {
+
+    static final int MAGIC = 0x4a42534c;
+    static final byte VERSION = 2;
+    static final byte FLAG_NORMALS = 1;
+    static final byte FLAG_OBLIQUITIES = 2;
+
+    /** the bytes of the header up to and including its length */
+    static final int HEADER_PREFIX_BYTES = 4 + 1 + 1 + 4;
+
+    static final int RAY_HEADER_BYTES = 6 * 8 + 4;
+    static final int PARTITION_BYTES = 4 + 4 + 4 + 4 + 4;
+    static final int NORMAL_BYTES = 6 * 4;
+    static final int OBLIQUITY_BYTES = 2 * 4;
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private final boolean normals;
+    private final boolean obliquities;
+    private final int partitionBytes;
+    private long rayCount;
+
+    /**
+     * Construct a ShotlineWriter and write the stream header
+     * @param channel	The channel to write to
+     * @param regions	The regions that partitions may refer to
+     * @param normals	true to write the entrance and exit normals
+     * @param obliquities	true to write the entrance and exit obliquities
+     * @throws IOException
+     */
+    public ShotlineWriter(WritableByteChannel channel, RegionTable regions, boolean normals, boolean obliquities) throws IOException {
+        this(channel, regions, normals, obliquities, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a ShotlineWriter and write the stream header
+     * @param channel	The channel to write to
+     * @param regions	The regions that partitions may refer to
+     * @param normals	true to write the entrance and exit normals
+     * @param obliquities	true to write the entrance and exit obliquities
+     * @param bufferSize	The number of bytes to collect before writing to the channel
+     * @throws IOException
+     */
+    public ShotlineWriter(WritableByteChannel channel, RegionTable regions, boolean normals, boolean obliquities,
+            int bufferSize) throws IOException {
+        this.channel = channel;
+        this.normals = normals;
+        this.obliquities = obliquities;
+        this.partitionBytes = PARTITION_BYTES + (normals ? NORMAL_BYTES : 0) + (obliquities ? OBLIQUITY_BYTES : 0);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.writeHeader(regions);
+    }
+
+    private void writeHeader(RegionTable regions) throws IOException {
+        byte[][] names = new byte[regions.size()][];
+        int length = 4;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = regions.getName(i).getBytes(StandardCharsets.UTF_8);
+            length += 2 + names[i].length + 3 * 4;
+        }
+        this.reserve(HEADER_PREFIX_BYTES + length);
+        this.buffer.putInt(MAGIC);
+        this.buffer.put(VERSION);
+        this.buffer.put((byte) ((this.normals ? FLAG_NORMALS : 0) | (this.obliquities ? FLAG_OBLIQUITIES : 0)));
+        this.buffer.putInt(length);
+        this.buffer.putInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            this.buffer.putShort((short) names[i].length);
+            this.buffer.put(names[i]);
+            this.buffer.putInt(regions.getRegionID(i));
+            this.buffer.putInt(regions.getAirCode(i));
+            this.buffer.putInt(regions.getMaterialID(i));
+        }
+    }
+
+    /**
+     * Write one ray and its partitions
+     * @param ray	The ray
+     * @param shotlines	The buffer holding the partitions
+     * @param rayIndex	The index of the ray in the buffer
+     * @throws IOException
+     */
+    public void writeRay(Ray ray, ShotlineBuffer shotlines, int rayIndex) throws IOException {
+        if ((this.normals && !shotlines.hasNormals()) || (this.obliquities && !shotlines.hasObliquities())) {
+            throw new IllegalArgumentException("ShotlineBuffer does not hold the normals or obliquities being written");
+        }
+        int first = shotlines.getRayStart(rayIndex);
+        int end = shotlines.getRayEnd(rayIndex);
+        int count = end - first;
+        int length = RAY_HEADER_BYTES + (count > 0 ? 8 : 0) + count * this.partitionBytes;
+        this.reserve(4 + length);
+
+        ByteBuffer buf = this.buffer;
+        buf.putInt(length);
+        Point start = ray.getStart();
+        Vector3 dir = ray.getDirection();
+        buf.putDouble(start.getX());
+        buf.putDouble(start.getY());
+        buf.putDouble(start.getZ());
+        buf.putDouble(dir.getX());
+        buf.putDouble(dir.getY());
+        buf.putDouble(dir.getZ());
+        buf.putInt(count);
+        if (count > 0) {
+            double prev = shotlines.getInDist(first);
+            buf.putDouble(prev);
+            for (int row = first; row < end; row++) {
+                float inDelta = (float) (shotlines.getInDist(row) - prev);
+                double in = prev + inDelta;
+                float outDelta = (float) (shotlines.getOutDist(row) - in);
+                prev = in + outDelta;
+                buf.putInt(shotlines.getRegion(row));
+                buf.putFloat(inDelta);
+                buf.putFloat(outDelta);
+                buf.putInt(shotlines.getInSurfno(row));
+                buf.putInt(shotlines.getOutSurfno(row));
+                if (this.normals) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        buf.putFloat(shotlines.getInNormal(row, axis));
+                    }
+                    for (int axis = 0; axis < 3; axis++) {
+                        buf.putFloat(shotlines.getOutNormal(row, axis));
+                    }
+                }
+                if (this.obliquities) {
+                    buf.putFloat(shotlines.getInObliquity(row));
+                    buf.putFloat(shotlines.getOutObliquity(row));
+                }
+            }
+        }
+        this.rayCount++;
+    }
+
+    /**
+     * Write every ray in a ShotlineBuffer
+     * @param rays	The rays, in the same order as in the buffer
+     * @param shotlines	The buffer holding the partitions
+     * @throws IOException
+     */
+    public void writeRays(Ray[] rays, ShotlineBuffer shotlines) throws IOException {
+        for (int i = 0; i < shotlines.getRayCount(); i++) {
+            this.writeRay(rays[i], shotlines, i);
+        }
+    }
+
+    /**
+     * Make sure there is room for the specified number of bytes in the buffer
+     */
+    private void reserve(int bytes) throws IOException {
+        if (this.buffer.remaining() >= bytes) {
+            return;
+        }
+        this.flush();
+        if (this.buffer.capacity() < bytes) {
+            this.buffer = ByteBuffer.allocateDirect(bytes);
+        }
+    }
+
+    /**
+     * @return the number of rays written so far
+     */
+    public long getRayCount() {
+        return this.rayCount;
+    }
+
+    /**
+     * Write everything buffered so far to the channel
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Flush and close the channel
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.flush();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,85 @@
+package org.brlcad.spacePartition;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.brlcad.numerics.Vector3;
+
+/**
+ * Holds the values that depend only on the ray direction, for a batch of parallel rays
+ * (an orthographic view, or a grid of shots). Each primitive computes its values the
+ * first time a ray of the batch reaches it and stores them here under its index, so the
+ * other rays only do the work that depends on their start points. A ViewCache may be
+ * shared by all the threads shooting the batch.
+ */
+public class ViewCache {
+
+    /** how far a ray direction may be from the direction of the view */
+    private static final double DIRECTION_TOL = 1.0e-12;
+
+    private final Vector3 direction;
+    private final AtomicReferenceArray<Object> terms;
+    private final AtomicInteger cachedCount = new AtomicInteger();
+
+    /**
+     * Construct a ViewCache
+     * @param direction	The direction of all the rays in the batch
+     * @param size	The number of prepped primitives
+     */
+    ViewCache(Vector3 direction, int size) {
+        this.direction = new Vector3(direction);
+        this.direction.normalize();
+        this.terms = new AtomicReferenceArray<Object>(size);
+    }
+
+    /**
+     * @return	The (unit) direction of the rays in this batch
+     */
+    public Vector3 getDirection() {
+        return new Vector3(this.direction);
+    }
+
+    /**
+     * Check that a ray belongs to this batch
+     * @param dir	The unit direction of the ray
+     * @return	true if the direction is that of this view
+     */
+    public boolean accepts(Vector3 dir) {
+        return Math.abs(dir.getX() - this.direction.getX()) < DIRECTION_TOL
+                && Math.abs(dir.getY() - this.direction.getY()) < DIRECTION_TOL
+                && Math.abs(dir.getZ() - this.direction.getZ()) < DIRECTION_TOL;
+    }
+
+    /**
+     * Get the values cached by a primitive
+     * @param index	The index of the primitive (PreppedObject.getIndex())
+     * @return	The values, or null if the primitive has not stored any yet
+     */
+    public Object get(int index) {
+        if (index < 0 || index >= this.terms.length()) {
+            return null;
+        }
+        return this.terms.get(index);
+    }
+
+    /**
+     * Store the values of a primitive. If two threads compute the values at the same
+     * time, both results are the same and either may be kept.
+     * @param index	The index of the primitive (PreppedObject.getIndex())
+     * @param values	The values, which must not be changed afterwards
+     */
+    public void put(int index, Object values) {
+        if (index < 0 || index >= this.terms.length()) {
+            return;
+        }
+        if (this.terms.getAndSet(index, values) == null) {
+            this.cachedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return	The number of primitives that have stored values in this view
+     */
+    public int getCachedCount() {
+        return this.cachedCount.get();
+    }
+}
@@ -0,0 +1,52 @@
+package org.brlcad.utils;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a batch of tasks on a thread pool, or on the calling thread, and waits for them.
+ * A RuntimeException or Error thrown by a task is thrown again from runAll().
+ */
+public final class TaskRunner {
+
+    private TaskRunner() {
+    }
+
+    /**
+     * Run tasks and wait for all of them to finish
+     *
+     * @param executor The thread pool (null to run the tasks one after another on this thread)
+     * @param tasks The tasks
+     */
+    public static void runAll(ExecutorService executor, List<? extends Callable<Void>> tasks) {
+        try {
+            if (executor == null) {
+                for (Callable<Void> task : tasks) {
+                    task.call();
+                }
+                return;
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for worker threads", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.brlcad.analysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks AreaAnalysis against the partitions of the same grid of rays
+ */
+public class AreaAnalysisTest {
+
+    private static final double CELL_SIZE = 60.0;
+
+    private PreppedDb prepped;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        prepped = new PreppedDb(db, "tank");
+    }
+
+    @Test
+    public void testAreas() {
+        AreaView view = AreaView.fromDegrees(35.0, 25.0);
+        AreaAnalysis analysis = new AreaAnalysis(prepped);
+        analysis.setCellSize(CELL_SIZE);
+        analysis.setThreads(1);
+        AreaResult result = analysis.run(view);
+
+        RegionTable regions = prepped.getRegionTable();
+        long[] presented = new long[regions.size()];
+        long[] exposed = new long[regions.size()];
+        long hits = 0;
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+        AreaAnalysis.Grid grid = new AreaAnalysis.Grid(prepped.getBoundingBox(), view.getDirection(), CELL_SIZE);
+        for (int row = 0; row < grid.rows; row++) {
+            for (int column = 0; column < grid.columns; column++) {
+                SortedSet<Partition> parts = prepped.shootRay(grid.ray(column, row), handler);
+                if (parts.isEmpty()) {
+                    continue;
+                }
+                hits++;
+                exposed[regions.indexOf(parts.first().getFromRegion())]++;
+                Set<Integer> seen = new HashSet<Integer>();
+                for (Partition part : parts) {
+                    if (seen.add(regions.indexOf(part.getFromRegion()))) {
+                        presented[regions.indexOf(part.getFromRegion())]++;
+                    }
+                }
+            }
+        }
+        assertTrue("expected the view to hit the tank", hits > 0);
+
+        double cell = CELL_SIZE * CELL_SIZE;
+        assertEquals((long) grid.columns * grid.rows, result.getRays());
+        assertEquals(hits * cell, result.getTotalArea(), 1.0e-6);
+        double exposedTotal = 0.0;
+        for (int r = 0; r < regions.size(); r++) {
+            assertEquals(regions.getName(r), presented[r] * cell, result.getPresentedArea(r), 1.0e-6);
+            assertEquals(regions.getName(r), exposed[r] * cell, result.getExposedArea(r), 1.0e-6);
+            exposedTotal += result.getExposedArea(r);
+        }
+        assertEquals(result.getTotalArea(), exposedTotal, 1.0e-6);
+
+        // an ident counts each cell once, however many of its regions the ray passes through
+        double identExposed = 0.0;
+        for (int ident : result.getIdents()) {
+            double presentedSum = 0.0;
+            double largest = 0.0;
+            for (int r = 0; r < regions.size(); r++) {
+                if (regions.getRegionID(r) == ident) {
+                    presentedSum += result.getPresentedArea(r);
+                    largest = Math.max(largest, result.getPresentedArea(r));
+                }
+            }
+            assertTrue(result.getIdentPresentedArea(ident) <= presentedSum + 1.0e-6);
+            assertTrue(result.getIdentPresentedArea(ident) >= largest - 1.0e-6);
+            identExposed += result.getIdentExposedArea(ident);
+        }
+        assertEquals(result.getTotalArea(), identExposed, 1.0e-6);
+    }
+
+    @Test
+    public void testBatch() {
+        List<AreaView> views = new ArrayList<AreaView>();
+        for (int az = 0; az < 360; az += 90) {
+            views.add(AreaView.fromDegrees(az, 10.0));
+        }
+        views.add(AreaView.fromDegrees(0.0, 90.0));
+        AreaAnalysis analysis = new AreaAnalysis(prepped);
+        analysis.setCellSize(CELL_SIZE);
+        analysis.setThreads(3);
+        final AreaResult[] results = new AreaResult[views.size()];
+        analysis.run(views, new AreaListener() {
+            public void viewFinished(AreaResult result) {
+                assertNull(results[result.getIndex()]);
+                results[result.getIndex()] = result;
+            }
+        });
+
+        analysis.setThreads(1);
+        for (int v = 0; v < views.size(); v++) {
+            assertNotNull(results[v]);
+            assertSame(views.get(v), results[v].getView());
+            AreaResult single = analysis.run(views.get(v));
+            assertEquals(single.getTotalArea(), results[v].getTotalArea(), 0.0);
+            for (int r = 0; r < prepped.getRegionTable().size(); r++) {
+                assertEquals(single.getPresentedArea(r), results[v].getPresentedArea(r), 0.0);
+                assertEquals(single.getExposedArea(r), results[v].getExposedArea(r), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testOppositeViews() {
+        // the grids of opposite views line up, so every ray is shot in both directions
+        AreaAnalysis analysis = new AreaAnalysis(prepped);
+        analysis.setCellSize(CELL_SIZE);
+        AreaResult front = analysis.run(AreaView.fromDegrees(0.0, 0.0));
+        AreaResult back = analysis.run(AreaView.fromDegrees(180.0, 0.0));
+        assertEquals(front.getTotalArea(), back.getTotalArea(), 0.0);
+        for (int r = 0; r < prepped.getRegionTable().size(); r++) {
+            assertEquals(front.getPresentedArea(r), back.getPresentedArea(r), 0.0);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.brlcad.analysis;
+
+import java.io.StringReader;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.spacePartition.PreppedDb;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks MassAnalysis against point sampling of the test region
+ */
+public class MassAnalysisTest {
+
+    private PreppedDb prepped;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        prepped = new PreppedDb(db, "r1");
+    }
+
+    @Test
+    public void testVolumeAndCentroid() throws Exception {
+        MassAnalysis analysis = new MassAnalysis(prepped);
+        analysis.setTolerance(0.005);
+        analysis.setThreads(2);
+        analysis.setDensities(DensityTable.read(new StringReader("# test\n1 7.85 steel\n")));
+        MassReport report = analysis.run();
+        assertTrue(report.isConverged());
+        assertTrue(report.getPasses().size() >= 2);
+        assertTrue(report.getMissingDensities().isEmpty());
+
+        // sample the centers of a grid of cells across the bounding box
+        int n = 40;
+        BoundingBox bb = prepped.getBoundingBox();
+        Point min = bb.getMin();
+        double[] size = {bb.getMax().getX() - min.getX(), bb.getMax().getY() - min.getY(), bb.getMax().getZ() - min.getZ()};
+        double[] xyz = new double[3 * n * n * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                for (int l = 0; l < n; l++) {
+                    xyz[k++] = min.getX() + size[0] * (i + 0.5) / n;
+                    xyz[k++] = min.getY() + size[1] * (j + 0.5) / n;
+                    xyz[k++] = min.getZ() + size[2] * (l + 0.5) / n;
+                }
+            }
+        }
+        int[] regions = prepped.classifyPoints(xyz);
+        int inside = 0;
+        double[] sum = new double[3];
+        for (int p = 0; p < regions.length; p++) {
+            if (regions[p] != PreppedDb.NO_REGION) {
+                inside++;
+                for (int c = 0; c < 3; c++) {
+                    sum[c] += xyz[3 * p + c];
+                }
+            }
+        }
+        double sampled = size[0] * size[1] * size[2] * inside / regions.length;
+
+        assertEquals(1, report.getRegions().size());
+        MassProperties r1 = report.getRegions().get(0);
+        assertEquals("r1", r1.getName());
+        assertEquals(1000, r1.getIdent());
+        assertEquals(sampled, r1.getVolume(), 0.01 * sampled);
+        assertTrue(r1.getAxisSpread() < 0.01);
+        assertEquals(r1.getVolume() * 7.85e-3, r1.getMass(), 1.0e-9 * r1.getMass());
+        assertEquals(r1.getMass(), report.getTotalMass(), 1.0e-9 * r1.getMass());
+        double cell = size[0] / n;
+        for (int c = 0; c < 3; c++) {
+            assertEquals(sum[c] / inside, r1.getCentroid().get(c), cell);
+            assertEquals(r1.getCentroid().get(c), report.getCenterOfMass().get(c), 1.0e-6);
+        }
+
+        MassProperties ident = report.getIdents().get(1000);
+        assertEquals(r1.getVolume(), ident.getVolume(), 0.0);
+    }
+
+    @Test
+    public void testThreadsAgree() {
+        MassAnalysis analysis = new MassAnalysis(prepped);
+        analysis.setMaxPasses(3);
+        analysis.setThreads(1);
+        MassReport serial = analysis.run();
+        analysis.setThreads(3);
+        MassReport parallel = analysis.run();
+
+        assertEquals(serial.getPasses().size(), parallel.getPasses().size());
+        MassProperties a = serial.getRegions().get(0);
+        MassProperties b = parallel.getRegions().get(0);
+        assertEquals(a.getVolume(), b.getVolume(), 1.0e-9 * a.getVolume());
+        assertTrue(Double.isNaN(a.getMass()));
+        assertTrue(serial.getMissingDensities().isEmpty());
+        long rays = 0;
+        for (MassReport.Pass pass : serial.getPasses()) {
+            rays += pass.getRays();
+        }
+        // every ray of the finest grids is shot exactly once
+        BoundingBox bb = prepped.getBoundingBox();
+        int[] points = new int[3];
+        for (int c = 0; c < 3; c++) {
+            points[c] = (int) Math.ceil((bb.getMax().get(c) - bb.getMin().get(c)) / serial.getPasses().get(0).getSpacing()) + 1;
+            for (int pass = 1; pass < serial.getPasses().size(); pass++) {
+                points[c] = 2 * points[c] - 1;
+            }
+        }
+        assertEquals(points[1] * points[2] + points[2] * points[0] + points[0] * points[1], rays);
+    }
+}
@@ -0,0 +1,157 @@
+package org.brlcad.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.OverlapCollector;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks OverlapSurvey against an OverlapCollector. The overlaps in the tank are where
+ * faces of regions coincide, so the survey is run with no minimum depth.
+ */
+public class OverlapSurveyTest {
+
+    private static final double SPACING = 130.0;
+
+    private PreppedDb prepped;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        prepped = new PreppedDb(db, "tank");
+    }
+
+    private OverlapReport survey(double spacing, int refinements, int threads) {
+        OverlapSurvey survey = new OverlapSurvey(prepped);
+        survey.setInitialSpacing(spacing);
+        survey.setRefinements(refinements);
+        survey.setMinDepth(0.0);
+        survey.setThreads(threads);
+        return survey.run();
+    }
+
+    private static Map<String, OverlapPair> byName(List<OverlapPair> pairs) {
+        Map<String, OverlapPair> map = new HashMap<String, OverlapPair>();
+        for (OverlapPair pair : pairs) {
+            assertTrue(pair.getRegion1().compareTo(pair.getRegion2()) < 0);
+            map.put(pair.getRegion1() + " / " + pair.getRegion2(), pair);
+        }
+        return map;
+    }
+
+    @Test
+    public void testUniformGrid() {
+        OverlapReport report = survey(SPACING, 0, 2);
+        assertEquals(1, report.getLevels().size());
+        assertFalse("expected some overlaps in the tank", report.getPairs().isEmpty());
+
+        // shoot the same rays and collect the overlaps
+        OverlapCollector collector = new OverlapCollector(0);
+        prepped.setOverlapCollector(collector);
+        ShotlineBuffer buffer = new ShotlineBuffer();
+        BoundingBox bb = prepped.getBoundingBox();
+        long rays = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            int u = (axis + 1) % 3;
+            int v = (axis + 2) % 3;
+            Vector3 dir = new Vector3(0, 0, 0);
+            dir.set(axis, 1.0);
+            for (int i = 0; i < Math.ceil((bb.getMax().get(u) - bb.getMin().get(u)) / SPACING); i++) {
+                for (int j = 0; j < Math.ceil((bb.getMax().get(v) - bb.getMin().get(v)) / SPACING); j++) {
+                    Point start = new Point(0, 0, 0);
+                    start.set(axis, bb.getMin().get(axis) - 1.0);
+                    start.set(u, bb.getMin().get(u) + (i + 0.5) * SPACING);
+                    start.set(v, bb.getMin().get(v) + (j + 0.5) * SPACING);
+                    buffer.clear();
+                    prepped.shootRay(new Ray(start, new Vector3(dir)), null, buffer);
+                    rays++;
+                }
+            }
+        }
+        prepped.setOverlapCollector(null);
+        assertEquals(rays, report.getRays());
+
+        Map<String, OverlapPair> pairs = byName(report.getPairs());
+        Map<String, Double> volumes = new HashMap<String, Double>();
+        Map<String, Double> depths = new HashMap<String, Double>();
+        for (OverlapCollector.OverlapStats stats : collector.getSummary()) {
+            boolean ordered = stats.getRegion1().compareTo(stats.getRegion2()) < 0;
+            String name = ordered ? stats.getRegion1() + " / " + stats.getRegion2()
+                    : stats.getRegion2() + " / " + stats.getRegion1();
+            double volume = SPACING * SPACING * stats.getCount() * stats.getAverageDepth() / 3.0;
+            volumes.put(name, volumes.containsKey(name) ? volumes.get(name) + volume : volume);
+            depths.put(name, depths.containsKey(name) ? Math.max(depths.get(name), stats.getMaxDepth()) : stats.getMaxDepth());
+        }
+        assertEquals(volumes.keySet(), pairs.keySet());
+        for (Map.Entry<String, OverlapPair> entry : pairs.entrySet()) {
+            assertEquals(entry.getKey(), volumes.get(entry.getKey()), entry.getValue().getVolume(), 1.0e-9);
+            assertEquals(entry.getKey(), depths.get(entry.getKey()), entry.getValue().getMaxDepth(), 0.0);
+        }
+    }
+
+    @Test
+    public void testRefinement() {
+        OverlapReport coarse = survey(SPACING, 0, 2);
+        OverlapReport adaptive = survey(SPACING, 2, 2);
+        OverlapReport fine = survey(SPACING / 4.0, 0, 2);
+        assertEquals(3, adaptive.getLevels().size());
+        assertTrue("refinement should shoot far fewer rays than a fine grid",
+                adaptive.getRays() < fine.getRays() / 4);
+
+        // refinement keeps everything found on the coarse grid
+        Map<String, OverlapPair> adaptivePairs = byName(adaptive.getPairs());
+        assertTrue(adaptivePairs.keySet().containsAll(byName(coarse.getPairs()).keySet()));
+
+        // and measures the largest overlap as well as the fine grid does
+        OverlapPair largest = fine.getPairs().get(0);
+        OverlapPair refined = adaptivePairs.get(largest.getRegion1() + " / " + largest.getRegion2());
+        assertNotNull(refined);
+        assertEquals(largest.getVolume(), refined.getVolume(), 0.01 * largest.getVolume());
+        assertTrue(refined.getMaxDepth() >= largest.getMaxDepth() - 1.0e-9);
+
+        // the rays of the cells that were split still count
+        for (OverlapPair pair : coarse.getPairs()) {
+            OverlapPair other = adaptivePairs.get(pair.getRegion1() + " / " + pair.getRegion2());
+            assertTrue(other.getRays() >= pair.getRays());
+            assertTrue(other.getMaxDepth() >= pair.getMaxDepth());
+        }
+    }
+
+    @Test
+    public void testThreadsAgreeAndCsv() {
+        OverlapReport serial = survey(SPACING, 1, 1);
+        OverlapReport parallel = survey(SPACING, 1, 3);
+        assertEquals(serial.getRays(), parallel.getRays());
+        assertEquals(serial.getPairs().size(), parallel.getPairs().size());
+        for (int i = 0; i < serial.getPairs().size(); i++) {
+            assertEquals(serial.getPairs().get(i).toString(), parallel.getPairs().get(i).toString());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serial.writeCsv(new PrintStream(bytes));
+        String[] lines = bytes.toString().split("\n");
+        assertEquals("region1,region2,volume,max_depth,rays,x,y,z", lines[0].trim());
+        assertEquals(serial.getPairs().size() + 1, lines.length);
+        assertEquals(8, lines[1].split(",").length);
+    }
+
+    @Test
+    public void testDefaultMinDepth() {
+        // the tank has only coincident faces, which the distance tolerance ignores
+        OverlapSurvey survey = new OverlapSurvey(prepped);
+        survey.setRefinements(0);
+        assertTrue(survey.run().getPairs().isEmpty());
+    }
+}
@@ -0,0 +1,142 @@
+package org.brlcad.analysis;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.numerics.Point;
+import org.brlcad.spacePartition.PreppedDb;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Checks Voxelizer against point classification of the voxel centers of the test region
+ */
+public class VoxelizerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PreppedDb prepped;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        prepped = new PreppedDb(db, "r1");
+    }
+
+    @Test
+    public void testAgainstClassifyPoints() throws Exception {
+        Voxelizer voxelizer = new Voxelizer(prepped);
+        double size = prepped.getBoundingBox().getDiameter().magnitude() / 40.0;
+        voxelizer.setVoxelSize(size);
+        voxelizer.setSamples(1);
+        voxelizer.setThreads(2);
+        voxelizer.setMode(Voxelizer.Mode.FILL);
+        VoxelGrid fill = voxelizer.run(folder.newFile("fill.raw"));
+        voxelizer.setMode(Voxelizer.Mode.IDENT);
+        VoxelGrid ident = voxelizer.run(folder.newFile("ident.raw"));
+        assertEquals(fill.getVoxelCount(), ident.getVoxelCount());
+        assertEquals(fill.getVoxelCount() * 2, fill.getFile().length());
+        assertEquals(fill.getSize(1) * fill.getSize(2), fill.getRays());
+        assertTrue(fill.getFilledVoxels() > 0);
+
+        int[] fills = read(fill);
+        int[] idents = read(ident);
+        double[] xyz = new double[3 * fills.length];
+        int k = 0;
+        for (int z = 0; z < fill.getSize(2); z++) {
+            for (int y = 0; y < fill.getSize(1); y++) {
+                for (int x = 0; x < fill.getSize(0); x++) {
+                    Point center = fill.getCenter(x, y, z);
+                    xyz[k++] = center.getX();
+                    xyz[k++] = center.getY();
+                    xyz[k++] = center.getZ();
+                }
+            }
+        }
+        int[] regions = prepped.classifyPoints(xyz);
+
+        // a voxel that its ray passes right through holds the region at its center, and an
+        // empty voxel has nothing at its center
+        int wrong = 0;
+        int full = 0;
+        int disagree = 0;
+        int filled = 0;
+        for (int v = 0; v < fills.length; v++) {
+            if (fills[v] == Voxelizer.FILL_SCALE) {
+                full++;
+                if (regions[v] != 0) {
+                    wrong++;
+                }
+            } else if (fills[v] == 0 && regions[v] != PreppedDb.NO_REGION) {
+                wrong++;
+            }
+            if (fills[v] > 0) {
+                filled++;
+            }
+            if ((idents[v] == 1000) != (regions[v] == 0)) {
+                disagree++;
+            }
+            assertTrue(idents[v] == 0 || idents[v] == 1000);
+            assertEquals(fills[v] >= Voxelizer.FILL_SCALE / 2, idents[v] != 0);
+        }
+        assertTrue(full > 100);
+        assertEquals(fill.getFilledVoxels(), filled);
+        assertTrue("" + wrong, wrong <= fills.length / 1000);
+        // the rest differ only where the surface passes near a voxel center
+        assertTrue("" + disagree, disagree < filled / 100);
+    }
+
+    @Test
+    public void testSlabsAndThreadsAgree() throws Exception {
+        Voxelizer voxelizer = new Voxelizer(prepped);
+        voxelizer.setVoxelSize(prepped.getBoundingBox().getDiameter().magnitude() / 25.0);
+        voxelizer.setThreads(1);
+        VoxelGrid serial = voxelizer.run(folder.newFile("serial.raw"));
+
+        // one z plane per slab, as ints
+        voxelizer.setThreads(3);
+        voxelizer.setMaxSlabBytes(1);
+        voxelizer.setType(Voxelizer.Type.INT);
+        VoxelGrid parallel = voxelizer.run(folder.newFile("parallel.raw"));
+
+        assertEquals(serial.getVoxelCount() * 4, parallel.getFile().length());
+        assertEquals(serial.getRays(), parallel.getRays());
+        assertEquals(4 * serial.getSize(1) * serial.getSize(2), serial.getRays());
+        assertEquals(serial.getFilledVoxels(), parallel.getFilledVoxels());
+        int[] a = read(serial);
+        assertArrayEquals(a, read(parallel));
+        // region index 0 is written as 1
+        int[] values = a.clone();
+        Arrays.sort(values);
+        assertEquals(0, values[0]);
+        assertEquals(1, values[values.length - 1]);
+
+        int x = serial.getSize(0) / 2;
+        int y = serial.getSize(1) / 3;
+        int z = serial.getSize(2) - 1;
+        assertEquals(4 * (x + serial.getSize(0) * (y + serial.getSize(1) * z)), parallel.getOffset(x, y, z));
+    }
+
+    private static int[] read(VoxelGrid grid) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(grid.getFile(), "r");
+        try {
+            ByteBuffer bytes = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int[] values = new int[(int) grid.getVoxelCount()];
+            for (int v = 0; v < values.length; v++) {
+                values[v] = grid.getType() == Voxelizer.Type.SHORT ? bytes.getShort() : bytes.getInt();
+            }
+            return values;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.brlcad.geometry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Tolerance;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedCombination;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RayData;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for CompiledTree and IntervalList
+ */
+public class CompiledTreeTest {
+
+    private static final double TOL = 0.005;
+
+    private final Point start = new Point(0, 0, 0);
+    private final Vector3 dir = new Vector3(1, 0, 0);
+    private final RayData rayData = new RayData(start, 0.0, new BitSet(), new BitSet(),
+            new Tolerance(TOL, 0.995), new Ray(start, dir));
+
+    private Hit hit(double dist, boolean entering) {
+        Point pt = new Point(start);
+        pt.join(dist, dir);
+        Vector3 norm = entering ? Vector3.negate(dir) : new Vector3(dir);
+        return new Hit(dist, pt, norm, 0, rayData, "prim");
+    }
+
+    private IntervalList list(double... dists) {
+        IntervalList list = new IntervalList();
+        for (int i = 0; i < dists.length; i += 2) {
+            list.add(hit(dists[i], true), false, hit(dists[i + 1], false), false);
+        }
+        return list;
+    }
+
+    private void assertIntervals(IntervalList list, double... dists) {
+        if (dists.length == 0) {
+            assertTrue("expected no intervals", IntervalList.isEmpty(list));
+            return;
+        }
+        assertEquals(dists.length / 2, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(dists[2 * i], list.getInDist(i), 0.0);
+            assertEquals(dists[2 * i + 1], list.getOutDist(i), 0.0);
+        }
+    }
+
+    @Test
+    public void testUnion() {
+        IntervalList result = IntervalList.union(list(1, 3, 10, 12), list(2, 5, 5.001, 6, 20, 21), TOL);
+        assertIntervals(result, 1, 6, 10, 12, 20, 21);
+        assertFalse(result.isFlipOut(0));
+        assertIntervals(IntervalList.union(null, list(1, 2), TOL), 1, 2);
+        assertIntervals(IntervalList.union(null, null, TOL));
+    }
+
+    @Test
+    public void testSubtract() {
+        IntervalList result = IntervalList.subtract(list(0, 10, 20, 30), list(2, 4, 6, 8, 25, 35), TOL);
+        assertIntervals(result, 0, 2, 4, 6, 8, 10, 20, 25);
+        assertTrue("normal at the exit of a subtracted interval should be flipped", result.isFlipIn(1));
+        assertTrue("normal at the entrance of a subtracted interval should be flipped", result.isFlipOut(0));
+        assertFalse(result.isFlipIn(0));
+        assertIntervals(IntervalList.subtract(list(1, 2), list(0, 3), TOL));
+        assertIntervals(IntervalList.subtract(list(1, 2), null, TOL), 1, 2);
+
+        // overlapping subtrahends are applied to what is left of the interval
+        assertIntervals(IntervalList.subtract(list(0, 10), list(-1, 3, 2, 4), TOL), 4, 10);
+    }
+
+    @Test
+    public void testIntersect() {
+        IntervalList result = IntervalList.intersect(list(0, 10, 20, 30), list(5, 25, 29, 40), TOL);
+        assertIntervals(result, 5, 10, 20, 25, 29, 30);
+        assertIntervals(IntervalList.intersect(list(0, 10), list(10.001, 20), TOL));
+        assertIntervals(IntervalList.intersect(list(0, 10), null, TOL));
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "r17");
+        PreppedCombination region = prepped.getCombination("r17");
+        CompiledTree program = region.getProgram();
+        assertNotNull("region should be compiled during prep", program);
+        assertEquals("( s17 - s15 - s16 )", program.toString());
+        assertEquals(4, program.size());
+        assertEquals(3, program.getLeaves().size());
+    }
+
+    @Test
+    public void testShootCompiledRegion() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        PreppedDb prepped = new PreppedDb(db, "r1");
+        PreppedCombination region = prepped.getCombination("r1");
+        Point rayStart = new Point(12795.692849, 8897.447508, 8166.793304);
+        Vector3 rayDir = new Vector3(-0.7424, -0.5198, -0.4226);
+        SortedSet<Partition> parts = prepped.shootRay(new Ray(rayStart, rayDir), new SimpleOverlapHandler());
+        assertFalse("ray should hit r1", parts.isEmpty());
+        for (Partition part : parts) {
+            assertEquals("r1", part.getFromRegion());
+            assertTrue(part.getOutHit().getHit_dist() > part.getInHit().getHit_dist());
+        }
+        assertNotNull(region.getProgram());
+
+        // the compiled program must not stop Partitions from being serialized
+        ObjectOutputStream oos = new ObjectOutputStream(new ByteArrayOutputStream());
+        for (Partition part : parts) {
+            oos.writeObject(part);
+        }
+        oos.close();
+    }
+
+    @Test
+    public void testLazyEvaluation() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "r17");
+        List<PreppedObject> deferred = prepped.getCombination("r17").getProgram().getDeferrableLeaves();
+        assertEquals(2, deferred.size());
+        for (PreppedObject obj : deferred) {
+            assertTrue(obj.getName() + " should be deferred", obj.isDeferred());
+        }
+
+        BoundingBox bb = prepped.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        double radius = bb.getDiameter().magnitude();
+        Vector3[] dirs = {new Vector3(-1, 0, 0), new Vector3(0, -1, 0), new Vector3(0, 0, -1),
+            new Vector3(-0.7424, -0.5198, -0.4226)};
+        int hitCount = 0;
+        for (Vector3 rayDir : dirs) {
+            rayDir.normalize();
+            for (int i = -10; i <= 10; i++) {
+                Point rayStart = new Point(center);
+                rayStart.join(-radius, rayDir);
+                rayStart.join(i * radius / 25.0, new Vector3(rayDir.getY(), rayDir.getZ(), rayDir.getX()));
+                prepped.setLazyEvaluation(false);
+                SortedSet<Partition> eager = prepped.shootRay(new Ray(rayStart, rayDir), new SimpleOverlapHandler());
+                prepped.setLazyEvaluation(true);
+                SortedSet<Partition> lazy = prepped.shootRay(new Ray(rayStart, rayDir), new SimpleOverlapHandler());
+                assertEquals(eager.size(), lazy.size());
+                hitCount += eager.size();
+                Iterator<Partition> iter = lazy.iterator();
+                for (Partition part : eager) {
+                    Partition other = iter.next();
+                    assertEquals(part.getInHit().getHit_dist(), other.getInHit().getHit_dist(), 0.0);
+                    assertEquals(part.getOutHit().getHit_dist(), other.getOutHit().getHit_dist(), 0.0);
+                    assertEquals(part.isFlipInNormal(), other.isFlipInNormal());
+                    assertEquals(part.isFlipOutNormal(), other.isFlipOutNormal());
+                }
+            }
+        }
+        assertTrue("expected some rays to hit r17", hitCount > 0);
+    }
+}
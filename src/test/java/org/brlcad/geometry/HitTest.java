@@ -62,4 +62,43 @@ public class HitTest {
         }
 
     }
+
+    @Test
+    public void testLazyHit() {
+        Point start = new Point(1, 2, 3);
+        Vector3 dir = new Vector3(1, 0, 0);
+        Ray ray = new Ray(start, dir);
+        RayData rd = new RayData(start, 0.0, new BitSet(), new BitSet(), new Tolerance(0.005, 0.995), ray);
+        final int[] calls = new int[1];
+        HitSurface surface = new HitSurface() {
+            public Vector3 computeNormal(Hit hit, Ray r) {
+                calls[0]++;
+                return new Vector3(hit.getHit_vprivX(), hit.getHit_vprivY(), hit.getHit_vprivZ());
+            }
+        };
+        Hit hit = new Hit(10.0, ray, surface, 1, rd, "prim");
+        hit.setHit_vpriv(-1, 0, 0);
+        hit.setDirDotNormal(-1.0);
+
+        Hit other = new Hit(10.0, ray, surface, 1, rd, "prim");
+        other.setHit_vpriv(1, 0, 0);
+        other.setDirDotNormal(1.0);
+        assertTrue("entrance should sort before exit", hit.compareTo(other) < 0);
+        assertEquals("normal should not be computed for sorting", 0, calls[0]);
+
+        assertEquals(new Point(11, 2, 3), hit.getHit_pt());
+        hit.setHit_dist(20.0);
+        assertEquals(new Point(21, 2, 3), hit.getHit_pt());
+
+        hit.reverseNormal();
+        assertEquals(1.0, hit.getDirDotNormal(), 0.0);
+        assertEquals(new Vector3(1, 0, 0), hit.getHit_normal());
+        assertEquals(new Vector3(1, 0, 0), hit.getHit_normal());
+        assertEquals(1, calls[0]);
+
+        Hit copy = new Hit(hit);
+        copy.reverseNormal();
+        assertEquals(new Vector3(-1, 0, 0), copy.getHit_normal());
+        assertEquals("reversing a copy should not change the original", new Vector3(1, 0, 0), hit.getHit_normal());
+    }
 }
@@ -0,0 +1,133 @@
+package org.brlcad.geometry;
+
+import java.util.List;
+import java.util.SortedSet;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.ShotlineBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for OverlapCollector
+ */
+public class OverlapCollectorTest {
+
+    @Test
+    public void testThreads() throws Exception {
+        final OverlapCollector collector = new OverlapCollector(3);
+        final Ray ray = new Ray(new Point(0, 0, 0), new Vector3(1, 0, 0));
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        collector.record("a.r", "b.r", i, i + 1.0 + thread, ray);
+                        if (i % 10 == 0) {
+                            collector.record("c.r", "a.r", i, i + 0.5, ray);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4400, collector.getOverlapCount());
+        List<OverlapCollector.OverlapStats> summary = collector.getSummary();
+        assertEquals(2, summary.size());
+        OverlapCollector.OverlapStats stats = summary.get(0);
+        assertEquals("a.r", stats.getRegion1());
+        assertEquals("b.r", stats.getRegion2());
+        assertEquals(4000, stats.getCount());
+        assertEquals(4.0, stats.getMaxDepth(), 1.0e-12);
+        assertEquals(2.5, stats.getAverageDepth(), 1.0e-12);
+        assertEquals(3, stats.getSamples().size());
+        assertNotNull(stats.getFirstRay());
+        assertEquals(400, summary.get(1).getCount());
+
+        collector.clear();
+        assertEquals(0, collector.getOverlapCount());
+    }
+
+    @Test
+    public void testMergedSamplesAreUniform() throws Exception {
+        // one thread finds nine times as many overlaps as the other
+        final OverlapCollector collector = new OverlapCollector(10);
+        final Ray ray = new Ray(new Point(0, 0, 0), new Vector3(1, 0, 0));
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            final int overlaps = t == 0 ? 9000 : 1000;
+            final double depth = t + 1.0;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < overlaps; i++) {
+                        collector.record("a.r", "b.r", i, i + depth, ray);
+                    }
+                }
+            };
+            threads[t].start();
+            threads[t].join();
+        }
+
+        int fromSecond = 0;
+        for (int rep = 0; rep < 200; rep++) {
+            List<OverlapCollector.Example> samples = collector.getSummary().get(0).getSamples();
+            assertEquals(10, samples.size());
+            for (OverlapCollector.Example example : samples) {
+                if (example.getOutDist() - example.getInDist() > 1.5) {
+                    fromSecond++;
+                }
+            }
+        }
+        // a tenth of 2000 examples, give or take four and a half standard deviations
+        assertTrue("examples from the second thread: " + fromSecond, fromSecond > 140 && fromSecond < 260);
+    }
+
+    @Test
+    public void testMatchesHandler() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        OverlapCollector handlerCollector = new OverlapCollector();
+        SimpleOverlapHandler handler = new SimpleOverlapHandler(handlerCollector);
+        SimpleOverlapHandler quietHandler = new SimpleOverlapHandler();
+        quietHandler.setQuiet(true);
+        OverlapCollector bufferCollector = new OverlapCollector();
+        prepped.setOverlapCollector(bufferCollector);
+        ShotlineBuffer buffer = new ShotlineBuffer();
+
+        BoundingBox bb = prepped.getBoundingBox();
+        Vector3 dir = new Vector3(0, -1, 0);
+        for (int i = 0; i <= 40; i++) {
+            for (int j = 0; j <= 40; j++) {
+                Point start = new Point(bb.getMin().getX() + i * (bb.getMax().getX() - bb.getMin().getX()) / 40.0,
+                        bb.getMax().getY() + 100.0,
+                        bb.getMin().getZ() + j * (bb.getMax().getZ() - bb.getMin().getZ()) / 40.0);
+                SortedSet<Partition> recorded = prepped.shootRay(new Ray(new Point(start), new Vector3(dir)), handler);
+                SortedSet<Partition> quiet = prepped.shootRay(new Ray(new Point(start), new Vector3(dir)), quietHandler);
+                assertEquals(quiet, recorded);
+                prepped.shootRay(new Ray(new Point(start), new Vector3(dir)), null, buffer);
+            }
+        }
+
+        List<OverlapCollector.OverlapStats> fromHandler = handlerCollector.getSummary();
+        List<OverlapCollector.OverlapStats> fromBuffer = bufferCollector.getSummary();
+        assertTrue("expected some overlaps in the tank", handlerCollector.getOverlapCount() > 0);
+        assertEquals(handlerCollector.getOverlapCount(), bufferCollector.getOverlapCount());
+        assertEquals(fromHandler.size(), fromBuffer.size());
+        for (int i = 0; i < fromHandler.size(); i++) {
+            assertEquals(fromHandler.get(i).getRegion1(), fromBuffer.get(i).getRegion1());
+            assertEquals(fromHandler.get(i).getRegion2(), fromBuffer.get(i).getRegion2());
+            assertEquals(fromHandler.get(i).getCount(), fromBuffer.get(i).getCount());
+            assertEquals(fromHandler.get(i).getMaxDepth(), fromBuffer.get(i).getMaxDepth(), 1.0e-9);
+        }
+    }
+}
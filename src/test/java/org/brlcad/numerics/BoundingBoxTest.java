@@ -178,6 +178,46 @@ public class BoundingBoxTest {
         assertEquals( "second hit", 19.142135623730947, hits[1], 0.00000001 );
     }
     
+    @Test
+    public void testIsect2WithStorage() {
+        BoundingBox bb = new BoundingBox( new Point( -1, -2, -3 ), new Point( 5, 6, 7 ) );
+        double[] dist = new double[2];
+
+        Ray r = new Ray(new Point(-10, 2, 2), new Vector3(1, 0, 0));
+        assertTrue( "should intersect", bb.isect2(r, dist) );
+        assertEquals( "first hit", 9.0, dist[0], 0.00000001 );
+        assertEquals( "second hit", 15.0, dist[1], 0.00000001 );
+
+        // the line of the ray is used, so the box may be behind the start
+        r = new Ray(new Point(10, 2, 2), new Vector3(1, 0, 0));
+        assertTrue( "should intersect", bb.isect2(r, dist) );
+        assertEquals( "first hit", -11.0, dist[0], 0.00000001 );
+        assertEquals( "second hit", -5.0, dist[1], 0.00000001 );
+
+        r = new Ray( new Point( -10, 2, 2 ), new Vector3( 0, 0, 1 ));
+        assertFalse( "should not intersect", bb.isect2(r, dist) );
+
+        // parallel to, and in the plane of, a face
+        r = new Ray( new Point( -1, 2, -10 ), new Vector3( 0, 0, -1 ));
+        assertTrue( "should intersect", bb.isect2(r, dist) );
+        assertEquals( "first hit", -17.0, dist[0], 0.00000001 );
+        assertEquals( "second hit", -7.0, dist[1], 0.00000001 );
+
+        // agrees with the dividing version
+        double[][] dirs = { {0.3, -0.5, 0.81}, {-1, 0, 0}, {0.2, 0.2, -0.1}, {0, 1, 1} };
+        for (double[] d : dirs) {
+            for (int i = -12; i <= 12; i += 3) {
+                r = new Ray( new Point( i, -i / 2.0, 1.0 ), new Vector3( d[0], d[1], d[2] ));
+                double[] expected = bb.isect2(r);
+                assertEquals( "hit/miss for " + r, expected != null, bb.isect2(r, dist) );
+                if (expected != null) {
+                    assertEquals( "first hit", expected[0], dist[0], 0.00000001 );
+                    assertEquals( "second hit", expected[1], dist[1], 0.00000001 );
+                }
+            }
+        }
+    }
+
     @Test
     public void testFlatBoxIntersect() {
         BoundingBox bb = new BoundingBox( new Point( 0, 0, 0 ), new Point( 6, 6, 0 ) );
@@ -286,6 +326,14 @@ public class BoundingBoxTest {
 //        System.out.println( "cone: " + ray + ", half cone angle = " + 180.0 * halfConeAngle / Math.PI + " degrees");
         intersects = bb.intersectsCone(ray, Math.cos(halfConeAngle));
         assertTrue("should intersect", intersects);
+
+        // a narrow cone that only clips an edge of the box (nearest box point is 11.26 degrees off the axis)
+        bb = new BoundingBox(new Point(2.0, 4.4, -4.7), new Point(8.0, 8.2, -3.7));
+        dir = new Vector3(0.678, 0.342, -0.651);
+        dir.normalize();
+        ray = new Ray(new Point(0, 0, 0), dir);
+        assertTrue("should intersect", bb.intersectsCone(ray, Math.cos(Math.toRadians(12.5))));
+        assertFalse("should not intersect", bb.intersectsCone(ray, Math.cos(Math.toRadians(11.0))));
     }
 
 }
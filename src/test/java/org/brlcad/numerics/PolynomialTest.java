@@ -69,6 +69,32 @@ public class PolynomialTest {
         assertTrue( "expected quotient X^2+4X+3, but got " + dividend, dividend.getCoeff(2) == 3.0 );
     }
 
+    @Test
+    public void testDeflateComplex() {
+        // (X^2+2X+5)(X^2-2X-3), with roots -1+2i, -1-2i, 3 and -1
+        Polynomial quartic = new Polynomial(4);
+        quartic.setCoeff(0, 1.0);
+        quartic.setCoeff(1, 0.0);
+        quartic.setCoeff(2, -2.0);
+        quartic.setCoeff(3, -16.0);
+        quartic.setCoeff(4, -15.0);
+
+        // divides out X^2+2X+5, whose constant is |root|^2
+        quartic.deflate(new Complex(-1.0, 2.0));
+        assertEquals("expected quotient X^2-2X-3, but got " + quartic, 2, quartic.getDegree());
+        assertEquals("expected quotient X^2-2X-3, but got " + quartic, 1.0, quartic.getCoeff(0), 1.0e-12);
+        assertEquals("expected quotient X^2-2X-3, but got " + quartic, -2.0, quartic.getCoeff(1), 1.0e-12);
+        assertEquals("expected quotient X^2-2X-3, but got " + quartic, -3.0, quartic.getCoeff(2), 1.0e-12);
+
+        Complex[] roots = quartic.roots();
+        assertEquals(2, roots.length);
+        Complex[] expectedRoots = {new Complex(3.0, 0.0), new Complex(-1.0, 0.0)};
+        for (Complex expected : expectedRoots) {
+            assertTrue("Expected root " + expected + ", but got " + roots[0] + " and " + roots[1],
+                    expected.approxEquals(roots[0], 0.0000000005) || expected.approxEquals(roots[1], 0.0000000005));
+        }
+    }
+
     @Test
     public void testQuadratic1() {
         Polynomial quad = new Polynomial(2);
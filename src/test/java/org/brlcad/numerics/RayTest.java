@@ -59,6 +59,25 @@ public class RayTest {
         assertEquals(false, Ray.isEqual(r1, r4));
     }
 
+    @Test
+    public void testInverseDirection() {
+        Ray r = new Ray(new Point(1, 2, 3), new Vector3(2, 0, -4));
+        double[] inv = r.getInverseDirection();
+        assertEquals(0.5, inv[0], 0.0);
+        assertTrue(Double.isInfinite(inv[1]));
+        assertEquals(-0.25, inv[2], 0.0);
+        int[] signs = r.getDirectionSigns();
+        assertEquals(0, signs[0]);
+        assertEquals(0, signs[1]);
+        assertEquals(1, signs[2]);
+
+        // cached values follow changes to the direction
+        r.getDirection().normalize();
+        inv = r.getInverseDirection();
+        assertEquals(1.0 / r.getDirection().getX(), inv[0], 0.0);
+        assertEquals(1.0 / r.getDirection().getZ(), inv[2], 0.0);
+    }
+
     @Test
     public void testSerilization() {
         // before Externalization, serialized size was 338 bytes
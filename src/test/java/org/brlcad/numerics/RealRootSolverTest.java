@@ -0,0 +1,103 @@
+package org.brlcad.numerics;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for RealRootSolver, using the polynomials of PolynomialTest
+ */
+public class RealRootSolverTest {
+
+    private static final double TOL = 0.0000000005;
+
+    private void assertRoots(double[] expected, int count, double[] roots) {
+        assertEquals("number of real roots", expected.length, count);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("root #" + i, expected[i], roots[i], TOL);
+        }
+    }
+
+    @Test
+    public void testQuadratic() {
+        double[] roots = new double[2];
+        assertRoots(new double[]{-3.0, -2.0}, RealRootSolver.quadratic(1.0, 5.0, 6.0, 0.0, roots), roots);
+        assertRoots(new double[]{-1.0, -1.0}, RealRootSolver.quadratic(1.0, 2.0, 1.0, 0.0, roots), roots);
+        // roots are -1 +/- 3i
+        assertEquals(0, RealRootSolver.quadratic(0.5, 1.0, 5.0, 0.0, roots));
+        assertRoots(new double[]{-1.0, -1.0}, RealRootSolver.quadratic(0.5, 1.0, 5.0, 3.5, roots), roots);
+    }
+
+    @Test
+    public void testCubic() {
+        double[] roots = new double[3];
+        assertRoots(new double[]{1.0, 2.0, 3.0}, RealRootSolver.cubic(1.0, -6.0, 11.0, -6.0, 0.0, roots), roots);
+        assertRoots(new double[]{-2.0, -1.0, 1.0}, RealRootSolver.cubic(1.0, 2.0, -1.0, -2.0, 0.0, roots), roots);
+        // roots are -1 and 5 +/- 2i
+        assertRoots(new double[]{-1.0}, RealRootSolver.cubic(1.0, -9.0, 19.0, 29.0, 0.0, roots), roots);
+    }
+
+    @Test
+    public void testQuartic() {
+        double[] roots = new double[4];
+        assertRoots(new double[]{(-7.0 - Math.sqrt(37.0)) / 2.0, (1.0 - Math.sqrt(5.0)) / 2.0,
+                    (-7.0 + Math.sqrt(37.0)) / 2.0, (1.0 + Math.sqrt(5.0)) / 2.0},
+                RealRootSolver.quartic(1.0, 6.0, -5.0, -10.0, -3.0, 0.0, roots), roots);
+        // the other two roots are -1.5739495179 +/- 0.3689894075i
+        assertRoots(new double[]{-4.0, 1.1478990357},
+                RealRootSolver.quartic(1.0, 6.0, 7.0, -7.0, -12.0, 0.0, roots), roots);
+        assertRoots(new double[]{-4.0, -1.5739495179, -1.5739495179, 1.1478990357},
+                RealRootSolver.quartic(1.0, 6.0, 7.0, -7.0, -12.0, 0.4, roots), roots);
+
+        // a ray through a torus (the other two roots are imaginary)
+        double b = -0.4595671781202135;
+        double d = -0.209399033652943;
+        double r = Math.sqrt((-b + Math.sqrt(b * b - 4.0 * d)) / 2.0);
+        assertRoots(new double[]{-r, r}, RealRootSolver.quartic(1.0, 0.0, b, 0.0, d, 0.005, roots), roots);
+    }
+
+    @Test
+    public void testSolve() {
+        double[] roots = new double[4];
+        // leading zeros are dropped
+        assertRoots(new double[]{1.0, 2.0, 3.0}, RealRootSolver.solve(new double[]{0.0, 1.0, -6.0, 11.0, -6.0}, 4, 0.0, roots), roots);
+        assertRoots(new double[]{-3.0, -2.0}, RealRootSolver.solve(new double[]{0.0, 0.0, 2.0, 10.0, 12.0}, 4, 0.0, roots), roots);
+        assertRoots(new double[]{-0.5}, RealRootSolver.solve(new double[]{0.0, 0.0, 0.0, 2.0, 1.0}, 4, 0.0, roots), roots);
+    }
+
+    @Test
+    public void testMatchesPolynomial() {
+        Random random = new Random(42);
+        double[] roots = new double[4];
+        for (int n = 0; n < 1000; n++) {
+            // a quartic with four real roots
+            double[] r = new double[4];
+            for (int i = 0; i < 4; i++) {
+                r[i] = 4.0 * random.nextDouble() - 2.0;
+            }
+            double[] c = {1.0,
+                -(r[0] + r[1] + r[2] + r[3]),
+                r[0] * r[1] + r[0] * r[2] + r[0] * r[3] + r[1] * r[2] + r[1] * r[3] + r[2] * r[3],
+                -(r[0] * r[1] * r[2] + r[0] * r[1] * r[3] + r[0] * r[2] * r[3] + r[1] * r[2] * r[3]),
+                r[0] * r[1] * r[2] * r[3]};
+            int count = RealRootSolver.solve(c, 4, 0.0, roots);
+
+            Complex[] expected = new Polynomial(4, c.clone()).roots();
+            double[] real = new double[4];
+            int nreal = 0;
+            for (Complex z : expected) {
+                if (z != null && Math.abs(z.getImaginary()) < 1.0e-5) {
+                    real[nreal++] = z.getReal();
+                }
+            }
+            Arrays.sort(real, 0, nreal);
+            assertEquals(nreal, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(real[i], roots[i], 1.0e-4);
+                double residual = (((roots[i] + c[1]) * roots[i] + c[2]) * roots[i] + c[3]) * roots[i] + c[4];
+                assertEquals(0.0, residual, 1.0e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.brlcad.preppedGeometry;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import javax.measure.quantity.Angle;
+import javax.measure.unit.NonSI;
+import org.brlcad.geometry.Arb8;
+import org.brlcad.geometry.DbExternal;
+import org.brlcad.geometry.Ellipsoid;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Segment;
+import org.brlcad.geometry.Tgc;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Matrix;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Tolerance;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RayData;
+import org.jscience.physics.amount.Amount;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the specialized intersectors (PreppedRpp, PreppedSphere and PreppedTrc)
+ * are chosen at prep time and give the same results as the general ones.
+ */
+public class PreppedSpecialCaseTest {
+
+    private static final double TOL = 1.0e-6;
+    private static final int RAYS = 2000;
+
+    @Test
+    public void testRpp() throws Exception {
+        double[] min = {-100.0, 20.0, 5.0};
+        double[] max = {300.0, 70.0, 905.0};
+        double[] body = new double[24];
+        for (int i = 0; i < 8; i++) {
+            // the vertex order used by BRL-CAD for an RPP
+            body[3 * i] = i < 4 ? max[0] : min[0];
+            body[3 * i + 1] = (i % 4 == 1 || i % 4 == 2) ? max[1] : min[1];
+            body[3 * i + 2] = (i % 4 == 2 || i % 4 == 3) ? max[2] : min[2];
+        }
+        Arb8 arb8 = new Arb8(new MockDbExternal("rpp", Arb8.majorType, Arb8.minorType, body));
+
+        // a quarter turn keeps the box axis aligned
+        Matrix matrix = new Matrix(Amount.valueOf(90, NonSI.DEGREE_ANGLE), Amount.valueOf(0, NonSI.DEGREE_ANGLE),
+                Amount.valueOf(0, NonSI.DEGREE_ANGLE), new Point(10, -20, 30));
+        PreppedObject fast = arb8.prep(null, new MockPreppedDb(), matrix);
+        assertTrue("expected a PreppedRpp, but got " + fast.getClass().getSimpleName(), fast instanceof PreppedRpp);
+        compare(fast, new PreppedArb8(arb8, matrix));
+
+        // but not a tilt
+        matrix = new Matrix(Amount.valueOf(10, NonSI.DEGREE_ANGLE), Amount.valueOf(0, NonSI.DEGREE_ANGLE),
+                Amount.valueOf(0, NonSI.DEGREE_ANGLE), new Point(10, -20, 30));
+        assertFalse(arb8.prep(null, new MockPreppedDb(), matrix) instanceof PreppedRpp);
+    }
+
+    @Test
+    public void testSphere() throws Exception {
+        double[] body = {10.0, 20.0, -30.0, 0.0, 250.0, 0.0, 0.0, 0.0, 250.0, 250.0, 0.0, 0.0};
+        Ellipsoid ell = new Ellipsoid(new MockDbExternal("sph", Ellipsoid.majorType, Ellipsoid.minorType, body));
+        Matrix matrix = new Matrix(Amount.valueOf(20, NonSI.DEGREE_ANGLE), Amount.valueOf(30, NonSI.DEGREE_ANGLE),
+                Amount.valueOf(40, NonSI.DEGREE_ANGLE), new Point(1000, 0, -500));
+        PreppedObject fast = ell.prep(null, new MockPreppedDb(), matrix);
+        assertTrue("expected a PreppedSphere, but got " + fast.getClass().getSimpleName(), fast instanceof PreppedSphere);
+        assertEquals(250.0, fast.getBoundingRadius(), TOL);
+        compare(fast, new PreppedEllipsoid(ell, matrix));
+    }
+
+    @Test
+    public void testCone() throws Exception {
+        // a cone with its point at the top
+        checkTgc(new Vector3(0, 0, 0), new Vector3(0, 0, 0));
+        // a cone with its point at the base (the ends get exchanged)
+        checkTgc(new Vector3(0, 0, 0), null);
+    }
+
+    @Test
+    public void testTruncatedCone() throws Exception {
+        checkTgc(new Vector3(40, 0, 0), new Vector3(0, 40, 0));
+        checkTgc(new Vector3(250, 0, 0), new Vector3(0, 250, 0));
+    }
+
+    private void checkTgc(Vector3 c, Vector3 d) throws Exception {
+        Point v = new Point(5, 6, 7);
+        Vector3 h = new Vector3(0, 0, 800);
+        Vector3 a = new Vector3(100, 0, 0);
+        Vector3 b = new Vector3(0, 100, 0);
+        if (d == null) {
+            // degenerate base
+            d = b;
+            c = a;
+            a = new Vector3(0, 0, 0);
+            b = new Vector3(0, 0, 0);
+        }
+        Tgc tgc = new Tgc(new MockDbExternal("trc", Tgc.majorType, Tgc.minorType, v, h, a, b, c, d));
+        Matrix matrix = new Matrix(Amount.valueOf(15, NonSI.DEGREE_ANGLE), Amount.valueOf(-35, NonSI.DEGREE_ANGLE),
+                Amount.valueOf(50, NonSI.DEGREE_ANGLE), new Point(-200, 300, 100));
+        PreppedObject fast = tgc.prep(null, new MockPreppedDb(), matrix);
+        assertTrue("expected a PreppedTrc, but got " + fast.getClass().getSimpleName(), fast instanceof PreppedTrc);
+
+        Point V = new Point(v);
+        Vector3 H = new Vector3(h);
+        Vector3 A = new Vector3(a);
+        Vector3 B = new Vector3(b);
+        Vector3 C = new Vector3(c);
+        Vector3 D = new Vector3(d);
+        matrix.mult(V);
+        matrix.mult(H);
+        matrix.mult(A);
+        matrix.mult(B);
+        matrix.mult(C);
+        matrix.mult(D);
+        Vector3 Hunit = new Vector3(H);
+        Hunit.normalize();
+        PreppedTgc general = new PreppedTgc(tgc, matrix, V, H, A, B, C, D, Hunit,
+                A.magnitude(), B.magnitude(), C.magnitude(), D.magnitude(), H.magnitude());
+        compare(fast, general);
+    }
+
+    /**
+     * Shoot random rays through the bounding box and check that both prepped objects
+     * give the same segments
+     */
+    private void compare(PreppedObject fast, PreppedObject general) {
+        BoundingBox bb = general.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        Vector3 diameter = bb.getDiameter();
+        double radius = diameter.magnitude();
+        Random random = new Random(42);
+        int hits = 0;
+        for (int n = 0; n < RAYS; n++) {
+            Vector3 offset = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            offset.normalize();
+            Point start = new Point(center);
+            start.join(2.0 * radius, offset);
+            Point target = new Point(bb.getMin());
+            target.plus(new Vector3(diameter.getX() * random.nextDouble(),
+                    diameter.getY() * random.nextDouble(), diameter.getZ() * random.nextDouble()));
+            Vector3 dir = Vector3.minus(target, start);
+            dir.normalize();
+            Ray ray = new Ray(start, dir);
+            RayData rayData = new RayData(start, 0.0, new BitSet(), new BitSet(), new Tolerance(0.005, 0.995), ray);
+
+            List<Segment> expected = general.shoot(ray, rayData);
+            List<Segment> actual = fast.shoot(ray, rayData);
+            assertEquals("number of segments on " + ray, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                compare(ray, expected.get(i).getInHit(), actual.get(i).getInHit());
+                compare(ray, expected.get(i).getOutHit(), actual.get(i).getOutHit());
+                hits++;
+            }
+        }
+        assertTrue("expected some rays to hit", hits > RAYS / 4);
+    }
+
+    private void compare(Ray ray, Hit expected, Hit actual) {
+        assertEquals("distance on " + ray, expected.getHit_dist(), actual.getHit_dist(), TOL);
+        assertEquals("surface number on " + ray, expected.getHit_surfno(), actual.getHit_surfno());
+        Vector3 expectedNormal = expected.getHit_normal();
+        Vector3 actualNormal = actual.getHit_normal();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("normal on " + ray, expectedNormal.get(i), actualNormal.get(i), TOL);
+        }
+    }
+
+    private static class MockDbExternal implements DbExternal {
+
+        private String name;
+        private byte majorType;
+        private byte minorType;
+        private byte[] body;
+
+        public MockDbExternal(String name, byte majorType, byte minorType, double[] values) {
+            this.name = name;
+            this.majorType = majorType;
+            this.minorType = minorType;
+            this.body = new byte[values.length * 8];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(body);
+            for (double value : values) {
+                byteBuffer.putDouble(value);
+            }
+        }
+
+        public MockDbExternal(String name, byte majorType, byte minorType, Point v, Vector3... vectors) {
+            this(name, majorType, minorType, flatten(v, vectors));
+        }
+
+        private static double[] flatten(Point v, Vector3[] vectors) {
+            double[] values = new double[3 + 3 * vectors.length];
+            for (int i = 0; i < 3; i++) {
+                values[i] = v.get(i);
+                for (int j = 0; j < vectors.length; j++) {
+                    values[3 + 3 * j + i] = vectors[j].get(i);
+                }
+            }
+            return values;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte getMajorType() {
+            return majorType;
+        }
+
+        public byte getMinorType() {
+            return minorType;
+        }
+
+        public byte[] getBody() {
+            return this.body;
+        }
+
+        public byte[] getAttributes() {
+            return null;
+        }
+    }
+
+    private static class MockPreppedDb extends PreppedDb {
+
+        @Override
+        public void addPreppedObjectToInitialBox(PreppedObject preppedObject) {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.brlcad.render;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.spacePartition.PreppedDb;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that an AsyncFramebufferSink delivers the final image to a framebuffer server
+ * that reads nothing until the render is over, without holding up the renderer
+ */
+public class AsyncFramebufferSinkTest {
+
+    @Test(timeout = 60000)
+    public void testSlowServer() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        PreppedDb prepped = new PreppedDb(db, "r1");
+        RenderView view = RenderView.fromBoundingBox(prepped.getBoundingBox(), new Vector3(-1, -0.6, -0.4), 256);
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        client.setOption(StandardSocketOptions.SO_SNDBUF, 4096);
+        SocketChannel accepted = server.accept();
+
+        final CountDownLatch passesDone = new CountDownLatch(1);
+        FramebufferReader reader = new FramebufferReader(accepted, view.getWidth(), view.getHeight(), passesDone);
+        reader.start();
+        try {
+            Renderer renderer = new Renderer(prepped, view);
+            renderer.setPreviewLevels(3);
+            renderer.setThreads(3);
+            ImageSink image = new ImageSink();
+            AsyncFramebufferSink sink = new AsyncFramebufferSink(client);
+            renderer.addSink(image);
+            renderer.addSink(sink);
+            // the server only starts reading once every pass has finished
+            renderer.addSink(new TileSink() {
+                public void renderStarted(RenderView view, int passes) {
+                }
+
+                public void tileFinished(RenderTile tile) {
+                }
+
+                public void passFinished(int pass) {
+                    if (pass == 3) {
+                        passesDone.countDown();
+                    }
+                }
+
+                public void renderFinished() {
+                }
+            });
+            renderer.render();
+            client.close();
+            reader.join();
+            assertNull(reader.failure);
+
+            for (int row = 0; row < view.getHeight(); row++) {
+                for (int column = 0; column < view.getWidth(); column++) {
+                    assertEquals(image.getRgb(column, row), reader.rgb[row * view.getWidth() + column]);
+                }
+            }
+            // 8 x 8 tiles on each of 4 passes
+            assertEquals(4 * 64, sink.getTiles());
+            // the server was stalled, so later passes replaced tiles that were still queued
+            assertTrue(sink.getSupersededTiles() > 0);
+            assertEquals(reader.messages, sink.getMessages());
+            // each row of the sent tiles would be a message without joining them
+            assertTrue(sink.getMessages() < (sink.getTiles() - sink.getSupersededTiles()) * 32);
+        } finally {
+            client.close();
+            accepted.close();
+            server.close();
+        }
+    }
+
+    /**
+     * A framebuffer server that paints the write messages it receives
+     */
+    private static class FramebufferReader extends Thread {
+
+        final SocketChannel channel;
+        final int width;
+        final int[] rgb;
+        final CountDownLatch start;
+        long messages;
+        Exception failure;
+
+        FramebufferReader(SocketChannel channel, int width, int height, CountDownLatch start) {
+            this.channel = channel;
+            this.width = width;
+            this.rgb = new int[width * height];
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!this.start.await(30, TimeUnit.SECONDS)) {
+                    throw new IOException("The renderer was held up by the network");
+                }
+                DataInputStream in = new DataInputStream(Channels.newInputStream(this.channel));
+                while (true) {
+                    int magic;
+                    try {
+                        magic = in.readUnsignedShort();
+                    } catch (EOFException e) {
+                        return;
+                    }
+                    assertEquals(0x41FE, magic);
+                    assertEquals(105, in.readShort());
+                    int length = in.readInt();
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    int count = in.readInt();
+                    assertEquals(12 + 3 * count, length);
+                    for (int i = 0; i < count; i++) {
+                        this.rgb[y * this.width + x + i] = (in.readUnsignedByte() << 16)
+                                | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                    }
+                    this.messages++;
+                }
+            } catch (Exception e) {
+                this.failure = e;
+            } catch (AssertionError e) {
+                this.failure = new Exception(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.brlcad.render;
+
+import java.awt.Color;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.shading.Material;
+import org.brlcad.shading.Shader;
+import org.brlcad.spacePartition.PreppedDb;
+import org.brlcad.spacePartition.RegionTable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a G-buffer holds the first hits of a render, survives a trip through a
+ * file, and shades to the same image as the render
+ */
+public class GBufferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PreppedDb prepped;
+    private RenderView view;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        prepped = new PreppedDb(db, "r1");
+        view = RenderView.fromBoundingBox(prepped.getBoundingBox(), new Vector3(-1, -0.6, -0.4), 70);
+    }
+
+    @Test
+    public void testReshadeMatchesRender() throws Exception {
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setPreviewLevels(2);
+        renderer.setThreads(2);
+        ImageSink rendered = new ImageSink();
+        GBufferSink gbufferSink = new GBufferSink(renderer);
+        renderer.addSink(rendered);
+        renderer.addSink(gbufferSink);
+        renderer.render();
+        assertTrue(renderer.isRecordSurfaces());
+        GBuffer gbuffer = gbufferSink.getGBuffer();
+
+        RegionTable regions = prepped.getRegionTable();
+        assertEquals(regions.size(), gbuffer.getRegionCount());
+        int hits = 0;
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                int region = gbuffer.getRegion(column, row);
+                if (region == PreppedDb.NO_REGION) {
+                    assertEquals(renderer.getBackground().getRGB() & 0xffffff, rendered.getRgb(column, row));
+                    continue;
+                }
+                hits++;
+                assertEquals(regions.getName(region), gbuffer.getRegionName(region));
+                assertTrue(gbuffer.getDepth(column, row) > 0.0f);
+                Vector3 normal = gbuffer.getNormal(column, row);
+                double cosine = -normal.dotProduct(view.getDirection());
+                assertEquals(Math.acos(Math.min(1.0, cosine)), gbuffer.getObliquity(column, row), 1.0e-3);
+            }
+        }
+        assertTrue(hits > 0);
+
+        Reshader reshader = new Reshader(gbuffer);
+        reshader.setTileSize(16);
+        ImageSink reshaded = new ImageSink();
+        reshader.addSink(reshaded);
+        reshader.render();
+        int maxDiff = 0;
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                maxDiff = Math.max(maxDiff, colorDifference(rendered.getRgb(column, row),
+                        reshaded.getRgb(column, row)));
+            }
+        }
+        // only the packing of the normals and the depth as a float differ from the render
+        assertTrue("difference " + maxDiff, maxDiff <= 1);
+
+        // a shader that is not a Phong takes the general path, with the same colors
+        final Shader phong = Renderer.defaultShader(view);
+        Reshader generalReshader = new Reshader(gbuffer);
+        generalReshader.setShader(new Shader() {
+            public Color shade(Partition part, Material mat, Point eye) {
+                return phong.shade(part, mat, eye);
+            }
+        });
+        ImageSink general = new ImageSink();
+        generalReshader.addSink(general);
+        generalReshader.render();
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                assertEquals(reshaded.getRgb(column, row), general.getRgb(column, row));
+            }
+        }
+
+        // new colors need no rays
+        for (int r = 0; r < gbuffer.getRegionCount(); r++) {
+            reshader.setMaterial(r, new Material("red", Color.RED));
+        }
+        reshader.setBackground(Color.BLACK);
+        reshaded = new ImageSink();
+        reshader.addSink(reshaded);
+        reshader.render();
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                int rgb = reshaded.getRgb(column, row);
+                if (gbuffer.getRegion(column, row) == PreppedDb.NO_REGION) {
+                    assertEquals(0, rgb);
+                } else {
+                    assertTrue((rgb >> 16 & 0xff) >= (rgb >> 8 & 0xff));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setPreviewLevels(0);
+        File file = folder.newFile("r1.gbuf");
+        GBufferSink fileSink = new GBufferSink(renderer, file);
+        GBufferSink memorySink = new GBufferSink(renderer);
+        renderer.addSink(fileSink);
+        renderer.addSink(memorySink);
+        renderer.render();
+        GBuffer written = memorySink.getGBuffer();
+        assertEquals(13 + 13 * 8 + 4 + 14 * view.getWidth() * view.getHeight(), file.length(), 200);
+
+        // the tiles streamed into the file match the G-buffer kept in memory and write()
+        GBuffer read = fileSink.getGBuffer();
+        File rewritten = folder.newFile("r1-memory.gbuf");
+        written.write(rewritten);
+        assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(rewritten.toPath())));
+        assertEquals(view.getWidth(), read.getWidth());
+        assertEquals(view.getHeight(), read.getHeight());
+        assertEquals(view.getDelta(), read.getView().getDelta(), 0.0);
+        assertEquals(view.getDirection(), read.getView().getDirection());
+        assertEquals(written.getRegionCount(), read.getRegionCount());
+        for (int r = 0; r < read.getRegionCount(); r++) {
+            assertEquals(written.getRegionName(r), read.getRegionName(r));
+            assertEquals(written.getRegionID(r), read.getRegionID(r));
+            assertEquals(written.getMaterial(r) == null, read.getMaterial(r) == null);
+        }
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                assertEquals(written.getRegion(column, row), read.getRegion(column, row));
+                assertEquals(written.getDepth(column, row), read.getDepth(column, row), 0.0f);
+                assertEquals(written.getNormal(column, row), read.getNormal(column, row));
+                assertEquals(written.getObliquity(column, row), read.getObliquity(column, row), 0.0);
+            }
+        }
+
+        ImageSink before = new ImageSink();
+        Reshader reshader = new Reshader(written);
+        reshader.addSink(before);
+        reshader.render();
+        ImageSink after = new ImageSink();
+        reshader = new Reshader(read);
+        reshader.setThreads(1);
+        reshader.addSink(after);
+        reshader.render();
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                assertEquals(before.getRgb(column, row), after.getRgb(column, row));
+            }
+        }
+    }
+
+    @Test
+    public void testNormalPacking() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            Vector3 n = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            n.normalize();
+            Vector3 unpacked = GBuffer.unpackNormal(GBuffer.packNormal(n.getX(), n.getY(), n.getZ()));
+            assertEquals(1.0, unpacked.magnitude(), 1.0e-12);
+            assertTrue(Math.acos(Math.min(1.0, n.dotProduct(unpacked))) < 1.0e-4);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            for (double sign = -1.0; sign <= 1.0; sign += 2.0) {
+                Vector3 n = new Vector3(0, 0, 0);
+                n.set(axis, sign);
+                assertEquals(n, GBuffer.unpackNormal(GBuffer.packNormal(n.getX(), n.getY(), n.getZ())));
+            }
+        }
+    }
+
+    private static int colorDifference(int a, int b) {
+        int diff = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            diff = Math.max(diff, Math.abs((a >> shift & 0xff) - (b >> shift & 0xff)));
+        }
+        return diff;
+    }
+}
@@ -0,0 +1,267 @@
+package org.brlcad.render;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.shading.Light;
+import org.brlcad.shading.Material;
+import org.brlcad.shading.Phong;
+import org.brlcad.shading.Shader;
+import org.brlcad.spacePartition.PreppedDb;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the passes and tiles of a Renderer put together the same image however
+ * the work is split
+ */
+public class RendererTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PreppedDb prepped;
+    private RenderView view;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        prepped = new PreppedDb(db, "r1");
+        view = RenderView.fromBoundingBox(prepped.getBoundingBox(), new Vector3(-1, -0.6, -0.4), 70);
+    }
+
+    @Test
+    public void testPassesMatchSinglePass() throws Exception {
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setPreviewLevels(0);
+        renderer.setThreads(1);
+        renderer.setTileSize(64);
+        ImageSink single = new ImageSink();
+        renderer.addSink(single);
+        renderer.render();
+
+        renderer = new Renderer(prepped, view);
+        renderer.setPreviewLevels(3);
+        renderer.setThreads(3);
+        renderer.setTileSize(16);
+        ImageSink progressive = new ImageSink();
+        RecordingSink recorder = new RecordingSink();
+        renderer.addSink(progressive);
+        renderer.addSink(recorder);
+        renderer.render();
+
+        boolean hit = false;
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                assertEquals(single.getRgb(column, row), progressive.getRgb(column, row));
+                hit |= single.getRgb(column, row) != (renderer.getBackground().getRGB() & 0xffffff);
+            }
+        }
+        assertTrue(hit);
+
+        // 5 x 5 tiles on each of 4 passes, all reported before their pass finished
+        assertEquals(4, recorder.passes);
+        assertEquals(Collections.nCopies(4, 25), recorder.tilesPerPass);
+        assertTrue(recorder.finished);
+        int[] covered = new int[view.getWidth() * view.getHeight()];
+        for (RenderTile tile : recorder.tiles) {
+            assertEquals(8 >> tile.getPass(), tile.getBlockSize());
+            assertEquals(tile.getPass() == 3, tile.isFinal());
+            for (int row = 0; row < tile.getHeight(); row++) {
+                for (int column = 0; column < tile.getWidth(); column++) {
+                    // every pixel of a block shows the ray shot at its corner
+                    int b = tile.getBlockSize();
+                    assertEquals(tile.getRgb(column - column % b, row - row % b), tile.getRgb(column, row));
+                    if (tile.isFinal()) {
+                        covered[(tile.getY() + row) * view.getWidth() + tile.getX() + column]++;
+                    }
+                }
+            }
+        }
+        for (int count : covered) {
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    public void testAntiAliasing() throws Exception {
+        // a light that does not depend on the grid, so the views below shade alike
+        Set<Light> lights = new HashSet<Light>();
+        lights.add(new Light(view.getRayStart(35, 35), Color.WHITE, Color.WHITE));
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setShader(new Phong(lights));
+        renderer.setPreviewLevels(0);
+        ImageSink plain = new ImageSink();
+        renderer.addSink(plain);
+        RenderStats plainStats = renderer.render();
+        assertEquals(view.getWidth() * view.getHeight(), plainStats.getRays());
+
+        renderer = new Renderer(prepped, view);
+        renderer.setShader(new Phong(lights));
+        renderer.setPreviewLevels(2);
+        renderer.setAntiAliasSamples(2);
+        renderer.setThreads(2);
+        renderer.setTileSize(16);
+        ImageSink smooth = new ImageSink();
+        renderer.addSink(smooth);
+        RenderStats stats = renderer.render();
+
+        // the subsamples of a pixel are the pixels of a view of twice the resolution, offset by
+        // a quarter of a pixel
+        Point start = view.getRayStart(-0.25, -0.25);
+        RenderView fine = new RenderView(start, view.getXDir(), view.getYDir(), view.getDirection(),
+                view.getDelta() / 2.0, 2 * view.getWidth(), 2 * view.getHeight());
+        renderer = new Renderer(prepped, fine);
+        renderer.setShader(new Phong(lights));
+        renderer.setPreviewLevels(0);
+        ImageSink reference = new ImageSink();
+        renderer.addSink(reference);
+        renderer.render();
+
+        int edges = 0;
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                int rgb = smooth.getRgb(column, row);
+                if (rgb == plain.getRgb(column, row)) {
+                    continue;
+                }
+                edges++;
+                int[] sum = new int[3];
+                for (int s = 0; s < 4; s++) {
+                    int sample = reference.getRgb(2 * column + s % 2, 2 * row + s / 2);
+                    sum[0] += (sample >> 16) & 0xff;
+                    sum[1] += (sample >> 8) & 0xff;
+                    sum[2] += sample & 0xff;
+                }
+                assertEquals(((sum[0] + 2) / 4 << 16) | ((sum[1] + 2) / 4 << 8) | ((sum[2] + 2) / 4), rgb);
+            }
+        }
+        assertTrue(edges > 0);
+        assertTrue(edges <= stats.getEdgePixels());
+        assertEquals(4 * stats.getEdgePixels(), stats.getSubsampleRays());
+        assertEquals(4 * view.getWidth() * view.getHeight(), stats.getSupersamplingRays());
+        assertTrue(stats.getRays() < stats.getSupersamplingRays() / 2);
+        // a ring around each tile (each row and column of 5 tiles spans the image), less the
+        // pixels outside the image
+        assertEquals(4 * 5 * 70 - 4 * 70, stats.getApronRays());
+    }
+
+    @Test
+    public void testPackedShading() throws Exception {
+        // two colored lights, so the order the sums are clamped in matters
+        Set<Light> lights = new HashSet<Light>();
+        lights.add(new Light(view.getRayStart(35, 35), Color.WHITE, Color.ORANGE));
+        lights.add(new Light(view.getRayStart(-100, 200), new Color(40, 80, 255), Color.CYAN));
+        final Phong phong = new Phong(lights);
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setShader(phong);
+        renderer.setPreviewLevels(0);
+        ImageSink packed = new ImageSink();
+        renderer.addSink(packed);
+        renderer.render();
+
+        // a shader that is not a Phong takes the general path
+        renderer = new Renderer(prepped, view);
+        renderer.setShader(new Shader() {
+            public Color shade(Partition part, Material mat, Point eye) {
+                return phong.shade(part, mat, eye);
+            }
+        });
+        renderer.setPreviewLevels(0);
+        ImageSink general = new ImageSink();
+        renderer.addSink(general);
+        renderer.render();
+
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                assertEquals(general.getRgb(column, row), packed.getRgb(column, row));
+            }
+        }
+    }
+
+    @Test
+    public void testPixFile() throws Exception {
+        Renderer renderer = new Renderer(prepped, view);
+        renderer.setPreviewLevels(2);
+        renderer.setThreads(2);
+        ImageSink image = new ImageSink();
+        File file = folder.newFile("r1.pix");
+        renderer.addSink(image);
+        renderer.addSink(new PixFileSink(file));
+        renderer.render();
+
+        byte[] pix = Files.readAllBytes(file.toPath());
+        assertEquals(3 * view.getWidth() * view.getHeight(), pix.length);
+        int index = 0;
+        for (int row = 0; row < view.getHeight(); row++) {
+            for (int column = 0; column < view.getWidth(); column++) {
+                int rgb = ((pix[index] & 0xff) << 16) | ((pix[index + 1] & 0xff) << 8) | (pix[index + 2] & 0xff);
+                assertEquals(image.getRgb(column, row), rgb);
+                index += 3;
+            }
+        }
+    }
+
+    @Test
+    public void testSinkFailure() throws Exception {
+        Renderer renderer = new Renderer(prepped, view);
+        RecordingSink recorder = new RecordingSink();
+        recorder.failOnPass = 1;
+        renderer.addSink(recorder);
+        try {
+            renderer.render();
+            fail("The failure of the sink was not reported");
+        } catch (IOException e) {
+            assertEquals("pass 1", e.getMessage());
+        }
+        assertEquals(1, recorder.passes);
+        assertTrue(recorder.finished);
+    }
+
+    private static class RecordingSink implements TileSink {
+
+        final List<RenderTile> tiles = Collections.synchronizedList(new ArrayList<RenderTile>());
+        final List<Integer> tilesPerPass = new ArrayList<Integer>();
+        int passes;
+        int failOnPass = -1;
+        boolean finished;
+
+        public void renderStarted(RenderView view, int passes) {
+        }
+
+        public void tileFinished(RenderTile tile) throws IOException {
+            if (tile.getPass() == this.failOnPass) {
+                throw new IOException("pass " + tile.getPass());
+            }
+            this.tiles.add(tile);
+        }
+
+        public void passFinished(int pass) {
+            assertEquals(this.passes++, pass);
+            int count = 0;
+            for (RenderTile tile : this.tiles) {
+                if (tile.getPass() == pass) {
+                    count++;
+                }
+            }
+            this.tilesPerPass.add(count);
+        }
+
+        public void renderFinished() {
+            this.finished = true;
+        }
+    }
+}
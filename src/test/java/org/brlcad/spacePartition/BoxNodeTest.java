@@ -0,0 +1,84 @@
+package org.brlcad.spacePartition;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Segment;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Tolerance;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the bounding box prefilter in BoxNode
+ */
+public class BoxNodeTest {
+
+    private static final double TOL = 0.005;
+
+    private int shoot(BoxNode box, Point start, Vector3 dir, String expected) {
+        Ray ray = new Ray(start, dir);
+        RayData rayData = new RayData(start, 0.0, new BitSet(), new BitSet(), new Tolerance(TOL, 0.995), ray);
+        box.shootRay(null, ray, rayData);
+        int count = 0;
+        for (PreppedObject obj : box.getPreppedObjects()) {
+            CountingObject co = (CountingObject) obj;
+            boolean shouldBeShot = expected.contains(co.getName());
+            assertEquals("object " + co.getName() + " for ray " + ray, shouldBeShot ? 1 : 0, co.count);
+            count += co.count;
+            co.count = 0;
+        }
+        return count;
+    }
+
+    @Test
+    public void testSlabPrefilter() {
+        BoxNode box = new BoxNode();
+        box.addPreppedObjectAndExtendBB(new CountingObject("A", 0, new BoundingBox(new Point(0, 0, 0), new Point(1, 1, 1))));
+        box.addPreppedObjectAndExtendBB(new CountingObject("B", 1, new BoundingBox(new Point(10, 10, 10), new Point(11, 11, 11))));
+        box.prepareSlabs(TOL);
+
+        Vector3 xDir = new Vector3(1, 0, 0);
+        shoot(box, new Point(-5, 0.5, 0.5), xDir, "A");
+        shoot(box, new Point(-5, 10.5, 10.5), xDir, "B");
+        shoot(box, new Point(-5, 5, 5), xDir, "");
+
+        // objects behind the ray start are still intersected
+        shoot(box, new Point(20, 0.5, 0.5), xDir, "A");
+
+        // ray parallel to, and exactly in the plane of, an expanded bound
+        shoot(box, new Point(-5, 1.0 + TOL, 0.5), xDir, "A");
+        shoot(box, new Point(-5, 1.0 + 2 * TOL, 0.5), xDir, "");
+
+        Vector3 diag = new Vector3(1, 1, 1);
+        diag.normalize();
+        shoot(box, new Point(-5, -5, -5), diag, "AB");
+    }
+
+    private static class CountingObject extends PreppedObject {
+
+        int count;
+
+        CountingObject(String name, int index, BoundingBox bb) {
+            super(name);
+            this.index = index;
+            this.boundingBox = bb;
+        }
+
+        @Override
+        public List<Segment> shoot(Ray ray, RayData rayData) {
+            this.count++;
+            return null;
+        }
+
+        @Override
+        public List<Segment> makeSegs(Set<Hit> hits, Ray ray, RayData rayData) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.brlcad.spacePartition;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedObject;
+import org.brlcad.preppedGeometry.PreppedObjectPiece;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks PreppedDb.queryBox() against a check of every primitive and region
+ */
+public class BoxQueryTest {
+
+    private PreppedDb prepped;
+    private BoundingBox[] primitiveBounds;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        prepped = new PreppedDb(db, "tank");
+        primitiveBounds = new BoundingBox[prepped.getPrimitiveCount()];
+        collect(prepped.getSpacePartition());
+    }
+
+    private void collect(Node node) {
+        if (node instanceof CutNode) {
+            collect(((CutNode) node).getLtCutValue());
+            collect(((CutNode) node).getGteCutValue());
+        } else {
+            BoxNode box = (BoxNode) node;
+            for (PreppedObject obj : box.getPreppedObjects()) {
+                primitiveBounds[obj.getIndex()] = obj.getBoundingBox();
+            }
+            for (PreppedObjectPiece piece : box.getPreppedPieces()) {
+                primitiveBounds[piece.getIndex()] = piece.getBoundingBox();
+            }
+        }
+    }
+
+    @Test
+    public void testQueryBox() {
+        BoundingBox model = prepped.getBoundingBox();
+        Vector3 diameter = model.getDiameter();
+        Random random = new Random(17);
+        List<BoundingBox> boxes = new ArrayList<BoundingBox>();
+        for (int i = 0; i < 500; i++) {
+            Point min = new Point(model.getMin().getX() + diameter.getX() * (1.2 * random.nextDouble() - 0.1),
+                    model.getMin().getY() + diameter.getY() * (1.2 * random.nextDouble() - 0.1),
+                    model.getMin().getZ() + diameter.getZ() * (1.2 * random.nextDouble() - 0.1));
+            double size = 0.2 * random.nextDouble();
+            Point max = new Point(min.getX() + size * diameter.getX(), min.getY() + size * diameter.getY(),
+                    min.getZ() + size * diameter.getZ());
+            boxes.add(new BoundingBox(min, max));
+        }
+
+        QueryStats stats = new QueryStats();
+        List<BoxQueryResult> results = prepped.queryBoxes(boxes, 2, stats);
+        assertEquals(boxes.size(), results.size());
+        assertEquals(boxes.size(), stats.getCount());
+        assertTrue(stats.getPercentile(50.0) <= stats.getPercentile(99.0));
+        int found = 0;
+        for (int i = 0; i < boxes.size(); i++) {
+            BoundingBox box = boxes.get(i);
+            BoxQueryResult result = results.get(i);
+            assertSame(box, result.getBox());
+
+            BitSet expected = new BitSet();
+            for (int j = 0; j < primitiveBounds.length; j++) {
+                if (primitiveBounds[j] != null && primitiveBounds[j].overlaps(box)) {
+                    expected.set(j);
+                }
+            }
+            assertArrayEquals("primitives in " + box, toArray(expected), result.getPrimitives());
+
+            expected.clear();
+            RegionTable regions = prepped.getRegionTable();
+            for (int j = 0; j < regions.size(); j++) {
+                BoundingBox bb = regions.getBoundingBox(j);
+                if (bb != null && bb.overlaps(box)) {
+                    expected.set(j);
+                }
+            }
+            assertArrayEquals("regions in " + box, toArray(expected), result.getRegions());
+            for (int index : result.getPrimitives()) {
+                assertNotNull(prepped.getPrimitiveName(index));
+            }
+            found += result.getPrimitives().length;
+        }
+        assertTrue(found > 0);
+
+        // a box that contains the whole model finds everything
+        BoxQueryResult all = prepped.queryBox(new BoundingBox(model.getMin(), model.getMax()));
+        assertEquals(prepped.getRegionTable().size(), all.getRegions().length);
+    }
+
+    @Test
+    public void testPercentiles() {
+        QueryStats stats = new QueryStats();
+        for (int i = 100; i > 0; i--) {
+            stats.record(i);
+        }
+        assertEquals(50, stats.getPercentile(50.0));
+        assertEquals(90, stats.getPercentile(90.0));
+        assertEquals(1, stats.getPercentile(0.0));
+        assertEquals(100, stats.getPercentile(100.0));
+        assertEquals(50.5, stats.getMean(), 1.0e-9);
+    }
+
+    private static int[] toArray(BitSet bits) {
+        int[] array = new int[bits.cardinality()];
+        int n = 0;
+        for (int i = bits.nextSetBit(0); i > -1; i = bits.nextSetBit(i + 1)) {
+            array[n++] = i;
+        }
+        return array;
+    }
+}
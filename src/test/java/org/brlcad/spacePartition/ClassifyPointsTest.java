@@ -0,0 +1,144 @@
+package org.brlcad.spacePartition;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks PreppedDb.classifyPoints() against the partitions of full rays through the points
+ */
+public class ClassifyPointsTest {
+
+    private static final int POINTS = 20000;
+
+    private PreppedDb prepped;
+    private double[] xyz;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        prepped = new PreppedDb(db, "tank");
+        BoundingBox bb = prepped.getBoundingBox();
+        Vector3 diameter = bb.getDiameter();
+        Random random = new Random(5);
+        xyz = new double[3 * POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // a little outside the model too
+            xyz[3 * i] = bb.getMin().getX() + diameter.getX() * (1.1 * random.nextDouble() - 0.05);
+            xyz[3 * i + 1] = bb.getMin().getY() + diameter.getY() * (1.1 * random.nextDouble() - 0.05);
+            xyz[3 * i + 2] = bb.getMin().getZ() + diameter.getZ() * (1.1 * random.nextDouble() - 0.05);
+        }
+    }
+
+    @Test
+    public void testClassify() {
+        int[] regions = prepped.classifyPoints(xyz, 1);
+        assertEquals(POINTS, regions.length);
+        check(prepped, xyz, regions);
+
+        int[] parallel = prepped.classifyPoints(xyz, 4);
+        assertTrue(Arrays.equals(regions, parallel));
+
+        // one pool shared by several batches
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int batch = 0; batch < 2; batch++) {
+                assertTrue(Arrays.equals(regions, prepped.classifyPoints(xyz, null, executor)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInsideBot() throws Exception {
+        // r1 subtracts a BoT big enough to be split into pieces
+        PreppedDb r1 = new PreppedDb(new BrlcadDb("src/test/resources/test.g"), "r1");
+        assertFalse(r1.getPieces().isEmpty());
+        BoundingBox bb = r1.getBoundingBox();
+        Vector3 diameter = bb.getDiameter();
+        Random random = new Random(3);
+        double[] points = new double[3 * 2000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = bb.getMin().get(i % 3) + diameter.get(i % 3) * random.nextDouble();
+        }
+        check(r1, points, r1.classifyPoints(points, 1));
+    }
+
+    /**
+     * Compare the classification of each point with the partitions of a ray through it
+     */
+    private static void check(PreppedDb prepped, double[] xyz, int[] regions) {
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+        Vector3 dir = new Vector3(1, 2, 3);
+        dir.normalize();
+        double back = 2.0 * prepped.getBoundingBox().getDiameter().magnitude();
+        int inside = 0;
+        int outside = 0;
+        for (int i = 0; i < regions.length; i++) {
+            // shoot from well outside the model, through the point
+            Point start = new Point(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+            start.join(-back, dir);
+            SortedSet<Partition> parts = prepped.shootRay(new Ray(start, new Vector3(dir)), handler);
+            int expected = PreppedDb.NO_REGION;
+            for (Partition part : parts) {
+                if (part.getInHit().getHit_dist() <= back && part.getOutHit().getHit_dist() > back) {
+                    expected = prepped.getRegionTable().indexOf(part.getFromRegion());
+                }
+            }
+            assertEquals("point " + i, expected, regions[i]);
+            if (expected != PreppedDb.NO_REGION) {
+                inside++;
+            } else {
+                outside++;
+            }
+        }
+        assertTrue("expected some points inside regions", inside > 0);
+        assertTrue("expected some points outside regions", outside > 0);
+    }
+
+    @Test
+    public void testOneRegion() {
+        int[] regions = prepped.classifyPoints(xyz, 1);
+        int region = -1;
+        for (int index : regions) {
+            if (index != PreppedDb.NO_REGION) {
+                region = index;
+                break;
+            }
+        }
+        assertTrue(region >= 0);
+        String name = prepped.getRegionTable().getName(region);
+        int[] inRegion = prepped.classifyPoints(xyz, name, 2);
+        int count = 0;
+        for (int i = 0; i < POINTS; i++) {
+            assertTrue(inRegion[i] == region || inRegion[i] == PreppedDb.NO_REGION);
+            if (regions[i] == region) {
+                // a point given to the region is certainly inside it
+                assertEquals(region, inRegion[i]);
+            }
+            if (inRegion[i] == region) {
+                count++;
+            }
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownRegion() {
+        prepped.classifyPoints(xyz, "no.such.region", 1);
+    }
+}
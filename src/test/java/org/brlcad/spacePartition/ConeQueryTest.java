@@ -0,0 +1,120 @@
+package org.brlcad.spacePartition;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that rays shot through a ConeQuery give the same partitions as full shootRay() calls
+ */
+public class ConeQueryTest {
+
+    private PreppedDb prepped;
+    private SimpleOverlapHandler handler;
+    private Point burst;
+
+    @Before
+    public void setUp() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        prepped = new PreppedDb(db, "tank");
+        handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+        BoundingBox bb = prepped.getBoundingBox();
+        burst = new Point(bb.getMin());
+        burst.plus(bb.getMax());
+        burst.scale(0.5);
+    }
+
+    @Test
+    public void testCone() {
+        Vector3 axis = new Vector3(1, 0.2, 0.1);
+        ConeQuery cone = prepped.createConeQuery(burst, axis, Math.toRadians(20.0));
+        ConeQuery sphere = prepped.createSphereQuery(burst);
+        assertTrue("cone should cut down the candidates", cone.getObjectCount() + cone.getPieceCount()
+                < sphere.getObjectCount() + sphere.getPieceCount());
+        int parts = check(prepped, burst, cone, 300, new Random(11));
+        assertTrue("expected some partitions", parts > 0);
+    }
+
+    @Test
+    public void testHemisphere() {
+        ConeQuery hemisphere = prepped.createHemisphereQuery(burst, new Vector3(0, 0, 1));
+        assertTrue(check(prepped, burst, hemisphere, 300, new Random(12)) > 0);
+    }
+
+    @Test
+    public void testSphere() {
+        ConeQuery sphere = prepped.createSphereQuery(burst);
+        assertTrue(check(prepped, burst, sphere, 300, new Random(13)) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutsideCone() {
+        ConeQuery cone = prepped.createConeQuery(burst, new Vector3(1, 0, 0), Math.toRadians(10.0));
+        cone.shootRay(new Vector3(0, 1, 0), handler);
+    }
+
+    @Test
+    public void testInsideBot() throws Exception {
+        // the burst point is inside the BoT that r1 subtracts, which is split into pieces
+        PreppedDb r1 = new PreppedDb(new BrlcadDb("src/test/resources/test.g"), "r1");
+        Point apex = new Point(8.89, 126.4, -19.0);
+        Random random = new Random(5);
+        int spherePieces = r1.createSphereQuery(apex).getPieceCount();
+        int parts = 0;
+        for (int i = 0; i < 20; i++) {
+            Vector3 axis = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            ConeQuery cone = r1.createConeQuery(apex, axis, Math.toRadians(3.0));
+            // only the pieces of the BoT along the cone and the reversed cone are candidates
+            assertTrue(cone.getPieceCount() < spherePieces);
+            parts += check(r1, apex, cone, 5, random);
+        }
+        assertTrue(parts > 0);
+    }
+
+    private int check(PreppedDb db, Point apex, ConeQuery query, int count, Random random) {
+        Vector3[] directions = new Vector3[count];
+        for (int i = 0; i < count; i++) {
+            Vector3 dir;
+            do {
+                dir = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+                dir.normalize();
+            } while (!query.accepts(dir));
+            directions[i] = dir;
+        }
+        List<SortedSet<Partition>> results = query.shootRays(directions, handler);
+        int parts = 0;
+        for (int i = 0; i < count; i++) {
+            Ray ray = new Ray(new Point(apex), new Vector3(directions[i]));
+            SortedSet<Partition> expected = db.shootRay(ray, handler);
+            Iterator<Partition> iter = expected.iterator();
+            while (iter.hasNext()) {
+                if (iter.next().getOutHit().getHit_dist() <= 0.0) {
+                    iter.remove();
+                }
+            }
+            SortedSet<Partition> actual = results.get(i);
+            assertEquals("number of partitions on " + ray, expected.size(), actual.size());
+            Iterator<Partition> act = actual.iterator();
+            for (Partition exp : expected) {
+                Partition part = act.next();
+                assertEquals(exp.getFromRegion(), part.getFromRegion());
+                assertEquals(exp.getInHit().getHit_dist(), part.getInHit().getHit_dist(), 1.0e-9);
+                assertEquals(exp.getOutHit().getHit_dist(), part.getOutHit().getHit_dist(), 1.0e-9);
+            }
+            parts += actual.size();
+        }
+        return parts;
+    }
+}
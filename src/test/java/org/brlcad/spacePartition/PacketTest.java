@@ -0,0 +1,139 @@
+package org.brlcad.spacePartition;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that rays shot in packets give the same partitions as rays shot one at a time
+ */
+public class PacketTest {
+
+    private static final int GRID = 50;
+
+    @Test
+    public void testGrid() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+
+        BoundingBox bb = prepped.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        double radius = bb.getDiameter().magnitude() / 2.0;
+        Vector3 dir = new Vector3(-0.7424, -0.5198, -0.4226);
+        dir.normalize();
+        Vector3 xDir = dir.crossProduct(new Vector3(0, 0, 1));
+        xDir.normalize();
+        Vector3 yDir = xDir.crossProduct(dir);
+        yDir.normalize();
+        Point gridStart = new Point(center);
+        gridStart.join(-radius, dir);
+        gridStart.join(-radius, xDir);
+        gridStart.join(-radius, yDir);
+        double delta = 2.0 * radius / GRID;
+
+        PacketStats stats = new PacketStats();
+        List<SortedSet<Partition>> grid = prepped.shootGrid(gridStart, xDir, yDir, delta, GRID, GRID, dir,
+                handler, null, stats);
+        List<SortedSet<Partition>> viewGrid = prepped.shootGrid(gridStart, xDir, yDir, delta, GRID, GRID, dir,
+                handler, prepped.createViewCache(dir), null);
+        assertEquals(GRID * GRID, grid.size());
+        int parts = 0;
+        for (int row = 0; row < GRID; row++) {
+            for (int col = 0; col < GRID; col++) {
+                Point start = new Point(gridStart);
+                start.join(delta * row, yDir);
+                start.join(delta * col, xDir);
+                Ray ray = new Ray(start, new Vector3(dir));
+                SortedSet<Partition> expected = prepped.shootRay(ray, handler);
+                compare(prepped, ray, expected, grid.get(row * GRID + col));
+                compare(prepped, ray, expected, viewGrid.get(row * GRID + col));
+                parts += expected.size();
+            }
+        }
+        assertTrue("expected some partitions", parts > 0);
+
+        // 4 by 4 tiles, with some rays missing the model
+        assertEquals((GRID + 3) / 4 * ((GRID + 3) / 4), stats.getPackets());
+        assertTrue(stats.getRays() > 0 && stats.getRays() <= GRID * GRID);
+        assertTrue(stats.getEfficiency() > 0.0 && stats.getEfficiency() <= 1.0);
+        assertTrue(stats.getRaysPerLeafVisit() >= 1.0);
+    }
+
+    @Test
+    public void testScatteredPacket() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+
+        // rays from all around the model toward random points inside it
+        BoundingBox bb = prepped.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        Vector3 diameter = bb.getDiameter();
+        double radius = diameter.magnitude() / 2.0;
+        Random random = new Random(7);
+        Ray[] rays = new Ray[PreppedDb.MAX_PACKET_SIZE];
+        for (int i = 0; i < rays.length; i++) {
+            Vector3 offset = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            offset.normalize();
+            Point start = new Point(center);
+            start.join(radius, offset);
+            Point target = new Point(bb.getMin());
+            target.plus(new Vector3(diameter.getX() * random.nextDouble(),
+                    diameter.getY() * random.nextDouble(), diameter.getZ() * random.nextDouble()));
+            rays[i] = new Ray(start, Vector3.minus(target, start));
+        }
+
+        PacketStats stats = new PacketStats();
+        List<SortedSet<Partition>> packet = prepped.shootPacket(rays, 0, rays.length, handler, null, stats);
+        for (int i = 0; i < rays.length; i++) {
+            Ray ray = new Ray(rays[i].getStart(), new Vector3(rays[i].getDirection()));
+            compare(prepped, ray, prepped.shootRay(ray, handler), packet.get(i));
+        }
+        assertEquals(1, stats.getPackets());
+        assertTrue("expected the packet to break up", stats.getFallbackRays() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPacketTooLarge() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        PreppedDb prepped = new PreppedDb(db, "r1");
+        Ray[] rays = new Ray[PreppedDb.MAX_PACKET_SIZE + 1];
+        for (int i = 0; i < rays.length; i++) {
+            rays[i] = new Ray(new Point(i, 0, 10000), new Vector3(0, 0, -1));
+        }
+        prepped.shootPacket(rays, 0, rays.length, new SimpleOverlapHandler(), null, null);
+    }
+
+    private void compare(PreppedDb prepped, Ray ray, SortedSet<Partition> expected, SortedSet<Partition> actual) {
+        assertEquals("number of partitions on " + ray, expected.size(), actual.size());
+        Iterator<Partition> iter = actual.iterator();
+        for (Partition exp : expected) {
+            Partition act = iter.next();
+            assertEquals(exp.getFromRegion(), act.getFromRegion());
+            // the region index comes from evaluation, not from a lookup by name
+            assertEquals(prepped.getRegionTable().indexOf(act.getFromRegion()), act.getRegionIndex());
+            assertEquals(exp.getRegionIndex(), act.getRegionIndex());
+            assertEquals("in distance on " + ray, exp.getInHit().getHit_dist(), act.getInHit().getHit_dist(), 1.0e-9);
+            assertEquals("out distance on " + ray, exp.getOutHit().getHit_dist(), act.getOutHit().getHit_dist(), 1.0e-9);
+            assertEquals(exp.getInHit().getHit_surfno(), act.getInHit().getHit_surfno());
+            assertEquals(exp.getOutHit().getHit_surfno(), act.getOutHit().getHit_surfno());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.brlcad.spacePartition;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for RayOrder and reordered batch shooting
+ */
+public class RayOrderTest {
+
+    @Test
+    public void testMorton() {
+        assertEquals(0L, RayOrder.morton(0, 0, 0));
+        assertEquals(1L, RayOrder.morton(0, 0, 1));
+        assertEquals(2L, RayOrder.morton(0, 1, 0));
+        assertEquals(4L, RayOrder.morton(1, 0, 0));
+        assertEquals(7L, RayOrder.morton(1, 1, 1));
+        assertEquals(0x3fffffffL, RayOrder.morton(0x3ff, 0x3ff, 0x3ff));
+    }
+
+    @Test
+    public void testSort() {
+        BoundingBox bb = new BoundingBox(new Point(0, 0, 0), new Point(100, 100, 100));
+        Vector3 down = new Vector3(0, 0, -1);
+        Ray[] rays = {
+            new Ray(new Point(90, 90, 200), down),
+            new Ray(new Point(500, 500, 200), down),	// misses
+            new Ray(new Point(10, 10, 200), new Vector3(0, 0, 1)),	// points away
+            new Ray(new Point(10, 10, 200), down),
+            new Ray(new Point(11, 10, 200), down),
+            new Ray(new Point(-50, 10, 10), new Vector3(1, 0, 0))
+        };
+        int[] order = RayOrder.sort(rays, bb);
+        assertEquals(rays.length, order.length);
+        // octant first (+x ray), then the neighbouring entry points, misses last
+        assertEquals(5, order[0]);
+        assertEquals(3, order[1]);
+        assertEquals(4, order[2]);
+        assertEquals(0, order[3]);
+        assertTrue((order[4] == 1 && order[5] == 2) || (order[4] == 2 && order[5] == 1));
+    }
+
+    @Test
+    public void testReorderedBatch() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+
+        BoundingBox bb = prepped.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        Vector3 diameter = bb.getDiameter();
+        double radius = diameter.magnitude() / 2.0;
+        Random random = new Random(3);
+        Ray[] rays = new Ray[2000];
+        for (int i = 0; i < rays.length; i++) {
+            Vector3 offset = new Vector3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            offset.normalize();
+            Point start = new Point(center);
+            start.join(radius, offset);
+            Point target = new Point(bb.getMin());
+            target.plus(new Vector3(diameter.getX() * random.nextDouble(),
+                    diameter.getY() * random.nextDouble(), diameter.getZ() * random.nextDouble()));
+            Vector3 dir = Vector3.minus(target, start);
+            dir.normalize();
+            rays[i] = new Ray(start, dir);
+        }
+
+        List<SortedSet<Partition>> expected = prepped.shootRays(rays, handler, false);
+        List<SortedSet<Partition>> actual = prepped.shootRays(rays, handler, true);
+        assertEquals(rays.length, actual.size());
+        for (int i = 0; i < rays.length; i++) {
+            assertEquals(expected.get(i).size(), actual.get(i).size());
+            Iterator<Partition> iter = actual.get(i).iterator();
+            for (Partition exp : expected.get(i)) {
+                Partition act = iter.next();
+                assertEquals(exp.getFromRegion(), act.getFromRegion());
+                assertEquals(exp.getInHit().getHit_dist(), act.getInHit().getHit_dist(), 1.0e-9);
+                assertEquals(exp.getOutHit().getHit_dist(), act.getOutHit().getHit_dist(), 1.0e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.brlcad.spacePartition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Vector3;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ShotlineBuffer, RegionTable and the shotline codec
+ */
+public class ShotlineBufferTest {
+
+    @Test
+    public void testRegionTable() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        PreppedDb prepped = new PreppedDb(db, "r1");
+        RegionTable table = prepped.getRegionTable();
+        assertEquals(1, table.size());
+        int index = table.indexOf("r1");
+        assertEquals(0, index);
+        assertEquals("r1", table.getName(index));
+        assertEquals(1000, table.getRegionID(index));
+        assertEquals(1, table.getMaterialID(index));
+        assertEquals(0, table.getAirCode(index));
+        assertEquals(-1, table.indexOf("no.such.region"));
+    }
+
+    @Test
+    public void testMatchesPartitions() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        RegionTable table = prepped.getRegionTable();
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+
+        BoundingBox bb = prepped.getBoundingBox();
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        double radius = bb.getDiameter().magnitude() / 2.0;
+        Vector3 dir = new Vector3(-0.7424, -0.5198, -0.4226);
+        dir.normalize();
+        Vector3 up = new Vector3(0, 0, 1).crossProduct(dir);
+        up.normalize();
+        Vector3 right = dir.crossProduct(up);
+
+        ShotlineBuffer buffer = new ShotlineBuffer(true, true);
+        int total = 0;
+        int rayCount = 0;
+        for (int i = -20; i <= 20; i++) {
+            for (int j = -20; j <= 20; j++) {
+                Point start = new Point(center);
+                start.join(-2.0 * radius, dir);
+                start.join(i * radius / 20.0, up);
+                start.join(j * radius / 20.0, right);
+
+                SortedSet<Partition> parts = prepped.shootRay(new Ray(new Point(start), new Vector3(dir)), handler);
+                int n = prepped.shootRay(new Ray(new Point(start), new Vector3(dir)), null, buffer);
+                assertEquals(parts.size(), n);
+                assertEquals(rayCount + 1, buffer.getRayCount());
+
+                int row = buffer.getRayStart(rayCount);
+                for (Partition part : parts) {
+                    assertEquals(part.getFromRegion(), table.getName(buffer.getRegion(row)));
+                    assertEquals(part.getRegionID(), table.getRegionID(buffer.getRegion(row)));
+                    assertEquals(part.getInHit().getHit_dist(), buffer.getInDist(row), 0.0);
+                    assertEquals(part.getOutHit().getHit_dist(), buffer.getOutDist(row), 0.0);
+                    assertEquals(part.getInHit().getHit_surfno(), buffer.getInSurfno(row));
+                    assertEquals(part.getOutHit().getHit_surfno(), buffer.getOutSurfno(row));
+                    assertEquals(part.getInHitNormal().getX(), buffer.getInNormal(row, 0), 1.0e-6);
+                    assertEquals(part.getOutHitNormal().getZ(), buffer.getOutNormal(row, 2), 1.0e-6);
+                    assertEquals(part.getInObliquity(), buffer.getInObliquity(row), 0.0f);
+                    assertEquals(part.getOutObliquity(), buffer.getOutObliquity(row), 0.0f);
+                    row++;
+                }
+                assertEquals(buffer.getRayEnd(rayCount), row);
+                total += n;
+                rayCount++;
+            }
+        }
+        assertTrue("expected some rays to hit the tank", total > 0);
+        assertEquals(total, buffer.size());
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getRayCount());
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        PreppedDb prepped = new PreppedDb(db, "tank");
+        BoundingBox bb = prepped.getBoundingBox();
+        Vector3 dir = new Vector3(0, -1, 0);
+        ShotlineBuffer buffer = new ShotlineBuffer(true, true);
+        List<Ray> rays = new ArrayList<Ray>();
+        for (int i = 0; i <= 30; i++) {
+            for (int j = 0; j <= 30; j++) {
+                Point start = new Point(bb.getMin().getX() + i * (bb.getMax().getX() - bb.getMin().getX()) / 30.0,
+                        bb.getMax().getY() + 100.0,
+                        bb.getMin().getZ() + j * (bb.getMax().getZ() - bb.getMin().getZ()) / 30.0);
+                Ray ray = new Ray(start, dir);
+                rays.add(ray);
+                prepped.shootRay(ray, null, buffer);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ShotlineWriter writer = new ShotlineWriter(Channels.newChannel(bytes), prepped.getRegionTable(), true, true, 256);
+        writer.writeRays(rays.toArray(new Ray[rays.size()]), buffer);
+        writer.close();
+        byte[] data = bytes.toByteArray();
+
+        // feed the stream to the reader in small pieces, starting with a piece of the header
+        ByteBuffer stream = ByteBuffer.allocate(4096);
+        int offset = 7;
+        stream.put(data, 0, offset);
+        stream.flip();
+        assertEquals(-1, ShotlineReader.getHeaderSize(stream));
+        assertNull(ShotlineReader.open(stream));
+        try {
+            new ShotlineReader(stream);
+            fail("read an incomplete header");
+        } catch (IOException e) {
+            assertEquals(0, stream.position());
+        }
+        ShotlineReader reader;
+        while ((reader = ShotlineReader.open(stream)) == null) {
+            assertEquals(0, stream.position());
+            stream.compact();
+            int n = Math.min(stream.remaining(), Math.min(100, data.length - offset));
+            stream.put(data, offset, n);
+            offset += n;
+            stream.flip();
+        }
+        assertTrue(offset > 100);
+        assertEquals(prepped.getRegionTable().size(), reader.getRegionCount());
+        assertTrue(reader.hasNormals());
+        assertTrue(reader.hasObliquities());
+
+        int ray = 0;
+        int partitions = 0;
+        while (true) {
+            while (reader.nextRay()) {
+                assertEquals(rays.get(ray).getStart().getX(), reader.getRayStart(0), 0.0);
+                assertEquals(dir.getY(), reader.getRayDirection(1), 0.0);
+                int row = buffer.getRayStart(ray);
+                assertEquals(buffer.getRayEnd(ray) - row, reader.getPartitionCount());
+                while (reader.nextPartition()) {
+                    assertEquals(buffer.getRegion(row), reader.getRegion());
+                    assertEquals(buffer.getInDist(row), reader.getInDist(), 1.0e-3);
+                    assertEquals(buffer.getOutDist(row), reader.getOutDist(), 1.0e-3);
+                    assertEquals(buffer.getInSurfno(row), reader.getInSurfno());
+                    assertEquals(buffer.getOutSurfno(row), reader.getOutSurfno());
+                    assertEquals(buffer.getInNormal(row, 2), reader.getInNormal(2), 0.0f);
+                    assertEquals(buffer.getOutNormal(row, 0), reader.getOutNormal(0), 0.0f);
+                    assertEquals(buffer.getOutObliquity(row), reader.getOutObliquity(), 0.0f);
+                    row++;
+                    partitions++;
+                }
+                ray++;
+            }
+            if (offset == data.length) {
+                break;
+            }
+            stream.compact();
+            int n = Math.min(stream.remaining(), Math.min(100, data.length - offset));
+            stream.put(data, offset, n);
+            offset += n;
+            stream.flip();
+            reader.setBuffer(stream);
+        }
+        assertEquals(rays.size(), ray);
+        assertEquals(buffer.size(), partitions);
+        assertTrue("expected some partitions", partitions > 0);
+    }
+}
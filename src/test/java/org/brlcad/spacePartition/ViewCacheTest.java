@@ -0,0 +1,212 @@
+package org.brlcad.spacePartition;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import javax.measure.unit.NonSI;
+import org.brlcad.geometry.Bot;
+import org.brlcad.geometry.BrlcadDb;
+import org.brlcad.geometry.DbExternal;
+import org.brlcad.geometry.Hit;
+import org.brlcad.geometry.Partition;
+import org.brlcad.geometry.Segment;
+import org.brlcad.geometry.SimpleOverlapHandler;
+import org.brlcad.numerics.BoundingBox;
+import org.brlcad.numerics.Matrix;
+import org.brlcad.numerics.Point;
+import org.brlcad.numerics.Ray;
+import org.brlcad.numerics.Tolerance;
+import org.brlcad.numerics.Vector3;
+import org.brlcad.preppedGeometry.PreppedBot;
+import org.jscience.physics.amount.Amount;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that shooting a batch of parallel rays through a ViewCache gives the same
+ * results as shooting each ray on its own
+ */
+public class ViewCacheTest {
+
+    private static final double TOL = 1.0e-6;
+    private static final int GRID = 40;
+
+    private static final double[][] DIRECTIONS = {
+        {-0.7424, -0.5198, -0.4226}, {0.3, 0.5, -0.81}, {0.0, 0.0, -1.0}, {1.0, 0.2, 0.1}
+    };
+
+    @Test
+    public void testKtank() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/ktank.g");
+        compare(new PreppedDb(db, "tank"));
+    }
+
+    @Test
+    public void testRegion() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        compare(new PreppedDb(db, "r1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDirection() throws Exception {
+        BrlcadDb db = new BrlcadDb("src/test/resources/test.g");
+        PreppedDb prepped = new PreppedDb(db, "r1");
+        ViewCache view = prepped.createViewCache(new Vector3(0, 0, -1));
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        prepped.shootRay(new Ray(new Point(0, 0, 10000), new Vector3(0, 1, -1)), handler, view);
+    }
+
+    @Test
+    public void testBot() throws Exception {
+        // a closed cube of 12 triangles
+        double[][] vertices = {
+            {0, 0, 0}, {100, 0, 0}, {100, 100, 0}, {0, 100, 0},
+            {0, 0, 100}, {100, 0, 100}, {100, 100, 100}, {0, 100, 100}
+        };
+        int[][] faces = {
+            {0, 2, 1}, {0, 3, 2}, {4, 5, 6}, {4, 6, 7}, {0, 1, 5}, {0, 5, 4},
+            {1, 2, 6}, {1, 6, 5}, {2, 3, 7}, {2, 7, 6}, {3, 0, 4}, {3, 4, 7}
+        };
+        ByteBuffer body = ByteBuffer.allocate(11 + 24 * vertices.length + 12 * faces.length);
+        body.putInt(vertices.length);
+        body.putInt(faces.length);
+        body.put((byte) 2);	// counter clockwise
+        body.put((byte) 2);	// solid
+        body.put((byte) 0);
+        for (double[] v : vertices) {
+            body.putDouble(v[0]).putDouble(v[1]).putDouble(v[2]);
+        }
+        for (int[] f : faces) {
+            body.putInt(f[0]).putInt(f[1]).putInt(f[2]);
+        }
+        Bot bot = new Bot(new MockDbExternal("cube", Bot.majorType, Bot.minorType, body.array()));
+        Matrix matrix = new Matrix(Amount.valueOf(20, NonSI.DEGREE_ANGLE), Amount.valueOf(-30, NonSI.DEGREE_ANGLE),
+                Amount.valueOf(45, NonSI.DEGREE_ANGLE), new Point(500, -200, 50));
+        PreppedBot prepped = new PreppedBot(bot, matrix);
+        Tolerance tol = new Tolerance(0.005, 0.995);
+
+        for (double[] d : DIRECTIONS) {
+            Vector3 dir = new Vector3(d[0], d[1], d[2]);
+            dir.normalize();
+            ViewCache view = new ViewCache(dir, 1);
+            int hits = 0;
+            for (Ray ray : grid(prepped.getBoundingBox(), dir)) {
+                RayData single = new RayData(ray.getStart(), 0.0, new BitSet(), new BitSet(), tol, ray);
+                RayData batch = new RayData(ray.getStart(), 0.0, new BitSet(), new BitSet(), tol, ray);
+                batch.setViewCache(view);
+                List<Segment> expected = prepped.shoot(ray, single);
+                List<Segment> actual = prepped.shoot(ray, batch);
+                if (expected == null) {
+                    assertNull("segments on " + ray, actual);
+                    continue;
+                }
+                assertNotNull("segments on " + ray, actual);
+                assertEquals("number of segments on " + ray, expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    compare(ray, expected.get(i).getInHit(), actual.get(i).getInHit());
+                    compare(ray, expected.get(i).getOutHit(), actual.get(i).getOutHit());
+                    hits++;
+                }
+            }
+            assertEquals(1, view.getCachedCount());
+            assertTrue("expected some rays to hit", hits > GRID * GRID / 8);
+        }
+    }
+
+    private void compare(PreppedDb prepped) {
+        SimpleOverlapHandler handler = new SimpleOverlapHandler();
+        handler.setQuiet(true);
+        for (double[] d : DIRECTIONS) {
+            Vector3 dir = new Vector3(d[0], d[1], d[2]);
+            dir.normalize();
+            ViewCache view = prepped.createViewCache(dir);
+            int parts = 0;
+            for (Ray ray : grid(prepped.getBoundingBox(), dir)) {
+                SortedSet<Partition> expected = prepped.shootRay(ray, handler);
+                SortedSet<Partition> actual = prepped.shootRay(ray, handler, view);
+                assertEquals("number of partitions on " + ray, expected.size(), actual.size());
+                Iterator<Partition> iter = actual.iterator();
+                for (Partition exp : expected) {
+                    Partition act = iter.next();
+                    assertEquals(exp.getFromRegion(), act.getFromRegion());
+                    compare(ray, exp.getInHit(), act.getInHit());
+                    compare(ray, exp.getOutHit(), act.getOutHit());
+                    parts++;
+                }
+            }
+            assertTrue("expected some partitions", parts > 0);
+            assertTrue("expected the primitives to share values", view.getCachedCount() > 0);
+        }
+    }
+
+    private void compare(Ray ray, Hit expected, Hit actual) {
+        assertEquals("distance on " + ray, expected.getHit_dist(), actual.getHit_dist(), TOL);
+        assertEquals("surface number on " + ray, expected.getHit_surfno(), actual.getHit_surfno());
+    }
+
+    /**
+     * Build a grid of parallel rays that covers a bounding box
+     */
+    private Ray[] grid(BoundingBox bb, Vector3 dir) {
+        Point center = new Point(bb.getMin());
+        center.plus(bb.getMax());
+        center.scale(0.5);
+        double radius = bb.getDiameter().magnitude() / 2.0;
+        Vector3 x = dir.crossProduct(Math.abs(dir.getZ()) > 0.9 ? new Vector3(1, 0, 0) : new Vector3(0, 0, 1));
+        x.normalize();
+        Vector3 y = x.crossProduct(dir);
+        y.normalize();
+        Point gridStart = new Point(center);
+        gridStart.join(-radius, dir);
+        gridStart.join(-radius, x);
+        gridStart.join(-radius, y);
+        double delta = 2.0 * radius / GRID;
+        Ray[] rays = new Ray[GRID * GRID];
+        for (int i = 0; i < GRID; i++) {
+            for (int j = 0; j < GRID; j++) {
+                Point start = new Point(gridStart);
+                start.join(delta * (i + 0.5), x);
+                start.join(delta * (j + 0.5), y);
+                rays[i * GRID + j] = new Ray(start, new Vector3(dir));
+            }
+        }
+        return rays;
+    }
+
+    private static class MockDbExternal implements DbExternal {
+
+        private String name;
+        private byte majorType;
+        private byte minorType;
+        private byte[] body;
+
+        public MockDbExternal(String name, byte majorType, byte minorType, byte[] body) {
+            this.name = name;
+            this.majorType = majorType;
+            this.minorType = minorType;
+            this.body = body;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte getMajorType() {
+            return majorType;
+        }
+
+        public byte getMinorType() {
+            return minorType;
+        }
+
+        public byte[] getBody() {
+            return this.body;
+        }
+
+        public byte[] getAttributes() {
+            return null;
+        }
+    }
+}